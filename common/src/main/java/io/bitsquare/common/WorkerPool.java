@@ -0,0 +1,50 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.bitsquare.common.util.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Shared thread pool for CPU heavy work like building and signing transactions, so that work does not block the
+ * UserThread. The callback is executed on the UserThread, so the caller continues on the thread it came from.
+ * <p>
+ * The work must not access state which is owned by the UserThread. Collect the input on the UserThread and apply the
+ * result in the callback. Services which do their own locking, like the bitcoinj Wallet behind the TradeWalletService,
+ * can be used from the work.
+ */
+public class WorkerPool {
+    private static final Logger log = LoggerFactory.getLogger(WorkerPool.class);
+
+    // We use an unbounded queue, so work never gets rejected if more trades need signing than we have threads
+    private static final ListeningExecutorService executor = MoreExecutors.listeningDecorator(
+            Utilities.getFixedThreadPoolExecutor("WorkerPool-%d", Math.max(2, Runtime.getRuntime().availableProcessors()), 60));
+
+    public static <T> void execute(Callable<T> work, FutureCallback<T> callback) {
+        ListenableFuture<T> future = executor.submit(work);
+        Futures.addCallback(future, callback, UserThread::execute);
+    }
+}
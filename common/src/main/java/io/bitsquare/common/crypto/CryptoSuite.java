@@ -0,0 +1,47 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.crypto;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/**
+ * A set of asymmetric algorithms used for signing and for sealing the secret key of the hybrid encryption.
+ * The id is sent over the wire with PubKeyRing and SealedAndSigned, so it must never be changed or reused.
+ */
+public interface CryptoSuite {
+    int getId();
+
+    String getSignatureKeyAlgorithm();
+
+    String getEncryptionKeyAlgorithm();
+
+    KeyPair generateSignatureKeyPair();
+
+    KeyPair generateEncryptionKeyPair();
+
+    byte[] sign(PrivateKey privateKey, byte[] data) throws CryptoException;
+
+    boolean verify(PublicKey publicKey, byte[] data, byte[] signature) throws CryptoException;
+
+    byte[] seal(SecretKey secretKey, PublicKey encryptionPublicKey) throws CryptoException;
+
+    SecretKey open(byte[] sealedSecretKey, PrivateKey encryptionPrivateKey) throws CryptoException;
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.crypto;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+
+/**
+ * Registry of the supported crypto suites.
+ */
+public final class CryptoSuites {
+    public static final CryptoSuite DSA_RSA = new DsaRsaCryptoSuite();
+    public static final CryptoSuite EC = new EcCryptoSuite();
+
+    // Ordered by preference, the last one is the preferred one
+    private static final List<CryptoSuite> SUPPORTED = Collections.unmodifiableList(Arrays.asList(DSA_RSA, EC));
+
+    private CryptoSuites() {
+    }
+
+    public static List<CryptoSuite> getSupported() {
+        return SUPPORTED;
+    }
+
+    public static CryptoSuite getPreferred() {
+        return SUPPORTED.get(SUPPORTED.size() - 1);
+    }
+
+    @Nullable
+    public static CryptoSuite find(int id) {
+        for (CryptoSuite cryptoSuite : SUPPORTED) {
+            if (cryptoSuite.getId() == id)
+                return cryptoSuite;
+        }
+        return null;
+    }
+
+    public static CryptoSuite get(int id) throws CryptoException {
+        CryptoSuite cryptoSuite = find(id);
+        if (cryptoSuite == null)
+            throw new CryptoException("Unsupported crypto suite. id=" + id);
+        return cryptoSuite;
+    }
+
+    /**
+     * @return The most preferred suite supported by both key rings. Falls back to DSA_RSA which is supported by all
+     * peers.
+     */
+    public static CryptoSuite negotiate(PubKeyRing myPubKeyRing, PubKeyRing peersPubKeyRing) {
+        for (int i = SUPPORTED.size() - 1; i >= 0; i--) {
+            CryptoSuite cryptoSuite = SUPPORTED.get(i);
+            if (myPubKeyRing.supports(cryptoSuite) && peersPubKeyRing.supports(cryptoSuite))
+                return cryptoSuite;
+        }
+        return DSA_RSA;
+    }
+
+    public static PublicKey decodeSignaturePubKey(CryptoSuite cryptoSuite, byte[] encoded) throws CryptoException {
+        return decodePubKey(cryptoSuite.getSignatureKeyAlgorithm(), encoded);
+    }
+
+    public static PublicKey decodeEncryptionPubKey(CryptoSuite cryptoSuite, byte[] encoded) throws CryptoException {
+        return decodePubKey(cryptoSuite.getEncryptionKeyAlgorithm(), encoded);
+    }
+
+    private static PublicKey decodePubKey(String algorithm, byte[] encoded) throws CryptoException {
+        try {
+            return KeyFactory.getInstance(algorithm, "BC").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (Throwable t) {
+            throw new CryptoException("Could not decode public key. algorithm=" + algorithm, t);
+        }
+    }
+}
@@ -17,16 +17,27 @@
 
 package io.bitsquare.common.crypto;
 
+import org.jetbrains.annotations.Nullable;
+
+import javax.crypto.SecretKey;
 import java.io.Serializable;
 import java.security.PublicKey;
 
 public final class DecryptedDataTuple {
     public final Serializable payload;
     public final PublicKey sigPublicKey;
+    // The unwrapped secret key of the hybrid scheme. Used as base key if the sender offered a session.
+    @Nullable
+    public final SecretKey secretKey;
 
     public DecryptedDataTuple(Serializable payload, PublicKey sigPublicKey) {
+        this(payload, sigPublicKey, null);
+    }
+
+    public DecryptedDataTuple(Serializable payload, PublicKey sigPublicKey, @Nullable SecretKey secretKey) {
         this.payload = payload;
         this.sigPublicKey = sigPublicKey;
+        this.secretKey = secretKey;
     }
 
     @Override
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.crypto;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+
+/**
+ * The original suite with DSA (1024 bit) signatures and RSA (2048 bit, OAEP) key wrapping.
+ * Peers which do not know about crypto suites use that one.
+ */
+public final class DsaRsaCryptoSuite implements CryptoSuite {
+    public static final int ID = 0;
+
+    DsaRsaCryptoSuite() {
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getSignatureKeyAlgorithm() {
+        return Sig.KEY_ALGO;
+    }
+
+    @Override
+    public String getEncryptionKeyAlgorithm() {
+        return Encryption.ASYM_KEY_ALGO;
+    }
+
+    @Override
+    public KeyPair generateSignatureKeyPair() {
+        return Sig.generateKeyPair();
+    }
+
+    @Override
+    public KeyPair generateEncryptionKeyPair() {
+        return Encryption.generateKeyPair();
+    }
+
+    @Override
+    public byte[] sign(PrivateKey privateKey, byte[] data) throws CryptoException {
+        return Sig.sign(privateKey, data);
+    }
+
+    @Override
+    public boolean verify(PublicKey publicKey, byte[] data, byte[] signature) throws CryptoException {
+        return Sig.verify(publicKey, data, signature);
+    }
+
+    @Override
+    public byte[] seal(SecretKey secretKey, PublicKey encryptionPublicKey) throws CryptoException {
+        return Encryption.encryptSecretKey(secretKey, encryptionPublicKey);
+    }
+
+    @Override
+    public SecretKey open(byte[] sealedSecretKey, PrivateKey encryptionPrivateKey) throws CryptoException {
+        return Encryption.decryptSecretKey(sealedSecretKey, encryptionPrivateKey);
+    }
+
+    @Override
+    public String toString() {
+        return "DsaRsaCryptoSuite{id=" + ID + "}";
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.crypto;
+
+import io.bitsquare.common.util.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+
+/**
+ * Elliptic curve suite on secp256r1. Signatures use ECDSA with SHA-256. The secret key is sealed ECIES style:
+ * An ephemeral key pair is used for an ECDH key agreement with the receivers key, the hash of the shared secret and
+ * the ephemeral public key is used as key for AES key wrapping (RFC 3394).
+ * <p>
+ * Sealed key layout: length of encoded ephemeral public key (2 bytes), encoded ephemeral public key, wrapped key.
+ */
+public final class EcCryptoSuite implements CryptoSuite {
+    private static final Logger log = LoggerFactory.getLogger(EcCryptoSuite.class);
+
+    public static final int ID = 1;
+
+    private static final String KEY_ALGO = "EC";
+    private static final String CURVE = "secp256r1";
+    private static final String SIG_ALGO = "SHA256withECDSA";
+    private static final String KEY_AGREEMENT = "ECDH";
+    private static final String KEY_WRAP = "AESWrap";
+
+    EcCryptoSuite() {
+    }
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getSignatureKeyAlgorithm() {
+        return KEY_ALGO;
+    }
+
+    @Override
+    public String getEncryptionKeyAlgorithm() {
+        return KEY_ALGO;
+    }
+
+    @Override
+    public KeyPair generateSignatureKeyPair() {
+        return generateKeyPair();
+    }
+
+    @Override
+    public KeyPair generateEncryptionKeyPair() {
+        return generateKeyPair();
+    }
+
+    @Override
+    public byte[] sign(PrivateKey privateKey, byte[] data) throws CryptoException {
+        try {
+            Signature sig = Signature.getInstance(SIG_ALGO, "BC");
+            sig.initSign(privateKey);
+            sig.update(data);
+            return sig.sign();
+        } catch (SignatureException | NoSuchProviderException | InvalidKeyException | NoSuchAlgorithmException e) {
+            throw new CryptoException("Signing failed. " + e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean verify(PublicKey publicKey, byte[] data, byte[] signature) throws CryptoException {
+        try {
+            Signature sig = Signature.getInstance(SIG_ALGO, "BC");
+            sig.initVerify(publicKey);
+            sig.update(data);
+            return sig.verify(signature);
+        } catch (SignatureException | NoSuchProviderException | InvalidKeyException | NoSuchAlgorithmException e) {
+            throw new CryptoException("Signature verification failed. " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] seal(SecretKey secretKey, PublicKey encryptionPublicKey) throws CryptoException {
+        try {
+            KeyPair ephemeralKeyPair = generateKeyPair();
+            byte[] ephemeralPubKeyBytes = ephemeralKeyPair.getPublic().getEncoded();
+            SecretKey keyEncryptionKey = getKeyEncryptionKey(ephemeralKeyPair.getPrivate(), encryptionPublicKey,
+                    ephemeralPubKeyBytes);
+
+            Cipher cipher = Cipher.getInstance(KEY_WRAP, "BC");
+            cipher.init(Cipher.WRAP_MODE, keyEncryptionKey);
+            byte[] wrappedKey = cipher.wrap(secretKey);
+
+            return ByteBuffer.allocate(2 + ephemeralPubKeyBytes.length + wrappedKey.length)
+                    .putShort((short) ephemeralPubKeyBytes.length)
+                    .put(ephemeralPubKeyBytes)
+                    .put(wrappedKey)
+                    .array();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new CryptoException("Couldn't seal secret key");
+        }
+    }
+
+    @Override
+    public SecretKey open(byte[] sealedSecretKey, PrivateKey encryptionPrivateKey) throws CryptoException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(sealedSecretKey);
+            byte[] ephemeralPubKeyBytes = new byte[buffer.getShort()];
+            buffer.get(ephemeralPubKeyBytes);
+            byte[] wrappedKey = new byte[buffer.remaining()];
+            buffer.get(wrappedKey);
+
+            PublicKey ephemeralPubKey = KeyFactory.getInstance(KEY_ALGO, "BC")
+                    .generatePublic(new X509EncodedKeySpec(ephemeralPubKeyBytes));
+            SecretKey keyEncryptionKey = getKeyEncryptionKey(encryptionPrivateKey, ephemeralPubKey, ephemeralPubKeyBytes);
+
+            Cipher cipher = Cipher.getInstance(KEY_WRAP, "BC");
+            cipher.init(Cipher.UNWRAP_MODE, keyEncryptionKey);
+            return (SecretKey) cipher.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY);
+        } catch (Throwable e) {
+            // errors when trying to decrypt foreign messages are normal
+            throw new CryptoException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EcCryptoSuite{id=" + ID + "}";
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static KeyPair generateKeyPair() {
+        long ts = System.currentTimeMillis();
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(KEY_ALGO, "BC");
+            keyPairGenerator.initialize(new ECGenParameterSpec(CURVE));
+            KeyPair keyPair = keyPairGenerator.genKeyPair();
+            log.trace("Generate EC keyPair needed {} ms", System.currentTimeMillis() - ts);
+            return keyPair;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new RuntimeException("Could not create key.");
+        }
+    }
+
+    private static SecretKey getKeyEncryptionKey(PrivateKey privateKey, PublicKey publicKey, byte[] ephemeralPubKeyBytes)
+            throws NoSuchProviderException, NoSuchAlgorithmException, InvalidKeyException {
+        KeyAgreement keyAgreement = KeyAgreement.getInstance(KEY_AGREEMENT, "BC");
+        keyAgreement.init(privateKey);
+        keyAgreement.doPhase(publicKey, true);
+        byte[] sharedSecret = keyAgreement.generateSecret();
+        return new SecretKeySpec(Hash.getHash(Utilities.concatByteArrays(sharedSecret, ephemeralPubKeyBytes)), "AES");
+    }
+}
@@ -20,15 +20,16 @@ package io.bitsquare.common.crypto;
 import io.bitsquare.common.util.Utilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.spongycastle.util.encoders.Hex;
 
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.Mac;
+import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.util.Arrays;
 
@@ -43,6 +44,24 @@ public class Encryption {
     private static final String SYM_CIPHER = "AES";
 
     private static final String HMAC = "HmacSHA256";
+    private static final int HMAC_LENGTH = 32;
+
+    private static final String SESSION_CIPHER = "AES/GCM/NoPadding";
+    private static final int SESSION_TAG_LENGTH = 128;
+    private static final byte[] SESSION_KEY_LABEL = "bitsquare-session-key".getBytes();
+
+    // Looking up the primitives by provider name is costly, so we reuse one instance per thread. They are always
+    // initialized with the key before use, which resets any state left from a previous (failed) operation.
+    private static final ThreadLocal<Cipher> symCipher = ThreadLocal.withInitial(() -> getCipherInstance(SYM_CIPHER));
+    private static final ThreadLocal<Cipher> sessionCipher = ThreadLocal.withInitial(() -> getCipherInstance(SESSION_CIPHER));
+    private static final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC, "BC");
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Could not create mac");
+        }
+    });
 
     public static KeyPair generateKeyPair() {
         long ts = System.currentTimeMillis();
@@ -59,29 +78,36 @@ public class Encryption {
     }
 
 
+    private static Cipher getCipherInstance(String transformation) {
+        try {
+            return Cipher.getInstance(transformation, "BC");
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | NoSuchProviderException e) {
+            e.printStackTrace();
+            throw new RuntimeException("Could not create cipher");
+        }
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Symmetric
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private static byte[] encrypt(byte[] payload, SecretKey secretKey) throws CryptoException {
+    public static SecretKey generateSecretKey() {
         try {
-            Cipher cipher = Cipher.getInstance(SYM_CIPHER, "BC");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            return cipher.doFinal(payload);
+            KeyGenerator keyPairGenerator = KeyGenerator.getInstance(SYM_KEY_ALGO, "BC");
+            keyPairGenerator.init(256);
+            return keyPairGenerator.generateKey();
         } catch (Throwable e) {
             e.printStackTrace();
-            throw new CryptoException(e);
+            log.error(e.getMessage());
+            throw new RuntimeException("Couldn't generate key");
         }
     }
 
-    private static byte[] decrypt(byte[] encryptedPayload, SecretKey secretKey) throws CryptoException {
-        try {
-            Cipher cipher = Cipher.getInstance(SYM_CIPHER, "BC");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            return cipher.doFinal(encryptedPayload);
-        } catch (Throwable e) {
-            throw new CryptoException(e);
-        }
+    private static Cipher getSymCipher(int mode, SecretKey secretKey) throws InvalidKeyException {
+        Cipher cipher = symCipher.get();
+        cipher.init(mode, secretKey);
+        return cipher;
     }
 
 
@@ -89,51 +115,22 @@ public class Encryption {
     // Hmac
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private static byte[] getPayloadWithHmac(byte[] payload, SecretKey secretKey) {
-        byte[] payloadWithHmac;
-        try {
-
-            ByteArrayOutputStream outputStream = null;
-            try {
-                byte[] hmac = getHmac(payload, secretKey);
-                outputStream = new ByteArrayOutputStream();
-                outputStream.write(payload);
-                outputStream.write(hmac);
-                outputStream.flush();
-                payloadWithHmac = outputStream.toByteArray().clone();
-            } catch (IOException | NoSuchProviderException e) {
-                e.printStackTrace();
-                throw new RuntimeException("Could not create hmac");
-            } finally {
-                if (outputStream != null) {
-                    try {
-                        outputStream.close();
-                    } catch (IOException ignored) {
-                    }
-                }
-            }
-        } catch (Throwable e) {
-            e.printStackTrace();
-            throw new RuntimeException("Could not create hmac");
-        }
-        return payloadWithHmac;
+    private static byte[] getHmac(byte[] payload, int offset, int length, SecretKey secretKey) throws InvalidKeyException {
+        Mac mac = hmac.get();
+        mac.init(secretKey);
+        mac.update(payload, offset, length);
+        return mac.doFinal();
     }
 
-
-    private static boolean verifyHmac(byte[] message, byte[] hmac, SecretKey secretKey) {
-        try {
-            byte[] hmacTest = getHmac(message, secretKey);
-            return Arrays.equals(hmacTest, hmac);
-        } catch (Throwable e) {
-            e.printStackTrace();
-            throw new RuntimeException("Could not create cipher");
+    // The hmac is expected directly after the payload. Compares in constant time to not leak how many bytes of the
+    // hmac have matched.
+    private static boolean verifyHmac(byte[] payloadWithHmac, int payloadLength, SecretKey secretKey) throws InvalidKeyException {
+        byte[] hmacTest = getHmac(payloadWithHmac, 0, payloadLength, secretKey);
+        int result = 0;
+        for (int i = 0; i < hmacTest.length; i++) {
+            result |= hmacTest[i] ^ payloadWithHmac[payloadLength + i];
         }
-    }
-
-    private static byte[] getHmac(byte[] payload, SecretKey secretKey) throws NoSuchAlgorithmException, InvalidKeyException, NoSuchProviderException {
-        Mac mac = Mac.getInstance(HMAC, "BC");
-        mac.init(secretKey);
-        return mac.doFinal(payload);
+        return result == 0;
     }
 
 
@@ -145,24 +142,51 @@ public class Encryption {
         return encryptPayloadWithHmac(Utilities.serialize(object), secretKey);
     }
 
-    private static byte[] encryptPayloadWithHmac(byte[] payload, SecretKey secretKey) throws CryptoException {
-        return encrypt(getPayloadWithHmac(payload, secretKey), secretKey);
+    /**
+     * Encrypts payload with the hmac appended. The hmac is fed to the cipher after the payload, so we don't need
+     * to concatenate both into a temporary buffer.
+     */
+    static byte[] encryptPayloadWithHmac(byte[] payload, SecretKey secretKey) throws CryptoException {
+        try {
+            byte[] hmac = getHmac(payload, 0, payload.length, secretKey);
+            Cipher cipher = getSymCipher(Cipher.ENCRYPT_MODE, secretKey);
+            byte[] encrypted = new byte[cipher.getOutputSize(payload.length + hmac.length)];
+            int length = cipher.update(payload, 0, payload.length, encrypted, 0);
+            length += cipher.doFinal(hmac, 0, hmac.length, encrypted, length);
+            return length == encrypted.length ? encrypted : Arrays.copyOf(encrypted, length);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new CryptoException(e);
+        }
+    }
+
+    static byte[] decryptPayloadWithHmac(byte[] encryptedPayloadWithHmac, SecretKey secretKey) throws CryptoException {
+        ByteBuffer payload = decryptAndVerifyHmac(encryptedPayloadWithHmac, secretKey);
+        return Arrays.copyOf(payload.array(), payload.limit());
     }
 
-    private static byte[] decryptPayloadWithHmac(byte[] encryptedPayloadWithHmac, SecretKey secretKey) throws CryptoException {
-        byte[] payloadWithHmac = decrypt(encryptedPayloadWithHmac, secretKey);
-        String payloadWithHmacAsHex = Hex.toHexString(payloadWithHmac);
-        // first part is raw message
-        int length = payloadWithHmacAsHex.length();
-        int sep = length - 64;
-        String payloadAsHex = payloadWithHmacAsHex.substring(0, sep);
-        // last 64 bytes is hmac
-        String hmacAsHex = payloadWithHmacAsHex.substring(sep, length);
-        if (verifyHmac(Hex.decode(payloadAsHex), Hex.decode(hmacAsHex), secretKey)) {
-            return Hex.decode(payloadAsHex);
-        } else {
-            throw new CryptoException("Hmac does not match.");
+    /**
+     * @return A buffer wrapping the decrypted payload. The backing array contains the verified hmac and maybe some
+     * unused bytes after the limit of the buffer, so callers must only read up to the limit.
+     */
+    private static ByteBuffer decryptAndVerifyHmac(byte[] encryptedPayloadWithHmac, SecretKey secretKey) throws CryptoException {
+        byte[] payloadWithHmac;
+        int payloadLength;
+        boolean isValid;
+        try {
+            Cipher cipher = getSymCipher(Cipher.DECRYPT_MODE, secretKey);
+            payloadWithHmac = new byte[cipher.getOutputSize(encryptedPayloadWithHmac.length)];
+            int length = cipher.doFinal(encryptedPayloadWithHmac, 0, encryptedPayloadWithHmac.length, payloadWithHmac, 0);
+            payloadLength = length - HMAC_LENGTH;
+            isValid = payloadLength >= 0 && verifyHmac(payloadWithHmac, payloadLength, secretKey);
+        } catch (Throwable e) {
+            throw new CryptoException(e);
         }
+
+        if (isValid)
+            return ByteBuffer.wrap(payloadWithHmac, 0, payloadLength);
+        else
+            throw new CryptoException("Hmac does not match.");
     }
 
 
@@ -170,7 +194,7 @@ public class Encryption {
     // Asymmetric
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private static byte[] encryptSecretKey(SecretKey secretKey, PublicKey publicKey) throws CryptoException {
+    static byte[] encryptSecretKey(SecretKey secretKey, PublicKey publicKey) throws CryptoException {
         try {
             Cipher cipher = Cipher.getInstance(ASYM_CIPHER, "BC");
             cipher.init(Cipher.WRAP_MODE, publicKey);
@@ -181,7 +205,7 @@ public class Encryption {
         }
     }
 
-    private static SecretKey decryptSecretKey(byte[] encryptedSecretKey, PrivateKey privateKey) throws CryptoException {
+    static SecretKey decryptSecretKey(byte[] encryptedSecretKey, PrivateKey privateKey) throws CryptoException {
         try {
             Cipher cipher = Cipher.getInstance(ASYM_CIPHER, "BC");
             cipher.init(Cipher.UNWRAP_MODE, privateKey);
@@ -207,56 +231,143 @@ public class Encryption {
     public static SealedAndSigned encryptHybridWithSignature(Serializable payload, KeyPair signatureKeyPair,
                                                              PublicKey encryptionPublicKey)
             throws CryptoException {
-        // Create a symmetric key
-        SecretKey secretKey = generateSecretKey();
+        return encryptHybridWithSignature(payload, CryptoSuites.DSA_RSA, signatureKeyPair, encryptionPublicKey,
+                generateSecretKey(), false);
+    }
 
+    /**
+     * @param payload             The data to encrypt.
+     * @param cryptoSuite         The crypto suite of the signatureKeyPair and the encryptionPublicKey.
+     * @param signatureKeyPair    The key pair for signing.
+     * @param encryptionPublicKey The public key used for encryption.
+     * @param secretKey           The symmetric key which gets wrapped with the encryptionPublicKey.
+     * @param offerSession        If true the receiver is offered to use the secretKey as base key for a session.
+     * @return A SealedAndSigned object.
+     * @throws CryptoException
+     */
+    public static SealedAndSigned encryptHybridWithSignature(Serializable payload, CryptoSuite cryptoSuite,
+                                                             KeyPair signatureKeyPair, PublicKey encryptionPublicKey,
+                                                             SecretKey secretKey, boolean offerSession)
+            throws CryptoException {
         // Encrypt secretKey with receivers publicKey 
-        byte[] encryptedSecretKey = encryptSecretKey(secretKey, encryptionPublicKey);
+        byte[] encryptedSecretKey = cryptoSuite.seal(secretKey, encryptionPublicKey);
 
         // Encrypt with sym key payload with appended hmac
         byte[] encryptedPayloadWithHmac = encryptPayloadWithHmac(payload, secretKey);
 
         // sign hash of encryptedPayloadWithHmac
         byte[] hash = Hash.getHash(encryptedPayloadWithHmac);
-        byte[] signature = Sig.sign(signatureKeyPair.getPrivate(), hash);
+        byte[] signature = cryptoSuite.sign(signatureKeyPair.getPrivate(), hash);
 
         // Pack all together
-        return new SealedAndSigned(encryptedSecretKey, encryptedPayloadWithHmac, signature, signatureKeyPair.getPublic());
+        byte[] sessionId = offerSession ? getSessionId(encryptedSecretKey) : null;
+        return new SealedAndSigned(cryptoSuite.getId(), encryptedSecretKey, encryptedPayloadWithHmac, signature,
+                signatureKeyPair.getPublic(), sessionId, 0, 0);
     }
 
     /**
      * @param sealedAndSigned The sealedAndSigned object.
-     * @param privateKey      The private key for decryption
+     * @param privateKey      The private key for decryption. Must belong to the crypto suite of the sealedAndSigned.
      * @return A DecryptedPayloadWithPubKey object.
      * @throws CryptoException
      */
     public static DecryptedDataTuple decryptHybridWithSignature(SealedAndSigned sealedAndSigned, PrivateKey privateKey) throws CryptoException {
-        SecretKey secretKey = decryptSecretKey(sealedAndSigned.encryptedSecretKey, privateKey);
-        boolean isValid = Sig.verify(sealedAndSigned.sigPublicKey,
+        CryptoSuite cryptoSuite = CryptoSuites.get(sealedAndSigned.cryptoSuiteId);
+        SecretKey secretKey = cryptoSuite.open(sealedAndSigned.encryptedSecretKey, privateKey);
+        boolean isValid = cryptoSuite.verify(sealedAndSigned.sigPublicKey,
                 Hash.getHash(sealedAndSigned.encryptedPayloadWithHmac),
                 sealedAndSigned.signature);
         if (!isValid)
             throw new CryptoException("Signature verification failed.");
 
-        Serializable decryptedPayload = Utilities.deserialize(decryptPayloadWithHmac(sealedAndSigned.encryptedPayloadWithHmac, secretKey));
-        return new DecryptedDataTuple(decryptedPayload, sealedAndSigned.sigPublicKey);
+        ByteBuffer payload = decryptAndVerifyHmac(sealedAndSigned.encryptedPayloadWithHmac, secretKey);
+        Serializable decryptedPayload = Utilities.deserialize(payload.array(), 0, payload.limit());
+        return new DecryptedDataTuple(decryptedPayload, sealedAndSigned.sigPublicKey, secretKey);
     }
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
-    // Private
+    // Session (symmetric with authenticated encryption)
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    private static SecretKey generateSecretKey() {
+    /**
+     * The session id is derived from the wrapped secret key so the receiver can check that the offered session 
+     * belongs to the secret key he has unwrapped.
+     */
+    public static byte[] getSessionId(byte[] encryptedSecretKey) {
+        return Hash.getHash(encryptedSecretKey);
+    }
+
+    /**
+     * Derives the key used for one epoch and one direction of a session from the base key. We use separate keys per 
+     * direction so both peers can start their sequence numbers (used as nonce) at 1.
+     *
+     * @param baseKey       The secret key exchanged with the hybrid scheme.
+     * @param sessionId     The session id.
+     * @param epoch         The key epoch. Gets incremented by the sender for key rotation.
+     * @param fromInitiator True if the key is used for messages sent by the peer who has offered the session.
+     * @return The derived AES key.
+     */
+    public static SecretKey deriveSessionKey(SecretKey baseKey, byte[] sessionId, int epoch, boolean fromInitiator) {
         try {
-            KeyGenerator keyPairGenerator = KeyGenerator.getInstance(SYM_KEY_ALGO, "BC");
-            keyPairGenerator.init(256);
-            return keyPairGenerator.generateKey();
+            Mac mac = hmac.get();
+            mac.init(baseKey);
+            mac.update(SESSION_KEY_LABEL);
+            mac.update(sessionId);
+            mac.update(ByteBuffer.allocate(5).putInt(epoch).put((byte) (fromInitiator ? 1 : 0)).array());
+            return new SecretKeySpec(mac.doFinal(), SYM_KEY_ALGO);
         } catch (Throwable e) {
             e.printStackTrace();
-            log.error(e.getMessage());
-            throw new RuntimeException("Couldn't generate key");
+            throw new RuntimeException("Couldn't derive session key");
         }
     }
-}
 
+    /**
+     * @param payload    The data to encrypt.
+     * @param sessionKey The key derived with deriveSessionKey.
+     * @param sessionId  The session id. Used as additional authenticated data.
+     * @param epoch      The key epoch.
+     * @param sequenceNr The sequence number. Must never be reused with the same key.
+     * @return The encrypted payload with the authentication tag appended.
+     * @throws CryptoException
+     */
+    public static byte[] encryptWithSessionKey(Serializable payload, SecretKey sessionKey, byte[] sessionId,
+                                               int epoch, long sequenceNr) throws CryptoException {
+        try {
+            Cipher cipher = sessionCipher.get();
+            cipher.init(Cipher.ENCRYPT_MODE, sessionKey, getSessionNonce(epoch, sequenceNr));
+            cipher.updateAAD(sessionId);
+            return cipher.doFinal(Utilities.serialize(payload));
+        } catch (Throwable e) {
+            e.printStackTrace();
+            throw new CryptoException(e);
+        }
+    }
+
+    /**
+     * @param encryptedPayload The encrypted payload with the authentication tag appended.
+     * @param sessionKey       The key derived with deriveSessionKey.
+     * @param sessionId        The session id. Used as additional authenticated data.
+     * @param epoch            The key epoch.
+     * @param sequenceNr       The sequence number.
+     * @return The decrypted payload.
+     * @throws CryptoException If the authentication tag does not match.
+     */
+    public static Serializable decryptWithSessionKey(byte[] encryptedPayload, SecretKey sessionKey, byte[] sessionId,
+                                                     int epoch, long sequenceNr) throws CryptoException {
+        byte[] payload;
+        try {
+            Cipher cipher = sessionCipher.get();
+            cipher.init(Cipher.DECRYPT_MODE, sessionKey, getSessionNonce(epoch, sequenceNr));
+            cipher.updateAAD(sessionId);
+            payload = cipher.doFinal(encryptedPayload);
+        } catch (Throwable e) {
+            throw new CryptoException(e);
+        }
+        return Utilities.deserialize(payload);
+    }
+
+    private static GCMParameterSpec getSessionNonce(int epoch, long sequenceNr) {
+        return new GCMParameterSpec(SESSION_TAG_LENGTH, ByteBuffer.allocate(12).putInt(epoch).putLong(sequenceNr).array());
+    }
+}
@@ -32,19 +32,35 @@ import java.security.NoSuchProviderException;
 public class Hash {
     private static final Logger log = LoggerFactory.getLogger(Hash.class);
 
-    /**
-     * @param data Data as byte array
-     * @return Hash of data
-     */
-    public static byte[] getHash(byte[] data) {
-        MessageDigest digest;
+    // The provider lookup is expensive compared to hashing small data, so we keep one instance per thread.
+    // digest() resets the instance, so it is always in the initial state when we use it.
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
         try {
-            digest = MessageDigest.getInstance("SHA-256", "BC");
+            return MessageDigest.getInstance("SHA-256", "BC");
         } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
             log.error("Could not create MessageDigest for hash. " + e.getMessage());
             throw new RuntimeException(e);
         }
-        digest.update(data, 0, data.length);
+    });
+
+    /**
+     * @param data Data as byte array
+     * @return Hash of data
+     */
+    public static byte[] getHash(byte[] data) {
+        return getHash(data, 0, data.length);
+    }
+
+    /**
+     * @param data   Data as byte array
+     * @param offset Start of the section to hash
+     * @param length Length of the section to hash
+     * @return Hash of the section of data
+     */
+    public static byte[] getHash(byte[] data, int offset, int length) {
+        MessageDigest digest = sha256.get();
+        digest.reset();
+        digest.update(data, offset, length);
         return digest.digest();
     }
 
@@ -19,11 +19,17 @@ package io.bitsquare.common.crypto;
 
 import javax.inject.Inject;
 import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
 
 public class KeyRing {
     private final KeyPair signatureKeyPair;
     private final KeyPair encryptionKeyPair;
     private final PubKeyRing pubKeyRing;
+    // Key pairs of all supported crypto suites by suite id
+    private final Map<Integer, KeyPair> signatureKeyPairs = new HashMap<>();
+    private final Map<Integer, KeyPair> encryptionKeyPairs = new HashMap<>();
 
     @Inject
     public KeyRing(KeyStorage keyStorage) {
@@ -36,8 +42,34 @@ public class KeyRing {
             encryptionKeyPair = Encryption.generateKeyPair();
             keyStorage.saveKeyRing(this);
         }
+        signatureKeyPairs.put(DsaRsaCryptoSuite.ID, signatureKeyPair);
+        encryptionKeyPairs.put(DsaRsaCryptoSuite.ID, encryptionKeyPair);
 
-        pubKeyRing = new PubKeyRing(signatureKeyPair.getPublic(), encryptionKeyPair.getPublic());
+        // The DSA/RSA keys are our identity, keys of other suites are added to it. Users who have created their keys 
+        // before we added a suite get the keys for it at the next start.
+        Map<Integer, PublicKey> signaturePubKeys = new HashMap<>();
+        Map<Integer, PublicKey> encryptionPubKeys = new HashMap<>();
+        for (CryptoSuite cryptoSuite : CryptoSuites.getSupported()) {
+            if (cryptoSuite.getId() != DsaRsaCryptoSuite.ID) {
+                KeyPair suiteSignatureKeyPair;
+                KeyPair suiteEncryptionKeyPair;
+                if (keyStorage.allKeyFilesExist(cryptoSuite)) {
+                    suiteSignatureKeyPair = keyStorage.loadKeyPair(KeyStorage.KeyEntry.getSignatureKeyEntry(cryptoSuite));
+                    suiteEncryptionKeyPair = keyStorage.loadKeyPair(KeyStorage.KeyEntry.getEncryptionKeyEntry(cryptoSuite));
+                } else {
+                    suiteSignatureKeyPair = cryptoSuite.generateSignatureKeyPair();
+                    suiteEncryptionKeyPair = cryptoSuite.generateEncryptionKeyPair();
+                    keyStorage.saveKeyPairs(cryptoSuite, suiteSignatureKeyPair, suiteEncryptionKeyPair);
+                }
+                signatureKeyPairs.put(cryptoSuite.getId(), suiteSignatureKeyPair);
+                encryptionKeyPairs.put(cryptoSuite.getId(), suiteEncryptionKeyPair);
+                signaturePubKeys.put(cryptoSuite.getId(), suiteSignatureKeyPair.getPublic());
+                encryptionPubKeys.put(cryptoSuite.getId(), suiteEncryptionKeyPair.getPublic());
+            }
+        }
+
+        pubKeyRing = new PubKeyRing(signatureKeyPair, encryptionKeyPair.getPublic(),
+                CryptoSuites.getPreferred().getId(), signaturePubKeys, encryptionPubKeys);
     }
 
     public KeyPair getSignatureKeyPair() {
@@ -48,6 +80,14 @@ public class KeyRing {
         return encryptionKeyPair;
     }
 
+    public KeyPair getSignatureKeyPair(CryptoSuite cryptoSuite) {
+        return signatureKeyPairs.get(cryptoSuite.getId());
+    }
+
+    public KeyPair getEncryptionKeyPair(CryptoSuite cryptoSuite) {
+        return encryptionKeyPairs.get(cryptoSuite.getId());
+    }
+
     public PubKeyRing getPubKeyRing() {
         return pubKeyRing;
     }
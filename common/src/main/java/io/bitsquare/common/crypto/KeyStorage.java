@@ -19,6 +19,10 @@ package io.bitsquare.common.crypto;
 
 import com.google.inject.Inject;
 import io.bitsquare.storage.FileUtil;
+import org.bouncycastle.jce.interfaces.ECPrivateKey;
+import org.bouncycastle.jce.spec.ECParameterSpec;
+import org.bouncycastle.jce.spec.ECPublicKeySpec;
+import org.bouncycastle.math.ec.ECPoint;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,8 +46,10 @@ public class KeyStorage {
     public static final String DIR_KEY = "key.storage.dir";
 
     public enum KeyEntry {
-        MSG_SIGNATURE("sig", Sig.KEY_ALGO),
-        MSG_ENCRYPTION("enc", Encryption.ASYM_KEY_ALGO);
+        MSG_SIGNATURE("sig", CryptoSuites.DSA_RSA.getSignatureKeyAlgorithm()),
+        MSG_ENCRYPTION("enc", CryptoSuites.DSA_RSA.getEncryptionKeyAlgorithm()),
+        MSG_SIGNATURE_EC("sig_ec", CryptoSuites.EC.getSignatureKeyAlgorithm()),
+        MSG_ENCRYPTION_EC("enc_ec", CryptoSuites.EC.getEncryptionKeyAlgorithm());
 
         private final String fileName;
         private final String algorithm;
@@ -53,6 +59,14 @@ public class KeyStorage {
             this.algorithm = algorithm;
         }
 
+        public static KeyEntry getSignatureKeyEntry(CryptoSuite cryptoSuite) {
+            return cryptoSuite.getId() == EcCryptoSuite.ID ? MSG_SIGNATURE_EC : MSG_SIGNATURE;
+        }
+
+        public static KeyEntry getEncryptionKeyEntry(CryptoSuite cryptoSuite) {
+            return cryptoSuite.getId() == EcCryptoSuite.ID ? MSG_ENCRYPTION_EC : MSG_ENCRYPTION;
+        }
+
         public String getFileName() {
             return fileName;
         }
@@ -79,7 +93,11 @@ public class KeyStorage {
     }
 
     public boolean allKeyFilesExist() {
-        return fileExists(KeyEntry.MSG_SIGNATURE) && fileExists(KeyEntry.MSG_ENCRYPTION);
+        return allKeyFilesExist(CryptoSuites.DSA_RSA);
+    }
+
+    public boolean allKeyFilesExist(CryptoSuite cryptoSuite) {
+        return fileExists(KeyEntry.getSignatureKeyEntry(cryptoSuite)) && fileExists(KeyEntry.getEncryptionKeyEntry(cryptoSuite));
     }
 
     private boolean fileExists(KeyEntry keyEntry) {
@@ -120,6 +138,11 @@ public class KeyStorage {
                 BigInteger y = g.modPow(dsaPrivateKey.getX(), p);
                 KeySpec publicKeySpec = new DSAPublicKeySpec(y, p, q, g);
                 publicKey = keyFactory.generatePublic(publicKeySpec);
+            } else if (privateKey instanceof ECPrivateKey) {
+                ECPrivateKey ecPrivateKey = (ECPrivateKey) privateKey;
+                ECParameterSpec ecParameterSpec = ecPrivateKey.getParameters();
+                ECPoint q = ecParameterSpec.getG().multiply(ecPrivateKey.getD()).normalize();
+                publicKey = keyFactory.generatePublic(new ECPublicKeySpec(q, ecParameterSpec));
             } else {
                 throw new RuntimeException("Unsupported key algo" + keyEntry.getAlgorithm());
             }
@@ -138,6 +161,11 @@ public class KeyStorage {
         savePrivateKey(keyRing.getEncryptionKeyPair().getPrivate(), KeyEntry.MSG_ENCRYPTION.getFileName());
     }
 
+    public void saveKeyPairs(CryptoSuite cryptoSuite, KeyPair signatureKeyPair, KeyPair encryptionKeyPair) {
+        savePrivateKey(signatureKeyPair.getPrivate(), KeyEntry.getSignatureKeyEntry(cryptoSuite).getFileName());
+        savePrivateKey(encryptionKeyPair.getPrivate(), KeyEntry.getEncryptionKeyEntry(cryptoSuite).getFileName());
+    }
+
     private void savePrivateKey(PrivateKey privateKey, String name) {
         if (!storageDir.exists())
             storageDir.mkdir();
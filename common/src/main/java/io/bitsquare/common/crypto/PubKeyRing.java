@@ -19,17 +19,20 @@ package io.bitsquare.common.crypto;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.common.wire.Payload;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.PublicKey;
+import java.security.*;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Same as KeyRing but with public keys only.
@@ -46,19 +49,85 @@ public final class PubKeyRing implements Payload {
     transient private PublicKey encryptionPubKey;
     private final byte[] encryptionPubKeyBytes;
 
+    // The keys above are the DSA/RSA keys and used as identity. Keys of additional crypto suites are stored by suite id.
+    // Old peers don't know those fields and deserialize them as null/0, so they only see the DSA/RSA suite.
+    private final int cryptoSuiteId;
+    private final HashMap<Integer, byte[]> signaturePubKeyBytesBySuite;
+    private final HashMap<Integer, byte[]> encryptionPubKeyBytesBySuite;
+    // Signature of the suite id and the suite keys with the DSA key, so nobody can add or replace a suite key of
+    // that identity. Suite keys with a missing or invalid signature are ignored.
+    private final byte[] suiteKeysSignature;
+    transient private Map<Integer, PublicKey> signaturePubKeysBySuite = new HashMap<>();
+    transient private Map<Integer, PublicKey> encryptionPubKeysBySuite = new HashMap<>();
+    // Set if the suite keys are our own or their signature got verified
+    transient private boolean suiteKeysVerified;
+
     public PubKeyRing(PublicKey signaturePubKey, PublicKey encryptionPubKey) {
         this.signaturePubKey = signaturePubKey;
         this.encryptionPubKey = encryptionPubKey;
         this.signaturePubKeyBytes = new X509EncodedKeySpec(signaturePubKey.getEncoded()).getEncoded();
         this.encryptionPubKeyBytes = new X509EncodedKeySpec(encryptionPubKey.getEncoded()).getEncoded();
+        this.cryptoSuiteId = DsaRsaCryptoSuite.ID;
+        this.signaturePubKeyBytesBySuite = new HashMap<>();
+        this.encryptionPubKeyBytesBySuite = new HashMap<>();
+        this.suiteKeysSignature = null;
+    }
+
+    /**
+     * @param signatureKeyPair  The DSA key pair. The private key is used to sign the keys of the other suites.
+     * @param cryptoSuiteId     The id of the preferred crypto suite.
+     * @param signaturePubKeys  Signature keys of crypto suites other than DSA/RSA by suite id.
+     * @param encryptionPubKeys Encryption keys of crypto suites other than DSA/RSA by suite id.
+     */
+    public PubKeyRing(KeyPair signatureKeyPair, PublicKey encryptionPubKey, int cryptoSuiteId,
+                      Map<Integer, PublicKey> signaturePubKeys, Map<Integer, PublicKey> encryptionPubKeys) {
+        PublicKey signaturePubKey = signatureKeyPair.getPublic();
+        this.signaturePubKey = signaturePubKey;
+        this.encryptionPubKey = encryptionPubKey;
+        this.signaturePubKeyBytes = new X509EncodedKeySpec(signaturePubKey.getEncoded()).getEncoded();
+        this.encryptionPubKeyBytes = new X509EncodedKeySpec(encryptionPubKey.getEncoded()).getEncoded();
+
+        this.cryptoSuiteId = cryptoSuiteId;
+        this.signaturePubKeysBySuite.putAll(signaturePubKeys);
+        this.encryptionPubKeysBySuite.putAll(encryptionPubKeys);
+        this.signaturePubKeyBytesBySuite = new HashMap<>();
+        signaturePubKeys.entrySet().stream().forEach(e -> signaturePubKeyBytesBySuite.put(e.getKey(),
+                new X509EncodedKeySpec(e.getValue().getEncoded()).getEncoded()));
+        this.encryptionPubKeyBytesBySuite = new HashMap<>();
+        encryptionPubKeys.entrySet().stream().forEach(e -> encryptionPubKeyBytesBySuite.put(e.getKey(),
+                new X509EncodedKeySpec(e.getValue().getEncoded()).getEncoded()));
+        try {
+            this.suiteKeysSignature = Sig.sign(signatureKeyPair.getPrivate(), getSuiteKeysData());
+            this.suiteKeysVerified = true;
+        } catch (CryptoException | IOException e) {
+            throw new RuntimeException("Signing the suite keys failed. " + e.getMessage(), e);
+        }
     }
 
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         try {
             in.defaultReadObject();
+            signaturePubKeysBySuite = new HashMap<>();
+            encryptionPubKeysBySuite = new HashMap<>();
             signaturePubKey = KeyFactory.getInstance(Sig.KEY_ALGO, "BC").generatePublic(new X509EncodedKeySpec(signaturePubKeyBytes));
             encryptionPubKey = KeyFactory.getInstance(Encryption.ASYM_KEY_ALGO, "BC").generatePublic(new X509EncodedKeySpec(encryptionPubKeyBytes));
-        } catch (InvalidKeySpecException | NoSuchAlgorithmException | NoSuchProviderException e) {
+
+            if (signaturePubKeyBytesBySuite != null && encryptionPubKeyBytesBySuite != null
+                    && !signaturePubKeyBytesBySuite.isEmpty() && !hasValidSuiteKeysSignature()) {
+                log.warn("The suite keys of a PubKeyRing have no valid signature. We only use the DSA/RSA suite of it.");
+            } else if (signaturePubKeyBytesBySuite != null && encryptionPubKeyBytesBySuite != null) {
+                suiteKeysVerified = true;
+                for (Map.Entry<Integer, byte[]> entry : signaturePubKeyBytesBySuite.entrySet()) {
+                    // We ignore suites we don't know (added by newer versions)
+                    CryptoSuite cryptoSuite = CryptoSuites.find(entry.getKey());
+                    byte[] encryptionPubKeyBytes = encryptionPubKeyBytesBySuite.get(entry.getKey());
+                    if (cryptoSuite != null && encryptionPubKeyBytes != null) {
+                        signaturePubKeysBySuite.put(entry.getKey(), CryptoSuites.decodeSignaturePubKey(cryptoSuite, entry.getValue()));
+                        encryptionPubKeysBySuite.put(entry.getKey(), CryptoSuites.decodeEncryptionPubKey(cryptoSuite, encryptionPubKeyBytes));
+                    }
+                }
+            }
+        } catch (InvalidKeySpecException | NoSuchAlgorithmException | NoSuchProviderException | CryptoException e) {
             e.printStackTrace();
             log.error(e.getMessage());
         } catch (Throwable t) {
@@ -66,6 +135,55 @@ public final class PubKeyRing implements Payload {
         }
     }
 
+    private boolean hasValidSuiteKeysSignature() throws CryptoException, IOException {
+        return suiteKeysSignature != null && Sig.verify(signaturePubKey, getSuiteKeysData(), suiteKeysSignature);
+    }
+
+    // The preferred suite id followed by id, signature key and encryption key of each suite, ordered by suite id
+    private byte[] getSuiteKeysData() throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteArrayOutputStream);
+        out.writeInt(cryptoSuiteId);
+        for (Map.Entry<Integer, byte[]> entry : new TreeMap<>(signaturePubKeyBytesBySuite).entrySet()) {
+            byte[] encryptionPubKeyBytes = encryptionPubKeyBytesBySuite.get(entry.getKey());
+            out.writeInt(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+            out.writeInt(encryptionPubKeyBytes != null ? encryptionPubKeyBytes.length : 0);
+            if (encryptionPubKeyBytes != null)
+                out.write(encryptionPubKeyBytes);
+        }
+        out.flush();
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    public boolean supports(CryptoSuite cryptoSuite) {
+        return cryptoSuite.getId() == DsaRsaCryptoSuite.ID ||
+                (signaturePubKeysBySuite.containsKey(cryptoSuite.getId()) && encryptionPubKeysBySuite.containsKey(cryptoSuite.getId()));
+    }
+
+    @Nullable
+    public PublicKey getSignaturePubKey(CryptoSuite cryptoSuite) {
+        return cryptoSuite.getId() == DsaRsaCryptoSuite.ID ? signaturePubKey : signaturePubKeysBySuite.get(cryptoSuite.getId());
+    }
+
+    @Nullable
+    public PublicKey getEncryptionPubKey(CryptoSuite cryptoSuite) {
+        return cryptoSuite.getId() == DsaRsaCryptoSuite.ID ? encryptionPubKey : encryptionPubKeysBySuite.get(cryptoSuite.getId());
+    }
+
+    /**
+     * @return True if the key is our DSA signature key or the signature key of any other crypto suite.
+     */
+    public boolean isSignaturePubKey(PublicKey publicKey) {
+        return publicKey != null && (publicKey.equals(signaturePubKey) ||
+                (suiteKeysVerified && signaturePubKeysBySuite.containsValue(publicKey)));
+    }
+
+    public int getCryptoSuiteId() {
+        return cryptoSuiteId;
+    }
+
     public PublicKey getSignaturePubKey() {
         return signaturePubKey;
     }
@@ -74,6 +192,16 @@ public final class PubKeyRing implements Payload {
         return encryptionPubKey;
     }
 
+    /**
+     * The identity of a PubKeyRing (equals and hashCode) is defined by the DSA/RSA keys only, so it does not change
+     * for existing users and persisted offers, trades and disputes. Use that method to compare the suite keys as well.
+     */
+    public boolean hasSameSuiteKeys(PubKeyRing other) {
+        return other != null && cryptoSuiteId == other.cryptoSuiteId &&
+                signaturePubKeysBySuite.equals(other.signaturePubKeysBySuite) &&
+                encryptionPubKeysBySuite.equals(other.encryptionPubKeysBySuite);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -99,6 +227,7 @@ public final class PubKeyRing implements Payload {
         return "PubKeyRing{" +
                 "signaturePubKey.hashCode()=" + (signaturePubKey != null ? signaturePubKey.hashCode() : "") +
                 ", encryptionPubKey.hashCode()=" + (encryptionPubKey != null ? encryptionPubKey.hashCode() : "") +
+                ", cryptoSuiteId=" + cryptoSuiteId +
                 '}';
     }
 
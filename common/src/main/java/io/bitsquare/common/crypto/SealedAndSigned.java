@@ -19,11 +19,11 @@ package io.bitsquare.common.crypto;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.common.wire.Payload;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
@@ -39,23 +39,52 @@ public final class SealedAndSigned implements Payload {
     public transient PublicKey sigPublicKey;
     private final byte[] sigPublicKeyBytes;
 
+    // Session mode: With the hybrid scheme a set sessionId is an offer to the receiver to reuse the wrapped secret 
+    // key as base for a session. Without encryptedSecretKey and signature the payload is encrypted with the session key 
+    // of that sessionId. Old peers don't know those fields and deserialize them as null/0.
+    @Nullable
+    public final byte[] sessionId;
+    public final int sessionEpoch;
+    public final long sessionSequenceNr;
+
+    // The crypto suite used for sealing the secret key and for the signature. Old peers deserialize it as 0 (DSA/RSA).
+    public final int cryptoSuiteId;
+
     public SealedAndSigned(byte[] encryptedSecretKey, byte[] encryptedPayloadWithHmac, byte[] signature, PublicKey sigPublicKey) {
+        this(DsaRsaCryptoSuite.ID, encryptedSecretKey, encryptedPayloadWithHmac, signature, sigPublicKey, null, 0, 0);
+    }
+
+    public SealedAndSigned(int cryptoSuiteId, @Nullable byte[] encryptedSecretKey, byte[] encryptedPayloadWithHmac,
+                           @Nullable byte[] signature, PublicKey sigPublicKey, @Nullable byte[] sessionId,
+                           int sessionEpoch, long sessionSequenceNr) {
+        this.cryptoSuiteId = cryptoSuiteId;
         this.encryptedSecretKey = encryptedSecretKey;
         this.encryptedPayloadWithHmac = encryptedPayloadWithHmac;
         this.signature = signature;
         this.sigPublicKey = sigPublicKey;
         this.sigPublicKeyBytes = new X509EncodedKeySpec(this.sigPublicKey.getEncoded()).getEncoded();
+        this.sessionId = sessionId;
+        this.sessionEpoch = sessionEpoch;
+        this.sessionSequenceNr = sessionSequenceNr;
     }
 
     private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
         try {
             in.defaultReadObject();
-            sigPublicKey = KeyFactory.getInstance(Sig.KEY_ALGO, "BC").generatePublic(new X509EncodedKeySpec(sigPublicKeyBytes));
+            sigPublicKey = CryptoSuites.decodeSignaturePubKey(CryptoSuites.get(cryptoSuiteId), sigPublicKeyBytes);
         } catch (Throwable t) {
             log.warn("Exception at readObject: " + t.getMessage());
         }
     }
 
+    public boolean isSessionOffer() {
+        return sessionId != null && encryptedSecretKey != null;
+    }
+
+    public boolean isSessionEncrypted() {
+        return sessionId != null && encryptedSecretKey == null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -66,6 +95,10 @@ public final class SealedAndSigned implements Payload {
         if (!Arrays.equals(encryptedSecretKey, that.encryptedSecretKey)) return false;
         if (!Arrays.equals(encryptedPayloadWithHmac, that.encryptedPayloadWithHmac)) return false;
         if (!Arrays.equals(signature, that.signature)) return false;
+        if (!Arrays.equals(sessionId, that.sessionId)) return false;
+        if (sessionEpoch != that.sessionEpoch) return false;
+        if (sessionSequenceNr != that.sessionSequenceNr) return false;
+        if (cryptoSuiteId != that.cryptoSuiteId) return false;
         return !(sigPublicKey != null ? !sigPublicKey.equals(that.sigPublicKey) : that.sigPublicKey != null);
 
     }
@@ -76,6 +109,10 @@ public final class SealedAndSigned implements Payload {
         result = 31 * result + (encryptedPayloadWithHmac != null ? Arrays.hashCode(encryptedPayloadWithHmac) : 0);
         result = 31 * result + (signature != null ? Arrays.hashCode(signature) : 0);
         result = 31 * result + (sigPublicKey != null ? sigPublicKey.hashCode() : 0);
+        result = 31 * result + (sessionId != null ? Arrays.hashCode(sessionId) : 0);
+        result = 31 * result + sessionEpoch;
+        result = 31 * result + (int) (sessionSequenceNr ^ (sessionSequenceNr >>> 32));
+        result = 31 * result + cryptoSuiteId;
         return result;
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.taskrunner;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable sequence of tasks with the constructor of each task looked up once. A protocol builds its pipelines
+ * once and runs them with a new TaskRunner for each message, so we don't use reflection per task run.
+ * <p>
+ * A step can be marked as persistence checkpoint. The model gets persisted after a checkpoint and after the last step.
+ * Steps between two checkpoints which only read or prepare data don't need to write the model.
+ */
+public final class TaskPipeline<T extends Model> {
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Task.class, TaskRunner.class, Model.class);
+
+    // The pipelines created with TaskRunner.addTasks, keyed by the model class and the task classes
+    private static final Map<List<Class<?>>, TaskPipeline<?>> pipelineCache = new ConcurrentHashMap<>();
+
+    private final List<Step> steps;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Builder
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static <T extends Model> Builder<T> builder(Class<T> modelClass) {
+        return new Builder<>(modelClass);
+    }
+
+    public static final class Builder<T extends Model> {
+        private final Class<T> modelClass;
+        private final List<Step> steps = new ArrayList<>();
+
+        private Builder(Class<T> modelClass) {
+            this.modelClass = modelClass;
+        }
+
+        @SafeVarargs
+        public final Builder<T> add(Class<? extends Task<T>>... taskClasses) {
+            Arrays.stream(taskClasses).forEach(taskClass -> steps.add(new Step(taskClass, modelClass, false)));
+            return this;
+        }
+
+        /**
+         * Adds a step after which the model gets persisted.
+         */
+        public Builder<T> addCheckpoint(Class<? extends Task<T>> taskClass) {
+            steps.add(new Step(taskClass, modelClass, true));
+            return this;
+        }
+
+        public TaskPipeline<T> build() {
+            return new TaskPipeline<>(steps);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private TaskPipeline(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    // Each step is a checkpoint, as the TaskRunner persisted the model after each task before we had pipelines
+    @SuppressWarnings("unchecked")
+    static <T extends Model> TaskPipeline<T> getCached(Class<T> modelClass, List<? extends Class<? extends Task>> taskClasses) {
+        List<Class<?>> key = new ArrayList<>(taskClasses.size() + 1);
+        key.add(modelClass);
+        key.addAll(taskClasses);
+        return (TaskPipeline<T>) pipelineCache.computeIfAbsent(key, k -> {
+            List<Step> steps = new ArrayList<>(taskClasses.size());
+            taskClasses.stream().forEach(taskClass -> steps.add(new Step(taskClass, modelClass, true)));
+            return new TaskPipeline<>(steps);
+        });
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope, used by the TaskRunner
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    int size() {
+        return steps.size();
+    }
+
+    Class<? extends Task> getTaskClass(int index) {
+        return steps.get(index).taskClass;
+    }
+
+    boolean isCheckpoint(int index) {
+        return steps.get(index).isCheckpoint || index == steps.size() - 1;
+    }
+
+    Task createTask(int index, TaskRunner taskRunner, Model model) throws Throwable {
+        return (Task) steps.get(index).constructorHandle.invokeExact(taskRunner, model);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Step
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Step {
+        private final Class<? extends Task> taskClass;
+        private final MethodHandle constructorHandle;
+        private final boolean isCheckpoint;
+
+        private Step(Class<? extends Task> taskClass, Class<? extends Model> modelClass, boolean isCheckpoint) {
+            this.taskClass = taskClass;
+            this.isCheckpoint = isCheckpoint;
+            try {
+                Constructor<? extends Task> constructor = taskClass.getDeclaredConstructor(TaskRunner.class, modelClass);
+                constructor.setAccessible(true);
+                constructorHandle = MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Task " + taskClass.getSimpleName() +
+                        " has no constructor for TaskRunner and " + modelClass.getSimpleName(), e);
+            }
+        }
+    }
+}
@@ -22,14 +22,30 @@ import io.bitsquare.common.handlers.ResultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
+/**
+ * Runs the tasks of one or more TaskPipelines in sequence. A task which completes asynchronously continues the
+ * sequence from its callback thread.
+ * <p>
+ * The model gets persisted after each checkpoint of a pipeline. For each completed task we record the wall time from
+ * creating the task to its completion and the CPU time of the thread until the task has completed or its run method
+ * has returned. The statistics are collected per task class over all TaskRunners.
+ */
 public class TaskRunner<T extends Model> {
     private static final Logger log = LoggerFactory.getLogger(TaskRunner.class);
 
-    private final Queue<Class<? extends Task>> tasks = new LinkedBlockingQueue<>();
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private static final Map<String, TaskStats> taskStatsByTaskName = new ConcurrentHashMap<>();
+
+    private final Queue<TaskPipeline<T>> pipelines = new LinkedBlockingQueue<>();
     private final T sharedModel;
     private final Class<T> sharedModelClass;
     private final ResultHandler resultHandler;
@@ -37,8 +53,31 @@ public class TaskRunner<T extends Model> {
     private boolean failed = false;
     private boolean isCanceled;
 
+    private TaskPipeline<T> currentPipeline;
+    private int currentIndex;
     private Class<? extends Task> currentTask;
+    private int numStartedTasks;
+    private long wallTimeStartNanos;
+    // -1 if the CPU time of the current task is recorded already
+    private long cpuTimeStartNanos = -1;
+    private long cpuTimeNanos;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Static
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return A copy of the statistics per task class name.
+     */
+    public static Map<String, TaskStats> getTaskStats() {
+        return new HashMap<>(taskStatsByTaskName);
+    }
+
 
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
 
     public TaskRunner(T sharedModel, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
         this(sharedModel, (Class<T>) sharedModel.getClass(), resultHandler, errorMessageHandler);
@@ -51,21 +90,82 @@ public class TaskRunner<T extends Model> {
         this.sharedModelClass = sharedModelClass;
     }
 
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds the tasks with the model persisted after each task. The constructors are looked up only at the first call
+     * with the same tasks.
+     */
     public final void addTasks(Class<? extends Task<T>>... items) {
-        tasks.addAll(Arrays.asList(items));
+        pipelines.add(TaskPipeline.getCached(sharedModelClass, Arrays.asList(items)));
+    }
+
+    public final void addPipeline(TaskPipeline<T> pipeline) {
+        pipelines.add(pipeline);
     }
 
     public void run() {
+        currentPipeline = pipelines.poll();
+        currentIndex = 0;
+        next();
+    }
+
+    public void cancel() {
+        isCanceled = true;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope, called from the task
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void handleComplete() {
+        stopCpuTime();
+        long wallTimeNanos = System.nanoTime() - wallTimeStartNanos;
+        taskStatsByTaskName.computeIfAbsent(currentTask.getSimpleName(), k -> new TaskStats())
+                .add(wallTimeNanos, cpuTimeNanos);
+        log.debug("Task completed: {} (wall time {} ms, cpu time {} ms)", currentTask.getSimpleName(),
+                wallTimeNanos / 1_000_000, cpuTimeNanos / 1_000_000);
+
+        if (currentPipeline.isCheckpoint(currentIndex))
+            sharedModel.persist();
+        currentIndex++;
         next();
     }
 
+    void handleErrorMessage(String errorMessage) {
+        stopCpuTime();
+        log.error("Task failed: " + currentTask.getSimpleName() + " / errorMessage: " + errorMessage);
+        failed = true;
+        errorMessageHandler.handleErrorMessage(errorMessage);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
     private void next() {
         if (!failed && !isCanceled) {
-            if (tasks.size() > 0) {
+            while (currentPipeline != null && currentIndex >= currentPipeline.size()) {
+                currentPipeline = pipelines.poll();
+                currentIndex = 0;
+            }
+
+            if (currentPipeline != null) {
                 try {
-                    currentTask = tasks.poll();
+                    currentTask = currentPipeline.getTaskClass(currentIndex);
                     log.trace("Run task: " + currentTask.getSimpleName());
-                    currentTask.getDeclaredConstructor(TaskRunner.class, sharedModelClass).newInstance(this, sharedModel).run();
+                    int taskNumber = ++numStartedTasks;
+                    wallTimeStartNanos = System.nanoTime();
+                    cpuTimeStartNanos = getCpuTimeNanos();
+                    currentPipeline.createTask(currentIndex, this, sharedModel).run();
+                    // If the task completes later we only count the CPU time of the run method
+                    if (numStartedTasks == taskNumber)
+                        stopCpuTime();
                 } catch (Throwable throwable) {
                     throwable.printStackTrace();
                     handleErrorMessage("Error at taskRunner: " + throwable.getMessage());
@@ -76,19 +176,59 @@ public class TaskRunner<T extends Model> {
         }
     }
 
-    public void cancel() {
-        isCanceled = true;
+    private void stopCpuTime() {
+        if (cpuTimeStartNanos != -1) {
+            cpuTimeNanos = getCpuTimeNanos() - cpuTimeStartNanos;
+            cpuTimeStartNanos = -1;
+        }
     }
 
-    void handleComplete() {
-        log.trace("Task completed: " + currentTask.getSimpleName());
-        sharedModel.persist();
-        next();
+    private static long getCpuTimeNanos() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : 0;
     }
 
-    void handleErrorMessage(String errorMessage) {
-        log.error("Task failed: " + currentTask.getSimpleName() + " / errorMessage: " + errorMessage);
-        failed = true;
-        errorMessageHandler.handleErrorMessage(errorMessage);
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // TaskStats
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final class TaskStats {
+        private long numRuns;
+        private long totalWallTimeNanos;
+        private long maxWallTimeNanos;
+        private long totalCpuTimeNanos;
+
+        private synchronized void add(long wallTimeNanos, long cpuTimeNanos) {
+            numRuns++;
+            totalWallTimeNanos += wallTimeNanos;
+            maxWallTimeNanos = Math.max(maxWallTimeNanos, wallTimeNanos);
+            totalCpuTimeNanos += cpuTimeNanos;
+        }
+
+        public synchronized long getNumRuns() {
+            return numRuns;
+        }
+
+        public synchronized long getAverageWallTimeInMicros() {
+            return numRuns > 0 ? totalWallTimeNanos / numRuns / 1000 : 0;
+        }
+
+        public synchronized long getMaxWallTimeInMicros() {
+            return maxWallTimeNanos / 1000;
+        }
+
+        public synchronized long getAverageCpuTimeInMicros() {
+            return numRuns > 0 ? totalCpuTimeNanos / numRuns / 1000 : 0;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "TaskStats{" +
+                    "numRuns=" + numRuns +
+                    ", averageWallTimeInMicros=" + getAverageWallTimeInMicros() +
+                    ", maxWallTimeInMicros=" + getMaxWallTimeInMicros() +
+                    ", averageCpuTimeInMicros=" + getAverageCpuTimeInMicros() +
+                    '}';
+        }
     }
 }
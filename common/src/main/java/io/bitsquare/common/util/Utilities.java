@@ -84,6 +84,22 @@ public class Utilities {
         return executor;
     }
 
+    /**
+     * Fixed size pool with an unbounded queue. Use it for batches of tasks where the number of tasks is not limited,
+     * as the executor from getThreadPoolExecutor rejects tasks if all threads are busy and the queue is full.
+     */
+    public static ThreadPoolExecutor getFixedThreadPoolExecutor(String name,
+                                                                int poolSize,
+                                                                long keepAliveTimeInSec) {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat(name)
+                .setDaemon(true)
+                .build();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, keepAliveTimeInSec,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
     public static ScheduledThreadPoolExecutor getScheduledThreadPoolExecutor(String name,
                                                                              int corePoolSize,
@@ -303,7 +319,14 @@ public class Utilities {
     }*/
 
     public static <T extends Serializable> T deserialize(byte[] data) {
-        ByteArrayInputStream bis = new ByteArrayInputStream(data);
+        return deserialize(data, 0, data.length);
+    }
+
+    /**
+     * Deserializes a section of the data array, so callers can skip a prefix or suffix without copying.
+     */
+    public static <T extends Serializable> T deserialize(byte[] data, int offset, int length) {
+        ByteArrayInputStream bis = new ByteArrayInputStream(data, offset, length);
         ObjectInput in = null;
         Object result = null;
         try {
@@ -338,7 +361,7 @@ public class Utilities {
             out = new ObjectOutputStream(bos);
             out.writeObject(object);
             out.flush();
-            result = bos.toByteArray().clone();
+            result = bos.toByteArray();
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -0,0 +1,154 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import io.bitsquare.common.util.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stores sequences of objects with one append-only log file per id inside a directory. Appending an entry writes only
+ * that entry, independent how long the log is already.
+ * <p>
+ * The entry is serialized on the calling thread and appended on the thread of the PersistenceScheduler, so the
+ * appends of a log keep their order. An entry which got truncated by a crash is ignored at reading.
+ */
+public class AppendOnlyLogStorage<T extends Serializable> {
+    private static final Logger log = LoggerFactory.getLogger(AppendOnlyLogStorage.class);
+
+    private final File storageDir;
+    private final PersistenceScheduler persistenceScheduler;
+    private File dir;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public AppendOnlyLogStorage(@Named(Storage.DIR_KEY) File storageDir) {
+        this(storageDir, PersistenceScheduler.getInstance());
+    }
+
+    AppendOnlyLogStorage(File storageDir, PersistenceScheduler persistenceScheduler) {
+        this.storageDir = storageDir;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    public void init(String dirName) {
+        dir = new File(storageDir, dirName);
+        if (!dir.exists() && !dir.mkdirs())
+            log.warn("make dir failed");
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void append(String id, T entry) {
+        checkNotNull(dir, "dir = null. Call init before using append.");
+        byte[] bytes = Utilities.serialize(entry);
+        if (bytes == null) {
+            log.error("Serialization of log entry failed. id=" + id);
+            return;
+        }
+
+        File file = new File(dir, id);
+        persistenceScheduler.write(() -> {
+            long now = System.nanoTime();
+            // Layout of an entry: length (int) followed by the serialized entry
+            try (FileOutputStream fileOutputStream = new FileOutputStream(file, true);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.flush();
+                fileOutputStream.getFD().sync();
+            } catch (IOException e) {
+                e.printStackTrace();
+                log.error("Appending to log " + file + " failed. " + e.getMessage());
+            }
+            persistenceScheduler.onWriteCompleted(dir.getName(), bytes.length + 4, System.nanoTime() - now);
+        });
+    }
+
+    /**
+     * Reads all entries of the log. Appends which are still pending are not included.
+     * An incomplete entry at the end gets cut off, so the next append starts at a valid position.
+     */
+    public List<T> read(String id) {
+        checkNotNull(dir, "dir = null. Call init before using read.");
+        List<T> entries = new ArrayList<>();
+        File file = new File(dir, id);
+        if (!file.exists())
+            return entries;
+
+        long fileLength = file.length();
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (validLength + 4 <= fileLength) {
+                int length = in.readInt();
+                if (length < 0 || validLength + 4 + length > fileLength)
+                    break;
+
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                validLength += 4 + length;
+                T entry = Utilities.<T>deserialize(bytes);
+                if (entry != null)
+                    entries.add(entry);
+                else
+                    log.warn("Could not read log entry of " + file + ". We skip it.");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Reading log " + file + " failed. " + e.getMessage());
+            return entries;
+        }
+
+        if (validLength < fileLength) {
+            log.warn("Last entry of log " + file + " is incomplete. We cut it off.");
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(validLength);
+            } catch (IOException e) {
+                log.error("Could not cut off incomplete entry of " + file + ". " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    public boolean contains(String id) {
+        return new File(dir, id).exists();
+    }
+
+    public void remove(String id) {
+        File file = new File(dir, id);
+        persistenceScheduler.write(() -> {
+            if (file.exists() && !file.delete())
+                log.warn("Could not delete log file: " + id);
+        });
+    }
+}
@@ -18,29 +18,32 @@
 package io.bitsquare.storage;
 
 import io.bitsquare.common.UserThread;
-import io.bitsquare.common.util.Utilities;
 import org.bitcoinj.core.Utils;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.file.Paths;
-import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FileManager<T> {
     private static final Logger log = LoggerFactory.getLogger(FileManager.class);
 
+    // Backups at startup are delayed to not compete with the reads of the other stores
+    private static final long BACKUP_DELAY = 10_000;
+
     private final File dir;
     private final File storageFile;
-    private final ScheduledThreadPoolExecutor executor;
+    private final PersistenceScheduler persistenceScheduler;
     private final AtomicBoolean savePending;
     private final long delay;
-    private final Callable<Void> saveFileTask;
-    private T serializable;
+    private volatile T serializable;
+    private volatile boolean isShutDown;
+    @Nullable
+    private String pendingBackupFileName;
+    @Nullable
+    private volatile Runnable writeCommittedHandler;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -48,36 +51,19 @@ public class FileManager<T> {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public FileManager(File dir, File storageFile, long delay) {
+        this(dir, storageFile, delay, PersistenceScheduler.getInstance());
+    }
+
+    FileManager(File dir, File storageFile, long delay, PersistenceScheduler persistenceScheduler) {
         this.dir = dir;
         this.storageFile = storageFile;
+        this.persistenceScheduler = persistenceScheduler;
 
-        executor = Utilities.getScheduledThreadPoolExecutor("FileManager", 1, 10, 5);
-
-        // File must only be accessed from the auto-save executor from now on, to avoid simultaneous access.
+        // File must only be accessed from the persistence scheduler from now on, to avoid simultaneous access.
         savePending = new AtomicBoolean();
         this.delay = delay;
 
-        saveFileTask = () -> {
-            Thread.currentThread().setName("Save-file-task-" + new Random().nextInt(10000));
-            // Runs in an auto save thread.
-            if (!savePending.getAndSet(false)) {
-                // Some other scheduled request already beat us to it.
-                return null;
-            }
-            saveNowInternal(serializable);
-            return null;
-        };
-
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            @Override
-            public void run() {
-                try {
-                    FileManager.this.shutDown();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        });
+        persistenceScheduler.register(this);
     }
 
 
@@ -105,18 +91,11 @@ public class FileManager<T> {
         if (savePending.getAndSet(true))
             return;   // Already pending.
 
-        executor.schedule(saveFileTask, delayInMilli, TimeUnit.MILLISECONDS);
+        persistenceScheduler.scheduleSave(this, delayInMilli);
     }
 
     public synchronized T read(File file) throws IOException, ClassNotFoundException {
-        log.debug("read" + file);
-        try (final FileInputStream fileInputStream = new FileInputStream(file);
-             final ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
-            return (T) objectInputStream.readObject();
-        } catch (Throwable t) {
-            log.error("Exception at read: " + t.getMessage());
-            throw t;
-        }
+        return (T) readObject(file);
     }
 
     public synchronized void removeFile(String fileName) {
@@ -137,97 +116,180 @@ public class FileManager<T> {
         }
     }
 
-
     /**
-     * Shut down auto-saving.
+     * Cancels a pending save and detaches from the persistence scheduler. Used if the file gets removed.
      */
     void shutDown() {
-        executor.shutdown();
-        try {
-            executor.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
+        isShutDown = true;
+        savePending.set(false);
+        persistenceScheduler.unregister(this);
     }
 
     public synchronized void removeAndBackupFile(String fileName) throws IOException {
+        removeAndBackupFile(dir, storageFile, fileName);
+    }
+
+    /**
+     * The backup is done later on the persistence scheduler thread, but before the file gets replaced the first time.
+     */
+    public synchronized void backupFile(String fileName) {
+        pendingBackupFileName = fileName;
+        persistenceScheduler.execute(this::doPendingBackup, BACKUP_DELAY);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope, used by the PersistenceScheduler and the StoragePreloader
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Called on the persistence scheduler thread after a save got committed, outside of the lock of the FileManager.
+     */
+    void setWriteCommittedHandler(@Nullable Runnable writeCommittedHandler) {
+        this.writeCommittedHandler = writeCommittedHandler;
+    }
+
+    void onWriteCommitted() {
+        Runnable handler = writeCommittedHandler;
+        if (handler != null)
+            handler.run();
+    }
+
+    boolean isSavePending() {
+        return savePending.get();
+    }
+
+    /**
+     * Moves a file which cannot be read anymore to the backup directory for corrupted data.
+     */
+    static void removeAndBackupFile(File dir, File file, String fileName) throws IOException {
         File corruptedBackupDir = new File(Paths.get(dir.getAbsolutePath(), "backup_of_corrupted_data").toString());
         if (!corruptedBackupDir.exists())
             if (!corruptedBackupDir.mkdir())
                 log.warn("make dir failed");
 
         File corruptedFile = new File(Paths.get(dir.getAbsolutePath(), "backup_of_corrupted_data", fileName).toString());
-        renameTempFileToFile(storageFile, corruptedFile);
+        renameTempFileToFile(file, corruptedFile);
     }
 
-    public synchronized void backupFile(String fileName) throws IOException {
-        FileUtil.rollingBackup(dir, fileName);
+    static Object readObject(File file) throws IOException, ClassNotFoundException {
+        log.debug("read" + file);
+        try (final FileInputStream fileInputStream = new FileInputStream(file);
+             final ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
+            return objectInputStream.readObject();
+        } catch (Throwable t) {
+            log.error("Exception at read: " + t.getMessage());
+            throw t;
+        }
     }
 
-    ///////////////////////////////////////////////////////////////////////////////////////////
-    // Private
-    ///////////////////////////////////////////////////////////////////////////////////////////
-
-    private void saveNowInternal(T serializable) {
-        long now = System.currentTimeMillis();
-        saveToFile(serializable, dir, storageFile);
-        UserThread.execute(() -> log.trace("Save {} completed in {}msec", storageFile, System.currentTimeMillis() - now));
+    /**
+     * Writes the latest object to a temp file if a save is pending. The temp file is not synced yet.
+     */
+    @Nullable
+    synchronized PendingWrite writeToTempFile() throws IOException {
+        if (!savePending.getAndSet(false)) {
+            // Some other scheduled request already beat us to it.
+            return null;
+        }
+        return writeToTempFile(serializable);
     }
 
-    private synchronized void saveToFile(T serializable, File dir, File storageFile) {
-        File tempFile = null;
-        FileOutputStream fileOutputStream = null;
-        ObjectOutputStream objectOutputStream = null;
+    /**
+     * Syncs the temp file and replaces the storage file with it.
+     */
+    synchronized void syncAndCommit(PendingWrite pendingWrite) {
+        long ts = System.nanoTime();
         try {
-            if (!dir.exists())
-                if (!dir.mkdir())
-                    log.warn("make dir failed");
+            if (isShutDown)
+                return;
 
-            tempFile = File.createTempFile("temp", null, dir);
-
-            // Don't use auto closeable resources in try() as we would need too many try/catch clauses (for tempFile)
-            // and we need to close it
-            // manually before replacing file with temp file
-            fileOutputStream = new FileOutputStream(tempFile);
-            objectOutputStream = new ObjectOutputStream(fileOutputStream);
-
-            objectOutputStream.writeObject(serializable);
             // Attempt to force the bits to hit the disk. In reality the OS or hard disk itself may still decide
             // to not write through to physical media for at least a few seconds, but this is the best we can do.
-            fileOutputStream.flush();
-            fileOutputStream.getFD().sync();
+            pendingWrite.fileOutputStream.getFD().sync();
 
             // Close resources before replacing file with temp file because otherwise it causes problems on windows
             // when rename temp file
-            fileOutputStream.close();
-            objectOutputStream.close();
+            pendingWrite.fileOutputStream.close();
 
-            renameTempFileToFile(tempFile, storageFile);
+            renameTempFileToFile(pendingWrite.tempFile, storageFile);
+
+            long durationInNanos = pendingWrite.durationInNanos + System.nanoTime() - ts;
+            persistenceScheduler.onWriteCompleted(storageFile.getName(), pendingWrite.numBytes, durationInNanos);
+            UserThread.execute(() -> log.trace("Save {} completed in {}msec", storageFile, durationInNanos / 1000000));
         } catch (Throwable t) {
             log.debug("storageFile " + storageFile.toString());
             t.printStackTrace();
             log.error("Error at saveToFile: " + t.getMessage());
         } finally {
-            if (tempFile != null && tempFile.exists()) {
-                log.warn("Temp file still exists after failed save. storageFile=" + storageFile);
-                if (!tempFile.delete())
-                    log.error("Cannot delete temp file.");
-            }
+            cleanUp(pendingWrite.tempFile, pendingWrite.fileOutputStream);
+        }
+    }
 
-            try {
-                if (objectOutputStream != null)
-                    objectOutputStream.close();
-                if (fileOutputStream != null)
-                    fileOutputStream.close();
-            } catch (IOException e) {
-                // We swallow that
-                e.printStackTrace();
-                log.error("Cannot close resources." + e.getMessage());
-            }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized void saveNowInternal(T serializable) {
+        try {
+            syncAndCommit(writeToTempFile(serializable));
+        } catch (Throwable t) {
+            log.debug("storageFile " + storageFile.toString());
+            t.printStackTrace();
+            log.error("Error at saveToFile: " + t.getMessage());
+        }
+    }
+
+    private synchronized void doPendingBackup() {
+        if (pendingBackupFileName != null) {
+            // The storage file is always replaced by a rename, so a hard link keeps the content of the backup
+            FileUtil.rollingBackup(dir, pendingBackupFileName, true);
+            pendingBackupFileName = null;
         }
     }
 
-    private synchronized void renameTempFileToFile(File tempFile, File file) throws IOException {
+    private PendingWrite writeToTempFile(T serializable) throws IOException {
+        doPendingBackup();
+
+        long ts = System.nanoTime();
+        if (!dir.exists())
+            if (!dir.mkdir())
+                log.warn("make dir failed");
+
+        File tempFile = File.createTempFile("temp", null, dir);
+        FileOutputStream fileOutputStream = null;
+        try {
+            // The stream stays open until the temp file got synced
+            fileOutputStream = new FileOutputStream(tempFile);
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);
+            objectOutputStream.writeObject(serializable);
+            objectOutputStream.flush();
+            fileOutputStream.flush();
+            return new PendingWrite(this, tempFile, fileOutputStream, tempFile.length(), System.nanoTime() - ts);
+        } catch (Throwable t) {
+            cleanUp(tempFile, fileOutputStream);
+            throw t;
+        }
+    }
+
+    private void cleanUp(File tempFile, @Nullable FileOutputStream fileOutputStream) {
+        try {
+            if (fileOutputStream != null)
+                fileOutputStream.close();
+        } catch (IOException e) {
+            // We swallow that
+            e.printStackTrace();
+            log.error("Cannot close resources." + e.getMessage());
+        }
+
+        if (tempFile.exists()) {
+            log.warn("Temp file still exists after failed save. storageFile=" + storageFile);
+            if (!tempFile.delete())
+                log.error("Cannot delete temp file.");
+        }
+    }
+
+    private static void renameTempFileToFile(File tempFile, File file) throws IOException {
         if (Utils.isWindows()) {
             // Work around an issue on Windows whereby you can't rename over existing files.
             final File canonical = file.getCanonicalFile();
@@ -241,4 +303,26 @@ public class FileManager<T> {
             throw new IOException("Failed to rename " + tempFile + " to " + file);
         }
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PendingWrite
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static final class PendingWrite {
+        final FileManager<?> fileManager;
+        private final File tempFile;
+        private final FileOutputStream fileOutputStream;
+        private final long numBytes;
+        private final long durationInNanos;
+
+        private PendingWrite(FileManager<?> fileManager, File tempFile, FileOutputStream fileOutputStream,
+                             long numBytes, long durationInNanos) {
+            this.fileManager = fileManager;
+            this.tempFile = tempFile;
+            this.fileOutputStream = fileOutputStream;
+            this.numBytes = numBytes;
+            this.durationInNanos = durationInNanos;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package io.bitsquare.storage;
 
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +9,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -15,7 +17,23 @@ import java.util.List;
 public class FileUtil {
     private static final Logger log = LoggerFactory.getLogger(FileUtil.class);
 
+    private static final int MAX_BACKUPS = 10;
+    // Length of the hex encoded content hash in the backup file name
+    private static final int HASH_LENGTH = 16;
+
     public static void rollingBackup(File dir, String fileName) {
+        rollingBackup(dir, fileName, false);
+    }
+
+    /**
+     * Backups are named by time and content hash. If the latest backup has the same content hash as the file we skip
+     * the backup.
+     *
+     * @param useHardLink Only for files which are never modified in place but replaced by a rename, as the FileManager
+     *                    does. The hard link then keeps the content of the backed up version without a copy. If the
+     *                    file system does not support hard links we fall back to a copy.
+     */
+    public static void rollingBackup(File dir, String fileName, boolean useHardLink) {
         if (dir.exists()) {
             File backupDir = new File(Paths.get(dir.getAbsolutePath(), "backup").toString());
             if (!backupDir.exists())
@@ -32,12 +50,21 @@ public class FileUtil {
                     if (!backupFileDir.mkdir())
                         log.warn("make backupFileDir failed");
 
-                File backupFile = new File(Paths.get(backupFileDir.getAbsolutePath(), new Date().getTime() + "_" + fileName).toString());
-
                 try {
-                    Files.copy(origFile, backupFile);
+                    String hash = getContentHash(origFile);
+                    List<File> backups = getSortedBackups(backupFileDir);
+                    if (!backups.isEmpty() && backups.get(backups.size() - 1).getName().contains("_" + hash + "_")) {
+                        log.trace("Backup of {} skipped as content has not changed", fileName);
+                        return;
+                    }
+
+                    File backupFile = new File(Paths.get(backupFileDir.getAbsolutePath(),
+                            new Date().getTime() + "_" + hash + "_" + fileName).toString());
+                    if (!useHardLink || !createHardLink(backupFile, origFile))
+                        Files.copy(origFile, backupFile);
 
-                    pruneBackup(backupFileDir);
+                    backups.add(backupFile);
+                    pruneBackup(backups);
                 } catch (IOException e) {
                     log.error("Backup key failed " + e.getMessage());
                     e.printStackTrace();
@@ -46,25 +73,33 @@ public class FileUtil {
         }
     }
 
-    private static void pruneBackup(File backupDir) {
-        if (backupDir.isDirectory()) {
-            File[] files = backupDir.listFiles();
-            if (files != null) {
-                List<File> filesList = Arrays.asList(files);
-                if (filesList.size() > 10) {
-                    filesList.sort((o1, o2) -> o1.getName().compareTo(o2.getName()));
-                    File file = filesList.get(0);
-                    if (file.isFile()) {
-                        if (!file.delete())
-                            log.error("Failed to delete file: " + file);
-                        else
-                            pruneBackup(backupDir);
+    private static String getContentHash(File file) throws IOException {
+        return Files.hash(file, Hashing.sha256()).toString().substring(0, HASH_LENGTH);
+    }
 
-                    } else {
-                        pruneBackup(new File(Paths.get(backupDir.getAbsolutePath(), file.getName()).toString()));
-                    }
-                }
-            }
+    private static boolean createHardLink(File link, File existing) {
+        try {
+            java.nio.file.Files.createLink(link.toPath(), existing.toPath());
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Hard link not supported, we copy the file. " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Backup file names start with the time, so the name order is the time order
+    private static List<File> getSortedBackups(File backupFileDir) {
+        File[] files = backupFileDir.listFiles(File::isFile);
+        List<File> backups = files != null ? new ArrayList<>(Arrays.asList(files)) : new ArrayList<>();
+        backups.sort((o1, o2) -> o1.getName().compareTo(o2.getName()));
+        return backups;
+    }
+
+    private static void pruneBackup(List<File> sortedBackups) {
+        for (int i = 0; i < sortedBackups.size() - MAX_BACKUPS; i++) {
+            File file = sortedBackups.get(i);
+            if (!file.delete())
+                log.error("Failed to delete file: " + file);
         }
     }
 
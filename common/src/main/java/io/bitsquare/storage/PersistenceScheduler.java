@@ -0,0 +1,262 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import io.bitsquare.common.util.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared background writer for all FileManagers. Instead of an executor and a shutdown hook per file we use one
+ * thread and one shutdown hook for the whole application.
+ * <p>
+ * Repeated saves of the same file are coalesced by the FileManager, only the latest object gets written.
+ * Saves which get due within a short window are written as a group: first all temp files get written, then they get
+ * synced one after the other and renamed. So we don't interleave the fsyncs of many stores with the writes of others.
+ * <p>
+ * At shutdown all pending saves get flushed in the order the FileManagers have been created.
+ */
+public class PersistenceScheduler {
+    private static final Logger log = LoggerFactory.getLogger(PersistenceScheduler.class);
+
+    // Saves which get due within that window after the first one are written in the same group
+    private static final long GROUP_WINDOW_MS = 100;
+
+    private static PersistenceScheduler instance;
+
+    public static synchronized PersistenceScheduler getInstance() {
+        if (instance == null) {
+            instance = new PersistenceScheduler();
+            Runtime.getRuntime().addShutdownHook(new Thread(instance::shutDown, "PersistenceScheduler.ShutDownHook"));
+        }
+        return instance;
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    // Creation order of the FileManagers is the flush order at shutdown
+    private final List<FileManager<?>> fileManagers = new ArrayList<>();
+    private final Map<FileManager<?>, Long> dueDateByFileManager = new HashMap<>();
+    private final Map<String, WriteStats> writeStatsByStore = new ConcurrentHashMap<>();
+    private boolean isShutDown;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    PersistenceScheduler() {
+        executor = Utilities.getScheduledThreadPoolExecutor("PersistenceScheduler", 1, 1, 10);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return A copy of the write statistics per store file name.
+     */
+    public Map<String, WriteStats> getWriteStats() {
+        return new HashMap<>(writeStatsByStore);
+    }
+
+    /**
+     * Flushes all pending saves in the order the FileManagers have been created. Later saves are written directly on
+     * the calling thread.
+     */
+    public void shutDown() {
+        List<FileManager<?>> toFlush;
+        synchronized (this) {
+            if (isShutDown)
+                return;
+
+            isShutDown = true;
+            dueDateByFileManager.clear();
+            toFlush = new ArrayList<>(fileManagers);
+        }
+
+        executor.shutdown();
+        try {
+            // A group which is currently written gets completed
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush(toFlush);
+        writeStatsByStore.entrySet().stream()
+                .forEach(e -> log.info("Write stats for {}: {}", e.getKey(), e.getValue()));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    synchronized void register(FileManager<?> fileManager) {
+        fileManagers.add(fileManager);
+    }
+
+    synchronized void unregister(FileManager<?> fileManager) {
+        fileManagers.remove(fileManager);
+        dueDateByFileManager.remove(fileManager);
+    }
+
+    /**
+     * Called by the FileManager when a save becomes pending.
+     */
+    void scheduleSave(FileManager<?> fileManager, long delayInMilli) {
+        synchronized (this) {
+            if (!isShutDown) {
+                long dueDate = System.currentTimeMillis() + delayInMilli;
+                Long previous = dueDateByFileManager.get(fileManager);
+                if (previous == null || dueDate < previous)
+                    dueDateByFileManager.put(fileManager, dueDate);
+            }
+        }
+
+        if (executor.isShutdown())
+            flush(Collections.singletonList(fileManager));
+        else
+            executor.schedule(this::flushDueSaves, delayInMilli, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs other I/O work, like backups, on the persistence thread. After the shut down the task is dropped.
+     */
+    void execute(Runnable task, long delayInMilli) {
+        executor.schedule(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                t.printStackTrace();
+                log.error("Executing task failed. " + t.getMessage());
+            }
+        }, delayInMilli, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a write, like an append to a log, on the persistence thread in the order of submission. After the shut
+     * down the write runs on the calling thread, so it does not get lost.
+     */
+    void write(Runnable task) {
+        try {
+            if (!executor.isShutdown()) {
+                execute(task, 0);
+                return;
+            }
+        } catch (RejectedExecutionException ignore) {
+            // Shut down in the meantime
+        }
+        task.run();
+    }
+
+    void onWriteCompleted(String storeName, long numBytes, long durationInNanos) {
+        writeStatsByStore.computeIfAbsent(storeName, k -> new WriteStats()).add(numBytes, durationInNanos);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Runs in the executor thread
+    private void flushDueSaves() {
+        List<FileManager<?>> group = new ArrayList<>();
+        synchronized (this) {
+            long limit = System.currentTimeMillis() + GROUP_WINDOW_MS;
+            Iterator<Map.Entry<FileManager<?>, Long>> iterator = dueDateByFileManager.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<FileManager<?>, Long> entry = iterator.next();
+                if (entry.getValue() <= limit) {
+                    group.add(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+        if (!group.isEmpty())
+            flush(group);
+    }
+
+    private void flush(List<FileManager<?>> group) {
+        List<FileManager.PendingWrite> pendingWrites = new ArrayList<>();
+        for (FileManager<?> fileManager : group) {
+            try {
+                FileManager.PendingWrite pendingWrite = fileManager.writeToTempFile();
+                if (pendingWrite != null)
+                    pendingWrites.add(pendingWrite);
+            } catch (Throwable t) {
+                t.printStackTrace();
+                log.error("Writing temp file failed. " + t.getMessage());
+            }
+        }
+        pendingWrites.stream().forEach(pendingWrite -> pendingWrite.fileManager.syncAndCommit(pendingWrite));
+        pendingWrites.stream().forEach(pendingWrite -> pendingWrite.fileManager.onWriteCommitted());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // WriteStats
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final class WriteStats {
+        private long numWrites;
+        private long numBytes;
+        private long totalNanos;
+        private long maxNanos;
+
+        private synchronized void add(long numBytes, long durationInNanos) {
+            numWrites++;
+            this.numBytes += numBytes;
+            totalNanos += durationInNanos;
+            maxNanos = Math.max(maxNanos, durationInNanos);
+        }
+
+        public synchronized long getNumWrites() {
+            return numWrites;
+        }
+
+        public synchronized long getNumBytes() {
+            return numBytes;
+        }
+
+        public synchronized long getAverageLatencyInMicros() {
+            return numWrites > 0 ? totalNanos / numWrites / 1000 : 0;
+        }
+
+        public synchronized long getMaxLatencyInMicros() {
+            return maxNanos / 1000;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "WriteStats{" +
+                    "numWrites=" + numWrites +
+                    ", numBytes=" + numBytes +
+                    ", averageLatencyInMicros=" + getAverageLatencyInMicros() +
+                    ", maxLatencyInMicros=" + getMaxLatencyInMicros() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stores a collection of objects with one file per record id inside a directory. In contrast to Storage a change of
+ * one record does not require to serialize and write the other records.
+ * <p>
+ * Each record file is written by its own FileManager, so the replacement of a record is atomic and the writes go
+ * through the shared PersistenceScheduler. A FileManager only exists while a write of its record is pending, so we
+ * don't keep one per record for the lifetime of the application. Records are read without a FileManager.
+ * <p>
+ * At init we only list the ids of the stored records, the records are read on request.
+ */
+public class RecordStorage<T extends Serializable> {
+    private static final Logger log = LoggerFactory.getLogger(RecordStorage.class);
+
+    private static final long SAVE_DELAY = 300;
+
+    private final File storageDir;
+    private final PersistenceScheduler persistenceScheduler;
+    // Guarded by itself. The lock is reentrant, as after the shut down of the PersistenceScheduler the write gets
+    // committed on the calling thread
+    private final Map<String, FileManager<T>> fileManagersById = new HashMap<>();
+    private File dir;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public RecordStorage(@Named(Storage.DIR_KEY) File storageDir) {
+        this(storageDir, PersistenceScheduler.getInstance());
+    }
+
+    RecordStorage(File storageDir, PersistenceScheduler persistenceScheduler) {
+        this.storageDir = storageDir;
+        this.persistenceScheduler = persistenceScheduler;
+    }
+
+    /**
+     * @return The ids of the stored records.
+     */
+    public Set<String> init(String dirName) {
+        dir = new File(storageDir, dirName);
+        if (!dir.exists() && !dir.mkdirs())
+            log.warn("make dir failed");
+
+        Set<String> ids = new HashSet<>();
+        // Temp files of interrupted writes are ignored
+        File[] files = dir.listFiles(file -> file.isFile() && !file.getName().endsWith(".tmp"));
+        if (files != null)
+            Arrays.stream(files).forEach(file -> ids.add(file.getName()));
+        return ids;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Reads the record from disk. A corrupted record file gets moved to the backup directory.
+     */
+    @Nullable
+    public T read(String id) {
+        checkNotNull(dir, "dir = null. Call init before using read/write.");
+        File file = new File(dir, id);
+        if (!file.exists())
+            return null;
+
+        long now = System.currentTimeMillis();
+        try {
+            //noinspection unchecked
+            T record = (T) FileManager.readObject(file);
+            log.trace("Read {} completed in {}msec", file, System.currentTimeMillis() - now);
+            return record;
+        } catch (Throwable t) {
+            log.error("Version of persisted class has changed. We cannot read the persisted data anymore. " +
+                    "We make a backup and remove the inconsistent file. " + t.getMessage());
+            try {
+                FileManager.removeAndBackupFile(dir, file, id);
+            } catch (IOException e) {
+                e.printStackTrace();
+                log.error(e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    public boolean contains(String id) {
+        return new File(dir, id).exists();
+    }
+
+    // Save delayed and on a background thread
+    public void queueUpForSave(String id, T record) {
+        withFileManager(id, fileManager -> fileManager.saveLater(record));
+    }
+
+    // Save on the calling thread
+    public void saveNow(String id, T record) {
+        withFileManager(id, fileManager -> fileManager.saveNow(record));
+    }
+
+    /**
+     * Removes the record file. A pending save of that record gets cancelled.
+     */
+    public void remove(String id) {
+        FileManager<T> fileManager;
+        synchronized (fileManagersById) {
+            fileManager = fileManagersById.remove(id);
+        }
+        if (fileManager != null) {
+            fileManager.shutDown();
+            fileManager.removeFile(id);
+        } else if (!new File(dir, id).delete()) {
+            log.warn("Could not delete record file: " + id);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // The FileManager is used inside of the lock, so it cannot get released by the persistence thread in between
+    private void withFileManager(String id, Consumer<FileManager<T>> action) {
+        checkNotNull(dir, "dir = null. Call init before using read/write.");
+        synchronized (fileManagersById) {
+            FileManager<T> fileManager = fileManagersById.get(id);
+            if (fileManager == null) {
+                fileManager = new FileManager<>(dir, new File(dir, id), SAVE_DELAY, persistenceScheduler);
+                fileManager.setWriteCommittedHandler(() -> releaseIfIdle(id));
+                fileManagersById.put(id, fileManager);
+            }
+            action.accept(fileManager);
+            releaseIfIdle(id);
+        }
+    }
+
+    // Called after a write got committed, usually on the persistence thread
+    private void releaseIfIdle(String id) {
+        synchronized (fileManagersById) {
+            FileManager<T> fileManager = fileManagersById.get(id);
+            if (fileManager != null && !fileManager.isSavePending()) {
+                fileManager.shutDown();
+                fileManagersById.remove(id);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    int getNumFileManagers() {
+        synchronized (fileManagersById) {
+            return fileManagersById.size();
+        }
+    }
+}
@@ -26,6 +26,8 @@ import javax.inject.Named;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -40,9 +42,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * In case of a corrupted file we backup the old file to a separate directory, so if it holds critical data it might be helpful for recovery.
  * <p>
  * We also backup at first read the file, so we have a valid file form the latest version in case a write operation corrupted the file.
+ * The backup runs in the background and is skipped if the content has not changed since the last backup.
  * <p>
- * The read operation is triggered just at object creation (startup) and is at the moment not executed on a background thread to avoid asynchronous behaviour.
- * As the data are small and it is just one read access the performance penalty is small and might be even worse to create and setup a thread for it.
+ * The read operation is triggered just at object creation (startup). To not read the stores one after the other the
+ * application can start the reads of all known stores in parallel with the StoragePreloader before the objects get
+ * created. Storage then waits for the result of the preload.
  * <p>
  * The write operation used a background thread and supports a delayed write to avoid too many repeated write operations.
  */
@@ -140,20 +144,19 @@ public class Storage<T extends Serializable> {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    // We do the file read on the UI thread to avoid problems from multi threading. 
-    // Data are small and read is done only at startup, so it is no performance issue.
+    // If the StoragePreloader has read the file already at startup we take that result, otherwise we do the file
+    // read on the calling thread to avoid problems from multi threading.
     @Nullable
     private T getPersisted() {
         if (storageFile.exists()) {
             long now = System.currentTimeMillis();
             try {
-                T persistedObject = fileManager.read(storageFile);
+                T persistedObject = read();
                 log.trace("Read {} completed in {}msec", storageFile, System.currentTimeMillis() - now);
 
-                // If we did not get any exception we can be sure the data are consistent so we make a backup 
-                now = System.currentTimeMillis();
+                // If we did not get any exception we can be sure the data are consistent so we make a backup.
+                // The backup is done later on the persistence scheduler thread.
                 fileManager.backupFile(fileName);
-                log.trace("Backup {} completed in {}msec", storageFile, System.currentTimeMillis() - now);
 
                 return persistedObject;
             } catch (Throwable t) {
@@ -174,4 +177,26 @@ public class Storage<T extends Serializable> {
         }
         return null;
     }
+
+    @SuppressWarnings("unchecked")
+    private T read() throws Throwable {
+        Future<Object> preload = StoragePreloader.take(storageFile);
+        if (preload != null) {
+            // A failed preload is no proof that the file is corrupted. We read it again and only if that fails as
+            // well the file gets treated as corrupted.
+            try {
+                return (T) preload.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Waiting for the preload of {} got interrupted. We read the file directly.", fileName);
+            } catch (ExecutionException e) {
+                log.warn("Preload of {} failed. We read the file directly. {}", fileName, e.getCause().toString());
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        T persistedObject = fileManager.read(storageFile);
+        StoragePreloader.onLoaded(fileName, System.currentTimeMillis() - now);
+        return persistedObject;
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import io.bitsquare.common.util.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * At startup the singletons read their store when they get created, one after the other on the UserThread.
+ * The preloader starts the reads of all known stores at once on a pool while the splash screen is shown.
+ * Storage then takes the result of the preload instead of reading the file itself.
+ */
+public class StoragePreloader {
+    private static final Logger log = LoggerFactory.getLogger(StoragePreloader.class);
+
+    private static final int POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final Map<File, Future<Object>> preloadsByFile = new ConcurrentHashMap<>();
+    private static final Map<String, Long> loadTimesByStore = new ConcurrentHashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static void preload(File dir, Collection<String> fileNames) {
+        ThreadPoolExecutor executor = Utilities.getFixedThreadPoolExecutor("StoragePreloader-%d", POOL_SIZE, 10);
+        fileNames.stream()
+                .map(fileName -> new File(dir, fileName))
+                .filter(File::exists)
+                .forEach(file -> preloadsByFile.put(file, executor.submit(() -> {
+                    long ts = System.currentTimeMillis();
+                    Object persisted = FileManager.readObject(file);
+                    onLoaded(file.getName(), System.currentTimeMillis() - ts);
+                    return persisted;
+                })));
+        // Submitted reads are still executed
+        executor.shutdown();
+    }
+
+    /**
+     * Logs the load time of each store and drops the preloads which have not been used.
+     */
+    public static void onStartupCompleted() {
+        preloadsByFile.clear();
+        new TreeMap<>(loadTimesByStore).entrySet().stream()
+                .forEach(e -> log.info("Loading store {} took {} ms", e.getKey(), e.getValue()));
+    }
+
+    public static Map<String, Long> getLoadTimes() {
+        return new TreeMap<>(loadTimesByStore);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return The preload of that file or null if it was not preloaded. A preload is only used once.
+     */
+    @Nullable
+    static Future<Object> take(File file) {
+        return preloadsByFile.remove(file);
+    }
+
+    static void onLoaded(String fileName, long durationInMillis) {
+        loadTimesByStore.put(fileName, durationInMillis);
+    }
+}
@@ -0,0 +1,163 @@
+package io.bitsquare.common.crypto;
+
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.storage.FileUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.security.KeyPair;
+import java.security.Security;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+public class CryptoSuiteTest {
+    private static final Logger log = LoggerFactory.getLogger(CryptoSuiteTest.class);
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testSignAndSealWithAllSuites() throws CryptoException {
+        byte[] data = Hash.getHash("test");
+        for (CryptoSuite cryptoSuite : CryptoSuites.getSupported()) {
+            KeyPair signatureKeyPair = cryptoSuite.generateSignatureKeyPair();
+            KeyPair encryptionKeyPair = cryptoSuite.generateEncryptionKeyPair();
+
+            byte[] signature = cryptoSuite.sign(signatureKeyPair.getPrivate(), data);
+            assertTrue(cryptoSuite.verify(signatureKeyPair.getPublic(), data, signature));
+            assertFalse(cryptoSuite.verify(signatureKeyPair.getPublic(), Hash.getHash("other"), signature));
+
+            SecretKey secretKey = Encryption.generateSecretKey();
+            byte[] sealed = cryptoSuite.seal(secretKey, encryptionKeyPair.getPublic());
+            assertTrue(Arrays.equals(secretKey.getEncoded(), cryptoSuite.open(sealed, encryptionKeyPair.getPrivate()).getEncoded()));
+        }
+    }
+
+    @Test
+    public void testKeyRingSupportsAllSuites() throws CryptoException {
+        KeyRing keyRing = new KeyRing(new KeyStorage(dir));
+        // Reload keys from disk
+        KeyRing loadedKeyRing = new KeyRing(new KeyStorage(dir));
+        for (CryptoSuite cryptoSuite : CryptoSuites.getSupported()) {
+            assertTrue(keyRing.getPubKeyRing().supports(cryptoSuite));
+            assertEquals(keyRing.getSignatureKeyPair(cryptoSuite).getPublic(),
+                    loadedKeyRing.getSignatureKeyPair(cryptoSuite).getPublic());
+            assertEquals(keyRing.getEncryptionKeyPair(cryptoSuite).getPublic(),
+                    loadedKeyRing.getEncryptionKeyPair(cryptoSuite).getPublic());
+        }
+        assertEquals(CryptoSuites.getPreferred(), CryptoSuites.negotiate(keyRing.getPubKeyRing(), loadedKeyRing.getPubKeyRing()));
+
+        // A peer with an old PubKeyRing only supports the DSA/RSA suite
+        PubKeyRing oldPubKeyRing = new PubKeyRing(keyRing.getSignatureKeyPair().getPublic(),
+                keyRing.getEncryptionKeyPair().getPublic());
+        assertEquals(CryptoSuites.DSA_RSA, CryptoSuites.negotiate(keyRing.getPubKeyRing(), oldPubKeyRing));
+    }
+
+    @Test
+    public void testSuiteKeysAreSignedWithIdentityKey() throws Exception {
+        KeyRing keyRing = new KeyRing(new KeyStorage(dir));
+        PubKeyRing pubKeyRing = Utilities.deserialize(Utilities.serialize(keyRing.getPubKeyRing()));
+        assertEquals(keyRing.getPubKeyRing(), pubKeyRing);
+        assertTrue(pubKeyRing.supports(CryptoSuites.EC));
+        assertTrue(pubKeyRing.isSignaturePubKey(keyRing.getSignatureKeyPair(CryptoSuites.EC).getPublic()));
+
+        // Someone replaces the EC signature key of that identity with his own one
+        KeyPair otherKeyPair = CryptoSuites.EC.generateSignatureKeyPair();
+        PubKeyRing tamperedPubKeyRing = Utilities.deserialize(Utilities.serialize(keyRing.getPubKeyRing()));
+        Field field = PubKeyRing.class.getDeclaredField("signaturePubKeyBytesBySuite");
+        field.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        HashMap<Integer, byte[]> signaturePubKeyBytesBySuite = (HashMap<Integer, byte[]>) field.get(tamperedPubKeyRing);
+        signaturePubKeyBytesBySuite.put(EcCryptoSuite.ID, new X509EncodedKeySpec(otherKeyPair.getPublic().getEncoded()).getEncoded());
+        tamperedPubKeyRing = Utilities.deserialize(Utilities.serialize(tamperedPubKeyRing));
+
+        assertFalse(tamperedPubKeyRing.supports(CryptoSuites.EC));
+        assertFalse(tamperedPubKeyRing.isSignaturePubKey(otherKeyPair.getPublic()));
+        assertTrue(tamperedPubKeyRing.isSignaturePubKey(keyRing.getSignatureKeyPair().getPublic()));
+        assertFalse(keyRing.getPubKeyRing().hasSameSuiteKeys(tamperedPubKeyRing));
+        assertTrue(keyRing.getPubKeyRing().hasSameSuiteKeys(pubKeyRing));
+    }
+
+    @Test
+    public void testIdentityIsDefinedByLegacyKeys() throws CryptoException {
+        KeyRing keyRing = new KeyRing(new KeyStorage(dir));
+        // The PubKeyRing of that user before the suite keys got added, e.g. in a persisted offer or dispute
+        PubKeyRing oldPubKeyRing = new PubKeyRing(keyRing.getSignatureKeyPair().getPublic(),
+                keyRing.getEncryptionKeyPair().getPublic());
+        assertEquals(oldPubKeyRing, keyRing.getPubKeyRing());
+        assertEquals(oldPubKeyRing.hashCode(), keyRing.getPubKeyRing().hashCode());
+        assertFalse(oldPubKeyRing.hasSameSuiteKeys(keyRing.getPubKeyRing()));
+    }
+
+    @Test
+    public void testDecryptHybridWithSignature() throws CryptoException {
+        KeyRing keyRing = new KeyRing(new KeyStorage(dir));
+        for (CryptoSuite cryptoSuite : CryptoSuites.getSupported()) {
+            MockMessage payload = new MockMessage(cryptoSuite.getId());
+            SealedAndSigned sealedAndSigned = Encryption.encryptHybridWithSignature(payload, cryptoSuite,
+                    keyRing.getSignatureKeyPair(cryptoSuite), keyRing.getPubKeyRing().getEncryptionPubKey(cryptoSuite),
+                    Encryption.generateSecretKey(), false);
+            assertEquals(cryptoSuite.getId(), sealedAndSigned.cryptoSuiteId);
+            DecryptedDataTuple tuple = Encryption.decryptHybridWithSignature(sealedAndSigned,
+                    keyRing.getEncryptionKeyPair(cryptoSuite).getPrivate());
+            assertEquals(payload.nonce, ((MockMessage) tuple.payload).nonce);
+        }
+    }
+
+    // Rough comparison of the suites. Run with trace logging to see the numbers.
+    @Test
+    public void testPerformance() throws CryptoException {
+        int iterations = 100;
+        byte[] data = Hash.getHash("test");
+        for (CryptoSuite cryptoSuite : CryptoSuites.getSupported()) {
+            KeyPair signatureKeyPair = cryptoSuite.generateSignatureKeyPair();
+            KeyPair encryptionKeyPair = cryptoSuite.generateEncryptionKeyPair();
+            byte[] signature = cryptoSuite.sign(signatureKeyPair.getPrivate(), data);
+            byte[] sealed = cryptoSuite.seal(Encryption.generateSecretKey(), encryptionKeyPair.getPublic());
+
+            long ts = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                cryptoSuite.verify(signatureKeyPair.getPublic(), data, signature);
+            }
+            long verifyTime = (System.nanoTime() - ts) / iterations / 1000;
+
+            ts = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                cryptoSuite.open(sealed, encryptionKeyPair.getPrivate());
+            }
+            long openTime = (System.nanoTime() - ts) / iterations / 1000;
+            log.trace("{}: verify {} µs/op, open {} µs/op", cryptoSuite, verifyTime, openTime);
+        }
+    }
+
+    private static class MockMessage implements Serializable {
+        public int nonce;
+
+        public MockMessage(int nonce) {
+            this.nonce = nonce;
+        }
+    }
+}
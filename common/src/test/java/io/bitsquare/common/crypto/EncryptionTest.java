@@ -1,5 +1,7 @@
 package io.bitsquare.common.crypto;
 
+import com.sun.management.ThreadMXBean;
+import io.bitsquare.common.util.Utilities;
 import io.bitsquare.storage.FileUtil;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.After;
@@ -8,17 +10,23 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 import java.security.cert.CertificateException;
 import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class EncryptionTest {
     private static final Logger log = LoggerFactory.getLogger(EncryptionTest.class);
@@ -68,6 +76,70 @@ public class EncryptionTest {
         log.trace("took " + (System.currentTimeMillis() - ts) + " ms.");
     }
 
+    @Test
+    public void testWireFormatOfPayloadWithHmac() throws Exception {
+        SecretKey secretKey = Encryption.generateSecretKey();
+        byte[] payload = new byte[1000];
+        new Random().nextBytes(payload);
+
+        // Format used by older versions: AES(payload || HmacSHA256(payload))
+        Mac mac = Mac.getInstance("HmacSHA256", "BC");
+        mac.init(secretKey);
+        byte[] hmac = mac.doFinal(payload);
+        Cipher cipher = Cipher.getInstance("AES", "BC");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        byte[] expected = cipher.doFinal(Utilities.concatByteArrays(payload, hmac));
+
+        byte[] encrypted = Encryption.encryptPayloadWithHmac(payload, secretKey);
+        assertArrayEquals(expected, encrypted);
+        assertArrayEquals(payload, Encryption.decryptPayloadWithHmac(expected, secretKey));
+    }
+
+    @Test
+    public void testPayloadWithManipulatedHmac() throws Exception {
+        SecretKey secretKey = Encryption.generateSecretKey();
+        byte[] payload = new byte[100];
+        Mac mac = Mac.getInstance("HmacSHA256", "BC");
+        mac.init(secretKey);
+        byte[] hmac = mac.doFinal(payload);
+        hmac[0] ^= 1;
+        Cipher cipher = Cipher.getInstance("AES", "BC");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        byte[] manipulated = cipher.doFinal(Utilities.concatByteArrays(payload, hmac));
+
+        try {
+            Encryption.decryptPayloadWithHmac(manipulated, secretKey);
+            fail("Expected CryptoException");
+        } catch (CryptoException ignore) {
+        }
+    }
+
+    @Test
+    public void testPerformanceFor100KbPayload() throws CryptoException {
+        SecretKey secretKey = Encryption.generateSecretKey();
+        byte[] payload = new byte[100 * 1024];
+        new Random().nextBytes(payload);
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // warm up
+        for (int i = 0; i < 50; i++) {
+            Hash.getHash(Encryption.decryptPayloadWithHmac(Encryption.encryptPayloadWithHmac(payload, secretKey), secretKey));
+        }
+
+        int iterations = 500;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+        long ts = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte[] encrypted = Encryption.encryptPayloadWithHmac(payload, secretKey);
+            Hash.getHash(encrypted);
+            Encryption.decryptPayloadWithHmac(encrypted, secretKey);
+        }
+        long time = (System.nanoTime() - ts) / iterations / 1000;
+        allocated = (threadMXBean.getThreadAllocatedBytes(threadId) - allocated) / iterations / 1024;
+        log.trace("encrypt, hash and decrypt of 100 KB: {} µs/op, {} KB allocated/op", time, allocated);
+    }
+
     private static class MockMessage implements Serializable {
         public int nonce;
 
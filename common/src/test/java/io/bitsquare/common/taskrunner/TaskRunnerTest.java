@@ -0,0 +1,148 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.taskrunner;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TaskRunnerTest {
+
+    public static class TestModel implements Model {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void persist() {
+            events.add("persist");
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    public static class Task1 extends Task<TestModel> {
+        public Task1(TaskRunner taskHandler, TestModel model) {
+            super(taskHandler, model);
+        }
+
+        @Override
+        protected void run() {
+            model.events.add("task1");
+            complete();
+        }
+    }
+
+    public static class Task2 extends Task<TestModel> {
+        public Task2(TaskRunner taskHandler, TestModel model) {
+            super(taskHandler, model);
+        }
+
+        @Override
+        protected void run() {
+            model.events.add("task2");
+            complete();
+        }
+    }
+
+    public static class FailingTask extends Task<TestModel> {
+        public FailingTask(TaskRunner taskHandler, TestModel model) {
+            super(taskHandler, model);
+        }
+
+        @Override
+        protected void run() {
+            failed("failure");
+        }
+    }
+
+    public static class TaskWithoutModelConstructor extends Task<TestModel> {
+        public TaskWithoutModelConstructor(TaskRunner taskHandler) {
+            super(taskHandler, null);
+        }
+
+        @Override
+        protected void run() {
+            complete();
+        }
+    }
+
+    private static final TaskPipeline<TestModel> PIPELINE = TaskPipeline.builder(TestModel.class)
+            .addCheckpoint(Task1.class)
+            .add(Task2.class, Task1.class, Task2.class)
+            .build();
+
+    @Test
+    public void testPersistOnlyAtCheckpoints() {
+        TestModel model = new TestModel();
+        List<String> results = new ArrayList<>();
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> results.add("done"), results::add);
+        taskRunner.addPipeline(PIPELINE);
+        taskRunner.run();
+
+        assertEquals(Arrays.asList("task1", "persist", "task2", "task1", "task2", "persist"), model.events);
+        assertEquals(Arrays.asList("done"), results);
+    }
+
+    @Test
+    public void testAddTasksPersistsAfterEachTask() {
+        TestModel model = new TestModel();
+        List<String> results = new ArrayList<>();
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> results.add("done"), results::add);
+        taskRunner.addTasks(Task1.class, Task2.class);
+        taskRunner.run();
+
+        assertEquals(Arrays.asList("task1", "persist", "task2", "persist"), model.events);
+        assertEquals(Arrays.asList("done"), results);
+    }
+
+    @Test
+    public void testFailureStopsPipeline() {
+        TestModel model = new TestModel();
+        List<String> results = new ArrayList<>();
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> results.add("done"), results::add);
+        taskRunner.addTasks(Task1.class, FailingTask.class, Task2.class);
+        taskRunner.run();
+
+        assertEquals(Arrays.asList("task1", "persist"), model.events);
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).contains("failure"));
+    }
+
+    @Test
+    public void testTaskStats() {
+        TestModel model = new TestModel();
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> {
+        }, errorMessage -> {
+        });
+        long numRuns = TaskRunner.getTaskStats().containsKey("Task2") ? TaskRunner.getTaskStats().get("Task2").getNumRuns() : 0;
+        taskRunner.addPipeline(PIPELINE);
+        taskRunner.run();
+
+        assertEquals(numRuns + 2, TaskRunner.getTaskStats().get("Task2").getNumRuns());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTaskWithoutMatchingConstructor() {
+        TaskPipeline.builder(TestModel.class).add(TaskWithoutModelConstructor.class);
+    }
+}
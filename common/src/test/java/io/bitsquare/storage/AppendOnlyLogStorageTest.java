@@ -0,0 +1,86 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class AppendOnlyLogStorageTest {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testAppendAndRead() {
+        PersistenceScheduler persistenceScheduler = new PersistenceScheduler();
+        AppendOnlyLogStorage<String> logStorage = new AppendOnlyLogStorage<>(dir, persistenceScheduler);
+        logStorage.init("logs");
+        logStorage.append("id1", "entry1");
+        logStorage.append("id2", "other");
+        logStorage.append("id1", "entry2");
+        logStorage.append("id1", "entry3");
+        // Pending appends get written at shut down
+        persistenceScheduler.shutDown();
+
+        AppendOnlyLogStorage<String> reopened = new AppendOnlyLogStorage<>(dir, new PersistenceScheduler());
+        reopened.init("logs");
+        assertEquals(Arrays.asList("entry1", "entry2", "entry3"), reopened.read("id1"));
+        assertEquals(Arrays.asList("other"), reopened.read("id2"));
+        assertTrue(reopened.read("id3").isEmpty());
+    }
+
+    @Test
+    public void testIncompleteEntryGetsCutOff() throws IOException {
+        PersistenceScheduler persistenceScheduler = new PersistenceScheduler();
+        persistenceScheduler.shutDown();
+        // After the shut down the appends are written directly
+        AppendOnlyLogStorage<String> logStorage = new AppendOnlyLogStorage<>(dir, persistenceScheduler);
+        logStorage.init("logs");
+        logStorage.append("id1", "entry1");
+        File file = new File(new File(dir, "logs"), "id1");
+        long validLength = file.length();
+
+        // Simulate a crash in the middle of an append
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 1, 0, 42});
+        }
+        assertEquals(Arrays.asList("entry1"), logStorage.read("id1"));
+        assertEquals(validLength, file.length());
+
+        logStorage.append("id1", "entry2");
+        assertEquals(Arrays.asList("entry1", "entry2"), logStorage.read("id1"));
+    }
+}
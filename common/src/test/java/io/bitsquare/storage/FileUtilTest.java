@@ -0,0 +1,88 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileUtilTest {
+    private File dir;
+    private File backupFileDir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+        backupFileDir = new File(dir, "backup/backups_store");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testUnchangedContentIsSkipped() throws Exception {
+        File file = new File(dir, "store");
+        Files.write("content1", file, Charsets.UTF_8);
+        FileUtil.rollingBackup(dir, "store");
+        FileUtil.rollingBackup(dir, "store");
+        assertEquals(1, backupFileDir.listFiles().length);
+
+        Thread.sleep(2);
+        Files.write("content2", file, Charsets.UTF_8);
+        FileUtil.rollingBackup(dir, "store");
+        assertEquals(2, backupFileDir.listFiles().length);
+    }
+
+    @Test
+    public void testHardLinkKeepsReplacedContent() throws Exception {
+        File file = new File(dir, "store");
+        Files.write("content1", file, Charsets.UTF_8);
+        FileUtil.rollingBackup(dir, "store", true);
+
+        // Replace the file by a rename as the FileManager does
+        File tempFile = new File(dir, "temp");
+        Files.write("content2", tempFile, Charsets.UTF_8);
+        tempFile.renameTo(file);
+
+        File[] backups = backupFileDir.listFiles();
+        assertEquals(1, backups.length);
+        assertEquals("content1", Files.toString(backups[0], Charsets.UTF_8));
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        File file = new File(dir, "store");
+        for (int i = 0; i < 15; i++) {
+            Files.write("content" + i, file, Charsets.UTF_8);
+            FileUtil.rollingBackup(dir, "store");
+            Thread.sleep(2);
+        }
+        assertEquals(10, backupFileDir.listFiles().length);
+    }
+}
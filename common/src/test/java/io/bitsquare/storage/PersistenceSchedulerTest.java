@@ -0,0 +1,93 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class PersistenceSchedulerTest {
+    private File dir;
+    private PersistenceScheduler persistenceScheduler;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+        persistenceScheduler = new PersistenceScheduler();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        persistenceScheduler.shutDown();
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testCoalescedSaves() throws Exception {
+        File storageFile = new File(dir, "list");
+        FileManager<ArrayList<String>> fileManager = new FileManager<>(dir, storageFile, 100, persistenceScheduler);
+        for (int i = 0; i < 10; i++) {
+            ArrayList<String> list = new ArrayList<>();
+            list.add("item" + i);
+            fileManager.saveLater(list);
+        }
+
+        waitForWrites("list", 1);
+        Thread.sleep(300);
+        assertEquals(1, persistenceScheduler.getWriteStats().get("list").getNumWrites());
+        assertEquals(storageFile.length(), persistenceScheduler.getWriteStats().get("list").getNumBytes());
+        assertEquals("item9", fileManager.read(storageFile).get(0));
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void testFlushAtShutDown() throws Exception {
+        FileManager<ArrayList<String>> fileManager1 = new FileManager<>(dir, new File(dir, "list1"), 60000, persistenceScheduler);
+        FileManager<ArrayList<String>> fileManager2 = new FileManager<>(dir, new File(dir, "list2"), 60000, persistenceScheduler);
+        fileManager1.saveLater(new ArrayList<>());
+        fileManager2.saveLater(new ArrayList<>());
+        assertFalse(new File(dir, "list1").exists());
+
+        persistenceScheduler.shutDown();
+        assertTrue(new File(dir, "list1").exists());
+        assertTrue(new File(dir, "list2").exists());
+        assertEquals(1, persistenceScheduler.getWriteStats().get("list2").getNumWrites());
+
+        // Saves after the shut down are written directly
+        fileManager1.saveLater(new ArrayList<>());
+        assertEquals(2, persistenceScheduler.getWriteStats().get("list1").getNumWrites());
+    }
+
+    private void waitForWrites(String storeName, long numWrites) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            PersistenceScheduler.WriteStats writeStats = persistenceScheduler.getWriteStats().get(storeName);
+            if (writeStats != null && writeStats.getNumWrites() >= numWrites)
+                return;
+            Thread.sleep(50);
+        }
+        fail("Write not completed in time");
+    }
+}
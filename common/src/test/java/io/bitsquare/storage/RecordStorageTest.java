@@ -0,0 +1,104 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RecordStorageTest {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testSaveReadRemove() {
+        RecordStorage<String> recordStorage = new RecordStorage<>(dir);
+        assertTrue(recordStorage.init("records").isEmpty());
+
+        recordStorage.saveNow("id1", "record1");
+        recordStorage.saveNow("id2", "record2");
+        recordStorage.saveNow("id2", "record2b");
+
+        RecordStorage<String> reopened = new RecordStorage<>(dir);
+        Set<String> ids = reopened.init("records");
+        assertEquals(2, ids.size());
+        assertTrue(ids.contains("id1"));
+        assertEquals("record2b", reopened.read("id2"));
+
+        reopened.remove("id1");
+        assertFalse(reopened.contains("id1"));
+        assertNull(reopened.read("id1"));
+        assertEquals(1, new RecordStorage<String>(dir).init("records").size());
+    }
+
+    @Test
+    public void testFileManagersAreOnlyKeptWhileSavePending() throws InterruptedException {
+        RecordStorage<String> recordStorage = new RecordStorage<>(dir);
+        recordStorage.init("records");
+        recordStorage.saveNow("id1", "record1");
+        assertEquals(0, recordStorage.getNumFileManagers());
+        assertEquals("record1", recordStorage.read("id1"));
+        assertEquals(0, recordStorage.getNumFileManagers());
+
+        recordStorage.queueUpForSave("id2", "record2");
+        assertEquals(1, recordStorage.getNumFileManagers());
+        Thread.sleep(600);
+        assertEquals(0, recordStorage.getNumFileManagers());
+        assertEquals("record2", recordStorage.read("id2"));
+    }
+
+    @Test
+    public void testSaveAfterShutDownOfPersistenceScheduler() {
+        PersistenceScheduler persistenceScheduler = new PersistenceScheduler();
+        persistenceScheduler.shutDown();
+        // After the shut down the save is written on the calling thread
+        RecordStorage<String> recordStorage = new RecordStorage<>(dir, persistenceScheduler);
+        recordStorage.init("records");
+        recordStorage.queueUpForSave("id1", "record1");
+        assertEquals(0, recordStorage.getNumFileManagers());
+        assertEquals("record1", recordStorage.read("id1"));
+    }
+
+    @Test
+    public void testRemoveCancelsPendingSave() throws InterruptedException {
+        RecordStorage<String> recordStorage = new RecordStorage<>(dir);
+        recordStorage.init("records");
+        recordStorage.queueUpForSave("id1", "record1");
+        recordStorage.remove("id1");
+
+        Thread.sleep(600);
+        assertFalse(recordStorage.contains("id1"));
+    }
+}
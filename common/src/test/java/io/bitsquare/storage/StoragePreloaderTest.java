@@ -0,0 +1,77 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StoragePreloaderTest {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        StoragePreloader.onStartupCompleted();
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testStorageUsesPreload() throws Exception {
+        ArrayList<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+        new FileManager<ArrayList<String>>(dir, new File(dir, "Store1"), 0).saveNow(list);
+
+        StoragePreloader.preload(dir, Arrays.asList("Store1", "NotExisting"));
+        assertNotNull(StoragePreloader.take(new File(dir, "Store1")));
+        assertNull(StoragePreloader.take(new File(dir, "NotExisting")));
+
+        StoragePreloader.preload(dir, Arrays.asList("Store1"));
+        ArrayList<String> persisted = new Storage<ArrayList<String>>(dir).initAndGetPersisted(new ArrayList<>(), "Store1");
+        assertEquals(list, persisted);
+        // The preload is used only once
+        assertNull(StoragePreloader.take(new File(dir, "Store1")));
+        assertTrue(StoragePreloader.getLoadTimes().containsKey("Store1"));
+    }
+
+    @Test
+    public void testInterruptedPreloadFallsBackToRead() throws Exception {
+        ArrayList<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+        new FileManager<ArrayList<String>>(dir, new File(dir, "Store1"), 0).saveNow(list);
+        StoragePreloader.preload(dir, Arrays.asList("Store1"));
+
+        Thread.currentThread().interrupt();
+        ArrayList<String> persisted = new Storage<ArrayList<String>>(dir).initAndGetPersisted(new ArrayList<>(), "Store1");
+        // The interrupt is kept and the file is not treated as corrupted
+        assertTrue(Thread.interrupted());
+        assertEquals(list, persisted);
+        assertTrue(new File(dir, "Store1").exists());
+    }
+}
@@ -34,6 +34,8 @@ public class ArbitratorModule extends AppModule {
     protected final void configure() {
         bind(ArbitratorManager.class).in(Singleton.class);
         bind(DisputeManager.class).in(Singleton.class);
+        bind(AttachmentStore.class).in(Singleton.class);
+        bind(AttachmentTransferManager.class).in(Singleton.class);
         bind(ArbitratorService.class).in(Singleton.class);
     }
 }
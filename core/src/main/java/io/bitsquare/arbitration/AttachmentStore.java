@@ -0,0 +1,191 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import com.google.inject.Inject;
+import io.bitsquare.common.crypto.Hash;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Stores the content of dispute attachments in files named by the hash of the content. So the same file attached
+ * to several messages is stored only once and the persisted disputes carry only the hash.
+ * <p>
+ * Content we receive from a peer is appended chunk by chunk to a part file. Its length tells from where to continue
+ * after a restart. The part file is verified against the hash when complete and only then renamed to the content
+ * file.
+ * <p>
+ * Not thread safe, it is used from the UserThread.
+ */
+public class AttachmentStore {
+    private static final Logger log = LoggerFactory.getLogger(AttachmentStore.class);
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+    private static final String PART_FILE_SUFFIX = ".part";
+
+    private final File dir;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public AttachmentStore(@Named("storage.dir") File storageDir) {
+        dir = new File(storageDir, "attachments");
+        if (!dir.exists() && !dir.mkdirs())
+            log.error("Could not create directory " + dir);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return The hash of the content
+     */
+    public byte[] put(byte[] bytes) throws IOException {
+        byte[] contentHash = Hash.getHash(bytes);
+        File file = getFile(contentHash);
+        if (!file.exists()) {
+            File tempFile = File.createTempFile("temp", null, dir);
+            try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
+                fileOutputStream.write(bytes);
+                fileOutputStream.getFD().sync();
+            }
+            rename(tempFile, file);
+        }
+        return contentHash;
+    }
+
+    public boolean contains(byte[] contentHash) {
+        return getFile(contentHash).exists();
+    }
+
+    @Nullable
+    public byte[] get(byte[] contentHash) {
+        File file = getFile(contentHash);
+        if (!file.exists())
+            return null;
+
+        try {
+            return Files.toByteArray(file);
+        } catch (IOException e) {
+            log.error("Could not read attachment " + file + ". " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return The chunk starting at offset or null if we don't have the content or the offset is out of range
+     */
+    @Nullable
+    public byte[] readChunk(byte[] contentHash, long offset) {
+        File file = getFile(contentHash);
+        if (!file.exists() || offset < 0 || offset >= file.length())
+            return null;
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, file.length() - offset)];
+            randomAccessFile.seek(offset);
+            randomAccessFile.readFully(chunk);
+            return chunk;
+        } catch (IOException e) {
+            log.error("Could not read chunk of attachment " + file + ". " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return The number of bytes we have received so far. That is the offset of the next chunk we need.
+     */
+    public long getNumReceivedBytes(byte[] contentHash) {
+        File file = getFile(contentHash);
+        if (file.exists())
+            return file.length();
+
+        File partFile = getPartFile(contentHash);
+        return partFile.exists() ? partFile.length() : 0;
+    }
+
+    /**
+     * Appends a received chunk. Chunks which do not continue at the end of the part file are ignored, so a
+     * duplicated or late chunk does not corrupt the content.
+     *
+     * @return True if the content is complete
+     * @throws IOException If the complete content does not match the hash. The part file gets deleted in that case.
+     */
+    public boolean appendChunk(byte[] contentHash, long offset, byte[] chunk, long totalSize) throws IOException {
+        if (contains(contentHash))
+            return true;
+
+        File partFile = getPartFile(contentHash);
+        long numReceivedBytes = partFile.exists() ? partFile.length() : 0;
+        if (offset != numReceivedBytes || numReceivedBytes + chunk.length > totalSize) {
+            log.debug("Ignore chunk at offset " + offset + " as we have " + numReceivedBytes + " bytes of " + partFile);
+            return false;
+        }
+
+        try (FileOutputStream fileOutputStream = new FileOutputStream(partFile, true)) {
+            fileOutputStream.write(chunk);
+            fileOutputStream.getFD().sync();
+        }
+
+        if (partFile.length() < totalSize)
+            return false;
+
+        byte[] bytes = Files.toByteArray(partFile);
+        if (!Arrays.equals(Hash.getHash(bytes), contentHash)) {
+            if (!partFile.delete())
+                log.warn("Could not delete part file " + partFile);
+            throw new IOException("Received attachment does not match its hash. " + partFile);
+        }
+        rename(partFile, getFile(contentHash));
+        return true;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // The target file never exists as it is named by the hash of the content
+    private void rename(File file, File target) throws IOException {
+        if (!file.renameTo(target))
+            throw new IOException("Failed to rename " + file + " to " + target);
+    }
+
+    private File getFile(byte[] contentHash) {
+        return new File(dir, BaseEncoding.base16().lowerCase().encode(contentHash));
+    }
+
+    private File getPartFile(byte[] contentHash) {
+        return new File(dir, BaseEncoding.base16().lowerCase().encode(contentHash) + PART_FILE_SUFFIX);
+    }
+}
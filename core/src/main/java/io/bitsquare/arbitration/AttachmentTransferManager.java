@@ -0,0 +1,292 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import com.google.common.io.BaseEncoding;
+import com.google.inject.Inject;
+import io.bitsquare.app.Log;
+import io.bitsquare.arbitration.messages.AttachmentChunk;
+import io.bitsquare.arbitration.messages.AttachmentChunkRequest;
+import io.bitsquare.arbitration.payload.Attachment;
+import io.bitsquare.common.Timer;
+import io.bitsquare.common.UserThread;
+import io.bitsquare.common.crypto.PubKeyRing;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.P2PService;
+import io.bitsquare.p2p.messaging.DirectMessage;
+import io.bitsquare.p2p.messaging.SendDirectMessageListener;
+import io.bitsquare.p2p.network.Connection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers the content of attachments between the traders and the arbitrator.
+ * <p>
+ * The receiver pulls the content chunk by chunk, starting at the number of bytes it has already stored. So an
+ * interrupted transfer continues where it stopped, also after a restart.
+ * <p>
+ * The transfer has a lower priority than the trade messages: We have only one chunk request in flight per attachment
+ * and we answer chunk requests from a queue with a pause between two chunks. So a trade message which gets sent
+ * meanwhile has to wait for at most one chunk on the connection.
+ */
+public class AttachmentTransferManager {
+    private static final Logger log = LoggerFactory.getLogger(AttachmentTransferManager.class);
+
+    private static final long CHUNK_INTERVAL_MS = 200;
+    // If we don't get the chunk in that time we give up. The download continues with the next message of the
+    // dispute or at the next start.
+    private static final long CHUNK_TIMEOUT_SEC = 60;
+
+    private final P2PService p2PService;
+    private final AttachmentStore attachmentStore;
+    private final Map<String, Download> downloads = new HashMap<>();
+    private final Deque<Upload> uploads = new ArrayDeque<>();
+    private Timer uploadTimer;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public AttachmentTransferManager(P2PService p2PService, AttachmentStore attachmentStore) {
+        this.p2PService = p2PService;
+        this.attachmentStore = attachmentStore;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Starts or continues the download of the content of the attachment from the peer if we don't have it yet.
+     * Attachments larger than the sender side allows are not downloaded.
+     */
+    public void download(Attachment attachment, Dispute dispute, NodeAddress peersNodeAddress, PubKeyRing peersPubKeyRing) {
+        byte[] contentHash = attachment.getContentHash();
+        if (contentHash == null || attachmentStore.contains(contentHash))
+            return;
+
+        if (attachment.getSize() <= 0 || attachment.getSize() > Connection.getMaxMsgSize()) {
+            log.warn("We don't download attachment " + attachment.getFileName() + " as its size of " +
+                    attachment.getSize() + " bytes is not in the allowed range.");
+            return;
+        }
+
+        String key = getKey(contentHash);
+        if (!downloads.containsKey(key)) {
+            Download download = new Download(attachment, dispute, peersNodeAddress, peersPubKeyRing);
+            downloads.put(key, download);
+            requestChunk(download);
+        }
+    }
+
+    public boolean isDownloading(Attachment attachment) {
+        return attachment.getContentHash() != null && downloads.containsKey(getKey(attachment.getContentHash()));
+    }
+
+    public void onAttachmentChunk(AttachmentChunk attachmentChunk) {
+        Download download = downloads.get(getKey(attachmentChunk.contentHash));
+        if (download == null) {
+            log.debug("We got a chunk we have not requested. " + attachmentChunk);
+            return;
+        }
+        if (attachmentChunk.totalSize != download.attachment.getSize()) {
+            log.warn("We got a chunk with an unexpected total size. " + attachmentChunk);
+            return;
+        }
+        if (attachmentChunk.bytes == null || attachmentChunk.offset < 0 ||
+                attachmentChunk.offset + attachmentChunk.bytes.length > attachmentChunk.totalSize) {
+            log.warn("We got a chunk which exceeds the attachment. " + attachmentChunk);
+            return;
+        }
+
+        download.stopTimeout();
+        try {
+            if (attachmentStore.appendChunk(attachmentChunk.contentHash, attachmentChunk.offset, attachmentChunk.bytes,
+                    attachmentChunk.totalSize)) {
+                log.info("Download of attachment " + download.attachment.getFileName() + " completed");
+                downloads.remove(getKey(attachmentChunk.contentHash));
+            } else {
+                requestChunk(download);
+            }
+        } catch (IOException e) {
+            log.error("Download of attachment " + download.attachment.getFileName() + " failed. " + e.getMessage());
+            downloads.remove(getKey(attachmentChunk.contentHash));
+        }
+    }
+
+    /**
+     * The caller has checked that the attachment belongs to the dispute of the peer.
+     */
+    public void onAttachmentChunkRequest(AttachmentChunkRequest attachmentChunkRequest, Attachment attachment,
+                                         NodeAddress peersNodeAddress, PubKeyRing peersPubKeyRing) {
+        Upload upload = new Upload(attachmentChunkRequest, attachment, peersNodeAddress, peersPubKeyRing);
+        if (!uploads.contains(upload)) {
+            uploads.add(upload);
+            if (uploadTimer == null)
+                sendNextChunk();
+        }
+    }
+
+    public void shutDown() {
+        downloads.values().stream().forEach(Download::stopTimeout);
+        downloads.clear();
+        uploads.clear();
+        if (uploadTimer != null) {
+            uploadTimer.stop();
+            uploadTimer = null;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void requestChunk(Download download) {
+        byte[] contentHash = download.attachment.getContentHash();
+        long offset = attachmentStore.getNumReceivedBytes(contentHash);
+        Log.traceCall("attachment=" + download.attachment.getFileName() + ", offset=" + offset);
+        AttachmentChunkRequest attachmentChunkRequest = new AttachmentChunkRequest(download.dispute.getTradeId(),
+                download.dispute.getTraderId(), contentHash, offset);
+        download.startTimeout();
+        send(download.peersNodeAddress, download.peersPubKeyRing, attachmentChunkRequest, () -> {
+            download.stopTimeout();
+            downloads.remove(getKey(contentHash));
+        });
+    }
+
+    private void sendNextChunk() {
+        Upload upload = uploads.poll();
+        if (upload == null) {
+            uploadTimer = null;
+            return;
+        }
+
+        AttachmentChunkRequest request = upload.attachmentChunkRequest;
+        byte[] bytes = attachmentStore.readChunk(request.contentHash, request.offset);
+        if (bytes != null) {
+            send(upload.peersNodeAddress, upload.peersPubKeyRing,
+                    new AttachmentChunk(request.tradeId, request.traderId, request.contentHash, request.offset, bytes,
+                            upload.attachment.getSize()),
+                    () -> {
+                    });
+        } else {
+            log.warn("We don't have the requested chunk. " + request);
+        }
+        uploadTimer = UserThread.runAfter(this::sendNextChunk, CHUNK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(NodeAddress peersNodeAddress, PubKeyRing peersPubKeyRing, DirectMessage message,
+                      Runnable faultHandler) {
+        if (!p2PService.isBootstrapped()) {
+            faultHandler.run();
+            return;
+        }
+
+        p2PService.sendEncryptedDirectMessage(peersNodeAddress, peersPubKeyRing, message,
+                new SendDirectMessageListener() {
+                    @Override
+                    public void onArrived() {
+                    }
+
+                    @Override
+                    public void onFault() {
+                        log.warn("Sending " + message + " failed");
+                        faultHandler.run();
+                    }
+                });
+    }
+
+    private static String getKey(byte[] contentHash) {
+        return BaseEncoding.base16().lowerCase().encode(contentHash);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private final class Download {
+        private final Attachment attachment;
+        private final Dispute dispute;
+        private final NodeAddress peersNodeAddress;
+        private final PubKeyRing peersPubKeyRing;
+        private Timer timeoutTimer;
+
+        private Download(Attachment attachment, Dispute dispute, NodeAddress peersNodeAddress,
+                         PubKeyRing peersPubKeyRing) {
+            this.attachment = attachment;
+            this.dispute = dispute;
+            this.peersNodeAddress = peersNodeAddress;
+            this.peersPubKeyRing = peersPubKeyRing;
+        }
+
+        private void startTimeout() {
+            stopTimeout();
+            timeoutTimer = UserThread.runAfter(() -> {
+                log.info("Download of attachment " + attachment.getFileName() + " timed out");
+                downloads.remove(getKey(attachment.getContentHash()));
+            }, CHUNK_TIMEOUT_SEC);
+        }
+
+        private void stopTimeout() {
+            if (timeoutTimer != null) {
+                timeoutTimer.stop();
+                timeoutTimer = null;
+            }
+        }
+    }
+
+    private static final class Upload {
+        private final AttachmentChunkRequest attachmentChunkRequest;
+        private final Attachment attachment;
+        private final NodeAddress peersNodeAddress;
+        private final PubKeyRing peersPubKeyRing;
+
+        private Upload(AttachmentChunkRequest attachmentChunkRequest, Attachment attachment,
+                       NodeAddress peersNodeAddress, PubKeyRing peersPubKeyRing) {
+            this.attachmentChunkRequest = attachmentChunkRequest;
+            this.attachment = attachment;
+            this.peersNodeAddress = peersNodeAddress;
+            this.peersPubKeyRing = peersPubKeyRing;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Upload)) return false;
+
+            Upload that = (Upload) o;
+
+            if (!attachmentChunkRequest.equals(that.attachmentChunkRequest)) return false;
+            return peersNodeAddress.equals(that.peersNodeAddress);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * attachmentChunkRequest.hashCode() + peersNodeAddress.hashCode();
+        }
+    }
+}
@@ -21,7 +21,6 @@ import io.bitsquare.app.Version;
 import io.bitsquare.arbitration.messages.DisputeCommunicationMessage;
 import io.bitsquare.common.crypto.PubKeyRing;
 import io.bitsquare.common.wire.Payload;
-import io.bitsquare.storage.Storage;
 import io.bitsquare.trade.Contract;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
@@ -35,6 +34,7 @@ import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 public final class Dispute implements Payload {
     // That object is sent over the wire, so we need to take care of version compatibility.
@@ -76,7 +76,7 @@ public final class Dispute implements Payload {
     @Nullable
     private String disputePayoutTxId;
 
-    transient private Storage<DisputeList<Dispute>> storage;
+    transient private DisputeRepository repository;
     transient private ObservableList<DisputeCommunicationMessage> disputeCommunicationMessagesAsObservableList = FXCollections.observableArrayList(disputeCommunicationMessages);
     transient private BooleanProperty isClosedProperty = new SimpleBooleanProperty(isClosed);
     transient private ObjectProperty<DisputeResult> disputeResultProperty = new SimpleObjectProperty<>(disputeResult);
@@ -86,7 +86,7 @@ public final class Dispute implements Payload {
     // Constructor
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public Dispute(Storage<DisputeList<Dispute>> storage,
+    public Dispute(DisputeRepository repository,
                    String tradeId,
                    int traderId,
                    boolean disputeOpenerIsBuyer,
@@ -104,7 +104,7 @@ public final class Dispute implements Payload {
                    String takerContractSignature,
                    PubKeyRing arbitratorPubKeyRing,
                    boolean isSupportTicket) {
-        this.storage = storage;
+        this.repository = repository;
         this.tradeId = tradeId;
         this.traderId = traderId;
         this.disputeOpenerIsBuyer = disputeOpenerIsBuyer;
@@ -127,12 +127,39 @@ public final class Dispute implements Payload {
         id = tradeId + "_" + traderId;
     }
 
+    // Copy without the messages, see getRecord
+    private Dispute(Dispute dispute) {
+        tradeId = dispute.tradeId;
+        id = dispute.id;
+        traderId = dispute.traderId;
+        disputeOpenerIsBuyer = dispute.disputeOpenerIsBuyer;
+        disputeOpenerIsOfferer = dispute.disputeOpenerIsOfferer;
+        openingDate = dispute.openingDate;
+        traderPubKeyRing = dispute.traderPubKeyRing;
+        tradeDate = dispute.tradeDate;
+        contract = dispute.contract;
+        contractHash = dispute.contractHash;
+        depositTxSerialized = dispute.depositTxSerialized;
+        payoutTxSerialized = dispute.payoutTxSerialized;
+        depositTxId = dispute.depositTxId;
+        payoutTxId = dispute.payoutTxId;
+        contractAsJson = dispute.contractAsJson;
+        offererContractSignature = dispute.offererContractSignature;
+        takerContractSignature = dispute.takerContractSignature;
+        arbitratorPubKeyRing = dispute.arbitratorPubKeyRing;
+        isSupportTicket = dispute.isSupportTicket;
+        isClosed = dispute.isClosed;
+        disputeResult = dispute.disputeResult;
+        disputePayoutTxId = dispute.disputePayoutTxId;
+    }
+
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         try {
             in.defaultReadObject();
             disputeCommunicationMessagesAsObservableList = FXCollections.observableArrayList(disputeCommunicationMessages);
             disputeResultProperty = new SimpleObjectProperty<>(disputeResult);
             isClosedProperty = new SimpleBooleanProperty(isClosed);
+            disputeCommunicationMessages.stream().forEach(this::observeState);
         } catch (Throwable t) {
             log.warn("Cannot be deserialized." + t.getMessage());
         }
@@ -142,7 +169,8 @@ public final class Dispute implements Payload {
         if (!disputeCommunicationMessages.contains(disputeCommunicationMessage)) {
             disputeCommunicationMessages.add(disputeCommunicationMessage);
             disputeCommunicationMessagesAsObservableList.add(disputeCommunicationMessage);
-            storage.queueUpForSave();
+            observeState(disputeCommunicationMessage);
+            repository.onDisputeMessageAdded(this, disputeCommunicationMessage);
         } else {
             log.error("disputeDirectMessage already exists");
         }
@@ -153,25 +181,46 @@ public final class Dispute implements Payload {
     // Setters
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    // In case we get the object via the network storage is not set as its transient, so we need to set it.
-    public void setStorage(Storage<DisputeList<Dispute>> storage) {
-        this.storage = storage;
+    // In case we get the object via the network or from disk the repository is not set as its transient, so we need
+    // to set it.
+    void setRepository(DisputeRepository repository) {
+        this.repository = repository;
+    }
+
+    // The messages are not part of the record, we get them from the chat log
+    void addPersistedDisputeMessages(List<DisputeCommunicationMessage> persistedMessages) {
+        persistedMessages.stream()
+                .filter(message -> disputeCommunicationMessages.stream().noneMatch(e -> e.getUID().equals(message.getUID())))
+                .forEach(message -> {
+                    disputeCommunicationMessages.add(message);
+                    disputeCommunicationMessagesAsObservableList.add(message);
+                    observeState(message);
+                });
+    }
+
+    /**
+     * @return A copy without the messages which gets persisted as the record of the dispute. The messages are
+     * persisted in the chat log.
+     */
+    Dispute getRecord() {
+        return new Dispute(this);
     }
 
     public void setIsClosed(boolean isClosed) {
         this.isClosed = isClosed;
         isClosedProperty.set(isClosed);
-        storage.queueUpForSave();
+        repository.onDisputeChanged(this);
     }
 
     public void setDisputeResult(DisputeResult disputeResult) {
         this.disputeResult = disputeResult;
         disputeResultProperty.set(disputeResult);
-        storage.queueUpForSave();
+        repository.onDisputeChanged(this);
     }
 
     public void setDisputePayoutTxId(String disputePayoutTxId) {
         this.disputePayoutTxId = disputePayoutTxId;
+        repository.onDisputeChanged(this);
     }
 
 
@@ -283,6 +332,23 @@ public final class Dispute implements Payload {
         return disputePayoutTxId;
     }
 
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // The delivery state changes after the message got appended to the chat log
+    private void observeState(DisputeCommunicationMessage disputeCommunicationMessage) {
+        disputeCommunicationMessage.arrivedProperty().addListener((ov, oldValue, newValue) -> onStateChanged(disputeCommunicationMessage));
+        disputeCommunicationMessage.storedInMailboxProperty().addListener((ov, oldValue, newValue) -> onStateChanged(disputeCommunicationMessage));
+    }
+
+    private void onStateChanged(DisputeCommunicationMessage disputeCommunicationMessage) {
+        // The repository is not set yet if we got the dispute from the network
+        if (repository != null)
+            repository.onDisputeMessageStateChanged(this, disputeCommunicationMessage);
+    }
+
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -319,9 +385,7 @@ public final class Dispute implements Payload {
             return false;
         if (disputeResult != null ? !disputeResult.equals(dispute.disputeResult) : dispute.disputeResult != null)
             return false;
-        if (disputePayoutTxId != null ? !disputePayoutTxId.equals(dispute.disputePayoutTxId) : dispute.disputePayoutTxId != null)
-            return false;
-        return !(storage != null ? !storage.equals(dispute.storage) : dispute.storage != null);
+        return !(disputePayoutTxId != null ? !disputePayoutTxId.equals(dispute.disputePayoutTxId) : dispute.disputePayoutTxId != null);
 
     }
 
@@ -350,7 +414,6 @@ public final class Dispute implements Payload {
         result = 31 * result + (isClosed ? 1 : 0);
         result = 31 * result + (disputeResult != null ? disputeResult.hashCode() : 0);
         result = 31 * result + (disputePayoutTxId != null ? disputePayoutTxId.hashCode() : 0);
-        result = 31 * result + (storage != null ? storage.hashCode() : 0);
         return result;
     }
 
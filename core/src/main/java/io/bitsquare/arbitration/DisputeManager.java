@@ -25,8 +25,7 @@ import io.bitsquare.arbitration.payload.Attachment;
 import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.btc.WalletService;
-import io.bitsquare.btc.exceptions.TransactionVerificationException;
-import io.bitsquare.btc.exceptions.WalletException;
+import io.bitsquare.common.WorkerPool;
 import io.bitsquare.common.crypto.KeyRing;
 import io.bitsquare.common.crypto.PubKeyRing;
 import io.bitsquare.crypto.DecryptedMsgWithPubKey;
@@ -35,27 +34,27 @@ import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.P2PService;
 import io.bitsquare.p2p.messaging.SendMailboxMessageListener;
-import io.bitsquare.storage.Storage;
 import io.bitsquare.trade.Contract;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.TradeManager;
 import io.bitsquare.trade.offer.OpenOffer;
 import io.bitsquare.trade.offer.OpenOfferManager;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import org.bitcoinj.core.AddressFormatException;
 import org.bitcoinj.core.Transaction;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import java.io.File;
+import java.io.IOException;
+import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.stream.Collectors;
 
 public class DisputeManager {
     private static final Logger log = LoggerFactory.getLogger(DisputeManager.class);
@@ -66,9 +65,9 @@ public class DisputeManager {
     private final OpenOfferManager openOfferManager;
     private final P2PService p2PService;
     private final KeyRing keyRing;
-    private final Storage<DisputeList<Dispute>> disputeStorage;
-    private final DisputeList<Dispute> disputes;
-    transient private final ObservableList<Dispute> disputesObservableList;
+    private final AttachmentStore attachmentStore;
+    private final AttachmentTransferManager attachmentTransferManager;
+    private final DisputeRepository disputeRepository;
     private final String disputeInfo;
     private final CopyOnWriteArraySet<DecryptedMsgWithPubKey> decryptedMailboxMessageWithPubKeys = new CopyOnWriteArraySet<>();
     private final CopyOnWriteArraySet<DecryptedMsgWithPubKey> decryptedDirectMessageWithPubKeys = new CopyOnWriteArraySet<>();
@@ -85,6 +84,8 @@ public class DisputeManager {
                           TradeManager tradeManager,
                           OpenOfferManager openOfferManager,
                           KeyRing keyRing,
+                          AttachmentStore attachmentStore,
+                          AttachmentTransferManager attachmentTransferManager,
                           @Named("storage.dir") File storageDir) {
         this.p2PService = p2PService;
         this.tradeWalletService = tradeWalletService;
@@ -92,11 +93,18 @@ public class DisputeManager {
         this.tradeManager = tradeManager;
         this.openOfferManager = openOfferManager;
         this.keyRing = keyRing;
+        this.attachmentStore = attachmentStore;
+        this.attachmentTransferManager = attachmentTransferManager;
 
-        disputeStorage = new Storage<>(storageDir);
-        disputes = new DisputeList<>(disputeStorage);
-        disputesObservableList = FXCollections.observableArrayList(disputes);
-        disputes.stream().forEach(e -> e.setStorage(getDisputeStorage()));
+        disputeRepository = new DisputeRepository(storageDir);
+
+        // Disputes persisted by older versions have the attachments inline. We move them for the open disputes, the
+        // closed ones are only read on demand and their inline attachments are still supported.
+        new ArrayList<>(disputeRepository.getDisputesAsObservableList()).stream()
+                .filter(dispute -> dispute.getDisputeCommunicationMessagesAsObservableList().stream()
+                        .map(this::moveInlineAttachmentsToStore)
+                        .reduce(false, (a, b) -> a || b))
+                .forEach(disputeRepository::onDisputeChanged);
 
         disputeInfo = "Please note the basic rules for the dispute process:\n" +
                 "1. You need to respond to the arbitrators requests in between 2 days.\n" +
@@ -108,6 +116,13 @@ public class DisputeManager {
 
         // We get first the message handler called then the onBootstrapped
         p2PService.addDecryptedDirectMessageListener((decryptedMessageWithPubKey, senderAddress) -> {
+            // Transfer messages are only sent when we are bootstrapped and don't depend on other dispute messages
+            if (decryptedMessageWithPubKey.message instanceof AttachmentTransferMessage) {
+                onAttachmentTransferMessage((AttachmentTransferMessage) decryptedMessageWithPubKey.message,
+                        decryptedMessageWithPubKey.signaturePubKey);
+                return;
+            }
+
             decryptedDirectMessageWithPubKeys.add(decryptedMessageWithPubKey);
             if (p2PService.isBootstrapped())
                 applyMessages();
@@ -125,15 +140,42 @@ public class DisputeManager {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public void onAllServicesInitialized() {
-        if (p2PService.isBootstrapped())
+        if (p2PService.isBootstrapped()) {
             applyMessages();
-        else
+            resumeAttachmentDownloads();
+        } else {
             p2PService.addP2PServiceListener(new BootstrapListener() {
                 @Override
                 public void onBootstrapComplete() {
                     applyMessages();
+                    resumeAttachmentDownloads();
                 }
             });
+        }
+    }
+
+    public void shutDown() {
+        attachmentTransferManager.shutDown();
+    }
+
+    /**
+     * Stores the content and returns the attachment which refers to it by its hash.
+     */
+    public Attachment createAttachment(String fileName, byte[] bytes) throws IOException {
+        return new Attachment(fileName, attachmentStore.put(bytes), bytes.length);
+    }
+
+    /**
+     * @return The content or null if we have not received it yet
+     */
+    @Nullable
+    public byte[] getAttachmentBytes(Attachment attachment) {
+        if (attachment.hasInlineBytes())
+            return attachment.getBytes();
+        else if (attachment.getContentHash() != null)
+            return attachmentStore.get(attachment.getContentHash());
+        else
+            return null;
     }
 
     private void applyMessages() {
@@ -171,7 +213,7 @@ public class DisputeManager {
     }
 
     public void sendOpenNewDisputeMessage(Dispute dispute) {
-        if (!disputes.contains(dispute)) {
+        if (!disputeRepository.contains(dispute.getId())) {
             DisputeCommunicationMessage disputeCommunicationMessage = new DisputeCommunicationMessage(dispute.getTradeId(),
                     keyRing.getPubKeyRing().hashCode(),
                     true,
@@ -181,8 +223,7 @@ public class DisputeManager {
                     p2PService.getAddress());
             disputeCommunicationMessage.setIsSystemMessage(true);
             dispute.addDisputeMessage(disputeCommunicationMessage);
-            disputes.add(dispute);
-            disputesObservableList.add(dispute);
+            disputeRepository.add(dispute);
 
             p2PService.sendEncryptedMailboxMessage(dispute.getContract().arbitratorNodeAddress,
                     dispute.getArbitratorPubKeyRing(),
@@ -215,7 +256,7 @@ public class DisputeManager {
         Contract contractFromOpener = disputeFromOpener.getContract();
         PubKeyRing pubKeyRing = disputeFromOpener.isDisputeOpenerIsBuyer() ? contractFromOpener.getSellerPubKeyRing() : contractFromOpener.getBuyerPubKeyRing();
         Dispute dispute = new Dispute(
-                disputeStorage,
+                disputeRepository,
                 disputeFromOpener.getTradeId(),
                 pubKeyRing.hashCode(),
                 !disputeFromOpener.isDisputeOpenerIsBuyer(),
@@ -243,8 +284,7 @@ public class DisputeManager {
                 p2PService.getAddress());
         disputeCommunicationMessage.setIsSystemMessage(true);
         dispute.addDisputeMessage(disputeCommunicationMessage);
-        disputes.add(dispute);
-        disputesObservableList.add(dispute);
+        disputeRepository.add(dispute);
 
         // we mirrored dispute already!
         Contract contract = dispute.getContract();
@@ -281,21 +321,13 @@ public class DisputeManager {
                 text,
                 p2PService.getAddress());
         disputeCommunicationMessage.addAllAttachments(attachments);
-        PubKeyRing receiverPubKeyRing = null;
-        NodeAddress peerNodeAddress = null;
+        PubKeyRing receiverPubKeyRing = getPeersPubKeyRing(dispute);
+        NodeAddress peerNodeAddress = getPeersNodeAddress(dispute);
         if (isTrader(dispute)) {
             dispute.addDisputeMessage(disputeCommunicationMessage);
-            receiverPubKeyRing = dispute.getArbitratorPubKeyRing();
-            peerNodeAddress = dispute.getContract().arbitratorNodeAddress;
         } else if (isArbitrator(dispute)) {
             if (!disputeCommunicationMessage.isSystemMessage())
                 dispute.addDisputeMessage(disputeCommunicationMessage);
-            receiverPubKeyRing = dispute.getTraderPubKeyRing();
-            Contract contract = dispute.getContract();
-            if (contract.getBuyerPubKeyRing().equals(receiverPubKeyRing))
-                peerNodeAddress = contract.getBuyerNodeAddress();
-            else
-                peerNodeAddress = contract.getSellerNodeAddress();
         } else {
             log.error("That must not happen. Trader cannot communicate to other trader.");
         }
@@ -364,6 +396,28 @@ public class DisputeManager {
         );
     }
 
+    private void publishDisputedPayoutTx(Transaction signedDisputedPayoutTx, Dispute dispute, Contract contract) {
+        Transaction committedDisputedPayoutTx = tradeWalletService.addTransactionToWallet(signedDisputedPayoutTx);
+        log.debug("broadcast committedDisputedPayoutTx");
+        tradeWalletService.broadcastTx(committedDisputedPayoutTx, new FutureCallback<Transaction>() {
+            @Override
+            public void onSuccess(Transaction transaction) {
+                log.debug("BroadcastTx succeeded. Transaction:" + transaction);
+
+                // after successful publish we send peer the tx
+
+                dispute.setDisputePayoutTxId(transaction.getHashAsString());
+                sendPeerPublishedPayoutTxMessage(transaction, dispute, contract);
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable t) {
+                // TODO error handling
+                log.error(t.getMessage());
+            }
+        });
+    }
+
     // winner (or buyer in case of 50/50) sends tx to other peer
     private void sendPeerPublishedPayoutTxMessage(Transaction transaction, Dispute dispute, Contract contract) {
         PubKeyRing peersPubKeyRing = dispute.isDisputeOpenerIsBuyer() ? contract.getSellerPubKeyRing() : contract.getBuyerPubKeyRing();
@@ -400,10 +454,8 @@ public class DisputeManager {
     private void onOpenNewDisputeMessage(OpenNewDisputeMessage openNewDisputeMessage) {
         Dispute dispute = openNewDisputeMessage.dispute;
         if (isArbitrator(dispute)) {
-            if (!disputes.contains(dispute)) {
-                dispute.setStorage(getDisputeStorage());
-                disputes.add(dispute);
-                disputesObservableList.add(dispute);
+            if (!disputeRepository.contains(dispute.getId())) {
+                disputeRepository.add(dispute);
                 sendPeerOpenedDisputeMessage(dispute);
             } else {
                 log.warn("We got a dispute msg what we have already stored. TradeId = " + dispute.getTradeId());
@@ -421,10 +473,8 @@ public class DisputeManager {
             if (tradeOptional.isPresent())
                 tradeOptional.get().setDisputeState(Trade.DisputeState.DISPUTE_STARTED_BY_PEER);
 
-            if (!disputes.contains(dispute)) {
-                dispute.setStorage(getDisputeStorage());
-                disputes.add(dispute);
-                disputesObservableList.add(dispute);
+            if (!disputeRepository.contains(dispute.getId())) {
+                disputeRepository.add(dispute);
             } else {
                 log.warn("We got a dispute msg what we have already stored. TradeId = " + dispute.getTradeId());
             }
@@ -439,10 +489,14 @@ public class DisputeManager {
         Optional<Dispute> disputeOptional = findDispute(disputeCommunicationMessage.getTradeId(), disputeCommunicationMessage.getTraderId());
         if (disputeOptional.isPresent()) {
             Dispute dispute = disputeOptional.get();
-            if (!dispute.getDisputeCommunicationMessagesAsObservableList().contains(disputeCommunicationMessage))
+            // Peers with older versions send the attachments inline
+            moveInlineAttachmentsToStore(disputeCommunicationMessage);
+            if (!dispute.getDisputeCommunicationMessagesAsObservableList().contains(disputeCommunicationMessage)) {
                 dispute.addDisputeMessage(disputeCommunicationMessage);
-            else
+                downloadAttachments(dispute, disputeCommunicationMessage);
+            } else {
                 log.warn("We got a dispute mail msg what we have already stored. TradeId = " + disputeCommunicationMessage.getTradeId());
+            }
         } else {
             log.warn("We got a dispute mail msg but we don't have a matching dispute. TradeId = " + disputeCommunicationMessage.getTradeId());
         }
@@ -479,45 +533,35 @@ public class DisputeManager {
                             || (isBuyer && disputeResult.getWinner() == DisputeResult.Winner.STALE_MATE)) {
 
                         if (dispute.getDepositTxSerialized() != null) {
-                            try {
-                                log.debug("do payout Transaction ");
-
-                                Transaction signedDisputedPayoutTx = tradeWalletService.traderSignAndFinalizeDisputedPayoutTx(
-                                        dispute.getDepositTxSerialized(),
-                                        disputeResult.getArbitratorSignature(),
-                                        disputeResult.getBuyerPayoutAmount(),
-                                        disputeResult.getSellerPayoutAmount(),
-                                        disputeResult.getArbitratorPayoutAmount(),
-                                        contract.getBuyerPayoutAddressString(),
-                                        contract.getSellerPayoutAddressString(),
-                                        disputeResult.getArbitratorAddressAsString(),
-                                        walletService.getOrCreateAddressEntry(dispute.getTradeId(), AddressEntry.Context.MULTI_SIG),
-                                        contract.getBuyerBtcPubKey(),
-                                        contract.getSellerBtcPubKey(),
-                                        disputeResult.getArbitratorPubKey()
-                                );
-                                Transaction committedDisputedPayoutTx = tradeWalletService.addTransactionToWallet(signedDisputedPayoutTx);
-                                log.debug("broadcast committedDisputedPayoutTx");
-                                tradeWalletService.broadcastTx(committedDisputedPayoutTx, new FutureCallback<Transaction>() {
-                                    @Override
-                                    public void onSuccess(Transaction transaction) {
-                                        log.debug("BroadcastTx succeeded. Transaction:" + transaction);
-
-                                        // after successful publish we send peer the tx
-
-                                        dispute.setDisputePayoutTxId(transaction.getHashAsString());
-                                        sendPeerPublishedPayoutTxMessage(transaction, dispute, contract);
-                                    }
-
-                                    @Override
-                                    public void onFailure(@NotNull Throwable t) {
-                                        // TODO error handling
-                                        log.error(t.getMessage());
-                                    }
-                                });
-                            } catch (AddressFormatException | WalletException | TransactionVerificationException e) {
-                                e.printStackTrace();
-                            }
+                            log.debug("do payout Transaction ");
+
+                            // Signing runs on the WorkerPool, the wallet is updated in the callback on the UserThread
+                            AddressEntry multiSigAddressEntry = walletService.getOrCreateAddressEntry(dispute.getTradeId(), AddressEntry.Context.MULTI_SIG);
+                            WorkerPool.execute(() -> tradeWalletService.traderSignAndFinalizeDisputedPayoutTx(
+                                            dispute.getDepositTxSerialized(),
+                                            disputeResult.getArbitratorSignature(),
+                                            disputeResult.getBuyerPayoutAmount(),
+                                            disputeResult.getSellerPayoutAmount(),
+                                            disputeResult.getArbitratorPayoutAmount(),
+                                            contract.getBuyerPayoutAddressString(),
+                                            contract.getSellerPayoutAddressString(),
+                                            disputeResult.getArbitratorAddressAsString(),
+                                            multiSigAddressEntry,
+                                            contract.getBuyerBtcPubKey(),
+                                            contract.getSellerBtcPubKey(),
+                                            disputeResult.getArbitratorPubKey()),
+                                    new FutureCallback<Transaction>() {
+                                        @Override
+                                        public void onSuccess(Transaction signedDisputedPayoutTx) {
+                                            publishDisputedPayoutTx(signedDisputedPayoutTx, dispute, contract);
+                                        }
+
+                                        @Override
+                                        public void onFailure(@NotNull Throwable t) {
+                                            t.printStackTrace();
+                                            log.error("Signing the disputed payout tx failed. " + t.getMessage());
+                                        }
+                                    });
                         } else {
                             log.warn("DepositTx is null. TradeId = " + disputeResult.tradeId);
                         }
@@ -542,6 +586,38 @@ public class DisputeManager {
         }
     }
 
+    // The requests and chunks are only accepted from the peer of the dispute and only for content attached to a
+    // message of that dispute
+    private void onAttachmentTransferMessage(AttachmentTransferMessage message, PublicKey signaturePubKey) {
+        Log.traceCall("message " + message);
+        Optional<Dispute> disputeOptional = findDispute(message.tradeId, message.traderId);
+        if (!disputeOptional.isPresent()) {
+            log.warn("We got an attachment transfer msg but we don't have a matching dispute. TradeId = " + message.tradeId);
+            return;
+        }
+
+        Dispute dispute = disputeOptional.get();
+        PubKeyRing peersPubKeyRing = getPeersPubKeyRing(dispute);
+        if (peersPubKeyRing == null || !peersPubKeyRing.isSignaturePubKey(signaturePubKey)) {
+            log.warn("We got an attachment transfer msg which is not from the peer of the dispute. TradeId = " + message.tradeId);
+            return;
+        }
+
+        if (message instanceof AttachmentChunkRequest) {
+            Optional<Attachment> attachmentOptional = dispute.getDisputeCommunicationMessagesAsObservableList().stream()
+                    .flatMap(e -> e.getAttachments().stream())
+                    .filter(e -> Arrays.equals(e.getContentHash(), message.contentHash))
+                    .findAny();
+            if (attachmentOptional.isPresent())
+                attachmentTransferManager.onAttachmentChunkRequest((AttachmentChunkRequest) message,
+                        attachmentOptional.get(), getPeersNodeAddress(dispute), peersPubKeyRing);
+            else
+                log.warn("We got a request for an attachment which is not part of the dispute. TradeId = " + message.tradeId);
+        } else if (message instanceof AttachmentChunk) {
+            attachmentTransferManager.onAttachmentChunk((AttachmentChunk) message);
+        }
+    }
+
     // losing trader or in case of 50/50 the seller gets the tx sent from the winner or buyer
     private void onDisputedPayoutTxMessage(PeerPublishedPayoutTxMessage peerPublishedPayoutTxMessage) {
         Transaction transaction = tradeWalletService.addTransactionToWallet(peerPublishedPayoutTxMessage.transaction);
@@ -553,12 +629,19 @@ public class DisputeManager {
     // Getters
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public Storage<DisputeList<Dispute>> getDisputeStorage() {
-        return disputeStorage;
+    public DisputeRepository getDisputeRepository() {
+        return disputeRepository;
     }
 
+    /**
+     * @return The open disputes and the closed disputes which have been read. Call loadClosedDisputes to get all.
+     */
     public ObservableList<Dispute> getDisputesAsObservableList() {
-        return disputesObservableList;
+        return disputeRepository.getDisputesAsObservableList();
+    }
+
+    public void loadClosedDisputes() {
+        disputeRepository.loadClosedDisputes();
     }
 
     public boolean isTrader(Dispute dispute) {
@@ -569,6 +652,10 @@ public class DisputeManager {
         return keyRing.getPubKeyRing().equals(dispute.getArbitratorPubKeyRing());
     }
 
+    public boolean isDownloadingAttachment(Attachment attachment) {
+        return attachmentTransferManager.isDownloading(attachment);
+    }
+
     private boolean isArbitrator(DisputeResult disputeResult) {
         return disputeResult.getArbitratorAddressAsString().equals(walletService.getOrCreateAddressEntry(AddressEntry.Context.ARBITRATOR).getAddressString());
     }
@@ -578,16 +665,78 @@ public class DisputeManager {
     // Utils
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    @Nullable
+    private PubKeyRing getPeersPubKeyRing(Dispute dispute) {
+        if (isTrader(dispute))
+            return dispute.getArbitratorPubKeyRing();
+        else if (isArbitrator(dispute))
+            return dispute.getTraderPubKeyRing();
+        else
+            return null;
+    }
+
+    @Nullable
+    private NodeAddress getPeersNodeAddress(Dispute dispute) {
+        Contract contract = dispute.getContract();
+        if (isTrader(dispute))
+            return contract.arbitratorNodeAddress;
+        else if (isArbitrator(dispute))
+            return contract.getBuyerPubKeyRing().equals(dispute.getTraderPubKeyRing()) ?
+                    contract.getBuyerNodeAddress() : contract.getSellerNodeAddress();
+        else
+            return null;
+    }
+
+    /**
+     * @return True if the message had inline attachments
+     */
+    private boolean moveInlineAttachmentsToStore(DisputeCommunicationMessage disputeCommunicationMessage) {
+        boolean moved = false;
+        List<Attachment> attachments = disputeCommunicationMessage.getAttachments();
+        for (int i = 0; i < attachments.size(); i++) {
+            Attachment attachment = attachments.get(i);
+            if (attachment.hasInlineBytes()) {
+                try {
+                    attachments.set(i, createAttachment(attachment.getFileName(), attachment.getBytes()));
+                    moved = true;
+                } catch (IOException e) {
+                    log.error("Could not store attachment " + attachment.getFileName() + ". " + e.getMessage());
+                }
+            }
+        }
+        return moved;
+    }
+
+    private void downloadAttachments(Dispute dispute, DisputeCommunicationMessage disputeCommunicationMessage) {
+        NodeAddress peersNodeAddress = getPeersNodeAddress(dispute);
+        PubKeyRing peersPubKeyRing = getPeersPubKeyRing(dispute);
+        if (peersNodeAddress != null && peersPubKeyRing != null)
+            disputeCommunicationMessage.getAttachments().stream()
+                    .forEach(attachment -> attachmentTransferManager.download(attachment, dispute, peersNodeAddress,
+                            peersPubKeyRing));
+    }
+
+    private void resumeAttachmentDownloads() {
+        new ArrayList<>(getDisputesAsObservableList()).stream()
+                .filter(dispute -> !dispute.isClosed())
+                .forEach(dispute -> dispute.getDisputeCommunicationMessagesAsObservableList().stream()
+                        .forEach(message -> downloadAttachments(dispute, message)));
+    }
+
     private Optional<Dispute> findDispute(String tradeId, int traderId) {
-        return disputes.stream().filter(e -> e.getTradeId().equals(tradeId) && e.getTraderId() == traderId).findAny();
+        return disputeRepository.get(tradeId, traderId);
     }
 
     public Optional<Dispute> findOwnDispute(String tradeId) {
-        return disputes.stream().filter(e -> e.getTradeId().equals(tradeId)).findAny();
+        return disputeRepository.getByTradeId(tradeId).stream().findAny();
     }
 
     public List<Dispute> findDisputesByTradeId(String tradeId) {
-        return disputes.stream().filter(e -> e.getTradeId().equals(tradeId)).collect(Collectors.toList());
+        return disputeRepository.getByTradeId(tradeId);
+    }
+
+    public Optional<Dispute> findDisputeByPayoutTxId(String disputePayoutTxId) {
+        return disputeRepository.getByPayoutTxId(disputePayoutTxId);
     }
 
 }
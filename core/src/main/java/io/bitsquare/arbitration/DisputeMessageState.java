@@ -0,0 +1,59 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.arbitration.messages.DisputeCommunicationMessage;
+import io.bitsquare.common.persistance.Persistable;
+
+/**
+ * Entry in the chat log of a dispute which records the delivery state of a message appended before. The message
+ * gets appended before it is sent, so the state it got later is stored with that entry.
+ */
+public final class DisputeMessageState implements Persistable {
+    // That object is saved to disc. We need to take care of changes to not break deserialization.
+    private static final long serialVersionUID = Version.LOCAL_DB_VERSION;
+
+    private final String uid;
+    private final boolean arrived;
+    private final boolean storedInMailbox;
+
+    public DisputeMessageState(DisputeCommunicationMessage disputeCommunicationMessage) {
+        uid = disputeCommunicationMessage.getUID();
+        arrived = disputeCommunicationMessage.arrivedProperty().get();
+        storedInMailbox = disputeCommunicationMessage.storedInMailboxProperty().get();
+    }
+
+    public void applyTo(DisputeCommunicationMessage disputeCommunicationMessage) {
+        disputeCommunicationMessage.setArrived(arrived);
+        disputeCommunicationMessage.setStoredInMailbox(storedInMailbox);
+    }
+
+    public String getUID() {
+        return uid;
+    }
+
+    @Override
+    public String toString() {
+        return "DisputeMessageState{" +
+                "uid='" + uid + '\'' +
+                ", arrived=" + arrived +
+                ", storedInMailbox=" + storedInMailbox +
+                '}';
+    }
+}
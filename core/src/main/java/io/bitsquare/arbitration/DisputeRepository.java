@@ -0,0 +1,295 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import io.bitsquare.arbitration.messages.DisputeCommunicationMessage;
+import io.bitsquare.storage.AppendOnlyLogStorage;
+import io.bitsquare.storage.RecordStorage;
+import io.bitsquare.storage.Storage;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the disputes with one record per dispute and one append-only chat log per dispute. A new chat message is
+ * only appended to the log of its dispute, the record gets rewritten only when the state of the dispute changes.
+ * The record does not contain the messages. A change of the delivery state of a message is appended to the log as a
+ * DisputeMessageState entry.
+ * <p>
+ * A summary per dispute is kept in memory and persisted as index file. It is used for the lookups, so the disputes
+ * are only read from disk when they are requested. At startup we read the open disputes, the closed ones are read on
+ * demand. A dispute which got read stays in memory and in the observable list, so there is only one instance per
+ * dispute.
+ * <p>
+ * Not thread safe, it is used from the UserThread.
+ */
+public class DisputeRepository {
+    private static final Logger log = LoggerFactory.getLogger(DisputeRepository.class);
+
+    private static final String FILE_NAME = "Dispute";
+
+    private final RecordStorage<Dispute> recordStorage;
+    private final AppendOnlyLogStorage<Serializable> chatLogStorage;
+    private final Storage<ArrayList<DisputeSummary>> indexStorage;
+    private final ArrayList<DisputeSummary> summaries = new ArrayList<>();
+    private final Map<String, DisputeSummary> summaryById = new HashMap<>();
+    private final Map<String, List<String>> idsByTradeId = new HashMap<>();
+    private final Map<String, String> idByPayoutTxId = new HashMap<>();
+    private final Map<String, Dispute> disputeById = new HashMap<>();
+    private final ObservableList<Dispute> disputesAsObservableList = FXCollections.observableArrayList();
+    private boolean closedDisputesLoaded;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public DisputeRepository(File storageDir) {
+        recordStorage = new RecordStorage<>(storageDir);
+        Set<String> recordIds = recordStorage.init(FILE_NAME + "Records");
+
+        chatLogStorage = new AppendOnlyLogStorage<>(storageDir);
+        chatLogStorage.init(FILE_NAME + "ChatLogs");
+
+        indexStorage = new Storage<>(storageDir);
+        ArrayList<DisputeSummary> persisted = indexStorage.initAndGetPersisted(summaries, FILE_NAME + "Index");
+        if (persisted != null)
+            summaries.addAll(persisted);
+
+        migrateDisputeList(storageDir, recordIds);
+        repairIndex(recordIds);
+
+        summaries.stream().forEach(this::addToIndex);
+        new ArrayList<>(summaries).stream()
+                .filter(summary -> !summary.isClosed())
+                .forEach(summary -> load(summary.getId()));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void add(Dispute dispute) {
+        String id = dispute.getId();
+        if (summaryById.containsKey(id))
+            return;
+
+        dispute.setRepository(this);
+        disputeById.put(id, dispute);
+        disputesAsObservableList.add(dispute);
+        recordStorage.queueUpForSave(id, dispute.getRecord());
+        dispute.getDisputeCommunicationMessagesAsObservableList().stream()
+                .forEach(disputeCommunicationMessage -> chatLogStorage.append(id, disputeCommunicationMessage));
+        putSummary(new DisputeSummary(dispute));
+    }
+
+    public boolean contains(String id) {
+        return summaryById.containsKey(id);
+    }
+
+    public Optional<Dispute> get(String tradeId, int traderId) {
+        return Optional.ofNullable(load(tradeId + "_" + traderId));
+    }
+
+    public List<Dispute> getByTradeId(String tradeId) {
+        List<String> ids = idsByTradeId.get(tradeId);
+        if (ids == null)
+            return new ArrayList<>();
+
+        return new ArrayList<>(ids).stream()
+                .map(this::load)
+                .filter(dispute -> dispute != null)
+                .collect(Collectors.toList());
+    }
+
+    public Optional<Dispute> getByPayoutTxId(String disputePayoutTxId) {
+        String id = idByPayoutTxId.get(disputePayoutTxId);
+        return id != null ? Optional.ofNullable(load(id)) : Optional.empty();
+    }
+
+    /**
+     * Reads the closed disputes, so the list contains all disputes.
+     */
+    public void loadClosedDisputes() {
+        if (!closedDisputesLoaded) {
+            closedDisputesLoaded = true;
+            new ArrayList<>(summaries).stream().forEach(summary -> load(summary.getId()));
+        }
+    }
+
+    /**
+     * @return The open disputes and the closed disputes which have been read.
+     */
+    public ObservableList<Dispute> getDisputesAsObservableList() {
+        return disputesAsObservableList;
+    }
+
+    public int size() {
+        return summaries.size();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope, called from the dispute
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void onDisputeMessageAdded(Dispute dispute, DisputeCommunicationMessage disputeCommunicationMessage) {
+        // Messages which get added before the dispute is stored get appended when the dispute gets added
+        if (summaryById.containsKey(dispute.getId()))
+            chatLogStorage.append(dispute.getId(), disputeCommunicationMessage);
+    }
+
+    void onDisputeMessageStateChanged(Dispute dispute, DisputeCommunicationMessage disputeCommunicationMessage) {
+        if (summaryById.containsKey(dispute.getId()))
+            chatLogStorage.append(dispute.getId(), new DisputeMessageState(disputeCommunicationMessage));
+    }
+
+    void onDisputeChanged(Dispute dispute) {
+        if (summaryById.containsKey(dispute.getId())) {
+            recordStorage.queueUpForSave(dispute.getId(), dispute.getRecord());
+            putSummary(new DisputeSummary(dispute));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private Dispute load(String id) {
+        Dispute dispute = disputeById.get(id);
+        if (dispute == null && summaryById.containsKey(id)) {
+            dispute = readRecord(id);
+            if (dispute != null) {
+                disputeById.put(id, dispute);
+                disputesAsObservableList.add(dispute);
+            }
+        }
+        return dispute;
+    }
+
+    private Dispute readRecord(String id) {
+        Dispute dispute = recordStorage.read(id);
+        if (dispute != null) {
+            dispute.setRepository(this);
+            dispute.addPersistedDisputeMessages(readChatLog(id));
+        }
+        return dispute;
+    }
+
+    // The states are applied before the messages get added to the dispute, so they don't get appended again
+    private List<DisputeCommunicationMessage> readChatLog(String id) {
+        Map<String, DisputeCommunicationMessage> messagesByUid = new LinkedHashMap<>();
+        for (Serializable entry : chatLogStorage.read(id)) {
+            if (entry instanceof DisputeCommunicationMessage) {
+                DisputeCommunicationMessage disputeCommunicationMessage = (DisputeCommunicationMessage) entry;
+                messagesByUid.put(disputeCommunicationMessage.getUID(), disputeCommunicationMessage);
+            } else if (entry instanceof DisputeMessageState) {
+                DisputeMessageState disputeMessageState = (DisputeMessageState) entry;
+                DisputeCommunicationMessage disputeCommunicationMessage = messagesByUid.get(disputeMessageState.getUID());
+                if (disputeCommunicationMessage != null)
+                    disputeMessageState.applyTo(disputeCommunicationMessage);
+                else
+                    log.warn("We got a state for an unknown message. " + disputeMessageState);
+            } else {
+                log.warn("Unexpected chat log entry of dispute " + id + ". " + entry);
+            }
+        }
+        return new ArrayList<>(messagesByUid.values());
+    }
+
+    private void putSummary(DisputeSummary summary) {
+        DisputeSummary previous = summaryById.get(summary.getId());
+        if (previous != null) {
+            removeFromIndex(previous);
+            summaries.set(summaries.indexOf(previous), summary);
+        } else {
+            summaries.add(summary);
+        }
+        addToIndex(summary);
+        indexStorage.queueUpForSave();
+    }
+
+    private void addToIndex(DisputeSummary summary) {
+        summaryById.put(summary.getId(), summary);
+        idsByTradeId.computeIfAbsent(summary.getTradeId(), k -> new ArrayList<>()).add(summary.getId());
+        if (summary.getDisputePayoutTxId() != null)
+            idByPayoutTxId.put(summary.getDisputePayoutTxId(), summary.getId());
+    }
+
+    private void removeFromIndex(DisputeSummary summary) {
+        summaryById.remove(summary.getId());
+        List<String> ids = idsByTradeId.get(summary.getTradeId());
+        if (ids != null) {
+            ids.remove(summary.getId());
+            if (ids.isEmpty())
+                idsByTradeId.remove(summary.getTradeId());
+        }
+        if (summary.getDisputePayoutTxId() != null)
+            idByPayoutTxId.remove(summary.getDisputePayoutTxId());
+    }
+
+    // The index and the records are written independently, so after a crash they might not match
+    private void repairIndex(Set<String> recordIds) {
+        boolean changed = summaries.removeIf(summary -> !recordIds.contains(summary.getId()));
+        Set<String> indexedIds = summaries.stream().map(DisputeSummary::getId).collect(Collectors.toSet());
+        for (String id : recordIds) {
+            if (!indexedIds.contains(id)) {
+                Dispute dispute = readRecord(id);
+                if (dispute != null) {
+                    summaries.add(new DisputeSummary(dispute));
+                    changed = true;
+                }
+            }
+        }
+        if (changed)
+            indexStorage.queueUpForSave();
+    }
+
+    // Previous versions stored all disputes in one DisputeList file. We move the disputes to records.
+    private void migrateDisputeList(File storageDir, Set<String> recordIds) {
+        String fileName = DisputeList.class.getSimpleName();
+        if (new File(storageDir, fileName).exists()) {
+            Storage<DisputeList<Dispute>> storage = new Storage<>(storageDir);
+            DisputeList<Dispute> persisted = storage.initAndGetPersisted(fileName);
+            if (persisted != null) {
+                persisted.stream().forEach(dispute -> {
+                    recordStorage.saveNow(dispute.getId(), dispute.getRecord());
+                    recordIds.add(dispute.getId());
+                    dispute.getDisputeCommunicationMessagesAsObservableList().stream()
+                            .forEach(disputeCommunicationMessage -> chatLogStorage.append(dispute.getId(), disputeCommunicationMessage));
+                    // The appends might still be pending when we read the disputes, so we keep the migrated ones
+                    dispute.setRepository(this);
+                    disputeById.put(dispute.getId(), dispute);
+                    disputesAsObservableList.add(dispute);
+                });
+                log.info("Moved {} disputes to records", persisted.size());
+                // We keep the old file if a dispute could not be written
+                if (persisted.stream().allMatch(dispute -> recordStorage.contains(dispute.getId())))
+                    storage.remove(fileName);
+            }
+        }
+    }
+}
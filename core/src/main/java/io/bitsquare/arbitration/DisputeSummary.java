@@ -0,0 +1,77 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.common.persistance.Persistable;
+
+import javax.annotation.Nullable;
+
+/**
+ * Small index entry of a dispute in the DisputeRepository. Holds the data we need for lookups without reading the
+ * dispute from disk.
+ */
+public final class DisputeSummary implements Persistable {
+    // That object is saved to disc. We need to take care of changes to not break deserialization.
+    private static final long serialVersionUID = Version.LOCAL_DB_VERSION;
+
+    private final String id;
+    private final String tradeId;
+    private final int traderId;
+    private final boolean isClosed;
+    @Nullable
+    private final String disputePayoutTxId;
+
+    public DisputeSummary(Dispute dispute) {
+        id = dispute.getId();
+        tradeId = dispute.getTradeId();
+        traderId = dispute.getTraderId();
+        isClosed = dispute.isClosed();
+        disputePayoutTxId = dispute.getDisputePayoutTxId();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTradeId() {
+        return tradeId;
+    }
+
+    public int getTraderId() {
+        return traderId;
+    }
+
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    @Nullable
+    public String getDisputePayoutTxId() {
+        return disputePayoutTxId;
+    }
+
+    @Override
+    public String toString() {
+        return "DisputeSummary{" +
+                "id='" + id + '\'' +
+                ", isClosed=" + isClosed +
+                ", disputePayoutTxId='" + disputePayoutTxId + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration.messages;
+
+import io.bitsquare.app.Version;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+@Immutable
+public final class AttachmentChunk extends AttachmentTransferMessage {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.P2P_NETWORK_VERSION;
+
+    public final byte[] bytes;
+    public final long totalSize;
+
+    public AttachmentChunk(String tradeId, int traderId, byte[] contentHash, long offset, byte[] bytes, long totalSize) {
+        super(tradeId, traderId, contentHash, offset);
+        this.bytes = bytes;
+        this.totalSize = totalSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AttachmentChunk)) return false;
+        if (!super.equals(o)) return false;
+
+        AttachmentChunk that = (AttachmentChunk) o;
+
+        if (totalSize != that.totalSize) return false;
+        return Arrays.equals(bytes, that.bytes);
+
+    }
+
+    @Override
+    public int hashCode() {
+        int result = super.hashCode();
+        result = 31 * result + (bytes != null ? Arrays.hashCode(bytes) : 0);
+        result = 31 * result + (int) (totalSize ^ (totalSize >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "AttachmentChunk{" +
+                "tradeId='" + tradeId + '\'' +
+                ", contentHash=" + Arrays.toString(contentHash) +
+                ", offset=" + offset +
+                ", length=" + (bytes != null ? bytes.length : 0) +
+                ", totalSize=" + totalSize +
+                '}';
+    }
+}
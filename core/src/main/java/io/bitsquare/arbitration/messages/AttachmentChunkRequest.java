@@ -0,0 +1,42 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration.messages;
+
+import io.bitsquare.app.Version;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+@Immutable
+public final class AttachmentChunkRequest extends AttachmentTransferMessage {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.P2P_NETWORK_VERSION;
+
+    public AttachmentChunkRequest(String tradeId, int traderId, byte[] contentHash, long offset) {
+        super(tradeId, traderId, contentHash, offset);
+    }
+
+    @Override
+    public String toString() {
+        return "AttachmentChunkRequest{" +
+                "tradeId='" + tradeId + '\'' +
+                ", contentHash=" + Arrays.toString(contentHash) +
+                ", offset=" + offset +
+                '}';
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration.messages;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.p2p.messaging.DirectMessage;
+
+import java.util.Arrays;
+
+/**
+ * Attachment content is transferred with direct messages in chunks, so it is not stored in the mailbox and does not
+ * block trade messages on the connection. The tradeId and traderId identify the dispute, we only serve content which
+ * is attached to a message of that dispute.
+ */
+public abstract class AttachmentTransferMessage implements DirectMessage {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.P2P_NETWORK_VERSION;
+
+    private final int messageVersion = Version.getP2PMessageVersion();
+    public final String tradeId;
+    public final int traderId;
+    public final byte[] contentHash;
+    public final long offset;
+
+    protected AttachmentTransferMessage(String tradeId, int traderId, byte[] contentHash, long offset) {
+        this.tradeId = tradeId;
+        this.traderId = traderId;
+        this.contentHash = contentHash;
+        this.offset = offset;
+    }
+
+    @Override
+    public int getMessageVersion() {
+        return messageVersion;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AttachmentTransferMessage)) return false;
+
+        AttachmentTransferMessage that = (AttachmentTransferMessage) o;
+
+        if (traderId != that.traderId) return false;
+        if (offset != that.offset) return false;
+        if (tradeId != null ? !tradeId.equals(that.tradeId) : that.tradeId != null) return false;
+        return Arrays.equals(contentHash, that.contentHash);
+
+    }
+
+    @Override
+    public int hashCode() {
+        int result = tradeId != null ? tradeId.hashCode() : 0;
+        result = 31 * result + traderId;
+        result = 31 * result + (contentHash != null ? Arrays.hashCode(contentHash) : 0);
+        result = 31 * result + (int) (offset ^ (offset >>> 32));
+        return result;
+    }
+}
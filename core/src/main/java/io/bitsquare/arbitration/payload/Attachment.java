@@ -2,24 +2,39 @@ package io.bitsquare.arbitration.payload;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.common.wire.Payload;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 
+/**
+ * An attachment carries only the hash and the size of the content. The bytes are kept in the AttachmentStore and
+ * are transferred separately in chunks.
+ * Attachments from older versions have the bytes inline, they get moved to the store when we receive or load them.
+ */
 public final class Attachment implements Payload {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.P2P_NETWORK_VERSION;
     private static final Logger log = LoggerFactory.getLogger(Attachment.class);
 
+    // Only set at attachments from older versions
+    @Nullable
     private final byte[] bytes;
     private final String fileName;
+    // Not set at attachments from older versions
+    @Nullable
+    private final byte[] contentHash;
+    private final long size;
 
-    public Attachment(String fileName, byte[] bytes) {
+    public Attachment(String fileName, byte[] contentHash, long size) {
         this.fileName = fileName;
-        this.bytes = bytes;
+        this.contentHash = contentHash;
+        this.size = size;
+        this.bytes = null;
     }
 
+    @Nullable
     public byte[] getBytes() {
         return bytes;
     }
@@ -28,6 +43,19 @@ public final class Attachment implements Payload {
         return fileName;
     }
 
+    @Nullable
+    public byte[] getContentHash() {
+        return contentHash;
+    }
+
+    public long getSize() {
+        return bytes != null ? bytes.length : size;
+    }
+
+    public boolean hasInlineBytes() {
+        return bytes != null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -35,7 +63,9 @@ public final class Attachment implements Payload {
 
         Attachment that = (Attachment) o;
 
+        if (size != that.size) return false;
         if (!Arrays.equals(bytes, that.bytes)) return false;
+        if (!Arrays.equals(contentHash, that.contentHash)) return false;
         return !(fileName != null ? !fileName.equals(that.fileName) : that.fileName != null);
 
     }
@@ -44,6 +74,8 @@ public final class Attachment implements Payload {
     public int hashCode() {
         int result = bytes != null ? Arrays.hashCode(bytes) : 0;
         result = 31 * result + (fileName != null ? fileName.hashCode() : 0);
+        result = 31 * result + (contentHash != null ? Arrays.hashCode(contentHash) : 0);
+        result = 31 * result + (int) (size ^ (size >>> 32));
         return result;
     }
 
@@ -51,7 +83,8 @@ public final class Attachment implements Payload {
     public String toString() {
         return "Attachment{" +
                 "description=" + fileName +
-                ", data=" + Arrays.toString(bytes) +
+                ", contentHash=" + Arrays.toString(contentHash) +
+                ", size=" + getSize() +
                 '}';
     }
-}
\ No newline at end of file
+}
@@ -26,11 +26,14 @@ import org.bitcoinj.crypto.DeterministicKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Optional;
+import javax.annotation.Nullable;
+import java.util.*;
 
 /**
  * The List supporting our persistence solution.
+ * <p>
+ * Keeps indexes by offerId and context, by context and by address. The entries must only be added and removed with
+ * the methods of that class, so the indexes stay in sync with the list.
  */
 public final class AddressEntryList extends ArrayList<AddressEntry> implements Persistable {
     // That object is saved to disc. We need to take care of changes to not break deserialization.
@@ -39,6 +42,9 @@ public final class AddressEntryList extends ArrayList<AddressEntry> implements P
 
     final transient private Storage<AddressEntryList> storage;
     transient private Wallet wallet;
+    final transient private Map<String, AddressEntry> entryByOfferIdAndContext = new HashMap<>();
+    final transient private Map<AddressEntry.Context, Set<AddressEntry>> entriesByContext = new EnumMap<>(AddressEntry.Context.class);
+    final transient private Map<String, List<AddressEntry>> entriesByAddress = new HashMap<>();
 
     // Persisted fields are in ArrayList superclass
 
@@ -56,19 +62,19 @@ public final class AddressEntryList extends ArrayList<AddressEntry> implements P
                 DeterministicKey keyFromPubHash = (DeterministicKey) wallet.findKeyFromPubHash(addressEntry.getPubKeyHash());
                 if (keyFromPubHash != null) {
                     addressEntry.setDeterministicKey(keyFromPubHash);
-                    add(addressEntry);
+                    addEntry(addressEntry);
                 } else {
                     log.warn("Key from addressEntry not found in that wallet " + addressEntry.toString());
                 }
             }
         } else {
-            add(new AddressEntry(wallet.freshReceiveKey(), wallet.getParams(), AddressEntry.Context.ARBITRATOR));
+            addEntry(new AddressEntry(wallet.freshReceiveKey(), wallet.getParams(), AddressEntry.Context.ARBITRATOR));
             storage.queueUpForSave();
         }
     }
 
     public AddressEntry addAddressEntry(AddressEntry addressEntry) {
-        add(addressEntry);
+        addEntry(addressEntry);
         storage.queueUpForSave();
         return addressEntry;
     }
@@ -78,20 +84,88 @@ public final class AddressEntryList extends ArrayList<AddressEntry> implements P
         Optional<AddressEntry> addressEntryOptional = this.stream().filter(addressEntry -> offerId.equals(addressEntry.getOfferId())).findAny();
         if (addressEntryOptional.isPresent()) {
             AddressEntry addressEntry = addressEntryOptional.get();
-            add(new AddressEntry(addressEntry.getKeyPair(), wallet.getParams(), AddressEntry.Context.AVAILABLE));
-            remove(addressEntry);
+            addEntry(new AddressEntry(addressEntry.getKeyPair(), wallet.getParams(), AddressEntry.Context.AVAILABLE));
+            removeEntry(addressEntry);
             storage.queueUpForSave();
         }
     }
 
     public void swapToAvailable(AddressEntry addressEntry) {
-        remove(addressEntry);
-        add(new AddressEntry(addressEntry.getKeyPair(), wallet.getParams(), AddressEntry.Context.AVAILABLE));
-        remove(addressEntry);
+        removeEntry(addressEntry);
+        addEntry(new AddressEntry(addressEntry.getKeyPair(), wallet.getParams(), AddressEntry.Context.AVAILABLE));
         storage.queueUpForSave();
     }
 
     public void queueUpForSave() {
         storage.queueUpForSave();
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Lookups
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public Optional<AddressEntry> find(String offerId, AddressEntry.Context context) {
+        return Optional.ofNullable(entryByOfferIdAndContext.get(getKey(offerId, context)));
+    }
+
+    public Optional<AddressEntry> findAny(AddressEntry.Context context) {
+        Set<AddressEntry> entries = entriesByContext.get(context);
+        return entries != null ? entries.stream().findFirst() : Optional.empty();
+    }
+
+    public Optional<AddressEntry> findByAddress(String address, AddressEntry.Context context) {
+        List<AddressEntry> entries = entriesByAddress.get(address);
+        return entries != null ? entries.stream().filter(e -> context == e.getContext()).findAny() : Optional.empty();
+    }
+
+    public List<AddressEntry> getByContext(AddressEntry.Context context) {
+        Set<AddressEntry> entries = entriesByContext.get(context);
+        return entries != null ? new ArrayList<>(entries) : new ArrayList<>();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void addEntry(AddressEntry addressEntry) {
+        add(addressEntry);
+        // The first entry wins, as the lookups did before with findAny on the list
+        if (addressEntry.getOfferId() != null)
+            entryByOfferIdAndContext.putIfAbsent(getKey(addressEntry.getOfferId(), addressEntry.getContext()), addressEntry);
+        entriesByContext.computeIfAbsent(addressEntry.getContext(), k -> new LinkedHashSet<>()).add(addressEntry);
+        String address = addressEntry.getAddressString();
+        if (address != null)
+            entriesByAddress.computeIfAbsent(address, k -> new ArrayList<>()).add(addressEntry);
+    }
+
+    private void removeEntry(AddressEntry addressEntry) {
+        remove(addressEntry);
+        if (addressEntry.getOfferId() != null) {
+            String key = getKey(addressEntry.getOfferId(), addressEntry.getContext());
+            if (entryByOfferIdAndContext.get(key) == addressEntry) {
+                entryByOfferIdAndContext.remove(key);
+                // Another entry with the same offerId and context takes its place
+                this.stream()
+                        .filter(e -> addressEntry.getOfferId().equals(e.getOfferId()) && addressEntry.getContext() == e.getContext())
+                        .findFirst()
+                        .ifPresent(e -> entryByOfferIdAndContext.put(key, e));
+            }
+        }
+        Set<AddressEntry> entries = entriesByContext.get(addressEntry.getContext());
+        if (entries != null)
+            entries.remove(addressEntry);
+        String address = addressEntry.getAddressString();
+        List<AddressEntry> entriesOfAddress = address != null ? entriesByAddress.get(address) : null;
+        if (entriesOfAddress != null) {
+            entriesOfAddress.remove(addressEntry);
+            if (entriesOfAddress.isEmpty())
+                entriesByAddress.remove(address);
+        }
+    }
+
+    private static String getKey(String offerId, @Nullable AddressEntry.Context context) {
+        return offerId + "_" + context;
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.btc;
+
+import org.bitcoinj.core.*;
+import org.bitcoinj.script.Script;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the spendable outputs (the spend candidates of the wallet) and the number of outputs per address.
+ * <p>
+ * The index is built once from the wallet and then updated with each transaction we get from the wallet events.
+ * A transaction changes only its own outputs and the outputs its inputs spend, so an update costs the size of that
+ * transaction. Only if a transaction gets dead or the chain gets reorganized we rebuild the index, as the wallet
+ * might have revived outputs we cannot reach from the transaction anymore.
+ * <p>
+ * Not thread safe, it is used from the UserThread which is also the thread of the wallet events.
+ */
+class BalanceIndex {
+    private static final Logger log = LoggerFactory.getLogger(BalanceIndex.class);
+
+    private final NetworkParameters params;
+    private final Map<TransactionOutPoint, Utxo> utxoByOutPoint = new HashMap<>();
+    private final Map<Address, Long> balanceByAddress = new HashMap<>();
+    private final Map<Address, Integer> numOutputsByAddress = new HashMap<>();
+    private final Set<Sha256Hash> countedTxIds = new HashSet<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    BalanceIndex(NetworkParameters params) {
+        this.params = params;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void rebuild(Wallet wallet) {
+        long now = System.currentTimeMillis();
+        utxoByOutPoint.clear();
+        balanceByAddress.clear();
+        numOutputsByAddress.clear();
+        countedTxIds.clear();
+
+        wallet.calculateAllSpendCandidates().stream().forEach(this::addUtxo);
+        wallet.getTransactions(true).stream().forEach(this::countOutputs);
+        log.debug("Rebuilding balance index with {} outputs took {} ms", utxoByOutPoint.size(),
+                System.currentTimeMillis() - now);
+    }
+
+    void onTransaction(Wallet wallet, Transaction tx) {
+        if (tx.getConfidence().getConfidenceType() == TransactionConfidence.ConfidenceType.DEAD) {
+            rebuild(wallet);
+            return;
+        }
+
+        countOutputs(tx);
+        boolean isMature = tx.isMature();
+        tx.getOutputs().stream().forEach(output -> update(wallet, output, isMature));
+        tx.getInputs().stream()
+                .map(TransactionInput::getConnectedOutput)
+                .filter(output -> output != null && output.getParentTransaction() != null)
+                .forEach(output -> update(wallet, output, output.getParentTransaction().isMature()));
+    }
+
+    Coin getBalance(Address address) {
+        Long balance = balanceByAddress.get(address);
+        return balance != null ? Coin.valueOf(balance) : Coin.ZERO;
+    }
+
+    int getNumTxOutputs(Address address) {
+        Integer numOutputs = numOutputsByAddress.get(address);
+        return numOutputs != null ? numOutputs : 0;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Same conditions as in Wallet.calculateAllSpendCandidates
+    private void update(Wallet wallet, TransactionOutput output, boolean isMature) {
+        boolean isSpendCandidate = isMature && output.isAvailableForSpending()
+                && (output.isMine(wallet) || output.isWatched(wallet));
+        TransactionOutPoint outPoint = getOutPoint(output);
+        if (isSpendCandidate) {
+            if (!utxoByOutPoint.containsKey(outPoint))
+                addUtxo(output);
+        } else {
+            Utxo utxo = utxoByOutPoint.remove(outPoint);
+            if (utxo != null)
+                balanceByAddress.compute(utxo.address, (address, balance) ->
+                        balance == null || balance - utxo.value == 0 ? null : balance - utxo.value);
+        }
+    }
+
+    private void addUtxo(TransactionOutput output) {
+        Address address = getAddress(output);
+        if (address != null) {
+            long value = output.getValue().value;
+            utxoByOutPoint.put(getOutPoint(output), new Utxo(address, value));
+            balanceByAddress.merge(address, value, Long::sum);
+        }
+    }
+
+    private void countOutputs(Transaction tx) {
+        if (countedTxIds.add(tx.getHash())) {
+            tx.getOutputs().stream()
+                    .map(this::getAddress)
+                    .filter(address -> address != null)
+                    .forEach(address -> numOutputsByAddress.merge(address, 1, Integer::sum));
+        }
+    }
+
+    private TransactionOutPoint getOutPoint(TransactionOutput output) {
+        return new TransactionOutPoint(params, output.getIndex(), output.getParentTransaction());
+    }
+
+    @Nullable
+    private Address getAddress(TransactionOutput output) {
+        Script scriptPubKey = output.getScriptPubKey();
+        if (scriptPubKey.isSentToAddress() || scriptPubKey.isPayToScriptHash())
+            return scriptPubKey.getToAddress(params);
+        else
+            return null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Utxo
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Utxo {
+        private final Address address;
+        private final long value;
+
+        private Utxo(Address address, long value) {
+            this.address = address;
+            this.value = value;
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.google.inject.Singleton;
 import io.bitsquare.app.AppModule;
 import io.bitsquare.btc.blockchain.BlockchainService;
 import io.bitsquare.btc.pricefeed.PriceFeed;
+import io.bitsquare.btc.pricefeed.PriceRelay;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
@@ -53,6 +54,9 @@ public class BitcoinModule extends AppModule {
         bind(WalletService.class).in(Singleton.class);
         bind(BlockchainService.class).in(Singleton.class);
         bind(PriceFeed.class).in(Singleton.class);
+
+        bindConstant().annotatedWith(named(PriceRelay.PRIV_KEY)).to(env.getProperty(PriceRelay.PRIV_KEY, ""));
+        bind(PriceRelay.class).in(Singleton.class);
     }
 }
 
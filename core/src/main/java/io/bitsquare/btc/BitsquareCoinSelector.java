@@ -17,24 +17,22 @@
 
 package io.bitsquare.btc;
 
-import com.google.common.annotations.VisibleForTesting;
 import org.bitcoinj.core.*;
 import org.bitcoinj.wallet.CoinSelection;
 import org.bitcoinj.wallet.CoinSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * We use a specialized version of the CoinSelector based on the DefaultCoinSelector implementation.
  * We lookup for spendable outputs which matches our address of our addressEntry.
+ * The selection out of these outputs is done by the CoinSelectionEngine.
  */
 abstract class BitsquareCoinSelector implements CoinSelector {
     private static final Logger log = LoggerFactory.getLogger(BitsquareCoinSelector.class);
@@ -73,58 +71,35 @@ abstract class BitsquareCoinSelector implements CoinSelector {
         log.trace("candidates.size: " + candidates.size());
         long targetAsLong = target.longValue();
         log.trace("value needed: " + targetAsLong);
-        HashSet<TransactionOutput> selected = new HashSet<>();
-        // Sort the inputs by age*value so we get the highest "coindays" spent.
-        ArrayList<TransactionOutput> sortedOutputs = new ArrayList<>(candidates);
+        // Only pick chain-included transactions, or transactions that are ours and pending.
+        // Only select outputs from our defined address(es)
+        List<TransactionOutput> usableOutputs = candidates.stream()
+                .filter(output -> shouldSelect(output.getParentTransaction()) && matchesRequirement(output))
+                .collect(Collectors.toList());
+
+        List<TransactionOutput> selected;
         // When calculating the wallet balance, we may be asked to select all possible coins, if so, avoid sorting
         // them in order to improve performance.
-        if (!target.equals(NetworkParameters.MAX_MONEY)) {
-            sortOutputs(sortedOutputs);
-        }
-        // Now iterate over the sorted outputs until we have got as close to the target as possible or a little
-        // bit over (excessive value will be change).
-        long total = 0;
-        for (TransactionOutput output : sortedOutputs) {
-            if (total >= targetAsLong) {
-                break;
-            }
-            // Only pick chain-included transactions, or transactions that are ours and pending.
-            // Only select outputs from our defined address(es)
-            if (!shouldSelect(output.getParentTransaction()) || !matchesRequirement(output)) {
-                continue;
-            }
-
-            selected.add(output);
-            total += output.getValue().longValue();
-
-            log.debug("adding up outputs: output/total: " + output.getValue().longValue() + "/" + total);
+        if (target.equals(NetworkParameters.MAX_MONEY)) {
+            selected = usableOutputs;
+        } else {
+            List<CoinSelectionEngine.Candidate<TransactionOutput>> selectionCandidates = usableOutputs.stream()
+                    .map(BitsquareCoinSelector::toCandidate)
+                    .collect(Collectors.toList());
+            // An excess below the dust limit cannot become a change output, so it goes to the miners
+            selected = CoinSelectionEngine.select(selectionCandidates, targetAsLong, Transaction.MIN_NONDUST_OUTPUT.value);
         }
+
+        long total = selected.stream().mapToLong(output -> output.getValue().value).sum();
+        log.debug("selected outputs/total: " + selected.size() + "/" + total);
         // Total may be lower than target here, if the given candidates were insufficient to create to requested
         // transaction.
-        return new CoinSelection(Coin.valueOf(total), selected);
+        return new CoinSelection(Coin.valueOf(total), new HashSet<>(selected));
     }
 
-    @VisibleForTesting
-    private static void sortOutputs(ArrayList<TransactionOutput> outputs) {
-        Collections.sort(outputs, (a, b) -> {
-            int depth1 = a.getParentTransactionDepthInBlocks();
-            int depth2 = b.getParentTransactionDepthInBlocks();
-            Coin aValue = a.getValue();
-            Coin bValue = b.getValue();
-            BigInteger aCoinDepth = BigInteger.valueOf(aValue.value).multiply(BigInteger.valueOf(depth1));
-            BigInteger bCoinDepth = BigInteger.valueOf(bValue.value).multiply(BigInteger.valueOf(depth2));
-            int c1 = bCoinDepth.compareTo(aCoinDepth);
-            if (c1 != 0) return c1;
-            // The "coin*days" destroyed are equal, sort by value alone to get the lowest transaction size.
-            int c2 = bValue.compareTo(aValue);
-            if (c2 != 0) return c2;
-            // They are entirely equivalent (possibly pending) so sort by hash to ensure a total ordering.
-            checkNotNull(a.getParentTransactionHash(), "a.getParentTransactionHash() must not be null");
-            checkNotNull(b.getParentTransactionHash(), "b.getParentTransactionHash() must not be null");
-            BigInteger aHash = a.getParentTransactionHash().toBigInteger();
-            BigInteger bHash = b.getParentTransactionHash().toBigInteger();
-            return aHash.compareTo(bHash);
-        });
+    private static CoinSelectionEngine.Candidate<TransactionOutput> toCandidate(TransactionOutput output) {
+        checkNotNull(output.getParentTransactionHash(), "output.getParentTransactionHash() must not be null");
+        return new CoinSelectionEngine.Candidate<>(output, output.getValue().value,
+                output.getParentTransactionDepthInBlocks(), output.getParentTransactionHash().toBigInteger());
     }
-
 }
@@ -0,0 +1,189 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.btc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects the inputs for a target value out of the candidates.
+ * <p>
+ * First we search with branch and bound for an input set which covers the target without change, i.e. with an
+ * excess of at most maxExcess which goes to the miners. We prefer the set with the fewest inputs, so the transaction
+ * gets small. The search is bounded by MAX_TRIES. If no such set is found we fall back to pick by coin-days (value
+ * times depth) as before.
+ * <p>
+ * The sort keys are computed once per candidate and not in each comparison.
+ */
+final class CoinSelectionEngine {
+    private static final Logger log = LoggerFactory.getLogger(CoinSelectionEngine.class);
+
+    static final int MAX_TRIES = 100_000;
+
+    private CoinSelectionEngine() {
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static <T> List<T> select(List<Candidate<T>> candidates, long target, long maxExcess) {
+        List<T> selection = selectWithoutChange(candidates, target, maxExcess);
+        if (selection != null) {
+            log.debug("Selected {} inputs without change out of {} candidates", selection.size(), candidates.size());
+            return selection;
+        } else {
+            return selectByCoinDepth(candidates, target);
+        }
+    }
+
+    /**
+     * @return The input set with the fewest inputs and then the lowest excess, or null if there is none or the
+     * search was not successful within MAX_TRIES
+     */
+    @Nullable
+    static <T> List<T> selectWithoutChange(List<Candidate<T>> candidates, long target, long maxExcess) {
+        List<Candidate<T>> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingLong((Candidate<T> candidate) -> candidate.value).reversed());
+        int size = sorted.size();
+        long[] values = new long[size];
+        long available = 0;
+        for (int i = 0; i < size; i++) {
+            values[i] = sorted.get(i).value;
+            available += values[i];
+        }
+        if (available < target)
+            return null;
+
+        // The current branch: included[0..depth) tells which of the first depth candidates are included.
+        // available is the sum of the candidates from depth on.
+        boolean[] included = new boolean[size];
+        int depth = 0;
+        int count = 0;
+        long sum = 0;
+        boolean[] best = null;
+        int bestCount = Integer.MAX_VALUE;
+        long bestExcess = Long.MAX_VALUE;
+        for (int tries = 0; tries < MAX_TRIES; tries++) {
+            boolean backtrack;
+            if (sum + available < target || sum > target + maxExcess) {
+                backtrack = true;
+            } else if (sum >= target) {
+                if (count < bestCount || (count == bestCount && sum - target < bestExcess)) {
+                    best = included.clone();
+                    for (int i = depth; i < size; i++)
+                        best[i] = false;
+                    bestCount = count;
+                    bestExcess = sum - target;
+                    // We cannot do better than one input without excess
+                    if (bestCount == 1 && bestExcess == 0)
+                        break;
+                }
+                backtrack = true;
+            } else {
+                // We need at least one more input, which cannot beat the best set if it has already as many
+                backtrack = count >= bestCount || depth == size;
+            }
+
+            if (backtrack) {
+                // Walk back to the last included candidate and continue with the branch which omits it
+                while (depth > 0 && !included[depth - 1]) {
+                    depth--;
+                    available += values[depth];
+                }
+                if (depth == 0)
+                    break;
+
+                included[depth - 1] = false;
+                sum -= values[depth - 1];
+                count--;
+            } else {
+                included[depth] = true;
+                available -= values[depth];
+                sum += values[depth];
+                count++;
+                depth++;
+            }
+        }
+
+        if (best == null)
+            return null;
+
+        List<T> selection = new ArrayList<>(bestCount);
+        for (int i = 0; i < size; i++) {
+            if (best[i])
+                selection.add(sorted.get(i).output);
+        }
+        return selection;
+    }
+
+    /**
+     * Picks the candidates with the highest coin-days until the target is reached. At equal coin-days the higher
+     * value is picked first to get the lowest transaction size.
+     */
+    static <T> List<T> selectByCoinDepth(List<Candidate<T>> candidates, long target) {
+        List<Candidate<T>> sorted = new ArrayList<>(candidates);
+        sorted.sort(null);
+        List<T> selection = new ArrayList<>();
+        long total = 0;
+        for (Candidate<T> candidate : sorted) {
+            if (total >= target)
+                break;
+
+            selection.add(candidate.output);
+            total += candidate.value;
+        }
+        return selection;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Candidate
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static final class Candidate<T> implements Comparable<Candidate<T>> {
+        final T output;
+        final long value;
+        private final BigInteger coinDepth;
+        // Only used to get a total ordering of otherwise equal candidates
+        private final BigInteger hash;
+
+        Candidate(T output, long value, int depth, BigInteger hash) {
+            this.output = output;
+            this.value = value;
+            this.coinDepth = BigInteger.valueOf(value).multiply(BigInteger.valueOf(depth));
+            this.hash = hash;
+        }
+
+        @Override
+        public int compareTo(Candidate<T> other) {
+            int c1 = other.coinDepth.compareTo(coinDepth);
+            if (c1 != 0) return c1;
+            int c2 = Long.compare(other.value, value);
+            if (c2 != 0) return c2;
+            return hash.compareTo(other.hash);
+        }
+    }
+}
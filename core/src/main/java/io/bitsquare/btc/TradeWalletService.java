@@ -413,7 +413,7 @@ public class TradeWalletService {
     }
 
     /**
-     * The taker signs the deposit transaction he received from the offerer and publishes it.
+     * The taker signs the deposit transaction he received from the offerer. The caller publishes it with broadcastTx.
      *
      * @param takerIsSeller               The flag indicating if we are in the taker as seller role or the opposite.
      * @param contractHash                The hash of the contract to be added to the OP_RETURN output.
@@ -423,20 +423,19 @@ public class TradeWalletService {
      * @param buyerPubKey                 The public key of the buyer.
      * @param sellerPubKey                The public key of the seller.
      * @param arbitratorPubKey            The public key of the arbitrator.
-     * @param callback                    Callback when transaction is broadcasted.
+     * @return The signed deposit transaction.
      * @throws SigningException
      * @throws TransactionVerificationException
      * @throws WalletException
      */
-    public void takerSignsAndPublishesDepositTx(boolean takerIsSeller,
-                                                byte[] contractHash,
-                                                byte[] offerersDepositTxSerialized,
-                                                List<RawTransactionInput> buyerInputs,
-                                                List<RawTransactionInput> sellerInputs,
-                                                byte[] buyerPubKey,
-                                                byte[] sellerPubKey,
-                                                byte[] arbitratorPubKey,
-                                                FutureCallback<Transaction> callback) throws SigningException, TransactionVerificationException,
+    public Transaction takerSignsDepositTx(boolean takerIsSeller,
+                                           byte[] contractHash,
+                                           byte[] offerersDepositTxSerialized,
+                                           List<RawTransactionInput> buyerInputs,
+                                           List<RawTransactionInput> sellerInputs,
+                                           byte[] buyerPubKey,
+                                           byte[] sellerPubKey,
+                                           byte[] arbitratorPubKey) throws SigningException, TransactionVerificationException,
             WalletException {
         Transaction offerersDepositTx = new Transaction(params, offerersDepositTxSerialized);
 
@@ -509,10 +508,7 @@ public class TradeWalletService {
 
         printTxWithInputs("depositTx", depositTx);
 
-        // Broadcast depositTx
-        checkNotNull(walletAppKit);
-        ListenableFuture<Transaction> broadcastComplete = walletAppKit.peerGroup().broadcastTransaction(depositTx).future();
-        Futures.addCallback(broadcastComplete, callback);
+        return depositTx;
     }
 
 
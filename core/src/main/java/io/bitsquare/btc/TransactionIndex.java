@@ -0,0 +1,101 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.btc;
+
+import org.bitcoinj.core.*;
+import org.bitcoinj.script.Script;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Index of the wallet transactions by their id and by the addresses of their outputs and of the outputs their
+ * inputs spend.
+ * <p>
+ * Transactions never leave the wallet (dead ones stay as well), so the index only grows. An input might get
+ * connected only after its transaction was indexed, so a transaction gets indexed again with each event.
+ * <p>
+ * Not thread safe, it is used from the UserThread which is also the thread of the wallet events.
+ */
+class TransactionIndex {
+    private final NetworkParameters params;
+    private final Map<Sha256Hash, Transaction> transactionById = new HashMap<>();
+    private final Map<Address, Set<Transaction>> transactionsByAddress = new HashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    TransactionIndex(NetworkParameters params) {
+        this.params = params;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    void rebuild(Wallet wallet) {
+        transactionById.clear();
+        transactionsByAddress.clear();
+        wallet.getTransactions(true).stream().forEach(this::add);
+    }
+
+    /**
+     * @return The addresses the transaction pays to or spends from
+     */
+    Set<Address> add(Transaction tx) {
+        transactionById.put(tx.getHash(), tx);
+        Set<Address> addresses = getAddresses(tx);
+        addresses.stream().forEach(address ->
+                transactionsByAddress.computeIfAbsent(address, k -> new HashSet<>()).add(tx));
+        return addresses;
+    }
+
+    @Nullable
+    Transaction getTransaction(Sha256Hash txId) {
+        return transactionById.get(txId);
+    }
+
+    Set<Transaction> getTransactions(Address address) {
+        Set<Transaction> transactions = transactionsByAddress.get(address);
+        return transactions != null ? transactions : Collections.emptySet();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private Set<Address> getAddresses(Transaction tx) {
+        Set<Address> addresses = new HashSet<>();
+        tx.getOutputs().stream().forEach(output -> addAddress(output, addresses));
+        tx.getInputs().stream()
+                .map(TransactionInput::getConnectedOutput)
+                .filter(output -> output != null)
+                .forEach(output -> addAddress(output, addresses));
+        return addresses;
+    }
+
+    private void addAddress(TransactionOutput output, Set<Address> addresses) {
+        Script scriptPubKey = output.getScriptPubKey();
+        if (scriptPubKey.isSentToAddress() || scriptPubKey.isPayToScriptHash())
+            addresses.add(scriptPubKey.getToAddress(params));
+    }
+}
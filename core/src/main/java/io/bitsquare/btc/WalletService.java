@@ -72,9 +72,12 @@ public class WalletService {
     public static final String DIR_KEY = "wallet.dir";
     public static final String PREFIX_KEY = "wallet.prefix";
     private static final long STARTUP_TIMEOUT_SEC = 60;
+    // Confidence changes come in bursts (e.g. all transactions get a new depth with a new block), we dispatch them
+    // once after that delay
+    private static final long CONFIDENCE_DISPATCH_DELAY_MS = 100;
 
-    private final CopyOnWriteArraySet<AddressConfidenceListener> addressConfidenceListeners = new CopyOnWriteArraySet<>();
-    private final CopyOnWriteArraySet<TxConfidenceListener> txConfidenceListeners = new CopyOnWriteArraySet<>();
+    private final Map<Address, Set<AddressConfidenceListener>> addressConfidenceListeners = new HashMap<>();
+    private final Map<Sha256Hash, Set<TxConfidenceListener>> txConfidenceListeners = new HashMap<>();
     private final CopyOnWriteArraySet<BalanceListener> balanceListeners = new CopyOnWriteArraySet<>();
 
     private final DownloadListener downloadListener = new DownloadListener();
@@ -86,6 +89,10 @@ public class WalletService {
     private final NetworkParameters params;
     private final File walletDir;
     private final UserAgent userAgent;
+    private final BalanceIndex balanceIndex;
+    private final TransactionIndex transactionIndex;
+    private final Map<Sha256Hash, Transaction> pendingConfidenceChanges = new LinkedHashMap<>();
+    private Timer confidenceDispatchTimer;
     private final boolean useTor;
 
     private WalletAppKit walletAppKit;
@@ -112,6 +119,8 @@ public class WalletService {
         this.walletDir = new File(appDir, "bitcoin");
         this.userAgent = userAgent;
         useTor = preferences.getUseTorForBitcoinJ();
+        balanceIndex = new BalanceIndex(params);
+        transactionIndex = new TransactionIndex(params);
 
         storage = new Storage<>(walletDir);
         Long persisted = storage.initAndGetPersisted("BloomFilterNonce");
@@ -154,6 +163,8 @@ public class WalletService {
                     walletAppKit.peerGroup().setMaxConnections(11);
 
                 wallet = walletAppKit.wallet();
+                balanceIndex.rebuild(wallet);
+                transactionIndex.rebuild(wallet);
                 wallet.addEventListener(walletEventListener);
 
                 addressEntryList.onWalletReady(wallet);
@@ -299,6 +310,11 @@ public class WalletService {
         if (wallet != null)
             wallet.removeEventListener(walletEventListener);
 
+        if (confidenceDispatchTimer != null) {
+            confidenceDispatchTimer.stop();
+            confidenceDispatchTimer = null;
+        }
+
         if (walletAppKit != null) {
             try {
                 walletAppKit.stopAsync();
@@ -348,19 +364,23 @@ public class WalletService {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public void addAddressConfidenceListener(AddressConfidenceListener listener) {
-        addressConfidenceListeners.add(listener);
+        addressConfidenceListeners.computeIfAbsent(listener.getAddress(), k -> new CopyOnWriteArraySet<>()).add(listener);
     }
 
     public void removeAddressConfidenceListener(AddressConfidenceListener listener) {
-        addressConfidenceListeners.remove(listener);
+        removeListener(addressConfidenceListeners, listener.getAddress(), listener);
     }
 
     public void addTxConfidenceListener(TxConfidenceListener listener) {
-        txConfidenceListeners.add(listener);
+        Sha256Hash txId = toSha256Hash(listener.getTxID());
+        if (txId != null)
+            txConfidenceListeners.computeIfAbsent(txId, k -> new CopyOnWriteArraySet<>()).add(listener);
     }
 
     public void removeTxConfidenceListener(TxConfidenceListener listener) {
-        txConfidenceListeners.remove(listener);
+        Sha256Hash txId = toSha256Hash(listener.getTxID());
+        if (txId != null)
+            removeListener(txConfidenceListeners, txId, listener);
     }
 
     public void addBalanceListener(BalanceListener listener) {
@@ -377,10 +397,7 @@ public class WalletService {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public AddressEntry getOrCreateAddressEntry(String offerId, AddressEntry.Context context) {
-        Optional<AddressEntry> addressEntry = getAddressEntryListAsImmutableList().stream()
-                .filter(e -> offerId.equals(e.getOfferId()))
-                .filter(e -> context == e.getContext())
-                .findAny();
+        Optional<AddressEntry> addressEntry = addressEntryList.find(offerId, context);
         if (addressEntry.isPresent())
             return addressEntry.get();
         else
@@ -388,9 +405,7 @@ public class WalletService {
     }
 
     public AddressEntry getOrCreateAddressEntry(AddressEntry.Context context) {
-        Optional<AddressEntry> addressEntry = getAddressEntryListAsImmutableList().stream()
-                .filter(e -> context == e.getContext())
-                .findAny();
+        Optional<AddressEntry> addressEntry = addressEntryList.findAny(context);
         if (addressEntry.isPresent())
             return addressEntry.get();
         else
@@ -402,22 +417,15 @@ public class WalletService {
     }
 
     public Optional<AddressEntry> findAddressEntry(String address, AddressEntry.Context context) {
-        return getAddressEntryListAsImmutableList().stream()
-                .filter(e -> address.equals(e.getAddressString()))
-                .filter(e -> context == e.getContext())
-                .findAny();
+        return addressEntryList.findByAddress(address, context);
     }
 
     public List<AddressEntry> getAvailableAddressEntries() {
-        return getAddressEntryListAsImmutableList().stream()
-                .filter(addressEntry -> AddressEntry.Context.AVAILABLE == addressEntry.getContext())
-                .collect(Collectors.toList());
+        return addressEntryList.getByContext(AddressEntry.Context.AVAILABLE);
     }
 
     public List<AddressEntry> getAddressEntries(AddressEntry.Context context) {
-        return getAddressEntryListAsImmutableList().stream()
-                .filter(addressEntry -> context == addressEntry.getContext())
-                .collect(Collectors.toList());
+        return addressEntryList.getByContext(context);
     }
 
     public List<AddressEntry> getFundedAvailableAddressEntries() {
@@ -431,11 +439,7 @@ public class WalletService {
     }
 
     public void swapTradeEntryToAvailableEntry(String offerId, AddressEntry.Context context) {
-        Optional<AddressEntry> addressEntryOptional = getAddressEntryListAsImmutableList().stream()
-                .filter(e -> offerId.equals(e.getOfferId()))
-                .filter(e -> context == e.getContext())
-                .findAny();
-        addressEntryOptional.ifPresent(addressEntryList::swapToAvailable);
+        addressEntryList.find(offerId, context).ifPresent(addressEntryList::swapToAvailable);
     }
 
     public void saveAddressEntryList() {
@@ -448,60 +452,68 @@ public class WalletService {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public TransactionConfidence getConfidenceForAddress(Address address) {
-        List<TransactionConfidence> transactionConfidenceList = new ArrayList<>();
-        if (wallet != null) {
-            Set<Transaction> transactions = wallet.getTransactions(true);
-            if (transactions != null) {
-                transactionConfidenceList.addAll(transactions.stream().map(tx ->
-                        getTransactionConfidence(tx, address)).collect(Collectors.toList()));
-            }
-        }
-        return getMostRecentConfidence(transactionConfidenceList);
+        return getMostRecentConfidence(transactionIndex.getTransactions(address).stream()
+                .map(Transaction::getConfidence)
+                .collect(Collectors.toList()));
     }
 
     public TransactionConfidence getConfidenceForTxId(String txId) {
-        if (wallet != null) {
-            Set<Transaction> transactions = wallet.getTransactions(true);
-            for (Transaction tx : transactions) {
-                if (tx.getHashAsString().equals(txId))
-                    return tx.getConfidence();
-            }
+        Sha256Hash hash = toSha256Hash(txId);
+        Transaction tx = hash != null ? transactionIndex.getTransaction(hash) : null;
+        return tx != null ? tx.getConfidence() : null;
+    }
+
+    private void onTransactionConfidenceChanged(Transaction tx) {
+        pendingConfidenceChanges.put(tx.getHash(), tx);
+        if (confidenceDispatchTimer == null)
+            confidenceDispatchTimer = UserThread.runAfter(this::dispatchConfidenceChanges,
+                    CONFIDENCE_DISPATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // We notify only the listeners of the changed transactions and of their addresses, each one once per dispatch
+    private void dispatchConfidenceChanges() {
+        confidenceDispatchTimer = null;
+        List<Transaction> transactions = new ArrayList<>(pendingConfidenceChanges.values());
+        pendingConfidenceChanges.clear();
+
+        Map<Address, List<TransactionConfidence>> confidencesByAddress = new HashMap<>();
+        for (Transaction tx : transactions) {
+            transactionIndex.add(tx).stream()
+                    .filter(addressConfidenceListeners::containsKey)
+                    .forEach(address -> confidencesByAddress.computeIfAbsent(address, k -> new ArrayList<>())
+                            .add(tx.getConfidence()));
+
+            Set<TxConfidenceListener> listeners = txConfidenceListeners.get(tx.getHash());
+            if (listeners != null)
+                listeners.stream().forEach(listener -> listener.onTransactionConfidenceChanged(tx.getConfidence()));
         }
-        return null;
-    }
-
-    private TransactionConfidence getTransactionConfidence(Transaction tx, Address address) {
-        List<TransactionOutput> mergedOutputs = getOutputsWithConnectedOutputs(tx);
-        List<TransactionConfidence> transactionConfidenceList = new ArrayList<>();
 
-        mergedOutputs.stream().filter(e -> e.getScriptPubKey().isSentToAddress() ||
-                e.getScriptPubKey().isPayToScriptHash()).forEach(transactionOutput -> {
-            Address outputAddress = transactionOutput.getScriptPubKey().getToAddress(params);
-            if (address.equals(outputAddress)) {
-                transactionConfidenceList.add(tx.getConfidence());
+        confidencesByAddress.entrySet().stream().forEach(entry -> {
+            Set<AddressConfidenceListener> listeners = addressConfidenceListeners.get(entry.getKey());
+            if (listeners != null) {
+                TransactionConfidence transactionConfidence = getMostRecentConfidence(entry.getValue());
+                listeners.stream().forEach(listener -> listener.onTransactionConfidenceChanged(transactionConfidence));
             }
         });
-        return getMostRecentConfidence(transactionConfidenceList);
     }
 
-
-    private List<TransactionOutput> getOutputsWithConnectedOutputs(Transaction tx) {
-        List<TransactionOutput> transactionOutputs = tx.getOutputs();
-        List<TransactionOutput> connectedOutputs = new ArrayList<>();
-
-        // add all connected outputs from any inputs as well
-        List<TransactionInput> transactionInputs = tx.getInputs();
-        for (TransactionInput transactionInput : transactionInputs) {
-            TransactionOutput transactionOutput = transactionInput.getConnectedOutput();
-            if (transactionOutput != null) {
-                connectedOutputs.add(transactionOutput);
-            }
+    private static <K, L> void removeListener(Map<K, Set<L>> listenersByKey, K key, L listener) {
+        Set<L> listeners = listenersByKey.get(key);
+        if (listeners != null) {
+            listeners.remove(listener);
+            if (listeners.isEmpty())
+                listenersByKey.remove(key);
         }
+    }
 
-        List<TransactionOutput> mergedOutputs = new ArrayList<>();
-        mergedOutputs.addAll(transactionOutputs);
-        mergedOutputs.addAll(connectedOutputs);
-        return mergedOutputs;
+    @Nullable
+    private static Sha256Hash toSha256Hash(String txId) {
+        try {
+            return txId != null ? Sha256Hash.wrap(txId) : null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid txId: " + txId);
+            return null;
+        }
     }
 
 
@@ -532,20 +544,10 @@ public class WalletService {
         return wallet != null ? wallet.getBalance(Wallet.BalanceType.AVAILABLE) : Coin.ZERO;
     }
 
+    // The balances and output counts per address are answered from the BalanceIndex, which gets updated with the
+    // wallet events
     public Coin getBalanceForAddress(Address address) {
-        return wallet != null ? getBalance(wallet.calculateAllSpendCandidates(), address) : Coin.ZERO;
-    }
-
-    private Coin getBalance(List<TransactionOutput> transactionOutputs, Address address) {
-        Coin balance = Coin.ZERO;
-        for (TransactionOutput transactionOutput : transactionOutputs) {
-            if (transactionOutput.getScriptPubKey().isSentToAddress() || transactionOutput.getScriptPubKey().isPayToScriptHash()) {
-                Address addressOutput = transactionOutput.getScriptPubKey().getToAddress(params);
-                if (addressOutput.equals(address))
-                    balance = balance.add(transactionOutput.getValue());
-            }
-        }
-        return balance;
+        return balanceIndex.getBalance(address);
     }
 
     public Coin getSavingWalletBalance() {
@@ -555,17 +557,7 @@ public class WalletService {
     }
 
     public int getNumTxOutputsForAddress(Address address) {
-        List<TransactionOutput> transactionOutputs = new ArrayList<>();
-        wallet.getTransactions(true).stream().forEach(t -> transactionOutputs.addAll(t.getOutputs()));
-        int outputs = 0;
-        for (TransactionOutput transactionOutput : transactionOutputs) {
-            if (transactionOutput.getScriptPubKey().isSentToAddress() || transactionOutput.getScriptPubKey().isPayToScriptHash()) {
-                Address addressOutput = transactionOutput.getScriptPubKey().getToAddress(params);
-                if (addressOutput.equals(address))
-                    outputs++;
-            }
-        }
-        return outputs;
+        return balanceIndex.getNumTxOutputs(address);
     }
 
 
@@ -858,28 +850,28 @@ public class WalletService {
     private class BitsquareWalletEventListener extends AbstractWalletEventListener {
         @Override
         public void onCoinsReceived(Wallet wallet, Transaction tx, Coin prevBalance, Coin newBalance) {
+            balanceIndex.onTransaction(wallet, tx);
+            transactionIndex.add(tx);
             notifyBalanceListeners(tx);
         }
 
         @Override
         public void onCoinsSent(Wallet wallet, Transaction tx, Coin prevBalance, Coin newBalance) {
+            balanceIndex.onTransaction(wallet, tx);
+            transactionIndex.add(tx);
             notifyBalanceListeners(tx);
         }
 
         @Override
-        public void onTransactionConfidenceChanged(Wallet wallet, Transaction tx) {
-            for (AddressConfidenceListener addressConfidenceListener : addressConfidenceListeners) {
-                List<TransactionConfidence> transactionConfidenceList = new ArrayList<>();
-                transactionConfidenceList.add(getTransactionConfidence(tx, addressConfidenceListener.getAddress()));
-
-                TransactionConfidence transactionConfidence = getMostRecentConfidence(transactionConfidenceList);
-                addressConfidenceListener.onTransactionConfidenceChanged(transactionConfidence);
-            }
+        public void onReorganize(Wallet wallet) {
+            balanceIndex.rebuild(wallet);
+        }
 
-            txConfidenceListeners.stream()
-                    .filter(txConfidenceListener -> tx.getHashAsString().equals(txConfidenceListener.getTxID()))
-                    .forEach(txConfidenceListener ->
-                            txConfidenceListener.onTransactionConfidenceChanged(tx.getConfidence()));
+        @Override
+        public void onTransactionConfidenceChanged(Wallet wallet, Transaction tx) {
+            // Covers also transactions which don't change our balance but spend or create our outputs
+            balanceIndex.onTransaction(wallet, tx);
+            WalletService.this.onTransactionConfidenceChanged(tx);
         }
 
         private void notifyBalanceListeners(Transaction tx) {
@@ -1,5 +1,6 @@
 package io.bitsquare.btc.blockchain;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.SettableFuture;
@@ -14,16 +15,36 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.*;
+import java.util.stream.Collectors;
 
+/**
+ * Requests the fee of a transaction from the fee providers.
+ * <p>
+ * The fee of a transaction does not change, so we cache it for CACHE_TTL_MS. Concurrent requests for the same
+ * transaction share one request. The providers are asked with hedged requests, see GetFeeRequest, ordered by their
+ * average latency. Providers without a successful request come after the measured ones and providers with an open
+ * circuit breaker are asked last.
+ */
 public class BlockchainService {
     private static final Logger log = LoggerFactory.getLogger(BlockchainService.class);
 
-    private final ArrayList<FeeProvider> feeProviders = new ArrayList<>(Arrays.asList(new BlockrIOProvider(), new BlockTrailProvider(), new TradeBlockProvider()));
+    private static final long CACHE_TTL_MS = 10 * 60 * 1000;
+    private static final long HEDGE_DELAY_MS = 2000;
+
+    private final List<FeeProviderStats> feeProviderStats;
+    private final long hedgeDelayMs;
+    private final Map<String, CachedFee> cachedFees = new HashMap<>();
+    private final Map<String, SettableFuture<Coin>> pendingRequests = new HashMap<>();
 
     @Inject
     public BlockchainService() {
+        this(Arrays.asList(new BlockrIOProvider(), new BlockTrailProvider(), new TradeBlockProvider()), HEDGE_DELAY_MS);
+    }
+
+    BlockchainService(List<FeeProvider> feeProviders, long hedgeDelayMs) {
+        this.feeProviderStats = feeProviders.stream().map(FeeProviderStats::new).collect(Collectors.toList());
+        this.hedgeDelayMs = hedgeDelayMs;
     }
 
     public SettableFuture<Coin> requestFee(String transactionId) {
@@ -31,25 +52,87 @@ public class BlockchainService {
         long startTime = System.currentTimeMillis();
         final SettableFuture<Coin> resultFuture = SettableFuture.create();
 
-        for (FeeProvider provider : feeProviders) {
-            GetFeeRequest getFeeRequest = new GetFeeRequest();
-            SettableFuture<Coin> future = getFeeRequest.request(transactionId, provider);
-            Futures.addCallback(future, new FutureCallback<Coin>() {
+        Coin cachedFee = getCachedFee(transactionId, startTime);
+        if (cachedFee != null) {
+            resultFuture.set(cachedFee);
+            return resultFuture;
+        }
+
+        Futures.addCallback(getPendingRequest(transactionId), new FutureCallback<Coin>() {
+            public void onSuccess(Coin fee) {
+                log.info("Request fee from providers done after {} ms.", (System.currentTimeMillis() - startTime));
+                resultFuture.set(fee);
+            }
+
+            public void onFailure(@NotNull Throwable throwable) {
+                resultFuture.setException(throwable);
+            }
+        });
+        return resultFuture;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized Coin getCachedFee(String transactionId, long now) {
+        cachedFees.values().removeIf(cachedFee -> now - cachedFee.time > CACHE_TTL_MS);
+        CachedFee cachedFee = cachedFees.get(transactionId);
+        return cachedFee != null ? cachedFee.fee : null;
+    }
+
+    private synchronized SettableFuture<Coin> getPendingRequest(String transactionId) {
+        SettableFuture<Coin> pendingRequest = pendingRequests.get(transactionId);
+        if (pendingRequest == null) {
+            pendingRequest = new GetFeeRequest(transactionId, getOrderedFeeProviderStats(), hedgeDelayMs).request();
+            pendingRequests.put(transactionId, pendingRequest);
+            Futures.addCallback(pendingRequest, new FutureCallback<Coin>() {
                 public void onSuccess(Coin fee) {
-                    if (!resultFuture.isDone()) {
-                        log.info("Request fee from providers done after {} ms.", (System.currentTimeMillis() - startTime));
-                        resultFuture.set(fee);
-                    }
+                    onRequestCompleted(transactionId, fee);
                 }
 
                 public void onFailure(@NotNull Throwable throwable) {
-                    if (!resultFuture.isDone()) {
-                        log.warn("Could not get the fee from any provider after repeated requests.");
-                        resultFuture.setException(throwable);
-                    }
+                    onRequestCompleted(transactionId, null);
                 }
             });
         }
-        return resultFuture;
+        return pendingRequest;
+    }
+
+    private synchronized void onRequestCompleted(String transactionId, Coin fee) {
+        pendingRequests.remove(transactionId);
+        if (fee != null)
+            cachedFees.put(transactionId, new CachedFee(fee, System.currentTimeMillis()));
+    }
+
+    @VisibleForTesting
+    List<FeeProviderStats> getOrderedFeeProviderStats() {
+        long now = System.currentTimeMillis();
+        // The statistics get updated concurrently, so we sort by a snapshot. Providers with an open circuit get
+        // an infinite latency.
+        Map<FeeProviderStats, Double> latencies = new HashMap<>();
+        feeProviderStats.stream().forEach(stats ->
+                latencies.put(stats, stats.isCircuitOpen(now) ? Double.POSITIVE_INFINITY : stats.getAverageLatencyMs()));
+        List<FeeProviderStats> ordered = new ArrayList<>(feeProviderStats);
+        // Stable sort, so we keep the configured order as long as we have no statistics
+        ordered.sort(Comparator.comparing(latencies::get));
+        log.debug("Fee providers in order: {}", ordered);
+        return ordered;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // CachedFee
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class CachedFee {
+        private final Coin fee;
+        private final long time;
+
+        private CachedFee(Coin fee, long time) {
+            this.fee = fee;
+            this.time = time;
+        }
     }
 }
@@ -0,0 +1,63 @@
+package io.bitsquare.btc.blockchain;
+
+import io.bitsquare.btc.blockchain.providers.FeeProvider;
+
+/**
+ * Latency and error statistics of a fee provider with a circuit breaker: After MAX_CONSECUTIVE_FAILURES failures
+ * in a row the provider is only used as last resort for CIRCUIT_OPEN_MS. After that time it gets tried again and one
+ * more failure opens the circuit again.
+ */
+class FeeProviderStats {
+    static final int MAX_CONSECUTIVE_FAILURES = 3;
+    static final long CIRCUIT_OPEN_MS = 60_000;
+    // Weight of a new sample in the average latency
+    private static final double SMOOTHING = 0.3;
+
+    final FeeProvider provider;
+    private double averageLatencyMs;
+    private long numSuccesses;
+    private long numFailures;
+    private int consecutiveFailures;
+    private long circuitOpenUntil;
+
+    FeeProviderStats(FeeProvider provider) {
+        this.provider = provider;
+    }
+
+    synchronized void onSuccess(long latencyMs) {
+        averageLatencyMs = numSuccesses == 0 ? latencyMs : SMOOTHING * latencyMs + (1 - SMOOTHING) * averageLatencyMs;
+        numSuccesses++;
+        consecutiveFailures = 0;
+        circuitOpenUntil = 0;
+    }
+
+    synchronized void onFailure(long now) {
+        numFailures++;
+        consecutiveFailures++;
+        if (consecutiveFailures >= MAX_CONSECUTIVE_FAILURES)
+            circuitOpenUntil = now + CIRCUIT_OPEN_MS;
+    }
+
+    synchronized boolean isCircuitOpen(long now) {
+        return now < circuitOpenUntil;
+    }
+
+    /**
+     * @return The average latency of the successful requests. Double.MAX_VALUE if we had no successful request yet,
+     * so the provider is ranked after the ones we know to work.
+     */
+    synchronized double getAverageLatencyMs() {
+        return numSuccesses > 0 ? averageLatencyMs : Double.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FeeProviderStats{" +
+                "provider=" + provider +
+                ", averageLatencyMs=" + Math.round(averageLatencyMs) +
+                ", numSuccesses=" + numSuccesses +
+                ", numFailures=" + numFailures +
+                ", consecutiveFailures=" + consecutiveFailures +
+                '}';
+    }
+}
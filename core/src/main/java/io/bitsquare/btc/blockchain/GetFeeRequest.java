@@ -1,7 +1,6 @@
 package io.bitsquare.btc.blockchain;
 
 import com.google.common.util.concurrent.*;
-import io.bitsquare.btc.blockchain.providers.FeeProvider;
 import io.bitsquare.common.Timer;
 import io.bitsquare.common.UserThread;
 import io.bitsquare.common.util.Utilities;
@@ -12,68 +11,113 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Requests the fee of a transaction from the providers in the given order with hedged requests: We start with the
+ * first provider and contact the next one only if we don't have a result after hedgeDelayMs or if the request failed.
+ * The first result wins.
+ * <p>
+ * If all providers failed we start again after a delay, as the tx might not have been propagated to the providers yet.
+ */
 class GetFeeRequest {
     private static final Logger log = LoggerFactory.getLogger(GetFeeRequest.class);
     private static final ListeningExecutorService executorService = Utilities.getListeningExecutorService("GetFeeRequest", 3, 5, 10 * 60);
+    private static final int MAX_ROUNDS = 4;
+
+    private final String transactionId;
+    private final List<FeeProviderStats> providers;
+    private final long hedgeDelayMs;
+    private final SettableFuture<Coin> resultFuture = SettableFuture.create();
     private Timer timer;
-    private int faults;
+    private int round;
+    private int numStarted;
+    private int numFailed;
 
-    public GetFeeRequest() {
+    public GetFeeRequest(String transactionId, List<FeeProviderStats> providers, long hedgeDelayMs) {
+        this.transactionId = transactionId;
+        this.providers = providers;
+        this.hedgeDelayMs = hedgeDelayMs;
     }
 
-    public SettableFuture<Coin> request(String transactionId, FeeProvider provider) {
-        final SettableFuture<Coin> resultFuture = SettableFuture.create();
-        return request(transactionId, provider, resultFuture);
+    public SettableFuture<Coin> request() {
+        if (providers.isEmpty())
+            resultFuture.setException(new IllegalStateException("No fee provider available"));
+        else
+            startNext();
+        return resultFuture;
     }
 
-    private SettableFuture<Coin> request(String transactionId, FeeProvider provider, SettableFuture<Coin> resultFuture) {
+    private synchronized void startNext() {
+        stopTimer();
+        if (resultFuture.isDone() || numStarted >= providers.size())
+            return;
+
+        FeeProviderStats stats = providers.get(numStarted++);
+        if (numStarted < providers.size())
+            timer = UserThread.runAfter(this::startNext, hedgeDelayMs, TimeUnit.MILLISECONDS);
+
+        int requestRound = round;
+        long startTime = System.currentTimeMillis();
         ListenableFuture<Coin> future = executorService.submit(() -> {
-            Thread.currentThread().setName("requestFee-" + provider.toString());
+            Thread.currentThread().setName("requestFee-" + stats.provider.toString());
             try {
-                return provider.getFee(transactionId);
+                return stats.provider.getFee(transactionId);
             } catch (IOException | HttpException e) {
                 log.info("Fee request failed for tx {} from provider {}\n" +
                                 "That is expected if the tx was not propagated yet to the provider.\n" +
                                 "error={}",
-                        transactionId, provider, e.getMessage());
+                        transactionId, stats.provider, e.getMessage());
                 throw e;
             }
         });
 
         Futures.addCallback(future, new FutureCallback<Coin>() {
             public void onSuccess(Coin fee) {
-                log.info("Received fee of {}\nfor tx {}\nfrom provider {}", fee.toFriendlyString(), transactionId, provider);
-                resultFuture.set(fee);
+                long now = System.currentTimeMillis();
+                stats.onSuccess(now - startTime);
+                log.info("Received fee of {}\nfor tx {}\nfrom provider {}", fee.toFriendlyString(), transactionId, stats);
+                onResult(fee);
             }
 
             public void onFailure(@NotNull Throwable throwable) {
-                if (timer == null) {
-                    timer = UserThread.runAfter(() -> {
-                        stopTimer();
-                        faults++;
-                        if (!resultFuture.isDone()) {
-                            if (faults < 4) {
-                                request(transactionId, provider, resultFuture);
-                            } else {
-                                resultFuture.setException(throwable);
-                            }
-                        } else {
-                            log.debug("Got an error after a successful result. " +
-                                    "That might happen when we get a delayed response from a timer request.");
-                        }
-                    }, 1 + faults);
-                } else {
-                    log.warn("Timer was not null");
-                }
+                stats.onFailure(System.currentTimeMillis());
+                onFault(throwable, requestRound);
             }
         });
+    }
 
-        return resultFuture;
+    private synchronized void onResult(Coin fee) {
+        stopTimer();
+        resultFuture.set(fee);
+    }
+
+    private synchronized void onFault(Throwable throwable, int requestRound) {
+        if (resultFuture.isDone() || requestRound != round)
+            return;
+
+        numFailed++;
+        if (numFailed < providers.size()) {
+            // We don't wait for the hedge delay if a request failed
+            if (numStarted < providers.size())
+                startNext();
+        } else if (round + 1 < MAX_ROUNDS) {
+            stopTimer();
+            round++;
+            numStarted = 0;
+            numFailed = 0;
+            timer = UserThread.runAfter(this::startNext, round);
+        } else {
+            log.warn("Could not get the fee from any provider after repeated requests.");
+            resultFuture.setException(throwable);
+        }
     }
 
     private void stopTimer() {
-        timer.stop();
-        timer = null;
+        if (timer != null) {
+            timer.stop();
+            timer = null;
+        }
     }
 }
@@ -30,6 +30,13 @@ public class MarketPrice {
 
     }
 
+    MarketPrice(String currencyCode, double ask, double bid, double last) {
+        this.currencyCode = currencyCode;
+        this.ask = ask;
+        this.bid = bid;
+        this.last = last;
+    }
+
     public double getPrice(PriceFeed.Type type) {
         switch (type) {
             case ASK:
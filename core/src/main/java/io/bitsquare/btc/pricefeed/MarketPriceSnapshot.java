@@ -0,0 +1,153 @@
+package io.bitsquare.btc.pricefeed;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.common.crypto.Hash;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.p2p.storage.payload.StoragePayload;
+import org.bitcoinj.core.ECKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.bitcoinj.core.Utils.HEX;
+
+/**
+ * The market prices of all currencies at one point in time, published by a price relay.
+ * The prices are stored in arrays to keep the payload compact. The snapshot is signed with the key of the relay, the
+ * receivers only accept snapshots of the relays they trust.
+ */
+public final class MarketPriceSnapshot implements StoragePayload {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.P2P_NETWORK_VERSION;
+    private static final Logger log = LoggerFactory.getLogger(MarketPriceSnapshot.class);
+    private static final long TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private final long date;
+    private final String[] currencyCodes;
+    private final double[] asks;
+    private final double[] bids;
+    private final double[] lasts;
+    private final byte[] relayPubKey;
+    private String signatureAsBase64;
+    private transient PublicKey storagePublicKey;
+    private byte[] storagePublicKeyBytes;
+
+    public MarketPriceSnapshot(Map<String, MarketPrice> marketPrices, long date, byte[] relayPubKey) {
+        this.date = date;
+        this.relayPubKey = relayPubKey;
+        List<MarketPrice> list = new ArrayList<>(marketPrices.values());
+        currencyCodes = new String[list.size()];
+        asks = new double[list.size()];
+        bids = new double[list.size()];
+        lasts = new double[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            MarketPrice marketPrice = list.get(i);
+            currencyCodes[i] = marketPrice.currencyCode;
+            asks[i] = marketPrice.getPrice(PriceFeed.Type.ASK);
+            bids[i] = marketPrice.getPrice(PriceFeed.Type.BID);
+            lasts[i] = marketPrice.getPrice(PriceFeed.Type.LAST);
+        }
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
+        try {
+            in.defaultReadObject();
+            storagePublicKey = KeyFactory.getInstance(Sig.KEY_ALGO, "BC").generatePublic(new X509EncodedKeySpec(storagePublicKeyBytes));
+        } catch (Throwable t) {
+            log.warn("Exception at readObject: " + t.getMessage());
+        }
+    }
+
+    // The owner key is part of the signed content, so nobody else can publish a snapshot of the relay as owner
+    void sign(ECKey relayKey, PublicKey storagePublicKey) {
+        this.storagePublicKey = storagePublicKey;
+        this.storagePublicKeyBytes = new X509EncodedKeySpec(this.storagePublicKey.getEncoded()).getEncoded();
+        this.signatureAsBase64 = relayKey.signMessage(getHashOfContentAsHex());
+    }
+
+    /**
+     * @return True if the snapshot is complete, signed by one of the trusted relays and the signature is valid
+     */
+    boolean verify(Set<String> trustedRelayPubKeysAsHex) {
+        if (currencyCodes == null || asks == null || bids == null || lasts == null || relayPubKey == null
+                || signatureAsBase64 == null || storagePublicKeyBytes == null || asks.length != currencyCodes.length
+                || bids.length != currencyCodes.length || lasts.length != currencyCodes.length)
+            return false;
+
+        if (!trustedRelayPubKeysAsHex.contains(HEX.encode(relayPubKey))) {
+            log.warn("MarketPriceSnapshot from an unknown relay");
+            return false;
+        }
+
+        try {
+            ECKey.fromPublicOnly(relayPubKey).verifyMessage(getHashOfContentAsHex(), signatureAsBase64);
+            return true;
+        } catch (SignatureException e) {
+            log.warn("verifySignature of MarketPriceSnapshot failed");
+            return false;
+        }
+    }
+
+    Map<String, MarketPrice> getMarketPrices() {
+        Map<String, MarketPrice> marketPrices = new HashMap<>();
+        for (int i = 0; i < currencyCodes.length; i++)
+            marketPrices.put(currencyCodes[i], new MarketPrice(currencyCodes[i], asks[i], bids[i], lasts[i]));
+        return marketPrices;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    private String getHashOfContentAsHex() {
+        StringBuilder sb = new StringBuilder().append(date).append(';').append(HEX.encode(storagePublicKeyBytes));
+        for (int i = 0; i < currencyCodes.length; i++) {
+            sb.append(';').append(currencyCodes[i])
+                    .append(',').append(asks[i])
+                    .append(',').append(bids[i])
+                    .append(',').append(lasts[i]);
+        }
+        return Hash.getHashAsHex(sb.toString());
+    }
+
+    @Override
+    public long getTTL() {
+        return TTL;
+    }
+
+    @Override
+    public PublicKey getOwnerPubKey() {
+        return storagePublicKey;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MarketPriceSnapshot)) return false;
+        MarketPriceSnapshot that = (MarketPriceSnapshot) o;
+        if (date != that.date) return false;
+        return !(signatureAsBase64 != null ? !signatureAsBase64.equals(that.signatureAsBase64) : that.signatureAsBase64 != null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (date ^ (date >>> 32));
+        result = 31 * result + (signatureAsBase64 != null ? signatureAsBase64.hashCode() : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketPriceSnapshot{" +
+                "date=" + new Date(date) +
+                ", numCurrencies=" + (currencyCodes != null ? currencyCodes.length : 0) +
+                '}';
+    }
+}
@@ -12,6 +12,9 @@ import io.bitsquare.common.Timer;
 import io.bitsquare.common.UserThread;
 import io.bitsquare.common.handlers.FaultHandler;
 import io.bitsquare.locale.CurrencyUtil;
+import io.bitsquare.p2p.P2PService;
+import io.bitsquare.p2p.storage.HashMapChangedListener;
+import io.bitsquare.p2p.storage.storageentry.ProtectedStorageEntry;
 import javafx.beans.property.*;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -27,6 +30,10 @@ public class PriceFeed {
     private static final Logger log = LoggerFactory.getLogger(PriceFeed.class);
 
     private static final long MIN_PERIOD_BETWEEN_CALLS = 5000;
+    // As long as we have a snapshot from a price relay not older than that we don't call the API providers
+    private static final long MAX_SNAPSHOT_AGE = 5 * 60 * 1000;
+    // Tolerance for the clock of the relay being ahead of ours
+    private static final long MAX_SNAPSHOT_CLOCK_DRIFT = 60 * 1000;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -64,6 +71,11 @@ public class PriceFeed {
     private long bitcoinAveragePriceProviderLastCallTs;
     private Timer cryptoCurrenciesTime;
     private Timer fiatCurrenciesTime;
+    private final P2PService p2PService;
+    private final PriceRelay priceRelay;
+    private long lastSnapshotDate;
+    // Gets incremented with each change of the cache, so the offers know when they have to compute their price again
+    private volatile long priceEpoch = 1;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -71,7 +83,21 @@ public class PriceFeed {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     @Inject
-    public PriceFeed() {
+    public PriceFeed(P2PService p2PService, PriceRelay priceRelay) {
+        this.p2PService = p2PService;
+        this.priceRelay = priceRelay;
+
+        p2PService.addHashSetChangedListener(new HashMapChangedListener() {
+            @Override
+            public void onAdded(ProtectedStorageEntry data) {
+                if (data.getStoragePayload() instanceof MarketPriceSnapshot)
+                    onSnapshot((MarketPriceSnapshot) data.getStoragePayload());
+            }
+
+            @Override
+            public void onRemoved(ProtectedStorageEntry data) {
+            }
+        });
     }
 
 
@@ -83,6 +109,11 @@ public class PriceFeed {
         this.priceConsumer = resultHandler;
         this.faultHandler = faultHandler;
 
+        p2PService.getDataMap().values().stream()
+                .filter(data -> data.getStoragePayload() instanceof MarketPriceSnapshot)
+                .forEach(data -> onSnapshot((MarketPriceSnapshot) data.getStoragePayload()));
+        priceRelay.start();
+
         requestAllPrices(fiatPriceProvider, () -> {
             applyPrice();
             if (fiatCurrenciesTime == null)
@@ -99,6 +130,10 @@ public class PriceFeed {
         UserThread.runPeriodically(() -> requestAllPrices(fiatPriceProvider, this::applyPrice), PERIOD_ALL_FIAT_SEC);
     }
 
+    public long getPriceEpoch() {
+        return priceEpoch;
+    }
+
     @Nullable
     public MarketPrice getMarketPrice(String currencyCode) {
         if (cache.containsKey(currencyCode))
@@ -163,6 +198,34 @@ public class PriceFeed {
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    private void putToCache(MarketPrice marketPrice) {
+        cache.put(marketPrice.currencyCode, marketPrice);
+        priceEpoch++;
+    }
+
+    private void putAllToCache(Map<String, MarketPrice> marketPrices) {
+        cache.putAll(marketPrices);
+        priceEpoch++;
+    }
+
+    private void onSnapshot(MarketPriceSnapshot snapshot) {
+        // A snapshot dated in the future would block all later ones, an old one would replace newer provider prices
+        long now = System.currentTimeMillis();
+        if (snapshot.getDate() > now + MAX_SNAPSHOT_CLOCK_DRIFT) {
+            log.warn("We got a market price snapshot dated in the future. We ignore it. date=" + snapshot.getDate());
+        } else if (now - snapshot.getDate() < MAX_SNAPSHOT_AGE && snapshot.getDate() > lastSnapshotDate
+                && snapshot.verify(PriceRelay.TRUSTED_RELAY_PUB_KEYS)) {
+            lastSnapshotDate = snapshot.getDate();
+            putAllToCache(snapshot.getMarketPrices());
+            applyPrice();
+        }
+    }
+
+    // The relay itself has to call the providers
+    private boolean hasRecentSnapshot() {
+        return !priceRelay.isActive() && System.currentTimeMillis() - lastSnapshotDate < MAX_SNAPSHOT_AGE;
+    }
+
     private void applyPrice() {
         if (priceConsumer != null && currencyCode != null && type != null) {
             if (cache.containsKey(currencyCode)) {
@@ -180,6 +243,11 @@ public class PriceFeed {
 
     private void requestPrice(PriceProvider provider) {
         Log.traceCall();
+        if (hasRecentSnapshot()) {
+            applyPrice();
+            return;
+        }
+
         long now = System.currentTimeMillis();
         boolean allowed = false;
         if (now - bitcoinAveragePriceProviderLastCallTs > MIN_PERIOD_BETWEEN_CALLS) {
@@ -193,7 +261,7 @@ public class PriceFeed {
             Futures.addCallback(future, new FutureCallback<MarketPrice>() {
                 public void onSuccess(MarketPrice marketPrice) {
                     UserThread.execute(() -> {
-                        cache.put(marketPrice.currencyCode, marketPrice);
+                        putToCache(marketPrice);
                         priceConsumer.accept(marketPrice.getPrice(type));
                     });
                 }
@@ -209,6 +277,13 @@ public class PriceFeed {
 
     private void requestAllPrices(PriceProvider provider, @Nullable Runnable resultHandler) {
         Log.traceCall();
+        if (hasRecentSnapshot()) {
+            log.debug("We have a recent market price snapshot. We don't call the API provider " + provider);
+            if (resultHandler != null)
+                resultHandler.run();
+            return;
+        }
+
         long now = System.currentTimeMillis();
         boolean allowed = false;
         if (provider instanceof BitcoinAveragePriceProvider) {
@@ -228,7 +303,7 @@ public class PriceFeed {
             Futures.addCallback(future, new FutureCallback<Map<String, MarketPrice>>() {
                 public void onSuccess(Map<String, MarketPrice> marketPriceMap) {
                     UserThread.execute(() -> {
-                        cache.putAll(marketPriceMap);
+                        putAllToCache(marketPriceMap);
                         if (resultHandler != null)
                             resultHandler.run();
                     });
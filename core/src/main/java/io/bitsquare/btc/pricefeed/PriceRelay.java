@@ -0,0 +1,164 @@
+package io.bitsquare.btc.pricefeed;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.Inject;
+import io.bitsquare.app.Log;
+import io.bitsquare.btc.pricefeed.providers.BitcoinAveragePriceProvider;
+import io.bitsquare.btc.pricefeed.providers.PoloniexPriceProvider;
+import io.bitsquare.btc.pricefeed.providers.PriceProvider;
+import io.bitsquare.common.Timer;
+import io.bitsquare.common.UserThread;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.p2p.P2PService;
+import org.bitcoinj.core.ECKey;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Named;
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.bitcoinj.core.Utils.HEX;
+
+/**
+ * Fetches the prices of all currencies from the price providers and publishes them as signed snapshot to the P2P
+ * network. So only the relay polls the providers and the other nodes get the prices with the data they receive from
+ * the network anyway.
+ * <p>
+ * The relay role is active only if the node got started with the private key of a trusted relay.
+ */
+public class PriceRelay {
+    private static final Logger log = LoggerFactory.getLogger(PriceRelay.class);
+
+    public static final String PRIV_KEY = "priceRelayPrivKey";
+
+    // Pub keys of the relays we accept snapshots from. Like the key for the global alert message the private keys are
+    // held by the developers, who run the relays with the --priceRelayPrivKey option. The relay key is used only for
+    // the snapshots, so a leaked relay key does not affect the alerts. A new relay needs a release with its pub key.
+    // For developers we add here a test key, so one can run a relay by adding that test pubKey to the list and
+    // starting the node with the test PrivKey.
+    // PrivKey for dev testing: 36083bca674792b0a42d05e8c774c9a7d92b8bedd857293b39de825dce59aaaa
+    // Matching pubKey for dev testing: 02f662783197a20ba58196e6aad65b14475b2ae4dbd79f4397858706d26ce2bf35
+    static final Set<String> TRUSTED_RELAY_PUB_KEYS = Collections.unmodifiableSet(Sets.newHashSet(
+            "03d4874f5db4d51871a57cb66f97b6b925d8fda87d409a9e5bc653306e01d176a3"));
+
+    private static final long PUBLISH_PERIOD_SEC = 120;
+
+    private final P2PService p2PService;
+    private final KeyRing keyRing;
+    @Nullable
+    private final ECKey relayKey;
+    private final PriceProvider fiatPriceProvider = new BitcoinAveragePriceProvider();
+    private final PriceProvider cryptoCurrenciesPriceProvider = new PoloniexPriceProvider();
+    private MarketPriceSnapshot publishedSnapshot;
+    private Timer publishTimer;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public PriceRelay(P2PService p2PService, KeyRing keyRing, @Named(PRIV_KEY) String privKeyAsHex) {
+        this.p2PService = p2PService;
+        this.keyRing = keyRing;
+        this.relayKey = getRelayKey(privKeyAsHex);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void start() {
+        if (relayKey != null && publishTimer == null) {
+            log.info("Start publishing market price snapshots");
+            publish();
+            publishTimer = UserThread.runPeriodically(this::publish, PUBLISH_PERIOD_SEC);
+        }
+    }
+
+    public void shutDown() {
+        if (publishTimer != null) {
+            publishTimer.stop();
+            publishTimer = null;
+        }
+    }
+
+    public boolean isActive() {
+        return relayKey != null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void publish() {
+        Log.traceCall();
+        if (!p2PService.isBootstrapped()) {
+            log.debug("We are not bootstrapped yet. We publish at the next period.");
+            return;
+        }
+
+        List<ListenableFuture<Map<String, MarketPrice>>> futures = Arrays.asList(
+                new GetPriceRequest().requestAllPrices(fiatPriceProvider),
+                new GetPriceRequest().requestAllPrices(cryptoCurrenciesPriceProvider));
+        // A failed provider results in null, so we still publish the prices of the other one
+        Futures.addCallback(Futures.successfulAsList(futures), new FutureCallback<List<Map<String, MarketPrice>>>() {
+            public void onSuccess(List<Map<String, MarketPrice>> results) {
+                Map<String, MarketPrice> marketPrices = new HashMap<>();
+                results.stream().filter(result -> result != null).forEach(marketPrices::putAll);
+                UserThread.execute(() -> publish(marketPrices));
+            }
+
+            public void onFailure(@NotNull Throwable throwable) {
+                log.warn("Could not load market prices for the snapshot. " + throwable.getMessage());
+            }
+        });
+    }
+
+    private void publish(Map<String, MarketPrice> marketPrices) {
+        if (relayKey == null || marketPrices.isEmpty())
+            return;
+
+        MarketPriceSnapshot snapshot = new MarketPriceSnapshot(marketPrices, System.currentTimeMillis(),
+                relayKey.getPubKey());
+        snapshot.sign(relayKey, keyRing.getSignatureKeyPair().getPublic());
+
+        if (publishedSnapshot != null)
+            p2PService.removeData(publishedSnapshot, true);
+
+        if (p2PService.addData(snapshot, true)) {
+            publishedSnapshot = snapshot;
+            log.debug("Published market price snapshot with {} prices", marketPrices.size());
+        } else {
+            publishedSnapshot = null;
+            log.warn("Publishing market price snapshot failed");
+        }
+    }
+
+    @Nullable
+    private static ECKey getRelayKey(String privKeyAsHex) {
+        if (privKeyAsHex == null || privKeyAsHex.isEmpty())
+            return null;
+
+        try {
+            ECKey key = ECKey.fromPrivate(new BigInteger(1, HEX.decode(privKeyAsHex)));
+            if (TRUSTED_RELAY_PUB_KEYS.contains(HEX.encode(key.getPubKey()))) {
+                return key;
+            } else {
+                log.warn("The price relay key is not a trusted relay key. We don't publish snapshots.");
+                return null;
+            }
+        } catch (Throwable t) {
+            log.warn("Invalid price relay key. " + t.getMessage());
+            return null;
+        }
+    }
+}
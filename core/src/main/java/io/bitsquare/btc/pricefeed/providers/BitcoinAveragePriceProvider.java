@@ -1,9 +1,9 @@
 package io.bitsquare.btc.pricefeed.providers;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import io.bitsquare.btc.pricefeed.MarketPrice;
 import io.bitsquare.http.HttpClient;
 import io.bitsquare.http.HttpException;
@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,21 +25,38 @@ public class BitcoinAveragePriceProvider implements PriceProvider {
 
     @Override
     public Map<String, MarketPrice> getAllPrices() throws IOException, HttpException {
+        // The response can be unchanged and then we get the cached map, so we return a copy
+        return new HashMap<>(httpClient.requestWithGET("all", BitcoinAveragePriceProvider::parseTickers));
+    }
+
+    // We read the response as stream:
+    // {"USD":{"ask":421.5,"bid":421.1,"last":421.3,...},"EUR":{...},...,"timestamp":"Sat, 30 Apr 2016 10:00:00 -0000"}
+    static Map<String, MarketPrice> parseTickers(Reader reader) throws IOException {
         Map<String, MarketPrice> marketPriceMap = new HashMap<>();
-        LinkedTreeMap<String, Object> treeMap = new Gson().fromJson(httpClient.requestWithGET("all"), LinkedTreeMap.class);
-        Map<String, String> temp = new HashMap<>();
-        treeMap.entrySet().stream().forEach(e -> {
-            Object value = e.getValue();
-
-            // We need to check the type as we get an unexpected "timestamp" object at the end: 
-            if (value instanceof LinkedTreeMap) {
-                LinkedTreeMap<String, Object> treeMap2 = (LinkedTreeMap) value;
-                temp.clear();
-                treeMap2.entrySet().stream().forEach(e2 -> temp.put(e2.getKey(), e2.getValue().toString()));
-                marketPriceMap.put(e.getKey(),
-                        new MarketPrice(e.getKey(), temp.get("ask"), temp.get("bid"), temp.get("last")));
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String currencyCode = jsonReader.nextName();
+            // We need to check the type as we get an unexpected "timestamp" object at the end:
+            if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                Map<String, String> ticker = new HashMap<>();
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    String name = jsonReader.nextName();
+                    JsonToken token = jsonReader.peek();
+                    if (token == JsonToken.STRING || token == JsonToken.NUMBER)
+                        ticker.put(name, jsonReader.nextString());
+                    else
+                        jsonReader.skipValue();
+                }
+                jsonReader.endObject();
+                marketPriceMap.put(currencyCode,
+                        new MarketPrice(currencyCode, ticker.get("ask"), ticker.get("bid"), ticker.get("last")));
+            } else {
+                jsonReader.skipValue();
             }
-        });
+        }
+        jsonReader.endObject();
         return marketPriceMap;
     }
 
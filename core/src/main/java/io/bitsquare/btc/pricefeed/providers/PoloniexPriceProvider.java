@@ -1,9 +1,9 @@
 package io.bitsquare.btc.pricefeed.providers;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import io.bitsquare.btc.pricefeed.MarketPrice;
 import io.bitsquare.http.HttpClient;
 import io.bitsquare.http.HttpException;
@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -29,37 +30,51 @@ public class PoloniexPriceProvider implements PriceProvider {
 
     @Override
     public Map<String, MarketPrice> getAllPrices() throws IOException, HttpException {
-        Map<String, MarketPrice> marketPriceMap = new HashMap<>();
-        String response = httpClient.requestWithGET("?command=returnTicker");
-        LinkedTreeMap<String, Object> treeMap = new Gson().fromJson(response, LinkedTreeMap.class);
-        Map<String, String> temp = new HashMap<>();
         Set<String> supported = CurrencyUtil.getAllSortedCryptoCurrencies().stream()
                 .map(TradeCurrency::getCode)
                 .collect(Collectors.toSet());
-        treeMap.entrySet().stream().forEach(e -> {
-            Object value = e.getValue();
-            String currencyPair = e.getKey();
-            String otherCurrency = null;
-            if (currencyPair.startsWith("BTC")) {
-                String[] tokens = currencyPair.split("_");
-                if (tokens.length > 1) {
-                    otherCurrency = tokens[1];
-                    if (supported.contains(otherCurrency)) {
-                        if (value instanceof LinkedTreeMap) {
-                            LinkedTreeMap<String, Object> treeMap2 = (LinkedTreeMap) value;
-                            temp.clear();
-                            treeMap2.entrySet().stream().forEach(e2 -> temp.put(e2.getKey(), e2.getValue().toString()));
-                            marketPriceMap.put(otherCurrency,
-                                    new MarketPrice(otherCurrency, temp.get("lowestAsk"), temp.get("highestBid"), temp.get("last"), true));
-                        }
-                    }
-                }
+        // The response can be unchanged and then we get the cached map, so we return a copy
+        return new HashMap<>(httpClient.requestWithGET("?command=returnTicker", reader -> parseTickers(reader, supported)));
+    }
 
+    // We read the response as stream and only parse the tickers of the currencies we support:
+    // {"BTC_ETH":{"last":"0.0214","lowestAsk":"0.0215","highestBid":"0.0214",...},"BTC_XMR":{...},...}
+    static Map<String, MarketPrice> parseTickers(Reader reader, Set<String> supported) throws IOException {
+        Map<String, MarketPrice> marketPriceMap = new HashMap<>();
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String currencyPair = jsonReader.nextName();
+            String[] tokens = currencyPair.split("_");
+            if (currencyPair.startsWith("BTC") && tokens.length > 1 && supported.contains(tokens[1])
+                    && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                String otherCurrency = tokens[1];
+                Map<String, String> ticker = readTicker(jsonReader);
+                marketPriceMap.put(otherCurrency,
+                        new MarketPrice(otherCurrency, ticker.get("lowestAsk"), ticker.get("highestBid"), ticker.get("last"), true));
+            } else {
+                jsonReader.skipValue();
             }
-        });
+        }
+        jsonReader.endObject();
         return marketPriceMap;
     }
 
+    private static Map<String, String> readTicker(JsonReader jsonReader) throws IOException {
+        Map<String, String> ticker = new HashMap<>();
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            JsonToken token = jsonReader.peek();
+            if (token == JsonToken.STRING || token == JsonToken.NUMBER)
+                ticker.put(name, jsonReader.nextString());
+            else
+                jsonReader.skipValue();
+        }
+        jsonReader.endObject();
+        return ticker;
+    }
+
     @Override
     public MarketPrice getPrice(String currencyCode) throws IOException, HttpException {
         // Log.traceCall("currencyCode=" + currencyCode);
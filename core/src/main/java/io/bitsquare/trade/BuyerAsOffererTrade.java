@@ -19,7 +19,7 @@ package io.bitsquare.trade;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.p2p.NodeAddress;
-import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.RecordStorage;
 import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.protocol.trade.BuyerAsOffererProtocol;
 import io.bitsquare.trade.protocol.trade.OffererProtocol;
@@ -41,7 +41,7 @@ public final class BuyerAsOffererTrade extends BuyerTrade implements OffererTrad
     // Constructor, initialization
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public BuyerAsOffererTrade(Offer offer, Storage<? extends TradableList> storage) {
+    public BuyerAsOffererTrade(Offer offer, RecordStorage<Trade> storage) {
         super(offer, storage);
     }
 
@@ -19,7 +19,7 @@ package io.bitsquare.trade;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.p2p.NodeAddress;
-import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.RecordStorage;
 import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.protocol.trade.BuyerAsTakerProtocol;
 import io.bitsquare.trade.protocol.trade.TakerProtocol;
@@ -43,7 +43,7 @@ public final class BuyerAsTakerTrade extends BuyerTrade implements TakerTrade {
     // Constructor, initialization
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public BuyerAsTakerTrade(Offer offer, Coin tradeAmount, long tradePrice, NodeAddress tradingPeerNodeAddress, Storage<? extends TradableList> storage) {
+    public BuyerAsTakerTrade(Offer offer, Coin tradeAmount, long tradePrice, NodeAddress tradingPeerNodeAddress, RecordStorage<Trade> storage) {
         super(offer, tradeAmount, tradePrice, tradingPeerNodeAddress, storage);
     }
 
@@ -22,7 +22,7 @@ import io.bitsquare.btc.FeePolicy;
 import io.bitsquare.common.handlers.ErrorMessageHandler;
 import io.bitsquare.common.handlers.ResultHandler;
 import io.bitsquare.p2p.NodeAddress;
-import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.RecordStorage;
 import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.protocol.trade.BuyerProtocol;
 import org.bitcoinj.core.Coin;
@@ -38,11 +38,11 @@ public abstract class BuyerTrade extends Trade {
 
     private static final Logger log = LoggerFactory.getLogger(BuyerAsOffererTrade.class);
 
-    BuyerTrade(Offer offer, Coin tradeAmount, long tradePrice, NodeAddress tradingPeerNodeAddress, Storage<? extends TradableList> storage) {
+    BuyerTrade(Offer offer, Coin tradeAmount, long tradePrice, NodeAddress tradingPeerNodeAddress, RecordStorage<Trade> storage) {
         super(offer, tradeAmount, tradePrice, tradingPeerNodeAddress, storage);
     }
 
-    BuyerTrade(Offer offer, Storage<? extends TradableList> storage) {
+    BuyerTrade(Offer offer, RecordStorage<Trade> storage) {
         super(offer, storage);
     }
 
@@ -19,7 +19,7 @@ package io.bitsquare.trade;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.p2p.NodeAddress;
-import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.RecordStorage;
 import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.protocol.trade.OffererProtocol;
 import io.bitsquare.trade.protocol.trade.SellerAsOffererProtocol;
@@ -41,7 +41,7 @@ public final class SellerAsOffererTrade extends SellerTrade implements OffererTr
     // Constructor, initialization
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public SellerAsOffererTrade(Offer offer, Storage<? extends TradableList> storage) {
+    public SellerAsOffererTrade(Offer offer, RecordStorage<Trade> storage) {
         super(offer, storage);
     }
 
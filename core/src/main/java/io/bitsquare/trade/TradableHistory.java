@@ -0,0 +1,229 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade;
+
+import io.bitsquare.btc.pricefeed.PriceFeed;
+import io.bitsquare.storage.RecordStorage;
+import io.bitsquare.storage.Storage;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * History of closed or failed tradables. The history grows without bound, so we don't keep the tradables in memory.
+ * Each tradable is stored as a record of its own and read on demand. In memory we keep only a small summary per
+ * tradable, which is persisted as index file, and a cache of the recently used tradables.
+ */
+public class TradableHistory<T extends Tradable> {
+    private static final Logger log = LoggerFactory.getLogger(TradableHistory.class);
+
+    private static final int CACHE_SIZE = 100;
+
+    public static final Comparator<TradableSummary> LATEST_FIRST = (o1, o2) -> o2.getDate().compareTo(o1.getDate());
+
+    private final PriceFeed priceFeed;
+    private final RecordStorage<T> recordStorage;
+    private final Storage<ArrayList<TradableSummary>> indexStorage;
+    private final ArrayList<TradableSummary> summaries = new ArrayList<>();
+    private final Map<String, TradableSummary> summaryById = new HashMap<>();
+    private final ObservableList<TradableSummary> observableSummaries;
+    private final Map<String, T> cache = new LinkedHashMap<String, T>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public TradableHistory(File storageDir, String fileName, PriceFeed priceFeed) {
+        this.priceFeed = priceFeed;
+
+        recordStorage = new RecordStorage<>(storageDir);
+        Set<String> recordIds = recordStorage.init(fileName + "Records");
+
+        indexStorage = new Storage<>(storageDir);
+        ArrayList<TradableSummary> persisted = indexStorage.initAndGetPersisted(summaries, fileName + "Index");
+        if (persisted != null)
+            summaries.addAll(persisted);
+
+        migrateTradableList(storageDir, fileName, recordIds);
+        repairIndex(recordIds);
+
+        summaries.stream().forEach(summary -> summaryById.put(summary.getId(), summary));
+        observableSummaries = FXCollections.observableArrayList(summaries);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void add(T tradable) {
+        String id = tradable.getId();
+        if (summaryById.containsKey(id))
+            return;
+
+        cache.put(id, tradable);
+        setStorageAndListeners(tradable);
+        recordStorage.queueUpForSave(id, tradable);
+        putSummary(new TradableSummary(tradable));
+    }
+
+    public boolean contains(String id) {
+        return summaryById.containsKey(id);
+    }
+
+    public int size() {
+        return summaries.size();
+    }
+
+    /**
+     * Reads the tradable from disk if it is not in the cache.
+     */
+    public Optional<T> get(String id) {
+        T tradable = cache.get(id);
+        if (tradable == null && summaryById.containsKey(id)) {
+            tradable = readRecord(id);
+            if (tradable != null)
+                cache.put(id, tradable);
+        }
+        return Optional.ofNullable(tradable);
+    }
+
+    public Optional<T> getByTxId(String txId) {
+        return summaries.stream()
+                .filter(summary -> summary.getTxIds().contains(txId))
+                .findAny()
+                .flatMap(summary -> get(summary.getId()));
+    }
+
+    /**
+     * @return The tradables of that page, latest first.
+     */
+    public List<T> getPage(int pageIndex, int pageSize) {
+        return getPage(pageIndex, pageSize, LATEST_FIRST);
+    }
+
+    /**
+     * All summaries are sorted before we take the page, so the order is the same over all pages.
+     */
+    public List<T> getPage(int pageIndex, int pageSize, Comparator<TradableSummary> comparator) {
+        return summaries.stream()
+                .sorted(comparator)
+                .skip((long) pageIndex * pageSize)
+                .limit(pageSize)
+                .map(summary -> get(summary.getId()))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    public int getNumTradesWithPeer(String peerHostName) {
+        return (int) summaries.stream()
+                .filter(summary -> summary.isTrade() && peerHostName.equals(summary.getPeerHostName()))
+                .count();
+    }
+
+    public ObservableList<TradableSummary> getSummaries() {
+        return observableSummaries;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void putSummary(TradableSummary summary) {
+        TradableSummary previous = summaryById.put(summary.getId(), summary);
+        if (previous != null) {
+            int index = summaries.indexOf(previous);
+            summaries.set(index, summary);
+            observableSummaries.set(index, summary);
+        } else {
+            summaries.add(summary);
+            observableSummaries.add(summary);
+        }
+        indexStorage.queueUpForSave();
+    }
+
+    private T readRecord(String id) {
+        T tradable = recordStorage.read(id);
+        if (tradable != null) {
+            tradable.getOffer().setPriceFeed(priceFeed);
+            setStorageAndListeners(tradable);
+        }
+        return tradable;
+    }
+
+    // Changes of a trade are written to its record. A trade can still change after it got closed, e.g. by the
+    // withdrawal or a dispute, so we update its summary as well. That is needed for each instance we have in memory.
+    @SuppressWarnings("unchecked")
+    private void setStorageAndListeners(T tradable) {
+        if (tradable instanceof Trade) {
+            Trade trade = (Trade) tradable;
+            trade.setStorage((RecordStorage<? super Trade>) recordStorage);
+            trade.stateProperty().addListener((ov, oldValue, newValue) -> putSummary(new TradableSummary(trade)));
+            trade.disputeStateProperty().addListener((ov, oldValue, newValue) -> putSummary(new TradableSummary(trade)));
+        }
+    }
+
+    // The index and the records are written independently, so after a crash they might not match
+    private void repairIndex(Set<String> recordIds) {
+        boolean changed = summaries.removeIf(summary -> !recordIds.contains(summary.getId()));
+        Set<String> indexedIds = summaries.stream().map(TradableSummary::getId).collect(Collectors.toSet());
+        for (String id : recordIds) {
+            if (!indexedIds.contains(id)) {
+                T tradable = readRecord(id);
+                if (tradable != null) {
+                    summaries.add(new TradableSummary(tradable));
+                    changed = true;
+                }
+            }
+        }
+        if (changed)
+            indexStorage.queueUpForSave();
+    }
+
+    // Previous versions stored the whole history in one TradableList file. We move the tradables to records.
+    private void migrateTradableList(File storageDir, String fileName, Set<String> recordIds) {
+        if (new File(storageDir, fileName).exists()) {
+            Storage<TradableList<T>> storage = new Storage<>(storageDir);
+            TradableList<T> persisted = storage.initAndGetPersisted(fileName);
+            if (persisted != null) {
+                persisted.stream().forEach(tradable -> {
+                    tradable.getOffer().setPriceFeed(priceFeed);
+                    recordStorage.saveNow(tradable.getId(), tradable);
+                    recordIds.add(tradable.getId());
+                });
+                log.info("Moved {} tradables of {} to records", persisted.size(), fileName);
+                // We keep the old file if a tradable could not be written
+                if (persisted.stream().allMatch(tradable -> recordStorage.contains(tradable.getId())))
+                    storage.remove(fileName);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.common.persistance.Persistable;
+import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.offer.OpenOffer;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.utils.Fiat;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Small index entry of a tradable in the TradableHistory. Holds the data we need for lookups without reading the
+ * full trade or offer from disk.
+ */
+public final class TradableSummary implements Persistable {
+    // That object is saved to disc. We need to take care of changes to not break deserialization.
+    private static final long serialVersionUID = Version.LOCAL_DB_VERSION;
+
+    private final String id;
+    private final Date date;
+    private final boolean isTrade;
+    private final long amount;
+    private final long price;
+    private final long volume;
+    private final Offer.Direction direction;
+    private final String currencyCode;
+    private final String state;
+    @Nullable
+    private final String peerHostName;
+    private final ArrayList<String> txIds = new ArrayList<>();
+
+    public TradableSummary(Tradable tradable) {
+        id = tradable.getId();
+        date = tradable.getDate();
+        currencyCode = tradable.getOffer().getCurrencyCode();
+        direction = tradable.getOffer().getDirection();
+        txIds.add(tradable.getOffer().getOfferFeePaymentTxID());
+        if (tradable instanceof Trade) {
+            Trade trade = (Trade) tradable;
+            isTrade = true;
+            Coin tradeAmount = trade.getTradeAmount();
+            amount = tradeAmount != null ? tradeAmount.value : 0;
+            price = trade.getTradePrice().value;
+            Fiat tradeVolume = trade.getTradeVolume();
+            volume = tradeVolume != null ? tradeVolume.value : 0;
+            state = trade.getState() != null ? trade.getState().name() : "";
+            peerHostName = trade.getTradingPeerNodeAddress() != null ? trade.getTradingPeerNodeAddress().hostName : null;
+            if (trade.getTakeOfferFeeTxId() != null)
+                txIds.add(trade.getTakeOfferFeeTxId());
+            if (trade.getDepositTx() != null)
+                txIds.add(trade.getDepositTx().getHashAsString());
+            if (trade.getPayoutTx() != null)
+                txIds.add(trade.getPayoutTx().getHashAsString());
+        } else {
+            isTrade = false;
+            amount = tradable.getOffer().getAmount().value;
+            Fiat offerPrice = tradable.getOffer().getPrice();
+            price = offerPrice != null ? offerPrice.value : 0;
+            volume = 0;
+            state = tradable instanceof OpenOffer ? ((OpenOffer) tradable).getState().name() : "";
+            peerHostName = null;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Getters
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public String getId() {
+        return id;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public boolean isTrade() {
+        return isTrade;
+    }
+
+    public Coin getAmount() {
+        return Coin.valueOf(amount);
+    }
+
+    public Fiat getPrice() {
+        return Fiat.valueOf(currencyCode, price);
+    }
+
+    public Fiat getVolume() {
+        return Fiat.valueOf(currencyCode, volume);
+    }
+
+    public Offer.Direction getDirection() {
+        return direction;
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    @Nullable
+    public String getPeerHostName() {
+        return peerHostName;
+    }
+
+    public List<String> getTxIds() {
+        return Collections.unmodifiableList(txIds);
+    }
+
+    @Override
+    public String toString() {
+        return "TradableSummary{" +
+                "id='" + id + '\'' +
+                ", date=" + date +
+                ", isTrade=" + isTrade +
+                ", amount=" + amount +
+                ", price=" + price +
+                ", currencyCode='" + currencyCode + '\'' +
+                ", state='" + state + '\'' +
+                '}';
+    }
+}
@@ -31,7 +31,7 @@ import io.bitsquare.common.taskrunner.Model;
 import io.bitsquare.crypto.DecryptedMsgWithPubKey;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.P2PService;
-import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.RecordStorage;
 import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.offer.OpenOfferManager;
 import io.bitsquare.trade.protocol.trade.ProcessModel;
@@ -134,9 +134,9 @@ public abstract class Trade implements Tradable, Model {
     transient private ObjectProperty<State> stateProperty;
     transient private ObjectProperty<DisputeState> disputeStateProperty;
     transient private ObjectProperty<TradePeriodState> tradePeriodStateProperty;
-    // Trades are saved in the TradeList
+    // Pending trades are saved as a record of their own. Closed and failed trades are saved in their TradableList.
     @Nullable
-    transient private Storage<? extends TradableList> storage;
+    transient private RecordStorage<? super Trade> storage;
     transient protected TradeProtocol tradeProtocol;
     private transient Date maxTradePeriodDate, halfTradePeriodDate;
 
@@ -176,7 +176,7 @@ public abstract class Trade implements Tradable, Model {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     // offerer
-    protected Trade(Offer offer, Storage<? extends TradableList> storage) {
+    protected Trade(Offer offer, RecordStorage<Trade> storage) {
         this.offer = offer;
         this.storage = storage;
         this.takeOfferDate = new Date();
@@ -192,7 +192,7 @@ public abstract class Trade implements Tradable, Model {
 
     // taker
     protected Trade(Offer offer, Coin tradeAmount, long tradePrice, NodeAddress tradingPeerNodeAddress,
-                    Storage<? extends TradableList> storage) {
+                    RecordStorage<Trade> storage) {
 
         this(offer, storage);
         this.tradeAmount = tradeAmount;
@@ -297,7 +297,7 @@ public abstract class Trade implements Tradable, Model {
         return decryptedMsgWithPubKey;
     }
 
-    public void setStorage(Storage<? extends TradableList> storage) {
+    public void setStorage(@Nullable RecordStorage<? super Trade> storage) {
         this.storage = storage;
     }
 
@@ -355,7 +355,7 @@ public abstract class Trade implements Tradable, Model {
     @Override
     public void persist() {
         if (storage != null)
-            storage.queueUpForSave();
+            storage.queueUpForSave(getId(), this);
     }
 
     @Override
@@ -35,6 +35,7 @@ import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.P2PService;
 import io.bitsquare.p2p.messaging.DecryptedDirectMessageListener;
 import io.bitsquare.p2p.messaging.DecryptedMailboxListener;
+import io.bitsquare.storage.RecordStorage;
 import io.bitsquare.storage.Storage;
 import io.bitsquare.trade.closed.ClosedTradableManager;
 import io.bitsquare.trade.failed.FailedTradesManager;
@@ -48,6 +49,7 @@ import io.bitsquare.trade.protocol.trade.messages.TradeMessage;
 import io.bitsquare.user.User;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.bitcoinj.core.AddressFormatException;
 import org.bitcoinj.core.Coin;
@@ -61,7 +63,8 @@ import org.spongycastle.crypto.params.KeyParameter;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.File;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static io.bitsquare.util.Validator.nonEmptyStringOf;
@@ -78,9 +81,12 @@ public class TradeManager {
     private final FailedTradesManager failedTradesManager;
     private final ArbitratorManager arbitratorManager;
     private final P2PService p2PService;
+    private final PriceFeed priceFeed;
 
-    private final Storage<TradableList<Trade>> tradableListStorage;
-    private final TradableList<Trade> trades;
+    private final RecordStorage<Trade> tradeStorage;
+    // Ids of the persisted trades which have not been read yet
+    private final Set<String> notLoadedTradeIds;
+    private final ObservableList<Trade> trades = FXCollections.observableArrayList();
     private final BooleanProperty pendingTradesInitialized = new SimpleBooleanProperty();
 
 
@@ -109,10 +115,13 @@ public class TradeManager {
         this.failedTradesManager = failedTradesManager;
         this.arbitratorManager = arbitratorManager;
         this.p2PService = p2PService;
+        this.priceFeed = priceFeed;
 
-        tradableListStorage = new Storage<>(storageDir);
-        trades = new TradableList<>(tradableListStorage, "PendingTrades");
-        trades.forEach(e -> e.getOffer().setPriceFeed(priceFeed));
+        // Each pending trade is stored in a file of its own, so a completed protocol task only writes that trade.
+        // We only list the stored trade ids here and read the trades when they are needed.
+        tradeStorage = new RecordStorage<>(storageDir);
+        notLoadedTradeIds = new HashSet<>(tradeStorage.init("PendingTradeRecords"));
+        migratePendingTradesFile(storageDir);
 
         p2PService.addDecryptedDirectMessageListener(new DecryptedDirectMessageListener() {
             @Override
@@ -142,7 +151,7 @@ public class TradeManager {
                 } else if (message instanceof TradeMessage) {
                     log.trace("Received TradeMessage: " + message);
                     String tradeId = ((TradeMessage) message).tradeId;
-                    Optional<Trade> tradeOptional = trades.stream().filter(e -> e.getId().equals(tradeId)).findAny();
+                    Optional<Trade> tradeOptional = getTradeById(tradeId);
                     // The mailbox message will be removed inside the tasks after they are processed successfully
                     if (tradeOptional.isPresent())
                         tradeOptional.get().setMailboxMessage(decryptedMsgWithPubKey);
@@ -152,6 +161,8 @@ public class TradeManager {
     }
 
     public void onAllServicesInitialized() {
+        loadPendingTrades();
+
         if (p2PService.isBootstrapped())
             initPendingTrades();
         else
@@ -173,8 +184,8 @@ public class TradeManager {
     private void initPendingTrades() {
         Log.traceCall();
 
-        for (Trade trade : trades) {
-            trade.setStorage(tradableListStorage);
+        loadPendingTrades();
+        for (Trade trade : new ArrayList<>(trades)) {
             if (trade.isDepositFeePaid()) {
                 initTrade(trade, trade.getProcessModel().getUseSavingsWallet(), trade.getProcessModel().getFundsNeededForTrade());
                 trade.updateDepositTxFromWallet();
@@ -203,13 +214,12 @@ public class TradeManager {
 
             Trade trade;
             if (offer.getDirection() == Offer.Direction.BUY)
-                trade = new BuyerAsOffererTrade(offer, tradableListStorage);
+                trade = new BuyerAsOffererTrade(offer, tradeStorage);
             else
-                trade = new SellerAsOffererTrade(offer, tradableListStorage);
+                trade = new SellerAsOffererTrade(offer, tradeStorage);
 
-            trade.setStorage(tradableListStorage);
             initTrade(trade, trade.getProcessModel().getUseSavingsWallet(), trade.getProcessModel().getFundsNeededForTrade());
-            trades.add(trade);
+            addTrade(trade);
             ((OffererTrade) trade).handleTakeOfferRequest(message, peerNodeAddress);
         } else {
             // TODO respond
@@ -232,6 +242,67 @@ public class TradeManager {
                 fundsNeededForTrade);
     }
 
+    private void addTrade(Trade trade) {
+        trades.add(trade);
+        trade.persist();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Persistence
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void loadPendingTrades() {
+        if (notLoadedTradeIds.isEmpty())
+            return;
+
+        long ts = System.currentTimeMillis();
+        List<Trade> loaded = new ArrayList<>(notLoadedTradeIds).stream()
+                .map(this::readTrade)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .sorted(Comparator.comparing(Trade::getDate))
+                .collect(Collectors.toList());
+        trades.addAll(loaded);
+        log.info("Loading {} pending trades took {} ms", loaded.size(), System.currentTimeMillis() - ts);
+    }
+
+    private Optional<Trade> loadTrade(String tradeId) {
+        Optional<Trade> tradeOptional = readTrade(tradeId);
+        if (tradeOptional.isPresent())
+            trades.add(tradeOptional.get());
+        return tradeOptional;
+    }
+
+    private Optional<Trade> readTrade(String tradeId) {
+        notLoadedTradeIds.remove(tradeId);
+        Trade trade = tradeStorage.read(tradeId);
+        if (trade != null) {
+            trade.getOffer().setPriceFeed(priceFeed);
+            trade.setStorage(tradeStorage);
+        }
+        return Optional.ofNullable(trade);
+    }
+
+    // Previous versions stored all pending trades in one TradableList file. We move them to the trade records.
+    private void migratePendingTradesFile(File storageDir) {
+        if (new File(storageDir, "PendingTrades").exists()) {
+            Storage<TradableList<Trade>> storage = new Storage<>(storageDir);
+            TradableList<Trade> persisted = storage.initAndGetPersisted("PendingTrades");
+            if (persisted != null) {
+                persisted.stream().forEach(trade -> {
+                    tradeStorage.saveNow(trade.getId(), trade);
+                    notLoadedTradeIds.add(trade.getId());
+                });
+                log.info("Moved {} pending trades to trade records", persisted.size());
+                // We keep the old file if a trade could not be written
+                if (persisted.stream().allMatch(trade -> tradeStorage.contains(trade.getId())))
+                    storage.remove("PendingTrades");
+            }
+        }
+    }
+
+
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Called from Offerbook when offer gets removed from P2P network
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -281,15 +352,15 @@ public class TradeManager {
                              TradeResultHandler tradeResultHandler) {
         Trade trade;
         if (offer.getDirection() == Offer.Direction.BUY)
-            trade = new SellerAsTakerTrade(offer, amount, tradePrice, model.getPeerNodeAddress(), tradableListStorage);
+            trade = new SellerAsTakerTrade(offer, amount, tradePrice, model.getPeerNodeAddress(), tradeStorage);
         else
-            trade = new BuyerAsTakerTrade(offer, amount, tradePrice, model.getPeerNodeAddress(), tradableListStorage);
+            trade = new BuyerAsTakerTrade(offer, amount, tradePrice, model.getPeerNodeAddress(), tradeStorage);
 
         trade.setTakerPaymentAccountId(paymentAccountId);
 
         initTrade(trade, useSavingsWallet, fundsNeededForTrade);
 
-        trades.add(trade);
+        addTrade(trade);
         ((TakerTrade) trade).takeAvailableOffer();
         tradeResultHandler.handleResult(trade);
     }
@@ -357,6 +428,9 @@ public class TradeManager {
 
     public void removeTrade(Trade trade) {
         trades.remove(trade);
+        tradeStorage.remove(trade.getId());
+        // Closed and failed trades are persisted as records of their TradableHistory, which sets its own storage
+        trade.setStorage(null);
 
         walletService.swapTradeEntryToAvailableEntry(trade.getId(), AddressEntry.Context.OFFER_FUNDING);
         walletService.swapTradeEntryToAvailableEntry(trade.getId(), AddressEntry.Context.RESERVED_FOR_TRADE);
@@ -403,7 +477,11 @@ public class TradeManager {
     }
 
     public Optional<Trade> getTradeById(String tradeId) {
-        return trades.stream().filter(e -> e.getId().equals(tradeId)).findFirst();
+        Optional<Trade> tradeOptional = trades.stream().filter(e -> e.getId().equals(tradeId)).findFirst();
+        if (!tradeOptional.isPresent() && notLoadedTradeIds.contains(tradeId))
+            return loadTrade(tradeId);
+        else
+            return tradeOptional;
     }
 
     public Stream<AddressEntry> getAddressEntriesForAvailableBalanceStream() {
@@ -20,9 +20,9 @@ package io.bitsquare.trade.closed;
 import com.google.inject.Inject;
 import io.bitsquare.btc.pricefeed.PriceFeed;
 import io.bitsquare.common.crypto.KeyRing;
-import io.bitsquare.storage.Storage;
 import io.bitsquare.trade.Tradable;
-import io.bitsquare.trade.TradableList;
+import io.bitsquare.trade.TradableHistory;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.offer.Offer;
 import javafx.collections.ObservableList;
 import org.slf4j.Logger;
@@ -30,18 +30,19 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import java.io.File;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 
 public class ClosedTradableManager {
     private static final Logger log = LoggerFactory.getLogger(ClosedTradableManager.class);
-    private final TradableList<Tradable> closedTrades;
+    private final TradableHistory<Tradable> closedTrades;
     private final KeyRing keyRing;
 
     @Inject
     public ClosedTradableManager(KeyRing keyRing, PriceFeed priceFeed, @Named("storage.dir") File storageDir) {
         this.keyRing = keyRing;
-        this.closedTrades = new TradableList<>(new Storage<>(storageDir), "ClosedTrades");
-        closedTrades.forEach(e -> e.getOffer().setPriceFeed(priceFeed));
+        this.closedTrades = new TradableHistory<>(storageDir, "ClosedTrades", priceFeed);
     }
 
     public void add(Tradable tradable) {
@@ -52,12 +53,24 @@ public class ClosedTradableManager {
         return offer.isMyOffer(keyRing);
     }
 
-    public ObservableList<Tradable> getClosedTrades() {
-        return closedTrades.getObservableList();
+    public ObservableList<TradableSummary> getClosedTradeSummaries() {
+        return closedTrades.getSummaries();
+    }
+
+    public List<Tradable> getClosedTrades(int pageIndex, int pageSize, Comparator<TradableSummary> comparator) {
+        return closedTrades.getPage(pageIndex, pageSize, comparator);
     }
 
     public Optional<Tradable> getTradableById(String id) {
-        return closedTrades.stream().filter(e -> e.getId().equals(id)).findFirst();
+        return closedTrades.get(id);
+    }
+
+    public Optional<Tradable> getTradableByTxId(String txId) {
+        return closedTrades.getByTxId(txId);
+    }
+
+    public int getNumPastTrades(String peerHostName) {
+        return closedTrades.getNumTradesWithPeer(peerHostName);
     }
 
 }
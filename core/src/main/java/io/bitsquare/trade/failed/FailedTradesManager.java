@@ -20,8 +20,8 @@ package io.bitsquare.trade.failed;
 import com.google.inject.Inject;
 import io.bitsquare.btc.pricefeed.PriceFeed;
 import io.bitsquare.common.crypto.KeyRing;
-import io.bitsquare.storage.Storage;
-import io.bitsquare.trade.TradableList;
+import io.bitsquare.trade.TradableHistory;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.offer.Offer;
 import javafx.collections.ObservableList;
@@ -30,22 +30,23 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import java.io.File;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 
 public class FailedTradesManager {
     private static final Logger log = LoggerFactory.getLogger(FailedTradesManager.class);
-    private final TradableList<Trade> failedTrades;
+    private final TradableHistory<Trade> failedTrades;
     private final KeyRing keyRing;
 
     @Inject
     public FailedTradesManager(KeyRing keyRing, PriceFeed priceFeed, @Named("storage.dir") File storageDir) {
         this.keyRing = keyRing;
-        this.failedTrades = new TradableList<>(new Storage<>(storageDir), "FailedTrades");
-        failedTrades.forEach(e -> e.getOffer().setPriceFeed(priceFeed));
+        this.failedTrades = new TradableHistory<>(storageDir, "FailedTrades", priceFeed);
     }
 
     public void add(Trade trade) {
-        if (!failedTrades.contains(trade))
+        if (!failedTrades.contains(trade.getId()))
             failedTrades.add(trade);
     }
 
@@ -53,11 +54,19 @@ public class FailedTradesManager {
         return offer.isMyOffer(keyRing);
     }
 
-    public ObservableList<Trade> getFailedTrades() {
-        return failedTrades.getObservableList();
+    public ObservableList<TradableSummary> getFailedTradeSummaries() {
+        return failedTrades.getSummaries();
+    }
+
+    public List<Trade> getFailedTrades(int pageIndex, int pageSize, Comparator<TradableSummary> comparator) {
+        return failedTrades.getPage(pageIndex, pageSize, comparator);
     }
 
     public Optional<Trade> getTradeById(String id) {
-        return failedTrades.stream().filter(e -> e.getId().equals(id)).findFirst();
+        return failedTrades.get(id);
+    }
+
+    public Optional<Trade> getTradeByTxId(String txId) {
+        return failedTrades.getByTxId(txId);
     }
 }
@@ -40,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Date;
@@ -141,6 +142,14 @@ public final class Offer implements StoragePayload, RequiresOwnerIsOnlinePayload
     @JsonExclude
     transient private StringProperty errorMessageProperty = new SimpleStringProperty();
     transient private PriceFeed priceFeed;
+    // The computed price and the price epoch of the price feed it got computed at. Sorting and filtering call
+    // getPrice for each comparison, so we compute the price only once per change of the market prices.
+    @JsonExclude
+    transient private Fiat cachedPrice;
+    @JsonExclude
+    transient private long cachedPriceEpoch = -1;
+    @JsonExclude
+    transient private Fiat cachedOfferVolume;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -197,6 +206,7 @@ public final class Offer implements StoragePayload, RequiresOwnerIsOnlinePayload
 
             // we don't need to fill it as the error message is only relevant locally, so we don't store it in the transmitted object
             errorMessageProperty = new SimpleStringProperty();
+            cachedPriceEpoch = -1;
         } catch (Throwable t) {
             log.warn("Cannot be deserialized." + t.getMessage());
         }
@@ -253,7 +263,10 @@ public final class Offer implements StoragePayload, RequiresOwnerIsOnlinePayload
 
     @Nullable
     public Fiat getOfferVolume() {
-        return getVolumeByAmount(getAmount());
+        // getPrice resets the cached volume if the price changed
+        if (getPrice() != null && cachedOfferVolume == null)
+            cachedOfferVolume = getVolumeByAmount(getAmount());
+        return cachedOfferVolume;
     }
 
     @Nullable
@@ -296,6 +309,7 @@ public final class Offer implements StoragePayload, RequiresOwnerIsOnlinePayload
 
     public void setPriceFeed(PriceFeed priceFeed) {
         this.priceFeed = priceFeed;
+        cachedPriceEpoch = -1;
     }
 
     public void setState(State state) {
@@ -350,34 +364,16 @@ public final class Offer implements StoragePayload, RequiresOwnerIsOnlinePayload
     public Fiat getPrice() {
         if (useMarketBasedPrice) {
             checkNotNull(priceFeed, "priceFeed must not be null");
-            MarketPrice marketPrice = priceFeed.getMarketPrice(currencyCode);
-            if (marketPrice != null) {
-                PriceFeed.Type priceFeedType = direction == Direction.BUY ? PriceFeed.Type.ASK : PriceFeed.Type.BID;
-                double marketPriceAsDouble = marketPrice.getPrice(priceFeedType);
-                double factor = direction == Offer.Direction.BUY ? 1 - marketPriceMargin : 1 + marketPriceMargin;
-                double targetPrice = marketPriceAsDouble * factor;
-
-                // round
-                long factor1 = (long) Math.pow(10, 2);
-                targetPrice = targetPrice * factor1;
-                long tmp = Math.round(targetPrice);
-                targetPrice = (double) tmp / factor1;
-
-                try {
-                    return Fiat.parseFiat(currencyCode, String.valueOf(targetPrice));
-                } catch (Exception e) {
-                    log.error("Exception at getPrice / parseToFiat: " + e.toString() + "\n" +
-                            "That case should never happen.");
-                    return null;
-                }
-            } else {
-                log.debug("We don't have a market price.\n" +
-                        "That case could only happen if you don't have a price feed.");
-                return null;
+            long priceEpoch = priceFeed.getPriceEpoch();
+            if (cachedPriceEpoch != priceEpoch) {
+                cachedPrice = getMarketBasedPrice();
+                cachedOfferVolume = null;
+                cachedPriceEpoch = priceEpoch;
             }
-        } else {
-            return Fiat.valueOf(currencyCode, fiatPrice);
+        } else if (cachedPrice == null) {
+            cachedPrice = Fiat.valueOf(currencyCode, fiatPrice);
         }
+        return cachedPrice;
     }
 
     public double getMarketPriceMargin() {
@@ -408,6 +404,10 @@ public final class Offer implements StoragePayload, RequiresOwnerIsOnlinePayload
         return PaymentMethod.getPaymentMethodById(paymentMethodName);
     }
 
+    public String getPaymentMethodId() {
+        return paymentMethodName;
+    }
+
     public String getCurrencyCode() {
         return currencyCode;
     }
@@ -460,6 +460,40 @@ public final class Offer implements StoragePayload, RequiresOwnerIsOnlinePayload
         return errorMessageProperty;
     }
 
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // The price is rounded to 2 decimals. We compute it in the smallest unit of Fiat (4 decimals) with the factor
+    // in millionths. For currencies with a price above about 9.2e8 per BTC (e.g. VND) that product exceeds the long
+    // range, then we compute it with BigInteger.
+    @Nullable
+    private Fiat getMarketBasedPrice() {
+        MarketPrice marketPrice = priceFeed.getMarketPrice(currencyCode);
+        if (marketPrice != null) {
+            PriceFeed.Type priceFeedType = direction == Direction.BUY ? PriceFeed.Type.ASK : PriceFeed.Type.BID;
+            long marketPriceAsLong = Math.round(marketPrice.getPrice(priceFeedType) * 10_000);
+            long factorInMillionths = Math.round((direction == Direction.BUY ? 1 - marketPriceMargin : 1 + marketPriceMargin) * 1_000_000);
+            long targetPriceInCents;
+            try {
+                targetPriceInCents = Math.floorDiv(Math.addExact(Math.multiplyExact(marketPriceAsLong, factorInMillionths),
+                        50_000_000), 100_000_000);
+            } catch (ArithmeticException e) {
+                targetPriceInCents = BigInteger.valueOf(marketPriceAsLong)
+                        .multiply(BigInteger.valueOf(factorInMillionths))
+                        .add(BigInteger.valueOf(50_000_000))
+                        .divide(BigInteger.valueOf(100_000_000))
+                        .longValue();
+            }
+            return Fiat.valueOf(currencyCode, targetPriceInCents * 100);
+        } else {
+            log.debug("We don't have a market price.\n" +
+                    "That case could only happen if you don't have a price feed.");
+            return null;
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
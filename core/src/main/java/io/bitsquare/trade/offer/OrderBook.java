@@ -0,0 +1,357 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.btc.pricefeed.PriceFeed;
+import org.bitcoinj.utils.Fiat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * The offers of the network in one price ordered book per currency and direction.
+ * <p>
+ * The books are updated with each offer we get added or removed by the OfferBookService, so a change costs
+ * O(log n) and the books never get sorted as a whole. Each entry keeps the price it is ranked with. The market based
+ * offers get ranked again with their new price when the price epoch of the PriceFeed has changed. The offers without
+ * a price (no market price available yet) are kept apart at the end of the book.
+ * <p>
+ * The buy offers are ordered with the highest price first, the sell offers with the lowest price first, so the first
+ * offer is always the best one for the taker. The cumulative depth is computed once after a change of the book.
+ * <p>
+ * Not thread safe, it is used from the UserThread.
+ */
+public class OrderBook {
+    private static final Logger log = LoggerFactory.getLogger(OrderBook.class);
+
+    public interface Listener {
+        void onBookChanged(String currencyCode);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // DepthLevel
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final class DepthLevel {
+        public final Offer offer;
+        // In the smallest unit of Fiat
+        public final long price;
+        // In satoshis
+        public final long amount;
+        public final long accumulatedAmount;
+
+        private DepthLevel(Offer offer, long price, long amount, long accumulatedAmount) {
+            this.offer = offer;
+            this.price = price;
+            this.amount = amount;
+            this.accumulatedAmount = accumulatedAmount;
+        }
+    }
+
+    private final PriceFeed priceFeed;
+    private final Map<String, Entry> entryByOfferId = new HashMap<>();
+    private final Map<String, Book> buyBookByCurrencyCode = new HashMap<>();
+    private final Map<String, Book> sellBookByCurrencyCode = new HashMap<>();
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+    private long rankedPriceEpoch;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public OrderBook(OfferBookService offerBookService, PriceFeed priceFeed) {
+        this.priceFeed = priceFeed;
+        rankedPriceEpoch = priceFeed.getPriceEpoch();
+
+        offerBookService.addOfferBookChangedListener(new OfferBookService.OfferBookChangedListener() {
+            @Override
+            public void onAdded(Offer offer) {
+                if (add(offer))
+                    notifyListeners(offer.getCurrencyCode());
+            }
+
+            @Override
+            public void onRemoved(Offer offer) {
+                if (remove(offer))
+                    notifyListeners(offer.getCurrencyCode());
+            }
+        });
+        offerBookService.getOffers().stream().forEach(this::add);
+
+        priceFeed.currenciesUpdateFlagProperty().addListener((observable, oldValue, newValue) ->
+                rankAgainIfPriceEpochChanged().stream().forEach(this::notifyListeners));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return The offers of the book with the best offer first
+     */
+    public List<Offer> getOffers(String currencyCode, Offer.Direction direction) {
+        Book book = getBook(currencyCode, direction);
+        return book != null ? book.getOffers() : Collections.emptyList();
+    }
+
+    public List<Offer> getBestOffers(String currencyCode, Offer.Direction direction, int maxNumOffers) {
+        List<Offer> offers = getOffers(currencyCode, direction);
+        return offers.subList(0, Math.min(maxNumOffers, offers.size()));
+    }
+
+    @Nullable
+    public Offer getBestOffer(String currencyCode, Offer.Direction direction) {
+        Book book = getBook(currencyCode, direction);
+        return book != null && !book.pricedEntries.isEmpty() ? book.pricedEntries.first().offer : null;
+    }
+
+    /**
+     * @return The depth of the book with the best price first. Offers without a price are not included.
+     */
+    public List<DepthLevel> getDepth(String currencyCode, Offer.Direction direction) {
+        Book book = getBook(currencyCode, direction);
+        return book != null ? book.getDepth() : Collections.emptyList();
+    }
+
+    @Nullable
+    public Offer getOffer(String offerId) {
+        Entry entry = entryByOfferId.get(offerId);
+        return entry != null ? entry.offer : null;
+    }
+
+    public Set<String> getCurrencyCodes() {
+        Set<String> currencyCodes = new HashSet<>(buyBookByCurrencyCode.keySet());
+        currencyCodes.addAll(sellBookByCurrencyCode.keySet());
+        return currencyCodes;
+    }
+
+    public int size() {
+        return entryByOfferId.size();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private boolean add(Offer offer) {
+        if (entryByOfferId.containsKey(offer.getId()))
+            return false;
+
+        rankAgainIfPriceEpochChanged();
+        Map<String, Book> books = offer.getDirection() == Offer.Direction.BUY ? buyBookByCurrencyCode : sellBookByCurrencyCode;
+        Book book = books.computeIfAbsent(offer.getCurrencyCode(), currencyCode -> new Book(offer.getDirection()));
+        Entry entry = new Entry(offer, book);
+        entryByOfferId.put(offer.getId(), entry);
+        book.add(entry);
+        return true;
+    }
+
+    private boolean remove(Offer offer) {
+        Entry entry = entryByOfferId.remove(offer.getId());
+        if (entry == null)
+            return false;
+
+        entry.book.remove(entry);
+        if (entry.book.isEmpty()) {
+            Map<String, Book> books = entry.book.direction == Offer.Direction.BUY ? buyBookByCurrencyCode : sellBookByCurrencyCode;
+            books.remove(offer.getCurrencyCode());
+        }
+        return true;
+    }
+
+    @Nullable
+    private Book getBook(String currencyCode, Offer.Direction direction) {
+        rankAgainIfPriceEpochChanged();
+        return direction == Offer.Direction.BUY ? buyBookByCurrencyCode.get(currencyCode) : sellBookByCurrencyCode.get(currencyCode);
+    }
+
+    // Only the market based offers change their price with the market price, the others keep their rank
+    private Set<String> rankAgainIfPriceEpochChanged() {
+        long priceEpoch = priceFeed.getPriceEpoch();
+        if (priceEpoch == rankedPriceEpoch)
+            return Collections.emptySet();
+
+        rankedPriceEpoch = priceEpoch;
+        Set<String> changedCurrencyCodes = new HashSet<>();
+        rankAgain(buyBookByCurrencyCode, changedCurrencyCodes);
+        rankAgain(sellBookByCurrencyCode, changedCurrencyCodes);
+        return changedCurrencyCodes;
+    }
+
+    private void rankAgain(Map<String, Book> books, Set<String> changedCurrencyCodes) {
+        books.entrySet().stream()
+                .filter(mapEntry -> mapEntry.getValue().rankMarketBasedEntriesAgain())
+                .forEach(mapEntry -> changedCurrencyCodes.add(mapEntry.getKey()));
+    }
+
+    private void notifyListeners(String currencyCode) {
+        listeners.stream().forEach(listener -> listener.onBookChanged(currencyCode));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Book
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Book {
+        private final Offer.Direction direction;
+        private final TreeSet<Entry> pricedEntries;
+        private final Set<Entry> unpricedEntries = new LinkedHashSet<>();
+        private final Set<Entry> marketBasedEntries = new HashSet<>();
+        // Built at the first read after a change
+        private List<Offer> offers;
+        private List<DepthLevel> depth;
+
+        private Book(Offer.Direction direction) {
+            this.direction = direction;
+            Comparator<Entry> byPrice = direction == Offer.Direction.BUY ?
+                    (o1, o2) -> Long.compare(o2.price, o1.price) :
+                    (o1, o2) -> Long.compare(o1.price, o2.price);
+            // Same price: The older offer first. The id makes the order total.
+            pricedEntries = new TreeSet<>(byPrice
+                    .thenComparing((o1, o2) -> Long.compare(o1.date, o2.date))
+                    .thenComparing((o1, o2) -> o1.offer.getId().compareTo(o2.offer.getId())));
+        }
+
+        private void add(Entry entry) {
+            entry.updatePrice();
+            if (entry.hasPrice)
+                pricedEntries.add(entry);
+            else
+                unpricedEntries.add(entry);
+
+            if (entry.offer.getUseMarketBasedPrice())
+                marketBasedEntries.add(entry);
+            invalidate();
+        }
+
+        private void remove(Entry entry) {
+            // Has to be removed with the price it got ranked with
+            if (entry.hasPrice)
+                pricedEntries.remove(entry);
+            else
+                unpricedEntries.remove(entry);
+
+            marketBasedEntries.remove(entry);
+            invalidate();
+        }
+
+        /**
+         * @return True if the rank or the price of an entry has changed
+         */
+        private boolean rankMarketBasedEntriesAgain() {
+            boolean changed = false;
+            for (Entry entry : marketBasedEntries) {
+                boolean hadPrice = entry.hasPrice;
+                long previousPrice = entry.price;
+                if (hadPrice)
+                    pricedEntries.remove(entry);
+                else
+                    unpricedEntries.remove(entry);
+
+                entry.updatePrice();
+                if (entry.hasPrice)
+                    pricedEntries.add(entry);
+                else
+                    unpricedEntries.add(entry);
+
+                changed |= hadPrice != entry.hasPrice || previousPrice != entry.price;
+            }
+            if (changed)
+                invalidate();
+            return changed;
+        }
+
+        private List<Offer> getOffers() {
+            if (offers == null) {
+                List<Offer> list = new ArrayList<>(pricedEntries.size() + unpricedEntries.size());
+                pricedEntries.stream().forEach(entry -> list.add(entry.offer));
+                unpricedEntries.stream().forEach(entry -> list.add(entry.offer));
+                offers = Collections.unmodifiableList(list);
+            }
+            return offers;
+        }
+
+        private List<DepthLevel> getDepth() {
+            if (depth == null) {
+                List<DepthLevel> list = new ArrayList<>(pricedEntries.size());
+                long accumulatedAmount = 0;
+                for (Entry entry : pricedEntries) {
+                    accumulatedAmount += entry.amount;
+                    list.add(new DepthLevel(entry.offer, entry.price, entry.amount, accumulatedAmount));
+                }
+                depth = Collections.unmodifiableList(list);
+            }
+            return depth;
+        }
+
+        private boolean isEmpty() {
+            return pricedEntries.isEmpty() && unpricedEntries.isEmpty();
+        }
+
+        private void invalidate() {
+            offers = null;
+            depth = null;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Entry
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Entry {
+        private final Offer offer;
+        private final Book book;
+        private final long date;
+        private final long amount;
+        // The price the entry is ranked with. Must not change while the entry is in the book.
+        private long price;
+        private boolean hasPrice;
+
+        private Entry(Offer offer, Book book) {
+            this.offer = offer;
+            this.book = book;
+            this.date = offer.getDate().getTime();
+            this.amount = offer.getAmount().value;
+        }
+
+        private void updatePrice() {
+            Fiat fiat = offer.getPrice();
+            hasPrice = fiat != null;
+            price = hasPrice ? fiat.value : 0;
+        }
+    }
+}
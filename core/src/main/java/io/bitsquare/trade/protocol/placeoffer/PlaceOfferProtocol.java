@@ -17,6 +17,7 @@
 
 package io.bitsquare.trade.protocol.placeoffer;
 
+import io.bitsquare.common.taskrunner.TaskPipeline;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.handlers.TransactionResultHandler;
 import io.bitsquare.trade.protocol.placeoffer.tasks.AddOfferToRemoteOfferBook;
@@ -29,6 +30,15 @@ import org.slf4j.LoggerFactory;
 public class PlaceOfferProtocol {
     private static final Logger log = LoggerFactory.getLogger(PlaceOfferProtocol.class);
 
+    private static final TaskPipeline<PlaceOfferModel> PLACE_OFFER_PIPELINE = TaskPipeline.builder(PlaceOfferModel.class)
+            .add(
+                    ValidateOffer.class,
+                    CreateOfferFeeTx.class,
+                    AddOfferToRemoteOfferBook.class,
+                    BroadcastCreateOfferFeeTx.class
+            )
+            .build();
+
     private final PlaceOfferModel model;
     private final TransactionResultHandler resultHandler;
 
@@ -69,12 +79,7 @@ public class PlaceOfferProtocol {
                     log.error(errorMessage);
                 }
         );
-        taskRunner.addTasks(
-                ValidateOffer.class,
-                CreateOfferFeeTx.class,
-                AddOfferToRemoteOfferBook.class,
-                BroadcastCreateOfferFeeTx.class
-        );
+        taskRunner.addPipeline(PLACE_OFFER_PIPELINE);
 
         taskRunner.run();
     }
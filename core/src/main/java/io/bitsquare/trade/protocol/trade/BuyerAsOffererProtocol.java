@@ -19,6 +19,7 @@ package io.bitsquare.trade.protocol.trade;
 
 import io.bitsquare.common.handlers.ErrorMessageHandler;
 import io.bitsquare.common.handlers.ResultHandler;
+import io.bitsquare.common.taskrunner.TaskPipeline;
 import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.messaging.MailboxMessage;
@@ -40,6 +41,31 @@ import static io.bitsquare.util.Validator.checkTradeId;
 public class BuyerAsOffererProtocol extends TradeProtocol implements BuyerProtocol, OffererProtocol {
     private static final Logger log = LoggerFactory.getLogger(BuyerAsOffererProtocol.class);
 
+    private static final TaskPipeline<Trade> TAKE_OFFER_REQUEST_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(
+                    ProcessPayDepositRequest.class,
+                    VerifyArbitrationSelection.class,
+                    VerifyTakerAccount.class,
+                    LoadTakeOfferFeeTx.class,
+                    CreateAndSignContract.class,
+                    OffererCreatesAndSignsDepositTxAsBuyer.class
+            )
+            .addCheckpoint(SetupDepositBalanceListener.class)
+            .add(SendPublishDepositTxRequest.class)
+            .build();
+
+    private static final TaskPipeline<Trade> FIAT_PAYMENT_STARTED_PIPELINE = TaskPipeline.builder(Trade.class)
+            .addCheckpoint(VerifyTakeOfferFeePayment.class)
+            .add(SendFiatTransferStartedMessage.class)
+            .build();
+
+    private static final TaskPipeline<Trade> FINALIZE_PAYOUT_TX_REQUEST_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(ProcessFinalizePayoutTxRequest.class)
+            .addCheckpoint(SignAndFinalizePayoutTx.class)
+            .addCheckpoint(SendPayoutTxFinalizedMessage.class)
+            .add(BroadcastAfterLockTime.class)
+            .build();
+
     private final BuyerAsOffererTrade buyerAsOffererTrade;
 
 
@@ -103,16 +129,7 @@ public class BuyerAsOffererProtocol extends TradeProtocol implements BuyerProtoc
         TradeTaskRunner taskRunner = new TradeTaskRunner(buyerAsOffererTrade,
                 () -> handleTaskRunnerSuccess("handleTakeOfferRequest"),
                 this::handleTaskRunnerFault);
-        taskRunner.addTasks(
-                ProcessPayDepositRequest.class,
-                VerifyArbitrationSelection.class,
-                VerifyTakerAccount.class,
-                LoadTakeOfferFeeTx.class,
-                CreateAndSignContract.class,
-                OffererCreatesAndSignsDepositTxAsBuyer.class,
-                SetupDepositBalanceListener.class,
-                SendPublishDepositTxRequest.class
-        );
+        taskRunner.addPipeline(TAKE_OFFER_REQUEST_PIPELINE);
         startTimeout();
         taskRunner.run();
     }
@@ -158,10 +175,7 @@ public class BuyerAsOffererProtocol extends TradeProtocol implements BuyerProtoc
                         errorMessageHandler.handleErrorMessage(errorMessage);
                         handleTaskRunnerFault(errorMessage);
                     });
-            taskRunner.addTasks(
-                    VerifyTakeOfferFeePayment.class,
-                    SendFiatTransferStartedMessage.class
-            );
+            taskRunner.addPipeline(FIAT_PAYMENT_STARTED_PIPELINE);
             taskRunner.run();
         } else {
             log.warn("onFiatPaymentStarted called twice. " +
@@ -187,12 +201,7 @@ public class BuyerAsOffererProtocol extends TradeProtocol implements BuyerProtoc
                 },
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                ProcessFinalizePayoutTxRequest.class,
-                SignAndFinalizePayoutTx.class,
-                SendPayoutTxFinalizedMessage.class,
-                BroadcastAfterLockTime.class
-        );
+        taskRunner.addPipeline(FINALIZE_PAYOUT_TX_REQUEST_PIPELINE);
         taskRunner.run();
     }
 
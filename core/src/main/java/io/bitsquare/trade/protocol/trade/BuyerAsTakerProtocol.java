@@ -20,6 +20,7 @@ package io.bitsquare.trade.protocol.trade;
 
 import io.bitsquare.common.handlers.ErrorMessageHandler;
 import io.bitsquare.common.handlers.ResultHandler;
+import io.bitsquare.common.taskrunner.TaskPipeline;
 import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.messaging.MailboxMessage;
@@ -37,6 +38,39 @@ import org.slf4j.LoggerFactory;
 public class BuyerAsTakerProtocol extends TradeProtocol implements BuyerProtocol, TakerProtocol {
     private static final Logger log = LoggerFactory.getLogger(BuyerAsTakerProtocol.class);
 
+    private static final TaskPipeline<Trade> TAKE_OFFER_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(
+                    SelectArbitrator.class,
+                    LoadCreateOfferFeeTx.class,
+                    CreateTakeOfferFeeTx.class
+            )
+            .addCheckpoint(BroadcastTakeOfferFeeTx.class)
+            .addCheckpoint(TakerCreatesDepositTxInputsAsBuyer.class)
+            .add(SendPayDepositRequest.class)
+            .build();
+
+    private static final TaskPipeline<Trade> PUBLISH_DEPOSIT_TX_REQUEST_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(
+                    ProcessPublishDepositTxRequest.class,
+                    VerifyOffererAccount.class,
+                    VerifyAndSignContract.class
+            )
+            .addCheckpoint(SignAndPublishDepositTxAsBuyer.class)
+            .add(SendDepositTxPublishedMessage.class)
+            .build();
+
+    private static final TaskPipeline<Trade> FIAT_PAYMENT_STARTED_PIPELINE = TaskPipeline.builder(Trade.class)
+            .addCheckpoint(VerifyOfferFeePayment.class)
+            .add(SendFiatTransferStartedMessage.class)
+            .build();
+
+    private static final TaskPipeline<Trade> FINALIZE_PAYOUT_TX_REQUEST_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(ProcessFinalizePayoutTxRequest.class)
+            .addCheckpoint(SignAndFinalizePayoutTx.class)
+            .addCheckpoint(SendPayoutTxFinalizedMessage.class)
+            .add(BroadcastAfterLockTime.class)
+            .build();
+
     private final BuyerAsTakerTrade buyerAsTakerTrade;
 
 
@@ -90,14 +124,7 @@ public class BuyerAsTakerProtocol extends TradeProtocol implements BuyerProtocol
                 () -> handleTaskRunnerSuccess("takeAvailableOffer"),
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                SelectArbitrator.class,
-                LoadCreateOfferFeeTx.class,
-                CreateTakeOfferFeeTx.class,
-                BroadcastTakeOfferFeeTx.class,
-                TakerCreatesDepositTxInputsAsBuyer.class,
-                SendPayDepositRequest.class
-        );
+        taskRunner.addPipeline(TAKE_OFFER_PIPELINE);
         startTimeout();
         taskRunner.run();
     }
@@ -115,13 +142,7 @@ public class BuyerAsTakerProtocol extends TradeProtocol implements BuyerProtocol
         TradeTaskRunner taskRunner = new TradeTaskRunner(buyerAsTakerTrade,
                 () -> handleTaskRunnerSuccess("PublishDepositTxRequest"),
                 this::handleTaskRunnerFault);
-        taskRunner.addTasks(
-                ProcessPublishDepositTxRequest.class,
-                VerifyOffererAccount.class,
-                VerifyAndSignContract.class,
-                SignAndPublishDepositTxAsBuyer.class,
-                SendDepositTxPublishedMessage.class
-        );
+        taskRunner.addPipeline(PUBLISH_DEPOSIT_TX_REQUEST_PIPELINE);
         taskRunner.run();
     }
 
@@ -149,10 +170,7 @@ public class BuyerAsTakerProtocol extends TradeProtocol implements BuyerProtocol
                         errorMessageHandler.handleErrorMessage(errorMessage);
                         handleTaskRunnerFault(errorMessage);
                     });
-            taskRunner.addTasks(
-                    VerifyOfferFeePayment.class,
-                    SendFiatTransferStartedMessage.class
-            );
+            taskRunner.addPipeline(FIAT_PAYMENT_STARTED_PIPELINE);
             taskRunner.run();
         } else {
             log.warn("onFiatPaymentStarted called twice. " +
@@ -177,12 +195,7 @@ public class BuyerAsTakerProtocol extends TradeProtocol implements BuyerProtocol
                 },
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                ProcessFinalizePayoutTxRequest.class,
-                SignAndFinalizePayoutTx.class,
-                SendPayoutTxFinalizedMessage.class,
-                BroadcastAfterLockTime.class
-        );
+        taskRunner.addPipeline(FINALIZE_PAYOUT_TX_REQUEST_PIPELINE);
         taskRunner.run();
     }
 
@@ -67,6 +67,7 @@ public class ProcessModel implements Model, Serializable {
     transient private User user;
     transient private KeyRing keyRing;
     transient private P2PService p2PService;
+    transient private TradeMailbox mailbox;
 
     // Mutable
     public final TradingPeer tradingPeer;
@@ -128,6 +129,13 @@ public class ProcessModel implements Model, Serializable {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
 
+    // Created at first use, as it is not persisted
+    TradeMailbox getMailbox() {
+        if (mailbox == null)
+            mailbox = new TradeMailbox();
+        return mailbox;
+    }
+
     public TradeManager getTradeManager() {
         return tradeManager;
     }
@@ -20,6 +20,7 @@ package io.bitsquare.trade.protocol.trade;
 
 import io.bitsquare.common.handlers.ErrorMessageHandler;
 import io.bitsquare.common.handlers.ResultHandler;
+import io.bitsquare.common.taskrunner.TaskPipeline;
 import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.messaging.MailboxMessage;
@@ -38,6 +39,30 @@ import static io.bitsquare.util.Validator.checkTradeId;
 public class SellerAsOffererProtocol extends TradeProtocol implements SellerProtocol, OffererProtocol {
     private static final Logger log = LoggerFactory.getLogger(SellerAsOffererProtocol.class);
 
+    private static final TaskPipeline<Trade> TAKE_OFFER_REQUEST_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(
+                    ProcessPayDepositRequest.class,
+                    VerifyArbitrationSelection.class,
+                    VerifyTakerAccount.class,
+                    LoadTakeOfferFeeTx.class,
+                    CreateAndSignContract.class,
+                    OffererCreatesAndSignsDepositTxAsSeller.class
+            )
+            .addCheckpoint(SetupDepositBalanceListener.class)
+            .add(SendPublishDepositTxRequest.class)
+            .build();
+
+    private static final TaskPipeline<Trade> FIAT_PAYMENT_RECEIPT_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(VerifyTakeOfferFeePayment.class)
+            .addCheckpoint(SignPayoutTx.class)
+            .add(SendFinalizePayoutTxRequest.class)
+            .build();
+
+    private static final TaskPipeline<Trade> PAYOUT_TX_FINALIZED_PIPELINE = TaskPipeline.builder(Trade.class)
+            .addCheckpoint(ProcessPayoutTxFinalizedMessage.class)
+            .add(BroadcastAfterLockTime.class)
+            .build();
+
     private final SellerAsOffererTrade sellerAsOffererTrade;
 
 
@@ -103,16 +128,7 @@ public class SellerAsOffererProtocol extends TradeProtocol implements SellerProt
                 () -> handleTaskRunnerSuccess("handleTakeOfferRequest"),
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                ProcessPayDepositRequest.class,
-                VerifyArbitrationSelection.class,
-                VerifyTakerAccount.class,
-                LoadTakeOfferFeeTx.class,
-                CreateAndSignContract.class,
-                OffererCreatesAndSignsDepositTxAsSeller.class,
-                SetupDepositBalanceListener.class,
-                SendPublishDepositTxRequest.class
-        );
+        taskRunner.addPipeline(TAKE_OFFER_REQUEST_PIPELINE);
         startTimeout();
         taskRunner.run();
     }
@@ -177,11 +193,7 @@ public class SellerAsOffererProtocol extends TradeProtocol implements SellerProt
                         handleTaskRunnerFault(errorMessage);
                     });
 
-            taskRunner.addTasks(
-                    VerifyTakeOfferFeePayment.class,
-                    SignPayoutTx.class,
-                    SendFinalizePayoutTxRequest.class
-            );
+            taskRunner.addPipeline(FIAT_PAYMENT_RECEIPT_PIPELINE);
             taskRunner.run();
         } else {
             log.warn("onFiatPaymentReceived called twice. " +
@@ -201,10 +213,7 @@ public class SellerAsOffererProtocol extends TradeProtocol implements SellerProt
                 },
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                ProcessPayoutTxFinalizedMessage.class,
-                BroadcastAfterLockTime.class
-        );
+        taskRunner.addPipeline(PAYOUT_TX_FINALIZED_PIPELINE);
         taskRunner.run();
     }
 
@@ -20,6 +20,7 @@ package io.bitsquare.trade.protocol.trade;
 
 import io.bitsquare.common.handlers.ErrorMessageHandler;
 import io.bitsquare.common.handlers.ResultHandler;
+import io.bitsquare.common.taskrunner.TaskPipeline;
 import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.messaging.MailboxMessage;
@@ -38,6 +39,38 @@ import org.slf4j.LoggerFactory;
 public class SellerAsTakerProtocol extends TradeProtocol implements SellerProtocol, TakerProtocol {
     private static final Logger log = LoggerFactory.getLogger(SellerAsTakerProtocol.class);
 
+    private static final TaskPipeline<Trade> TAKE_OFFER_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(
+                    SelectArbitrator.class,
+                    LoadCreateOfferFeeTx.class,
+                    CreateTakeOfferFeeTx.class
+            )
+            .addCheckpoint(BroadcastTakeOfferFeeTx.class)
+            .addCheckpoint(TakerCreatesDepositTxInputsAsSeller.class)
+            .add(SendPayDepositRequest.class)
+            .build();
+
+    private static final TaskPipeline<Trade> PUBLISH_DEPOSIT_TX_REQUEST_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(
+                    ProcessPublishDepositTxRequest.class,
+                    VerifyOffererAccount.class,
+                    VerifyAndSignContract.class
+            )
+            .addCheckpoint(SignAndPublishDepositTxAsSeller.class)
+            .add(SendDepositTxPublishedMessage.class)
+            .build();
+
+    private static final TaskPipeline<Trade> FIAT_PAYMENT_RECEIPT_PIPELINE = TaskPipeline.builder(Trade.class)
+            .add(VerifyOfferFeePayment.class)
+            .addCheckpoint(SignPayoutTx.class)
+            .add(SendFinalizePayoutTxRequest.class)
+            .build();
+
+    private static final TaskPipeline<Trade> PAYOUT_TX_FINALIZED_PIPELINE = TaskPipeline.builder(Trade.class)
+            .addCheckpoint(ProcessPayoutTxFinalizedMessage.class)
+            .add(BroadcastAfterLockTime.class)
+            .build();
+
     private final SellerAsTakerTrade sellerAsTakerTrade;
 
 
@@ -98,14 +131,7 @@ public class SellerAsTakerProtocol extends TradeProtocol implements SellerProtoc
                 () -> handleTaskRunnerSuccess("takeAvailableOffer"),
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                SelectArbitrator.class,
-                LoadCreateOfferFeeTx.class,
-                CreateTakeOfferFeeTx.class,
-                BroadcastTakeOfferFeeTx.class,
-                TakerCreatesDepositTxInputsAsSeller.class,
-                SendPayDepositRequest.class
-        );
+        taskRunner.addPipeline(TAKE_OFFER_PIPELINE);
         startTimeout();
         taskRunner.run();
     }
@@ -125,13 +151,7 @@ public class SellerAsTakerProtocol extends TradeProtocol implements SellerProtoc
                 () -> handleTaskRunnerSuccess("PayDepositRequest"),
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                ProcessPublishDepositTxRequest.class,
-                VerifyOffererAccount.class,
-                VerifyAndSignContract.class,
-                SignAndPublishDepositTxAsSeller.class,
-                SendDepositTxPublishedMessage.class
-        );
+        taskRunner.addPipeline(PUBLISH_DEPOSIT_TX_REQUEST_PIPELINE);
         taskRunner.run();
     }
 
@@ -177,11 +197,7 @@ public class SellerAsTakerProtocol extends TradeProtocol implements SellerProtoc
                         handleTaskRunnerFault(errorMessage);
                     });
 
-            taskRunner.addTasks(
-                    VerifyOfferFeePayment.class,
-                    SignPayoutTx.class,
-                    SendFinalizePayoutTxRequest.class
-            );
+            taskRunner.addPipeline(FIAT_PAYMENT_RECEIPT_PIPELINE);
             taskRunner.run();
         } else {
             log.warn("onFiatPaymentReceived called twice. " +
@@ -202,10 +218,7 @@ public class SellerAsTakerProtocol extends TradeProtocol implements SellerProtoc
                 },
                 this::handleTaskRunnerFault);
 
-        taskRunner.addTasks(
-                ProcessPayoutTxFinalizedMessage.class,
-                BroadcastAfterLockTime.class
-        );
+        taskRunner.addPipeline(PAYOUT_TX_FINALIZED_PIPELINE);
         taskRunner.run();
     }
 
@@ -0,0 +1,142 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.protocol.trade;
+
+import io.bitsquare.common.Timer;
+import io.bitsquare.common.UserThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serial mailbox of a trade. The task runners of a trade are executed one after the other in the order they got
+ * submitted. A message which arrives while a task of the trade waits for its work on the WorkerPool gets processed
+ * after the running sequence has completed. The mailboxes of different trades are independent, so the UserThread
+ * continues with the other trades in the meantime.
+ * <p>
+ * A runner holds the mailbox until its result or error handler got called or it got canceled. A task which waits for
+ * the chain, like BroadcastAfterLockTime waiting for the lock time of the payout tx, releases the mailbox before it
+ * waits, so messages and disputes of the trade are not blocked for days.
+ * <p>
+ * If a handler never gets called (e.g. a broadcast callback which never fires) the entry gets released after
+ * HOLD_TIMEOUT_SEC, so the mailbox is not blocked for the rest of the session. The TradeProtocol timeout releases the
+ * running entry earlier if it is active.
+ * <p>
+ * Not thread safe, it is used from the UserThread.
+ */
+class TradeMailbox {
+    private static final Logger log = LoggerFactory.getLogger(TradeMailbox.class);
+
+    // Longer than the TIMEOUT_SEC of the TradeProtocol
+    private static final long HOLD_TIMEOUT_SEC = 90;
+
+    private final long holdTimeoutMs;
+    private final Queue<Entry> pendingEntries = new ArrayDeque<>();
+    private Entry runningEntry;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    TradeMailbox() {
+        this(TimeUnit.SECONDS.toMillis(HOLD_TIMEOUT_SEC));
+    }
+
+    TradeMailbox(long holdTimeoutMs) {
+        this.holdTimeoutMs = holdTimeoutMs;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    Entry newEntry() {
+        return new Entry();
+    }
+
+    /**
+     * Releases the entry which holds the mailbox, so the pending entries are not blocked by a runner which timed out.
+     */
+    void releaseRunningEntry() {
+        if (runningEntry != null)
+            runningEntry.release();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void runNext() {
+        if (runningEntry == null) {
+            runningEntry = pendingEntries.poll();
+            if (runningEntry != null)
+                runningEntry.run();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Entry
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    final class Entry {
+        private Runnable runnable;
+        private boolean isReleased;
+        private Timer holdTimer;
+
+        private Entry() {
+        }
+
+        void submit(Runnable runnable) {
+            if (this.runnable == null && !isReleased) {
+                this.runnable = runnable;
+                pendingEntries.add(this);
+                runNext();
+            }
+        }
+
+        void release() {
+            if (!isReleased) {
+                isReleased = true;
+                if (holdTimer != null) {
+                    holdTimer.stop();
+                    holdTimer = null;
+                }
+                pendingEntries.remove(this);
+                if (runningEntry == this) {
+                    runningEntry = null;
+                    runNext();
+                }
+            }
+        }
+
+        private void run() {
+            holdTimer = UserThread.runAfter(() -> {
+                log.warn("The mailbox entry was not released after " + holdTimeoutMs + " ms. We release it.");
+                release();
+            }, holdTimeoutMs, TimeUnit.MILLISECONDS);
+            runnable.run();
+        }
+    }
+}
@@ -53,7 +53,7 @@ public abstract class TradeProtocol {
             // We check the sig only as soon we have stored the peers pubKeyRing.
             PubKeyRing tradingPeerPubKeyRing = processModel.tradingPeer.getPubKeyRing();
             PublicKey signaturePubKey = decryptedMessageWithPubKey.signaturePubKey;
-            if (tradingPeerPubKeyRing != null && signaturePubKey.equals(tradingPeerPubKeyRing.getSignaturePubKey())) {
+            if (tradingPeerPubKeyRing != null && tradingPeerPubKeyRing.isSignaturePubKey(signaturePubKey)) {
                 Message message = decryptedMessageWithPubKey.message;
                 log.trace("handleNewMessage: message = " + message.getClass().getSimpleName() + " from " + peersNodeAddress);
                 if (message instanceof TradeMessage) {
@@ -94,7 +94,7 @@ public abstract class TradeProtocol {
 
     public void applyMailboxMessage(DecryptedMsgWithPubKey decryptedMsgWithPubKey, Trade trade) {
         log.debug("applyMailboxMessage " + decryptedMsgWithPubKey.message);
-        if (decryptedMsgWithPubKey.signaturePubKey.equals(processModel.tradingPeer.getPubKeyRing().getSignaturePubKey()))
+        if (processModel.tradingPeer.getPubKeyRing().isSignaturePubKey(decryptedMsgWithPubKey.signaturePubKey))
             doApplyMailboxMessage(decryptedMsgWithPubKey.message, trade);
         else
             log.error("SignaturePubKey in message does not match the SignaturePubKey we have stored to that trading peer.");
@@ -110,6 +110,7 @@ public abstract class TradeProtocol {
         timeoutTimer = UserThread.runAfter(() -> {
             log.error("Timeout reached");
             trade.setErrorMessage("A timeout occurred.");
+            processModel.getMailbox().releaseRunningEntry();
             cleanupTradable();
             cleanup();
         }, TIMEOUT_SEC);
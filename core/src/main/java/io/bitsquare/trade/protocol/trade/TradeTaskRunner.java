@@ -22,9 +22,51 @@ import io.bitsquare.common.handlers.ResultHandler;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.Trade;
 
+/**
+ * Runs the tasks in the TradeMailbox of the trade, so the task runners of a trade never overlap.
+ */
 public class TradeTaskRunner extends TaskRunner<Trade> {
+    private final TradeMailbox.Entry mailboxEntry;
 
     public TradeTaskRunner(Trade sharedModel, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
-        super(sharedModel, (Class<Trade>) sharedModel.getClass().getSuperclass().getSuperclass(), resultHandler, errorMessageHandler);
+        this(sharedModel, sharedModel.getProcessModel().getMailbox().newEntry(), resultHandler, errorMessageHandler);
+    }
+
+    private TradeTaskRunner(Trade sharedModel, TradeMailbox.Entry mailboxEntry, ResultHandler resultHandler,
+                            ErrorMessageHandler errorMessageHandler) {
+        super(sharedModel, (Class<Trade>) sharedModel.getClass().getSuperclass().getSuperclass(),
+                () -> {
+                    try {
+                        resultHandler.handleResult();
+                    } finally {
+                        mailboxEntry.release();
+                    }
+                },
+                errorMessage -> {
+                    try {
+                        errorMessageHandler.handleErrorMessage(errorMessage);
+                    } finally {
+                        mailboxEntry.release();
+                    }
+                });
+        this.mailboxEntry = mailboxEntry;
+    }
+
+    @Override
+    public void run() {
+        mailboxEntry.submit(super::run);
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        mailboxEntry.release();
+    }
+
+    /**
+     * Called by the last task if it waits for the chain. The runner completes later outside of the mailbox.
+     */
+    public void releaseMailbox() {
+        mailboxEntry.release();
     }
 }
@@ -17,24 +17,33 @@
 
 package io.bitsquare.trade.protocol.trade.tasks;
 
+import com.google.common.util.concurrent.FutureCallback;
+import io.bitsquare.common.WorkerPool;
 import io.bitsquare.common.taskrunner.Task;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.crypto.DecryptedMsgWithPubKey;
 import io.bitsquare.p2p.messaging.MailboxMessage;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.protocol.trade.ProcessModel;
+import io.bitsquare.trade.protocol.trade.TradeTaskRunner;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
 public abstract class TradeTask extends Task<Trade> {
     private static final Logger log = LoggerFactory.getLogger(TradeTask.class);
 
     protected final ProcessModel processModel;
     protected final Trade trade;
+    private final TaskRunner taskHandler;
 
     protected TradeTask(TaskRunner taskHandler, Trade trade) {
         super(taskHandler, trade);
 
+        this.taskHandler = taskHandler;
         this.trade = trade;
         processModel = trade.getProcessModel();
     }
@@ -60,6 +69,39 @@ public abstract class TradeTask extends Task<Trade> {
         super.failed();
     }
 
+    /**
+     * Runs the work on the WorkerPool and the result handler on the UserThread. The task fails if one of them throws.
+     * The work may call the TradeWalletService, as the bitcoinj Wallet and PeerGroup lock internally. It must not access
+     * the trade or the process model, so collect the inputs before and apply the result in the result handler. Broadcasts
+     * are started from the result handler, so only the signing runs on the WorkerPool.
+     */
+    protected <R> void runOnWorkerPool(Callable<R> work, Consumer<R> resultHandler) {
+        WorkerPool.execute(work, new FutureCallback<R>() {
+            @Override
+            public void onSuccess(R result) {
+                try {
+                    resultHandler.accept(result);
+                } catch (Throwable t) {
+                    failed(t);
+                }
+            }
+
+            @Override
+            public void onFailure(@NotNull Throwable t) {
+                failed(t);
+            }
+        });
+    }
+
+    /**
+     * Lets the other task runners of the trade run while this task waits for the chain, which can take days. Only the
+     * last task of a sequence may release the mailbox, as the tasks after it would not run serially anymore.
+     */
+    protected void releaseMailbox() {
+        if (taskHandler instanceof TradeTaskRunner)
+            ((TradeTaskRunner) taskHandler).releaseMailbox();
+    }
+
     protected void removeMailboxMessageAfterProcessing() {
         if (processModel.getTradeMessage() instanceof MailboxMessage) {
             DecryptedMsgWithPubKey mailboxMessage = trade.getMailboxMessage();
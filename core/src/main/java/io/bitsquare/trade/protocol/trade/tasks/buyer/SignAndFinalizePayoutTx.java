@@ -19,6 +19,7 @@ package io.bitsquare.trade.protocol.trade.tasks.buyer;
 
 import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.FeePolicy;
+import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.protocol.trade.tasks.TradeTask;
@@ -44,24 +45,34 @@ public class SignAndFinalizePayoutTx extends TradeTask {
             Coin sellerPayoutAmount = FeePolicy.getSecurityDeposit();
             Coin buyerPayoutAmount = sellerPayoutAmount.add(trade.getTradeAmount());
 
-            Transaction transaction = processModel.getTradeWalletService().buyerSignsAndFinalizesPayoutTx(
-                    trade.getDepositTx(),
-                    processModel.tradingPeer.getSignature(),
+            TradeWalletService tradeWalletService = processModel.getTradeWalletService();
+            String id = processModel.getOffer().getId();
+            Transaction depositTx = trade.getDepositTx();
+            byte[] sellerSignature = processModel.tradingPeer.getSignature();
+            AddressEntry buyerPayoutAddressEntry = processModel.getWalletService().getOrCreateAddressEntry(id, AddressEntry.Context.TRADE_PAYOUT);
+            AddressEntry multiSigAddressEntry = processModel.getWalletService().getOrCreateAddressEntry(id, AddressEntry.Context.MULTI_SIG);
+            String sellerAddressString = processModel.tradingPeer.getPayoutAddressString();
+            long lockTimeAsBlockHeight = trade.getLockTimeAsBlockHeight();
+            byte[] sellerPubKey = processModel.tradingPeer.getMultiSigPubKey();
+            byte[] arbitratorPubKey = processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress());
+            runOnWorkerPool(() -> tradeWalletService.buyerSignsAndFinalizesPayoutTx(
+                    depositTx,
+                    sellerSignature,
                     buyerPayoutAmount,
                     sellerPayoutAmount,
-                    processModel.getWalletService().getOrCreateAddressEntry(processModel.getOffer().getId(), AddressEntry.Context.TRADE_PAYOUT),
-                    processModel.getWalletService().getOrCreateAddressEntry(processModel.getOffer().getId(), AddressEntry.Context.MULTI_SIG),
-                    processModel.tradingPeer.getPayoutAddressString(),
-                    trade.getLockTimeAsBlockHeight(),
-                    processModel.getWalletService().getOrCreateAddressEntry(processModel.getOffer().getId(), AddressEntry.Context.MULTI_SIG).getPubKey(),
-                    processModel.tradingPeer.getMultiSigPubKey(),
-                    processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress())
-            );
+                    buyerPayoutAddressEntry,
+                    multiSigAddressEntry,
+                    sellerAddressString,
+                    lockTimeAsBlockHeight,
+                    multiSigAddressEntry.getPubKey(),
+                    sellerPubKey,
+                    arbitratorPubKey),
+                    (Transaction transaction) -> {
+                        trade.setPayoutTx(transaction);
+                        trade.setState(Trade.State.BUYER_COMMITTED_PAYOUT_TX);
 
-            trade.setPayoutTx(transaction);
-            trade.setState(Trade.State.BUYER_COMMITTED_PAYOUT_TX);
-
-            complete();
+                        complete();
+                    });
         } catch (Throwable t) {
             failed(t);
         }
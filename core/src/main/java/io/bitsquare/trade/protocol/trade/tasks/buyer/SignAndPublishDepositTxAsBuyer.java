@@ -20,8 +20,10 @@ package io.bitsquare.trade.protocol.trade.tasks.buyer;
 import com.google.common.util.concurrent.FutureCallback;
 import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.FeePolicy;
+import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.btc.WalletService;
 import io.bitsquare.btc.data.RawTransactionInput;
+import io.bitsquare.common.UserThread;
 import io.bitsquare.common.crypto.Hash;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.Trade;
@@ -34,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class SignAndPublishDepositTxAsBuyer extends TradeTask {
     private static final Logger log = LoggerFactory.getLogger(SignAndPublishDepositTxAsBuyer.class);
@@ -61,31 +64,40 @@ public class SignAndPublishDepositTxAsBuyer extends TradeTask {
             buyerMultiSigAddressEntry.setLockedTradeAmount(Coin.valueOf(buyerInputs.stream().mapToLong(input -> input.value).sum()).subtract(FeePolicy.getFixedTxFeeForTrades()));
             walletService.saveAddressEntryList();
             TradingPeer tradingPeer = processModel.tradingPeer;
-            processModel.getTradeWalletService().takerSignsAndPublishesDepositTx(
+            TradeWalletService tradeWalletService = processModel.getTradeWalletService();
+            byte[] preparedDepositTx = processModel.getPreparedDepositTx();
+            List<RawTransactionInput> sellerInputs = tradingPeer.getRawTransactionInputs();
+            byte[] buyerPubKey = buyerMultiSigAddressEntry.getPubKey();
+            byte[] sellerPubKey = tradingPeer.getMultiSigPubKey();
+            byte[] arbitratorPubKey = processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress());
+            // Only the signing runs on the WorkerPool, the broadcast is started from the UserThread
+            runOnWorkerPool(() -> tradeWalletService.takerSignsDepositTx(
                     false,
                     contractHash,
-                    processModel.getPreparedDepositTx(),
+                    preparedDepositTx,
                     buyerInputs,
-                    tradingPeer.getRawTransactionInputs(),
-                    buyerMultiSigAddressEntry.getPubKey(),
-                    tradingPeer.getMultiSigPubKey(),
-                    processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress()),
-                    new FutureCallback<Transaction>() {
+                    sellerInputs,
+                    buyerPubKey,
+                    sellerPubKey,
+                    arbitratorPubKey),
+                    depositTx -> tradeWalletService.broadcastTx(depositTx, new FutureCallback<Transaction>() {
                         @Override
                         public void onSuccess(Transaction transaction) {
-                            log.trace("takerSignAndPublishTx succeeded " + transaction);
+                            UserThread.execute(() -> {
+                                log.trace("takerSignAndPublishTx succeeded " + transaction);
 
-                            trade.setDepositTx(transaction);
-                            trade.setState(Trade.State.TAKER_PUBLISHED_DEPOSIT_TX);
+                                trade.setDepositTx(transaction);
+                                trade.setState(Trade.State.TAKER_PUBLISHED_DEPOSIT_TX);
 
-                            complete();
+                                complete();
+                            });
                         }
 
                         @Override
                         public void onFailure(@NotNull Throwable t) {
-                            failed(t);
+                            UserThread.execute(() -> failed(t));
                         }
-                    });
+                    }));
         } catch (Throwable t) {
             failed(t);
         }
@@ -19,16 +19,21 @@ package io.bitsquare.trade.protocol.trade.tasks.seller;
 
 import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.FeePolicy;
+import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.btc.WalletService;
 import io.bitsquare.btc.data.PreparedDepositTxAndOffererInputs;
+import io.bitsquare.btc.data.RawTransactionInput;
 import io.bitsquare.common.crypto.Hash;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.protocol.trade.tasks.TradeTask;
+import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Coin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class OffererCreatesAndSignsDepositTxAsSeller extends TradeTask {
@@ -58,24 +63,34 @@ public class OffererCreatesAndSignsDepositTxAsSeller extends TradeTask {
             AddressEntry sellerMultiSigAddressEntry = walletService.getOrCreateAddressEntry(id, AddressEntry.Context.MULTI_SIG);
             sellerMultiSigAddressEntry.setLockedTradeAmount(sellerInputAmount.subtract(FeePolicy.getFixedTxFeeForTrades()));
             walletService.saveAddressEntryList();
-            PreparedDepositTxAndOffererInputs result = processModel.getTradeWalletService().offererCreatesAndSignsDepositTx(
+            TradeWalletService tradeWalletService = processModel.getTradeWalletService();
+            List<RawTransactionInput> takerRawTransactionInputs = processModel.tradingPeer.getRawTransactionInputs();
+            long takerChangeOutputValue = processModel.tradingPeer.getChangeOutputValue();
+            String takerChangeAddressString = processModel.tradingPeer.getChangeOutputAddress();
+            AddressEntry offererAddressEntry = walletService.getOrCreateAddressEntry(id, AddressEntry.Context.RESERVED_FOR_TRADE);
+            Address offererChangeAddress = walletService.getOrCreateAddressEntry(AddressEntry.Context.AVAILABLE).getAddress();
+            byte[] buyerPubKey = processModel.tradingPeer.getMultiSigPubKey();
+            byte[] sellerPubKey = sellerMultiSigAddressEntry.getPubKey();
+            byte[] arbitratorPubKey = processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress());
+            runOnWorkerPool(() -> tradeWalletService.offererCreatesAndSignsDepositTx(
                     false,
                     contractHash,
                     sellerInputAmount,
                     msOutputAmount,
-                    processModel.tradingPeer.getRawTransactionInputs(),
-                    processModel.tradingPeer.getChangeOutputValue(),
-                    processModel.tradingPeer.getChangeOutputAddress(),
-                    walletService.getOrCreateAddressEntry(id, AddressEntry.Context.RESERVED_FOR_TRADE),
-                    walletService.getOrCreateAddressEntry(AddressEntry.Context.AVAILABLE).getAddress(),
-                    processModel.tradingPeer.getMultiSigPubKey(),
-                    sellerMultiSigAddressEntry.getPubKey(),
-                    processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress()));
-
-            processModel.setPreparedDepositTx(result.depositTransaction);
-            processModel.setRawTransactionInputs(result.rawOffererInputs);
+                    takerRawTransactionInputs,
+                    takerChangeOutputValue,
+                    takerChangeAddressString,
+                    offererAddressEntry,
+                    offererChangeAddress,
+                    buyerPubKey,
+                    sellerPubKey,
+                    arbitratorPubKey),
+                    (PreparedDepositTxAndOffererInputs result) -> {
+                        processModel.setPreparedDepositTx(result.depositTransaction);
+                        processModel.setRawTransactionInputs(result.rawOffererInputs);
 
-            complete();
+                        complete();
+                    });
         } catch (Throwable t) {
             failed(t);
         }
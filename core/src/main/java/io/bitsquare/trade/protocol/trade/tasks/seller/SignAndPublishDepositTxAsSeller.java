@@ -20,8 +20,10 @@ package io.bitsquare.trade.protocol.trade.tasks.seller;
 import com.google.common.util.concurrent.FutureCallback;
 import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.FeePolicy;
+import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.btc.WalletService;
 import io.bitsquare.btc.data.RawTransactionInput;
+import io.bitsquare.common.UserThread;
 import io.bitsquare.common.crypto.Hash;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.Trade;
@@ -34,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class SignAndPublishDepositTxAsSeller extends TradeTask {
     private static final Logger log = LoggerFactory.getLogger(SignAndPublishDepositTxAsSeller.class);
@@ -60,31 +63,40 @@ public class SignAndPublishDepositTxAsSeller extends TradeTask {
             sellerMultiSigAddressEntry.setLockedTradeAmount(Coin.valueOf(sellerInputs.stream().mapToLong(input -> input.value).sum()).subtract(FeePolicy.getFixedTxFeeForTrades()));
             walletService.saveAddressEntryList();
             TradingPeer tradingPeer = processModel.tradingPeer;
-            processModel.getTradeWalletService().takerSignsAndPublishesDepositTx(
+            TradeWalletService tradeWalletService = processModel.getTradeWalletService();
+            byte[] preparedDepositTx = processModel.getPreparedDepositTx();
+            List<RawTransactionInput> buyerInputs = tradingPeer.getRawTransactionInputs();
+            byte[] buyerPubKey = tradingPeer.getMultiSigPubKey();
+            byte[] sellerPubKey = sellerMultiSigAddressEntry.getPubKey();
+            byte[] arbitratorPubKey = processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress());
+            // Only the signing runs on the WorkerPool, the broadcast is started from the UserThread
+            runOnWorkerPool(() -> tradeWalletService.takerSignsDepositTx(
                     true,
                     contractHash,
-                    processModel.getPreparedDepositTx(),
-                    tradingPeer.getRawTransactionInputs(),
+                    preparedDepositTx,
+                    buyerInputs,
                     sellerInputs,
-                    tradingPeer.getMultiSigPubKey(),
-                    sellerMultiSigAddressEntry.getPubKey(),
-                    processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress()),
-                    new FutureCallback<Transaction>() {
+                    buyerPubKey,
+                    sellerPubKey,
+                    arbitratorPubKey),
+                    depositTx -> tradeWalletService.broadcastTx(depositTx, new FutureCallback<Transaction>() {
                         @Override
                         public void onSuccess(Transaction transaction) {
-                            log.trace("takerSignAndPublishTx succeeded " + transaction);
+                            UserThread.execute(() -> {
+                                log.trace("takerSignAndPublishTx succeeded " + transaction);
 
-                            trade.setDepositTx(transaction);
-                            trade.setState(Trade.State.TAKER_PUBLISHED_DEPOSIT_TX);
+                                trade.setDepositTx(transaction);
+                                trade.setState(Trade.State.TAKER_PUBLISHED_DEPOSIT_TX);
 
-                            complete();
+                                complete();
+                            });
                         }
 
                         @Override
                         public void onFailure(@NotNull Throwable t) {
-                            failed(t);
+                            UserThread.execute(() -> failed(t));
                         }
-                    });
+                    }));
         } catch (Throwable t) {
             failed(t);
         }
@@ -19,11 +19,13 @@ package io.bitsquare.trade.protocol.trade.tasks.seller;
 
 import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.FeePolicy;
+import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.btc.WalletService;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.protocol.trade.tasks.TradeTask;
 import org.bitcoinj.core.Coin;
+import org.bitcoinj.core.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,28 +52,34 @@ public class SignPayoutTx extends TradeTask {
             // In the tradeWallet we apply the lockTime only if it is set, otherwise we use the default values for 
             // transaction lockTime and sequence number
             long lockTime = trade.getOffer().getPaymentMethod().getLockTime();
-            long lockTimeAsBlockHeight = 0;
-            if (lockTime > 0)
-                lockTimeAsBlockHeight = processModel.getTradeWalletService().getLastBlockSeenHeight() + lockTime;
+            TradeWalletService tradeWalletService = processModel.getTradeWalletService();
+            long lockTimeAsBlockHeight = lockTime > 0 ? tradeWalletService.getLastBlockSeenHeight() + lockTime : 0;
             trade.setLockTimeAsBlockHeight(lockTimeAsBlockHeight);
 
             WalletService walletService = processModel.getWalletService();
             String id = processModel.getOffer().getId();
-            byte[] payoutTxSignature = processModel.getTradeWalletService().sellerSignsPayoutTx(
-                    trade.getDepositTx(),
+            Transaction depositTx = trade.getDepositTx();
+            String buyerPayoutAddressString = processModel.tradingPeer.getPayoutAddressString();
+            AddressEntry sellerPayoutAddressEntry = walletService.getOrCreateAddressEntry(id, AddressEntry.Context.TRADE_PAYOUT);
+            AddressEntry multiSigAddressEntry = walletService.getOrCreateAddressEntry(id, AddressEntry.Context.MULTI_SIG);
+            byte[] buyerPubKey = processModel.tradingPeer.getMultiSigPubKey();
+            byte[] arbitratorPubKey = processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress());
+            runOnWorkerPool(() -> tradeWalletService.sellerSignsPayoutTx(
+                    depositTx,
                     buyerPayoutAmount,
                     sellerPayoutAmount,
-                    processModel.tradingPeer.getPayoutAddressString(),
-                    walletService.getOrCreateAddressEntry(id, AddressEntry.Context.TRADE_PAYOUT),
-                    walletService.getOrCreateAddressEntry(id, AddressEntry.Context.MULTI_SIG),
+                    buyerPayoutAddressString,
+                    sellerPayoutAddressEntry,
+                    multiSigAddressEntry,
                     lockTimeAsBlockHeight,
-                    processModel.tradingPeer.getMultiSigPubKey(),
-                    walletService.getOrCreateAddressEntry(id, AddressEntry.Context.MULTI_SIG).getPubKey(),
-                    processModel.getArbitratorPubKey(trade.getArbitratorNodeAddress()));
+                    buyerPubKey,
+                    multiSigAddressEntry.getPubKey(),
+                    arbitratorPubKey),
+                    (byte[] payoutTxSignature) -> {
+                        processModel.setPayoutTxSignature(payoutTxSignature);
 
-            processModel.setPayoutTxSignature(payoutTxSignature);
-
-            complete();
+                        complete();
+                    });
         } catch (Throwable t) {
             failed(t);
         }
@@ -19,10 +19,12 @@ package io.bitsquare.trade.protocol.trade.tasks.seller;
 
 import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.FeePolicy;
+import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.btc.data.InputsAndChangeOutput;
 import io.bitsquare.common.taskrunner.TaskRunner;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.protocol.trade.tasks.TradeTask;
+import org.bitcoinj.core.Address;
 import org.bitcoinj.core.Coin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,14 +43,17 @@ public class TakerCreatesDepositTxInputsAsSeller extends TradeTask {
             if (trade.getTradeAmount() != null) {
                 Coin takerInputAmount = FeePolicy.getSecurityDeposit().add(FeePolicy.getFixedTxFeeForTrades()).add(trade.getTradeAmount());
 
-                InputsAndChangeOutput result = processModel.getTradeWalletService().takerCreatesDepositsTxInputs(takerInputAmount,
-                        processModel.getWalletService().getOrCreateAddressEntry(processModel.getOffer().getId(), AddressEntry.Context.RESERVED_FOR_TRADE),
-                        processModel.getWalletService().getOrCreateAddressEntry(AddressEntry.Context.AVAILABLE).getAddress());
-                processModel.setRawTransactionInputs(result.rawTransactionInputs);
-                processModel.setChangeOutputValue(result.changeOutputValue);
-                processModel.setChangeOutputAddress(result.changeOutputAddress);
+                TradeWalletService tradeWalletService = processModel.getTradeWalletService();
+                AddressEntry takersAddressEntry = processModel.getWalletService().getOrCreateAddressEntry(processModel.getOffer().getId(), AddressEntry.Context.RESERVED_FOR_TRADE);
+                Address takersChangeAddress = processModel.getWalletService().getOrCreateAddressEntry(AddressEntry.Context.AVAILABLE).getAddress();
+                runOnWorkerPool(() -> tradeWalletService.takerCreatesDepositsTxInputs(takerInputAmount, takersAddressEntry, takersChangeAddress),
+                        (InputsAndChangeOutput result) -> {
+                            processModel.setRawTransactionInputs(result.rawTransactionInputs);
+                            processModel.setChangeOutputValue(result.changeOutputValue);
+                            processModel.setChangeOutputAddress(result.changeOutputAddress);
 
-                complete();
+                            complete();
+                        });
             } else {
                 failed("trade.getTradeAmount() = null");
             }
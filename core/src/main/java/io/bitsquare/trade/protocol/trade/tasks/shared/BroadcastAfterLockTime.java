@@ -50,6 +50,8 @@ public class BroadcastAfterLockTime extends TradeTask {
             if (trade.getLockTimeAsBlockHeight() == 0 || processModel.getTradeWalletService().getBestChainHeight() >= trade.getLockTimeAsBlockHeight()) {
                 broadcastTx();
             } else {
+                // Waiting for the lock time can take days, so we don't block the other task runners of the trade
+                releaseMailbox();
                 ListenableFuture<StoredBlock> blockHeightFuture = processModel.getTradeWalletService().getBlockHeightFuture(trade.getPayoutTx());
                 blockHeightFuture.addListener(
                         () -> {
@@ -153,6 +153,16 @@ public final class User implements Persistable {
         paymentAccountsAsObservable.remove(paymentAccount);
     }
 
+    /**
+     * Has to be called after a payment account got changed in place. The account gets added again, so it is stored
+     * with its new hash code and the listeners of the payment accounts get informed about the change.
+     */
+    public void updatePaymentAccount(PaymentAccount paymentAccount) {
+        // The hash code of the account has changed, so we remove it by identity
+        if (paymentAccountsAsObservable.removeIf(e -> e == paymentAccount))
+            paymentAccountsAsObservable.add(paymentAccount);
+    }
+
     public void setCurrentPaymentAccount(PaymentAccount paymentAccount) {
         currentPaymentAccountProperty.set(paymentAccount);
     }
@@ -0,0 +1,115 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import io.bitsquare.common.crypto.Hash;
+import io.bitsquare.storage.FileUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AttachmentStoreTest {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        AttachmentStore store = new AttachmentStore(dir);
+        byte[] bytes = getBytes(1000);
+        byte[] contentHash = store.put(bytes);
+        assertArrayEquals(Hash.getHash(bytes), contentHash);
+        assertTrue(store.contains(contentHash));
+        assertArrayEquals(bytes, store.get(contentHash));
+
+        // Same content is stored only once
+        assertArrayEquals(contentHash, store.put(bytes.clone()));
+        assertEquals(1, new File(dir, "attachments").listFiles().length);
+        assertNull(store.get(Hash.getHash(getBytes(10))));
+    }
+
+    @Test
+    public void testChunkedTransferResumes() throws IOException {
+        AttachmentStore senderStore = new AttachmentStore(new File(dir, "sender"));
+        byte[] bytes = getBytes(AttachmentStore.CHUNK_SIZE * 2 + 100);
+        byte[] contentHash = senderStore.put(bytes);
+
+        File receiverDir = new File(dir, "receiver");
+        AttachmentStore receiverStore = new AttachmentStore(receiverDir);
+        assertFalse(receiverStore.appendChunk(contentHash, 0, senderStore.readChunk(contentHash, 0), bytes.length));
+        // A duplicated chunk gets ignored
+        assertFalse(receiverStore.appendChunk(contentHash, 0, senderStore.readChunk(contentHash, 0), bytes.length));
+        assertEquals(AttachmentStore.CHUNK_SIZE, receiverStore.getNumReceivedBytes(contentHash));
+
+        // A new instance continues where the previous stopped
+        receiverStore = new AttachmentStore(receiverDir);
+        long offset = receiverStore.getNumReceivedBytes(contentHash);
+        assertFalse(receiverStore.appendChunk(contentHash, offset, senderStore.readChunk(contentHash, offset), bytes.length));
+        offset = receiverStore.getNumReceivedBytes(contentHash);
+        byte[] lastChunk = senderStore.readChunk(contentHash, offset);
+        assertEquals(100, lastChunk.length);
+        assertTrue(receiverStore.appendChunk(contentHash, offset, lastChunk, bytes.length));
+
+        assertTrue(receiverStore.contains(contentHash));
+        assertArrayEquals(bytes, receiverStore.get(contentHash));
+        assertNull(senderStore.readChunk(contentHash, bytes.length));
+    }
+
+    @Test
+    public void testCorruptedContentGetsDiscarded() throws IOException {
+        AttachmentStore store = new AttachmentStore(dir);
+        byte[] bytes = getBytes(100);
+        byte[] contentHash = Hash.getHash(bytes);
+        byte[] corrupted = bytes.clone();
+        corrupted[50]++;
+        try {
+            store.appendChunk(contentHash, 0, corrupted, corrupted.length);
+            fail("Expected IOException");
+        } catch (IOException ignore) {
+        }
+        assertFalse(store.contains(contentHash));
+        assertEquals(0, store.getNumReceivedBytes(contentHash));
+        assertTrue(store.appendChunk(contentHash, 0, Arrays.copyOf(bytes, bytes.length), bytes.length));
+    }
+
+    private static byte[] getBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import io.bitsquare.arbitration.messages.AttachmentChunk;
+import io.bitsquare.btc.TradeWalletService;
+import io.bitsquare.btc.WalletService;
+import io.bitsquare.common.crypto.CryptoSuites;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.crypto.DecryptedMsgWithPubKey;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.P2PService;
+import io.bitsquare.p2p.messaging.DecryptedDirectMessageListener;
+import io.bitsquare.storage.FileUtil;
+import io.bitsquare.trade.TradeManager;
+import io.bitsquare.trade.offer.OpenOfferManager;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.Date;
+
+import static org.mockito.Mockito.*;
+
+public class DisputeManagerTest {
+    private final NodeAddress arbitratorNodeAddress = new NodeAddress("localhost", 3333);
+    private File dir1, dir2, dir3;
+    private KeyRing arbitratorKeyRing;
+    private AttachmentTransferManager attachmentTransferManager;
+    private DecryptedDirectMessageListener directMessageListener;
+
+    @Before
+    public void setup() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir1 = createTempDir();
+        dir2 = createTempDir();
+        dir3 = createTempDir();
+        KeyRing keyRing = new KeyRing(new KeyStorage(dir1));
+        arbitratorKeyRing = new KeyRing(new KeyStorage(dir2));
+
+        P2PService p2PService = mock(P2PService.class);
+        attachmentTransferManager = mock(AttachmentTransferManager.class);
+        DisputeManager disputeManager = new DisputeManager(p2PService, mock(TradeWalletService.class),
+                mock(WalletService.class), mock(TradeManager.class), mock(OpenOfferManager.class), keyRing,
+                new AttachmentStore(dir3), attachmentTransferManager, dir3);
+
+        ArgumentCaptor<DecryptedDirectMessageListener> listenerCaptor = ArgumentCaptor.forClass(DecryptedDirectMessageListener.class);
+        verify(p2PService).addDecryptedDirectMessageListener(listenerCaptor.capture());
+        directMessageListener = listenerCaptor.getValue();
+
+        // We are the trader, the arbitrator is our peer
+        DisputeRepository disputeRepository = disputeManager.getDisputeRepository();
+        disputeRepository.add(new Dispute(disputeRepository, "tradeId", 0, true, true, keyRing.getPubKeyRing(),
+                new Date(), null, new byte[0], null, null, null, null, "", "", "", arbitratorKeyRing.getPubKeyRing(),
+                false));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir1);
+        FileUtil.deleteDirectory(dir2);
+        FileUtil.deleteDirectory(dir3);
+    }
+
+    @Test
+    public void testAttachmentChunkSignedWithSuiteKey() {
+        AttachmentChunk chunk = new AttachmentChunk("tradeId", 0, new byte[32], 0, new byte[10], 10);
+        PublicKey ecSignaturePubKey = arbitratorKeyRing.getSignatureKeyPair(CryptoSuites.EC).getPublic();
+        directMessageListener.onDirectMessage(new DecryptedMsgWithPubKey(chunk, ecSignaturePubKey), arbitratorNodeAddress);
+        verify(attachmentTransferManager).onAttachmentChunk(chunk);
+    }
+
+    @Test
+    public void testAttachmentChunkFromOtherPeerIsIgnored() {
+        AttachmentChunk chunk = new AttachmentChunk("tradeId", 0, new byte[32], 0, new byte[10], 10);
+        PublicKey otherSignaturePubKey = CryptoSuites.EC.generateSignatureKeyPair().getPublic();
+        directMessageListener.onDirectMessage(new DecryptedMsgWithPubKey(chunk, otherSignaturePubKey), arbitratorNodeAddress);
+        verify(attachmentTransferManager, never()).onAttachmentChunk(any(AttachmentChunk.class));
+    }
+
+    private File createTempDir() throws IOException {
+        File dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+        return dir;
+    }
+}
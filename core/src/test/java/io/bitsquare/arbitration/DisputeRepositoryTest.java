@@ -0,0 +1,93 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.arbitration;
+
+import io.bitsquare.arbitration.messages.DisputeCommunicationMessage;
+import io.bitsquare.storage.FileUtil;
+import io.bitsquare.storage.RecordStorage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DisputeRepositoryTest {
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testMessageStateIsPersistedInChatLog() throws InterruptedException {
+        DisputeRepository disputeRepository = new DisputeRepository(dir);
+        Dispute dispute = new Dispute(disputeRepository, "tradeId", 0, true, true, null, new Date(), null, new byte[0],
+                null, null, null, null, "", "", "", null, false);
+        DisputeCommunicationMessage systemMessage = new DisputeCommunicationMessage("tradeId", 0, true, "system", null);
+        dispute.addDisputeMessage(systemMessage);
+        disputeRepository.add(dispute);
+        DisputeCommunicationMessage message = new DisputeCommunicationMessage("tradeId", 0, true, "text", null);
+        dispute.addDisputeMessage(message);
+
+        // The state changes after the message got appended
+        systemMessage.setArrived(true);
+        message.setStoredInMailbox(true);
+
+        // Wait for the writes on the persistence thread
+        Thread.sleep(600);
+        Dispute persisted = new DisputeRepository(dir).get("tradeId", 0).get();
+        List<DisputeCommunicationMessage> messages = persisted.getDisputeCommunicationMessagesAsObservableList();
+        assertEquals(2, messages.size());
+        assertEquals(systemMessage.getUID(), messages.get(0).getUID());
+        assertTrue(messages.get(0).arrivedProperty().get());
+        assertFalse(messages.get(0).storedInMailboxProperty().get());
+        assertEquals(message.getUID(), messages.get(1).getUID());
+        assertFalse(messages.get(1).arrivedProperty().get());
+        assertTrue(messages.get(1).storedInMailboxProperty().get());
+    }
+
+    @Test
+    public void testRecordDoesNotContainMessages() throws InterruptedException {
+        DisputeRepository disputeRepository = new DisputeRepository(dir);
+        Dispute dispute = new Dispute(disputeRepository, "tradeId", 0, true, true, null, new Date(), null, new byte[0],
+                null, null, null, null, "", "", "", null, false);
+        dispute.addDisputeMessage(new DisputeCommunicationMessage("tradeId", 0, true, "system", null));
+        disputeRepository.add(dispute);
+        dispute.setIsClosed(true);
+
+        Thread.sleep(600);
+        RecordStorage<Dispute> recordStorage = new RecordStorage<>(dir);
+        recordStorage.init("DisputeRecords");
+        Dispute record = recordStorage.read(dispute.getId());
+        assertTrue(record.isClosed());
+        assertTrue(record.getDisputeCommunicationMessagesAsObservableList().isEmpty());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.btc;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CoinSelectionEngineTest {
+
+    @Test
+    public void testSelectWithoutChange() {
+        List<CoinSelectionEngine.Candidate<String>> candidates = getCandidates(50, 30, 20, 7, 3);
+
+        assertEquals(Arrays.asList("50"), CoinSelectionEngine.selectWithoutChange(candidates, 50, 0));
+        assertEquals(Arrays.asList("30", "7", "3"), CoinSelectionEngine.selectWithoutChange(candidates, 40, 0));
+        // An excess of 1 goes to the miners
+        assertEquals(Arrays.asList("30", "7", "3"), CoinSelectionEngine.selectWithoutChange(candidates, 39, 1));
+        // Fewest inputs win: 50 + 3 for 53 instead of 30 + 20 + 3
+        assertEquals(Arrays.asList("50", "3"), CoinSelectionEngine.selectWithoutChange(candidates, 53, 0));
+        assertNull(CoinSelectionEngine.selectWithoutChange(candidates, 51, 0));
+        assertNull(CoinSelectionEngine.selectWithoutChange(candidates, 111, 10));
+    }
+
+    @Test
+    public void testSelectFallsBackToCoinDepth() {
+        List<CoinSelectionEngine.Candidate<String>> candidates = new ArrayList<>();
+        candidates.add(new CoinSelectionEngine.Candidate<>("young", 100, 1, BigInteger.ONE));
+        candidates.add(new CoinSelectionEngine.Candidate<>("old", 10, 100, BigInteger.valueOf(2)));
+        candidates.add(new CoinSelectionEngine.Candidate<>("pending", 60, 0, BigInteger.valueOf(3)));
+
+        // No set without change for 65, so we pick by coin-days: old (1000), young (100)
+        assertEquals(Arrays.asList("old", "young"), CoinSelectionEngine.select(candidates, 65, 0));
+        // 70 is covered exactly by old + pending
+        assertEquals(Arrays.asList("pending", "old"), CoinSelectionEngine.select(candidates, 70, 0));
+    }
+
+    private static List<CoinSelectionEngine.Candidate<String>> getCandidates(long... values) {
+        List<CoinSelectionEngine.Candidate<String>> candidates = new ArrayList<>();
+        for (int i = 0; i < values.length; i++)
+            candidates.add(new CoinSelectionEngine.Candidate<>(String.valueOf(values[i]), values[i], 1, BigInteger.valueOf(i)));
+        return candidates;
+    }
+}
@@ -0,0 +1,114 @@
+package io.bitsquare.btc.blockchain;
+
+import io.bitsquare.btc.blockchain.providers.FeeProvider;
+import io.bitsquare.http.HttpException;
+import org.bitcoinj.core.Coin;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FeeRequestTest {
+
+    @Test
+    public void testFirstProviderAnswersBeforeHedgeDelay() throws Exception {
+        StubFeeProvider fast = new StubFeeProvider(1000, 10, false);
+        StubFeeProvider other = new StubFeeProvider(2000, 10, false);
+        BlockchainService blockchainService = new BlockchainService(Arrays.asList(fast, other), 1000);
+
+        assertEquals(Coin.valueOf(1000), blockchainService.requestFee("tx1").get(5, TimeUnit.SECONDS));
+        assertEquals(0, other.numRequests.get());
+
+        // Cached
+        assertEquals(Coin.valueOf(1000), blockchainService.requestFee("tx1").get(5, TimeUnit.SECONDS));
+        assertEquals(1, fast.numRequests.get());
+    }
+
+    @Test
+    public void testHedgedRequestToSecondProvider() throws Exception {
+        StubFeeProvider slow = new StubFeeProvider(1000, 3000, false);
+        StubFeeProvider fast = new StubFeeProvider(2000, 10, false);
+        BlockchainService blockchainService = new BlockchainService(Arrays.asList(slow, fast), 200);
+
+        assertEquals(Coin.valueOf(2000), blockchainService.requestFee("tx1").get(5, TimeUnit.SECONDS));
+        assertEquals(1, slow.numRequests.get());
+    }
+
+    @Test
+    public void testProviderWithoutSuccessIsRankedAfterMeasuredOne() throws Exception {
+        StubFeeProvider slow = new StubFeeProvider(1000, 3000, false);
+        StubFeeProvider fast = new StubFeeProvider(2000, 10, false);
+        BlockchainService blockchainService = new BlockchainService(Arrays.asList(slow, fast), 200);
+        assertEquals(slow, blockchainService.getOrderedFeeProviderStats().get(0).provider);
+
+        // The request to the slow provider is still running, so only the fast one has a latency
+        assertEquals(Coin.valueOf(2000), blockchainService.requestFee("tx1").get(5, TimeUnit.SECONDS));
+        assertEquals(fast, blockchainService.getOrderedFeeProviderStats().get(0).provider);
+        assertEquals(slow, blockchainService.getOrderedFeeProviderStats().get(1).provider);
+    }
+
+    @Test
+    public void testFailingProviderGetsSkipped() throws Exception {
+        StubFeeProvider failing = new StubFeeProvider(1000, 10, true);
+        StubFeeProvider working = new StubFeeProvider(2000, 10, false);
+        // A failed request does not wait for the hedge delay, otherwise the request would time out
+        BlockchainService blockchainService = new BlockchainService(Arrays.asList(failing, working), 60_000);
+        assertEquals(Coin.valueOf(2000), blockchainService.requestFee("tx1").get(5, TimeUnit.SECONDS));
+        assertEquals(1, failing.numRequests.get());
+
+        // The failing provider had no success, so we start with the working one
+        assertEquals(Coin.valueOf(2000), blockchainService.requestFee("tx2").get(5, TimeUnit.SECONDS));
+        assertEquals(1, failing.numRequests.get());
+    }
+
+    @Test
+    public void testCircuitBreaker() {
+        FeeProviderStats stats = new FeeProviderStats(new StubFeeProvider(1000, 10, false));
+        stats.onSuccess(100);
+        long now = 1000;
+        for (int i = 0; i < FeeProviderStats.MAX_CONSECUTIVE_FAILURES - 1; i++)
+            stats.onFailure(now);
+        assertFalse(stats.isCircuitOpen(now));
+
+        stats.onFailure(now);
+        assertTrue(stats.isCircuitOpen(now + FeeProviderStats.CIRCUIT_OPEN_MS - 1));
+        assertFalse(stats.isCircuitOpen(now + FeeProviderStats.CIRCUIT_OPEN_MS));
+
+        // After the open time one more failure opens the circuit again
+        now += FeeProviderStats.CIRCUIT_OPEN_MS;
+        stats.onFailure(now);
+        assertTrue(stats.isCircuitOpen(now));
+
+        stats.onSuccess(100);
+        assertFalse(stats.isCircuitOpen(now));
+    }
+
+    private static class StubFeeProvider implements FeeProvider {
+        private final long fee;
+        private final long latencyMs;
+        private final boolean fails;
+        private final AtomicInteger numRequests = new AtomicInteger();
+
+        StubFeeProvider(long fee, long latencyMs, boolean fails) {
+            this.fee = fee;
+            this.latencyMs = latencyMs;
+            this.fails = fails;
+        }
+
+        @Override
+        public Coin getFee(String transactionId) throws IOException, HttpException {
+            numRequests.incrementAndGet();
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException ignore) {
+            }
+            if (fails)
+                throw new IOException("Stub provider failed");
+            return Coin.valueOf(fee);
+        }
+    }
+}
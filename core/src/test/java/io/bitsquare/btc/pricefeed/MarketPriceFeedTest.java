@@ -1,11 +1,14 @@
 package io.bitsquare.btc.pricefeed;
 
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.p2p.P2PService;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.mockito.Mockito.mock;
 
 @Ignore
 public class MarketPriceFeedTest {
@@ -13,7 +16,8 @@ public class MarketPriceFeedTest {
 
     @Test
     public void testGetPrice() throws InterruptedException {
-        PriceFeed priceFeed = new PriceFeed();
+        PriceFeed priceFeed = new PriceFeed(mock(P2PService.class),
+                new PriceRelay(mock(P2PService.class), mock(KeyRing.class), ""));
         priceFeed.setCurrencyCode("EUR");
         priceFeed.init(tradeCurrency -> {
                     log.debug(tradeCurrency.toString());
@@ -0,0 +1,78 @@
+package io.bitsquare.btc.pricefeed;
+
+import com.google.common.collect.Sets;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.common.util.Utilities;
+import org.bitcoinj.core.ECKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.security.PublicKey;
+import java.security.Security;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.bitcoinj.core.Utils.HEX;
+import static org.junit.Assert.*;
+
+public class MarketPriceSnapshotTest {
+    private ECKey relayKey;
+    private PublicKey storagePublicKey;
+    private Map<String, MarketPrice> marketPrices;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        relayKey = new ECKey();
+        storagePublicKey = Sig.generateKeyPair().getPublic();
+        marketPrices = new HashMap<>();
+        marketPrices.put("EUR", new MarketPrice("EUR", 401.5, 400.5, 401));
+        marketPrices.put("ETH", new MarketPrice("ETH", 0.021, 0.02, 0.0205));
+    }
+
+    @Test
+    public void testVerify() {
+        MarketPriceSnapshot snapshot = new MarketPriceSnapshot(marketPrices, 1000, relayKey.getPubKey());
+        snapshot.sign(relayKey, storagePublicKey);
+
+        Set<String> trustedRelayPubKeys = Sets.newHashSet(HEX.encode(relayKey.getPubKey()));
+        assertTrue(snapshot.verify(trustedRelayPubKeys));
+        assertFalse(snapshot.verify(Sets.newHashSet(HEX.encode(new ECKey().getPubKey()))));
+
+        MarketPriceSnapshot deserialized = Utilities.deserialize(Utilities.serialize(snapshot));
+        assertTrue(deserialized.verify(trustedRelayPubKeys));
+        assertEquals(storagePublicKey, deserialized.getOwnerPubKey());
+
+        Map<String, MarketPrice> received = deserialized.getMarketPrices();
+        assertEquals(2, received.size());
+        assertEquals(400.5, received.get("EUR").getPrice(PriceFeed.Type.BID), 0);
+        assertEquals(0.0205, received.get("ETH").getPrice(PriceFeed.Type.LAST), 0);
+    }
+
+    @Test
+    public void testVerifyFailsIfNotSignedByRelay() {
+        MarketPriceSnapshot snapshot = new MarketPriceSnapshot(marketPrices, 1000, relayKey.getPubKey());
+        // Signed by another key than the one the snapshot claims
+        snapshot.sign(new ECKey(), storagePublicKey);
+        assertFalse(snapshot.verify(Sets.newHashSet(HEX.encode(relayKey.getPubKey()))));
+
+        MarketPriceSnapshot unsigned = new MarketPriceSnapshot(marketPrices, 1000, relayKey.getPubKey());
+        assertFalse(unsigned.verify(Sets.newHashSet(HEX.encode(relayKey.getPubKey()))));
+    }
+
+    @Test
+    public void testVerifyFailsIfOwnerKeyIsReplaced() throws Exception {
+        MarketPriceSnapshot snapshot = new MarketPriceSnapshot(marketPrices, 1000, relayKey.getPubKey());
+        snapshot.sign(relayKey, storagePublicKey);
+
+        // Someone republishes the snapshot of the relay as owner
+        Field field = MarketPriceSnapshot.class.getDeclaredField("storagePublicKeyBytes");
+        field.setAccessible(true);
+        field.set(snapshot, new X509EncodedKeySpec(Sig.generateKeyPair().getPublic().getEncoded()).getEncoded());
+        assertFalse(snapshot.verify(Sets.newHashSet(HEX.encode(relayKey.getPubKey()))));
+    }
+}
@@ -0,0 +1,40 @@
+package io.bitsquare.btc.pricefeed.providers;
+
+import com.google.common.collect.Sets;
+import io.bitsquare.btc.pricefeed.MarketPrice;
+import io.bitsquare.btc.pricefeed.PriceFeed;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PriceProviderParserTest {
+
+    @Test
+    public void testParsePoloniexTickers() throws Exception {
+        String json = "{\"BTC_ETH\":{\"id\":148,\"last\":\"0.02\",\"lowestAsk\":\"0.025\",\"highestBid\":\"0.0125\",\"isFrozen\":\"0\"}," +
+                "\"BTC_XYZ\":{\"last\":\"1\",\"lowestAsk\":\"1\",\"highestBid\":\"1\"}," +
+                "\"USDT_BTC\":{\"last\":\"450\",\"lowestAsk\":\"451\",\"highestBid\":\"449\"}," +
+                "\"BTC_XMR\":{\"last\":0.5,\"lowestAsk\":0.5,\"highestBid\":0.25,\"extra\":[1,2]}}";
+        Map<String, MarketPrice> prices = PoloniexPriceProvider.parseTickers(new StringReader(json), Sets.newHashSet("ETH", "XMR"));
+
+        assertEquals(2, prices.size());
+        assertEquals(50, prices.get("ETH").getPrice(PriceFeed.Type.LAST), 0.000001);
+        assertEquals(40, prices.get("ETH").getPrice(PriceFeed.Type.ASK), 0.000001);
+        assertEquals(4, prices.get("XMR").getPrice(PriceFeed.Type.BID), 0.000001);
+    }
+
+    @Test
+    public void testParseBitcoinAverageTickers() throws Exception {
+        String json = "{\"EUR\":{\"24h_avg\":380.1,\"ask\":381.5,\"bid\":381.1,\"last\":381.3,\"timestamp\":\"Sat, 30 Apr 2016\"}," +
+                "\"USD\":{\"ask\":\"421.5\",\"bid\":\"421.1\",\"last\":\"421.3\"}," +
+                "\"timestamp\":\"Sat, 30 Apr 2016 10:00:00 -0000\"}";
+        Map<String, MarketPrice> prices = BitcoinAveragePriceProvider.parseTickers(new StringReader(json));
+
+        assertEquals(2, prices.size());
+        assertEquals(381.3, prices.get("EUR").getPrice(PriceFeed.Type.LAST), 0.000001);
+        assertEquals(421.1, prices.get("USD").getPrice(PriceFeed.Type.BID), 0.000001);
+    }
+}
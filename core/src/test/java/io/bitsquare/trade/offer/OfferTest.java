@@ -0,0 +1,109 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.btc.pricefeed.MarketPrice;
+import io.bitsquare.btc.pricefeed.PriceFeed;
+import org.bitcoinj.utils.Fiat;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OfferTest {
+
+    @Test
+    public void testMarketBasedPrice() {
+        PriceFeed priceFeed = mock(PriceFeed.class);
+        when(priceFeed.getPriceEpoch()).thenReturn(1L);
+        when(priceFeed.getMarketPrice("EUR")).thenReturn(new MarketPrice("EUR", "400.123", "399.5", "400"));
+
+        // 400.123 * 0.9 = 360.1107
+        assertEquals(Fiat.parseFiat("EUR", "360.11"), getOffer(Offer.Direction.BUY, 0.1, priceFeed).getPrice());
+        // 399.5 * 1.025 = 409.4875
+        assertEquals(Fiat.parseFiat("EUR", "409.49"), getOffer(Offer.Direction.SELL, 0.025, priceFeed).getPrice());
+        // 400.123 * 1.01 = 404.12423
+        assertEquals(Fiat.parseFiat("EUR", "404.12"), getOffer(Offer.Direction.BUY, -0.01, priceFeed).getPrice());
+    }
+
+    @Test
+    public void testPriceIsCachedPerEpoch() {
+        PriceFeed priceFeed = mock(PriceFeed.class);
+        when(priceFeed.getPriceEpoch()).thenReturn(1L);
+        when(priceFeed.getMarketPrice("EUR")).thenReturn(new MarketPrice("EUR", "400", "400", "400"));
+        Offer offer = getOffer(Offer.Direction.SELL, 0, priceFeed);
+
+        Fiat price = offer.getPrice();
+        assertSame(price, offer.getPrice());
+        assertSame(offer.getOfferVolume(), offer.getOfferVolume());
+
+        when(priceFeed.getMarketPrice("EUR")).thenReturn(new MarketPrice("EUR", "500", "500", "500"));
+        assertSame(price, offer.getPrice());
+
+        when(priceFeed.getPriceEpoch()).thenReturn(2L);
+        assertEquals(Fiat.parseFiat("EUR", "500"), offer.getPrice());
+    }
+
+    @Test
+    public void testNoMarketPrice() {
+        PriceFeed priceFeed = mock(PriceFeed.class);
+        when(priceFeed.getPriceEpoch()).thenReturn(1L);
+        Offer offer = getOffer(Offer.Direction.SELL, 0, priceFeed);
+        assertNull(offer.getPrice());
+        assertNull(offer.getOfferVolume());
+    }
+
+    @Test
+    public void testMarketBasedPriceWithHighNominalCurrency() {
+        PriceFeed priceFeed = mock(PriceFeed.class);
+        when(priceFeed.getPriceEpoch()).thenReturn(1L);
+        // The price in the smallest unit times the factor exceeds the long range
+        when(priceFeed.getMarketPrice("VND")).thenReturn(new MarketPrice("VND", "10000000000.5", "9999999999.5", "10000000000"));
+
+        // 10000000000.5 * 0.9 = 9000000000.45
+        assertEquals(Fiat.parseFiat("VND", "9000000000.45"), getOffer(Offer.Direction.BUY, 0.1, "VND", priceFeed).getPrice());
+        // 9999999999.5 * 1.025 = 10249999999.4875
+        assertEquals(Fiat.parseFiat("VND", "10249999999.49"), getOffer(Offer.Direction.SELL, 0.025, "VND", priceFeed).getPrice());
+    }
+
+    private Offer getOffer(Offer.Direction direction, double marketPriceMargin, PriceFeed priceFeed) {
+        return getOffer(direction, marketPriceMargin, "EUR", priceFeed);
+    }
+
+    private Offer getOffer(Offer.Direction direction, double marketPriceMargin, String currencyCode, PriceFeed priceFeed) {
+        return new Offer("id",
+                null,
+                null,
+                direction,
+                0,
+                marketPriceMargin,
+                true,
+                100000000,
+                100000000,
+                currencyCode,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                priceFeed);
+    }
+}
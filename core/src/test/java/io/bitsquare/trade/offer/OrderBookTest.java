@@ -0,0 +1,124 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.btc.pricefeed.MarketPrice;
+import io.bitsquare.btc.pricefeed.PriceFeed;
+import javafx.beans.property.SimpleIntegerProperty;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class OrderBookTest {
+    private PriceFeed priceFeed;
+    private OrderBook orderBook;
+    private OfferBookService.OfferBookChangedListener offerBookChangedListener;
+    private final List<String> changedCurrencyCodes = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        priceFeed = mock(PriceFeed.class);
+        when(priceFeed.getPriceEpoch()).thenReturn(1L);
+        when(priceFeed.currenciesUpdateFlagProperty()).thenReturn(new SimpleIntegerProperty(0));
+        when(priceFeed.getMarketPrice("EUR")).thenReturn(new MarketPrice("EUR", "400", "400", "400"));
+
+        OfferBookService offerBookService = mock(OfferBookService.class);
+        ArgumentCaptor<OfferBookService.OfferBookChangedListener> captor =
+                ArgumentCaptor.forClass(OfferBookService.OfferBookChangedListener.class);
+        orderBook = new OrderBook(offerBookService, priceFeed);
+        verify(offerBookService).addOfferBookChangedListener(captor.capture());
+        offerBookChangedListener = captor.getValue();
+        orderBook.addListener(changedCurrencyCodes::add);
+    }
+
+    @Test
+    public void testOrderAndDepth() {
+        Offer sell1 = getOffer("sell1", Offer.Direction.SELL, 4100000, 100000000);
+        Offer sell2 = getOffer("sell2", Offer.Direction.SELL, 3900000, 50000000);
+        Offer sell3 = getOffer("sell3", Offer.Direction.SELL, 3900000, 20000000);
+        Offer buy1 = getOffer("buy1", Offer.Direction.BUY, 3800000, 10000000);
+        Offer buy2 = getOffer("buy2", Offer.Direction.BUY, 3850000, 10000000);
+        Arrays.asList(sell1, sell3, sell2, buy1, buy2).stream().forEach(offerBookChangedListener::onAdded);
+
+        assertEquals(Arrays.asList(sell2, sell3, sell1), orderBook.getOffers("EUR", Offer.Direction.SELL));
+        assertEquals(Arrays.asList(buy2, buy1), orderBook.getOffers("EUR", Offer.Direction.BUY));
+        assertEquals(buy2, orderBook.getBestOffer("EUR", Offer.Direction.BUY));
+        assertEquals(Arrays.asList(sell2, sell3), orderBook.getBestOffers("EUR", Offer.Direction.SELL, 2));
+
+        List<OrderBook.DepthLevel> depth = orderBook.getDepth("EUR", Offer.Direction.SELL);
+        assertEquals(3, depth.size());
+        assertEquals(50000000, depth.get(0).accumulatedAmount);
+        assertEquals(70000000, depth.get(1).accumulatedAmount);
+        assertEquals(170000000, depth.get(2).accumulatedAmount);
+        assertEquals(4100000, depth.get(2).price);
+
+        offerBookChangedListener.onRemoved(sell2);
+        assertEquals(Arrays.asList(sell3, sell1), orderBook.getOffers("EUR", Offer.Direction.SELL));
+        assertEquals(120000000, orderBook.getDepth("EUR", Offer.Direction.SELL).get(1).accumulatedAmount);
+        assertEquals(6, changedCurrencyCodes.size());
+        assertEquals(4, orderBook.size());
+        assertTrue(orderBook.getOffers("USD", Offer.Direction.SELL).isEmpty());
+    }
+
+    @Test
+    public void testMarketBasedOfferGetsRankedAgain() {
+        Offer fixed = getOffer("fixed", Offer.Direction.SELL, 4050000, 100000000);
+        Offer marketBased = getMarketBasedOffer("market", Offer.Direction.SELL, 0.01);
+        offerBookChangedListener.onAdded(fixed);
+        offerBookChangedListener.onAdded(marketBased);
+        // 400 * 1.01 = 404
+        assertEquals(Arrays.asList(marketBased, fixed), orderBook.getOffers("EUR", Offer.Direction.SELL));
+
+        when(priceFeed.getMarketPrice("EUR")).thenReturn(new MarketPrice("EUR", "410", "410", "410"));
+        when(priceFeed.getPriceEpoch()).thenReturn(2L);
+        priceFeed.currenciesUpdateFlagProperty().set(1);
+        assertEquals(Arrays.asList(fixed, marketBased), orderBook.getOffers("EUR", Offer.Direction.SELL));
+        assertEquals(4141000, orderBook.getDepth("EUR", Offer.Direction.SELL).get(1).price);
+        assertTrue(changedCurrencyCodes.contains("EUR"));
+    }
+
+    @Test
+    public void testOfferWithoutPriceIsAtTheEnd() {
+        when(priceFeed.getMarketPrice("EUR")).thenReturn(null);
+        Offer fixed = getOffer("fixed", Offer.Direction.BUY, 4050000, 100000000);
+        Offer marketBased = getMarketBasedOffer("market", Offer.Direction.BUY, 0.01);
+        offerBookChangedListener.onAdded(marketBased);
+        offerBookChangedListener.onAdded(fixed);
+
+        assertEquals(Arrays.asList(fixed, marketBased), orderBook.getOffers("EUR", Offer.Direction.BUY));
+        assertEquals(1, orderBook.getDepth("EUR", Offer.Direction.BUY).size());
+    }
+
+    // Offers with the same price are ordered by date and then by id, so the creation order decides
+    private Offer getOffer(String id, Offer.Direction direction, long fiatPrice, long amount) {
+        return new Offer(id, null, null, direction, fiatPrice, 0, false, amount, amount, "EUR",
+                null, null, null, null, null, null, null, priceFeed);
+    }
+
+    private Offer getMarketBasedOffer(String id, Offer.Direction direction, double marketPriceMargin) {
+        return new Offer(id, null, null, direction, 0, marketPriceMargin, true, 100000000, 100000000, "EUR",
+                null, null, null, null, null, null, null, priceFeed);
+    }
+}
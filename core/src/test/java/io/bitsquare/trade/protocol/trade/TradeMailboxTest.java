@@ -0,0 +1,127 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.protocol.trade;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TradeMailboxTest {
+
+    @Test
+    public void testEntriesRunInOrder() {
+        TradeMailbox mailbox = new TradeMailbox();
+        List<String> events = new ArrayList<>();
+        TradeMailbox.Entry entry1 = mailbox.newEntry();
+        TradeMailbox.Entry entry2 = mailbox.newEntry();
+        TradeMailbox.Entry entry3 = mailbox.newEntry();
+
+        entry1.submit(() -> events.add("run1"));
+        // entry1 waits for its work, so the others have to wait as well
+        entry2.submit(() -> events.add("run2"));
+        entry3.submit(() -> {
+            events.add("run3");
+            entry3.release();
+        });
+        assertEquals(Arrays.asList("run1"), events);
+
+        entry1.release();
+        assertEquals(Arrays.asList("run1", "run2"), events);
+
+        entry2.release();
+        assertEquals(Arrays.asList("run1", "run2", "run3"), events);
+
+        TradeMailbox.Entry entry4 = mailbox.newEntry();
+        entry4.submit(() -> events.add("run4"));
+        assertEquals(Arrays.asList("run1", "run2", "run3", "run4"), events);
+    }
+
+    @Test
+    public void testReleasedEntryDoesNotRun() {
+        TradeMailbox mailbox = new TradeMailbox();
+        List<String> events = new ArrayList<>();
+        TradeMailbox.Entry entry1 = mailbox.newEntry();
+        TradeMailbox.Entry entry2 = mailbox.newEntry();
+        TradeMailbox.Entry entry3 = mailbox.newEntry();
+
+        entry1.submit(() -> events.add("run1"));
+        entry2.submit(() -> events.add("run2"));
+        entry3.submit(() -> events.add("run3"));
+
+        // A canceled runner releases its entry before it got started
+        entry2.release();
+        entry1.release();
+        // Releasing twice has no effect
+        entry1.release();
+        assertEquals(Arrays.asList("run1", "run3"), events);
+    }
+
+    @Test
+    public void testMailboxesAreIndependent() {
+        TradeMailbox mailbox1 = new TradeMailbox();
+        TradeMailbox mailbox2 = new TradeMailbox();
+        List<String> events = new ArrayList<>();
+
+        mailbox1.newEntry().submit(() -> events.add("trade1"));
+        mailbox2.newEntry().submit(() -> events.add("trade2"));
+        assertEquals(Arrays.asList("trade1", "trade2"), events);
+    }
+
+    @Test
+    public void testTaskWhichNeverCompletesReleasesMailbox() throws InterruptedException {
+        TradeMailbox mailbox = new TradeMailbox(200);
+        CountDownLatch latch = new CountDownLatch(1);
+        TradeMailbox.Entry entry1 = mailbox.newEntry();
+        TradeMailbox.Entry entry2 = mailbox.newEntry();
+
+        // entry1 never gets released, e.g. a broadcast callback which never fires
+        entry1.submit(() -> {
+        });
+        entry2.submit(latch::countDown);
+        assertEquals(1, latch.getCount());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReleaseRunningEntry() {
+        TradeMailbox mailbox = new TradeMailbox();
+        List<String> events = new ArrayList<>();
+        TradeMailbox.Entry entry1 = mailbox.newEntry();
+        TradeMailbox.Entry entry2 = mailbox.newEntry();
+
+        entry1.submit(() -> events.add("run1"));
+        entry2.submit(() -> events.add("run2"));
+        assertEquals(Arrays.asList("run1"), events);
+
+        // Called from the timeout of the TradeProtocol
+        mailbox.releaseRunningEntry();
+        assertEquals(Arrays.asList("run1", "run2"), events);
+
+        // A late handler of the released runner has no effect
+        entry1.release();
+        assertEquals(Arrays.asList("run1", "run2"), events);
+    }
+}
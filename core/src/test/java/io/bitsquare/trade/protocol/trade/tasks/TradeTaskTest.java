@@ -0,0 +1,112 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.protocol.trade.tasks;
+
+import io.bitsquare.btc.AddressEntry;
+import io.bitsquare.btc.TradeWalletService;
+import io.bitsquare.btc.WalletService;
+import io.bitsquare.btc.data.InputsAndChangeOutput;
+import io.bitsquare.btc.data.RawTransactionInput;
+import io.bitsquare.common.taskrunner.TaskRunner;
+import io.bitsquare.trade.Trade;
+import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.protocol.trade.ProcessModel;
+import io.bitsquare.trade.protocol.trade.tasks.buyer.TakerCreatesDepositTxInputsAsBuyer;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.crypto.HDKeyDerivation;
+import org.bitcoinj.params.RegTestParams;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TradeTaskTest {
+    private Trade trade;
+    private ProcessModel processModel;
+    private TradeWalletService tradeWalletService;
+    private AddressEntry addressEntry;
+
+    @Before
+    public void setup() {
+        addressEntry = new AddressEntry(HDKeyDerivation.createMasterPrivateKey(new byte[32]), RegTestParams.get(),
+                AddressEntry.Context.RESERVED_FOR_TRADE, "id");
+        WalletService walletService = mock(WalletService.class);
+        when(walletService.getOrCreateAddressEntry("id", AddressEntry.Context.RESERVED_FOR_TRADE)).thenReturn(addressEntry);
+        when(walletService.getOrCreateAddressEntry(AddressEntry.Context.AVAILABLE)).thenReturn(addressEntry);
+        tradeWalletService = mock(TradeWalletService.class);
+
+        Offer offer = new Offer("id", null, null, Offer.Direction.BUY, 0, 0, false, 100000000, 100000000, "EUR", null,
+                null, null, null, null, null, null, null);
+        processModel = new ProcessModel();
+        processModel.onAllServicesInitialized(offer, null, null, null, walletService, tradeWalletService, null, null,
+                null, false, null);
+        trade = mock(Trade.class);
+        when(trade.getProcessModel()).thenReturn(processModel);
+    }
+
+    @Test
+    public void testWorkerPoolTaskCompletes() throws Exception {
+        ArrayList<RawTransactionInput> inputs = new ArrayList<>(Arrays.asList(new RawTransactionInput(0, new byte[0], 1000)));
+        Coin inputAmount = Coin.valueOf(1_020_000);
+        when(tradeWalletService.takerCreatesDepositsTxInputs(inputAmount, addressEntry, addressEntry.getAddress()))
+                .thenReturn(new InputsAndChangeOutput(inputs, 500, "changeAddress"));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        String[] errorMessage = new String[1];
+        TaskRunner<Trade> taskRunner = new TaskRunner<>(trade, Trade.class, latch::countDown, message -> {
+            errorMessage[0] = message;
+            latch.countDown();
+        });
+        taskRunner.addTasks(TakerCreatesDepositTxInputsAsBuyer.class);
+        taskRunner.run();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertNull(errorMessage[0]);
+        assertEquals(inputs, processModel.getRawTransactionInputs());
+        assertEquals(500, processModel.getChangeOutputValue());
+        verify(trade).persist();
+    }
+
+    @Test
+    public void testWorkerPoolTaskFails() throws Exception {
+        when(tradeWalletService.takerCreatesDepositsTxInputs(any(), any(), any()))
+                .thenThrow(new IllegalStateException("Not enough money"));
+
+        CountDownLatch latch = new CountDownLatch(1);
+        String[] errorMessage = new String[1];
+        TaskRunner<Trade> taskRunner = new TaskRunner<>(trade, Trade.class, latch::countDown, message -> {
+            errorMessage[0] = message;
+            latch.countDown();
+        });
+        taskRunner.addTasks(TakerCreatesDepositTxInputsAsBuyer.class);
+        taskRunner.run();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertNotNull(errorMessage[0]);
+        assertTrue(errorMessage[0].contains("Not enough money"));
+        assertNull(processModel.getRawTransactionInputs());
+        verify(trade).setErrorMessage(errorMessage[0]);
+        verify(trade, never()).persist();
+    }
+}
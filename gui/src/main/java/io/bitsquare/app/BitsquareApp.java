@@ -22,6 +22,7 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import io.bitsquare.alert.AlertManager;
 import io.bitsquare.arbitration.ArbitratorManager;
+import io.bitsquare.arbitration.DisputeManager;
 import io.bitsquare.btc.WalletService;
 import io.bitsquare.common.UserThread;
 import io.bitsquare.common.handlers.ResultHandler;
@@ -41,6 +42,7 @@ import io.bitsquare.gui.main.overlays.windows.SendAlertMessageWindow;
 import io.bitsquare.gui.util.ImageUtil;
 import io.bitsquare.p2p.P2PService;
 import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.StoragePreloader;
 import io.bitsquare.trade.offer.OpenOfferManager;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -64,10 +66,12 @@ import org.reactfx.EventStreams;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.security.Security;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static io.bitsquare.app.BitsquareEnvironment.APP_NAME_KEY;
@@ -75,6 +79,11 @@ import static io.bitsquare.app.BitsquareEnvironment.APP_NAME_KEY;
 public class BitsquareApp extends Application {
     private static final Logger log = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(BitsquareApp.class);
 
+    // Stores which are read when the singletons get created
+    private static final List<String> PRELOADED_STORES = Arrays.asList("User", "Preferences", "AddressEntryList",
+            "OpenOffers", "DisputeIndex", "ClosedTradesIndex", "FailedTradesIndex", "SequenceNumberMap",
+            "PersistedPeers", "Navigation");
+
     public static final boolean DEV_MODE = false;
     public static final boolean IS_RELEASE_VERSION = !DEV_MODE && true;
 
@@ -134,6 +143,9 @@ public class BitsquareApp extends Application {
         shutDownHandler = this::stop;
 
         try {
+            // We read the stores in parallel before Guice creates the singletons which use them
+            StoragePreloader.preload(new File(env.getRequiredProperty(Storage.DIR_KEY)), PRELOADED_STORES);
+
             // Guice
             bitsquareAppModule = new BitsquareAppModule(env, primaryStage);
             injector = Guice.createInjector(bitsquareAppModule);
@@ -154,6 +166,8 @@ public class BitsquareApp extends Application {
             CachingViewLoader viewLoader = injector.getInstance(CachingViewLoader.class);
             mainView = (MainView) viewLoader.load(MainView.class);
             mainView.setPersistedFilesCorrupted(corruptedDatabaseFiles);
+            // All stores needed at startup are read by now
+            StoragePreloader.onStartupCompleted();
 
            /* Storage.setDatabaseCorruptionHandler((String fileName) -> {
                 corruptedDatabaseFiles.add(fileName);
@@ -340,6 +354,7 @@ public class BitsquareApp extends Application {
         try {
             if (injector != null) {
                 injector.getInstance(ArbitratorManager.class).shutDown();
+                injector.getInstance(DisputeManager.class).shutDown();
                 injector.getInstance(MainViewModel.class).shutDown();
                 injector.getInstance(OpenOfferManager.class).shutDown(() -> {
                     injector.getInstance(P2PService.class).shutDown(() -> {
@@ -20,6 +20,7 @@ package io.bitsquare.app;
 import io.bitsquare.BitsquareException;
 import io.bitsquare.btc.BitcoinNetwork;
 import io.bitsquare.btc.RegTestHost;
+import io.bitsquare.btc.pricefeed.PriceRelay;
 import io.bitsquare.util.joptsimple.EnumValueConverter;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
@@ -115,6 +116,9 @@ public class BitsquareAppMain extends BitsquareExecutable {
                 .withRequiredArg()
                 .ofType(RegTestHost.class)
                 .withValuesConvertedBy(new EnumValueConverter(RegTestHost.class));
+
+        parser.accepts(PriceRelay.PRIV_KEY, description("Private key of a trusted price relay", null))
+                .withRequiredArg();
     }
 
     @Override
@@ -177,6 +177,8 @@ public class TraderDisputeView extends ActivatableView<VBox, Void> {
 
     @Override
     protected void activate() {
+        // Closed disputes are only read from disk when we show them
+        disputeManager.loadClosedDisputes();
 
         FilteredList<Dispute> filteredList = new FilteredList<>(disputeManager.getDisputesAsObservableList());
         setFilteredListPredicate(filteredList);
@@ -275,7 +277,7 @@ public class TraderDisputeView extends ActivatableView<VBox, Void> {
     }
 
     private void onRequestUpload() {
-        int totalSize = tempAttachments.stream().mapToInt(a -> a.getBytes().length).sum();
+        int totalSize = tempAttachments.stream().mapToInt(a -> (int) a.getSize()).sum();
         if (tempAttachments.size() < 3) {
             FileChooser fileChooser = new FileChooser();
             int maxMsgSize = Connection.getMaxMsgSize();
@@ -297,7 +299,7 @@ public class TraderDisputeView extends ActivatableView<VBox, Void> {
                         } else if (size > maxMsgSize) {
                             new Popup().warning("The max. allowed file size is " + maxSizeInKB + " kB.").show();
                         } else {
-                            tempAttachments.add(new Attachment(result.getName(), filesAsBytes));
+                            tempAttachments.add(disputeManager.createAttachment(result.getName(), filesAsBytes));
                             inputTextArea.setText(inputTextArea.getText() + "\n[Attachment " + result.getName() + "]");
                         }
                     } catch (java.io.IOException e) {
@@ -315,6 +317,14 @@ public class TraderDisputeView extends ActivatableView<VBox, Void> {
     }
 
     private void onOpenAttachment(Attachment attachment) {
+        byte[] bytes = disputeManager.getAttachmentBytes(attachment);
+        if (bytes == null) {
+            new Popup().information(disputeManager.isDownloadingAttachment(attachment) ?
+                    "The attachment is still being downloaded. Please try again later." :
+                    "The attachment is not available yet. The download continues when your peer is online.").show();
+            return;
+        }
+
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save file to disk");
         fileChooser.setInitialFileName(attachment.getFileName());
@@ -323,7 +333,7 @@ public class TraderDisputeView extends ActivatableView<VBox, Void> {
         File file = fileChooser.showSaveDialog(stage);
         if (file != null) {
             try (FileOutputStream fileOutputStream = new FileOutputStream(file.getAbsolutePath())) {
-                fileOutputStream.write(attachment.getBytes());
+                fileOutputStream.write(bytes);
             } catch (IOException e) {
                 e.printStackTrace();
                 System.out.println(e.getMessage());
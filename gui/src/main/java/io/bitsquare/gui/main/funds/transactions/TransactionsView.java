@@ -18,6 +18,7 @@
 package io.bitsquare.gui.main.funds.transactions;
 
 import de.jensd.fx.fontawesome.AwesomeIcon;
+import io.bitsquare.arbitration.Dispute;
 import io.bitsquare.arbitration.DisputeManager;
 import io.bitsquare.btc.WalletService;
 import io.bitsquare.common.util.Utilities;
@@ -228,9 +229,7 @@ public class TransactionsView extends ActivatableView<VBox, Void> {
 
     private void updateList() {
         Stream<Tradable> concat1 = Stream.concat(openOfferManager.getOpenOffers().stream(), tradeManager.getTrades().stream());
-        Stream<Tradable> concat2 = Stream.concat(concat1, closedTradableManager.getClosedTrades().stream());
-        Stream<Tradable> concat3 = Stream.concat(concat2, failedTradesManager.getFailedTrades().stream());
-        Set<Tradable> all = concat3.collect(Collectors.toSet());
+        Set<Tradable> all = concat1.collect(Collectors.toSet());
 
         Set<Transaction> transactions = walletService.getWallet().getTransactions(true);
         List<TransactionsListItem> transactionsListItems = transactions.stream()
@@ -250,10 +249,8 @@ public class TransactionsView extends ActivatableView<VBox, Void> {
                                     boolean isPayoutTx = trade.getPayoutTx() != null &&
                                             trade.getPayoutTx().getHashAsString().equals(txId);
 
-                                    boolean isDisputedPayoutTx = disputeManager.getDisputesAsObservableList().stream()
-                                            .filter(dispute -> txId.equals(dispute.getDisputePayoutTxId()) &&
-                                                    tradable.getId().equals(dispute.getTradeId()))
-                                            .findAny()
+                                    boolean isDisputedPayoutTx = disputeManager.findDisputeByPayoutTxId(txId)
+                                            .filter(dispute -> tradable.getId().equals(dispute.getTradeId()))
                                             .isPresent();
 
                                     return isTakeOfferFeeTx || isOfferFeeTx || isDepositTx || isPayoutTx || isDisputedPayoutTx;
@@ -261,6 +258,8 @@ public class TransactionsView extends ActivatableView<VBox, Void> {
                                     return false;
                             })
                             .findAny();
+                    if (!tradableOptional.isPresent())
+                        tradableOptional = getTradableFromHistory(transaction.getHashAsString());
                     return new TransactionsListItem(transaction, walletService, tradableOptional, formatter);
                 })
                 .collect(Collectors.toList());
@@ -270,6 +269,24 @@ public class TransactionsView extends ActivatableView<VBox, Void> {
         observableList.setAll(transactionsListItems);
     }
 
+    // Closed and failed trades are found by the tx ids in their summary, so only the matching ones are read from disk
+    private Optional<Tradable> getTradableFromHistory(String txId) {
+        Optional<Tradable> tradableOptional = closedTradableManager.getTradableByTxId(txId);
+        if (!tradableOptional.isPresent())
+            tradableOptional = failedTradesManager.getTradeByTxId(txId).map(trade -> trade);
+
+        if (!tradableOptional.isPresent()) {
+            Optional<Dispute> disputeOptional = disputeManager.findDisputeByPayoutTxId(txId);
+            if (disputeOptional.isPresent()) {
+                String tradeId = disputeOptional.get().getTradeId();
+                tradableOptional = closedTradableManager.getTradableById(tradeId);
+                if (!tradableOptional.isPresent())
+                    tradableOptional = failedTradesManager.getTradeById(tradeId).map(trade -> trade);
+            }
+        }
+        return tradableOptional;
+    }
+
     private void openBlockExplorer(TransactionsListItem item) {
         if (item.getAddressString() != null) {
             try {
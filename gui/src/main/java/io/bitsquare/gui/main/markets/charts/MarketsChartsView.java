@@ -25,7 +25,6 @@ import io.bitsquare.gui.common.view.FxmlView;
 import io.bitsquare.gui.main.MainView;
 import io.bitsquare.gui.main.offer.BuyOfferView;
 import io.bitsquare.gui.main.offer.SellOfferView;
-import io.bitsquare.gui.main.offer.offerbook.OfferBookListItem;
 import io.bitsquare.gui.util.BSFormatter;
 import io.bitsquare.locale.*;
 import io.bitsquare.trade.offer.Offer;
@@ -34,7 +33,6 @@ import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
-import javafx.collections.ListChangeListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.chart.AreaChart;
@@ -56,7 +54,7 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
 
     private NumberAxis xAxis, yAxis;
     XYChart.Series seriesBuy, seriesSell;
-    private final ListChangeListener<OfferBookListItem> changeListener;
+    private final ChangeListener<Number> changeListener;
     private final Navigation navigation;
     private final BSFormatter formatter;
     private TableView<Offer> buyOfferTableView;
@@ -80,7 +78,7 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
         this.navigation = navigation;
         this.formatter = formatter;
 
-        changeListener = c -> updateChartData();
+        changeListener = (observable, oldValue, newValue) -> updateChartData();
     }
 
     @Override
@@ -141,7 +139,7 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
             updateChartData();
         });
 
-        model.getOfferBookListItems().addListener(changeListener);
+        model.chartDataUpdateFlagProperty().addListener(changeListener);
         tradeCurrencySubscriber = EasyBind.subscribe(model.tradeCurrency,
                 tradeCurrency -> {
                     String code = tradeCurrency.getCode();
@@ -169,7 +167,7 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
 
     @Override
     protected void deactivate() {
-        model.getOfferBookListItems().removeListener(changeListener);
+        model.chartDataUpdateFlagProperty().removeListener(changeListener);
         tradeCurrencySubscriber.unsubscribe();
         currencyComboBox.setOnAction(null);
     }
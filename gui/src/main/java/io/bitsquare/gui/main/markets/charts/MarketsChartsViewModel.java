@@ -26,25 +26,28 @@ import io.bitsquare.gui.main.offer.offerbook.OfferBookListItem;
 import io.bitsquare.locale.CurrencyUtil;
 import io.bitsquare.locale.TradeCurrency;
 import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.offer.OrderBook;
 import io.bitsquare.user.Preferences;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
-import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.chart.XYChart;
+import org.bitcoinj.core.Coin;
 import org.bitcoinj.utils.Fiat;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 class MarketsChartsViewModel extends ActivatableViewModel {
     final static String EDIT_FLAG = "EDIT_FLAG";
 
     private final OfferBook offerBook;
+    private final OrderBook orderBook;
     private final Preferences preferences;
     final PriceFeed priceFeed;
 
@@ -52,7 +55,8 @@ class MarketsChartsViewModel extends ActivatableViewModel {
     private final List<XYChart.Data> buyData = new ArrayList<>();
     private final List<XYChart.Data> sellData = new ArrayList<>();
     private final ObservableList<OfferBookListItem> offerBookListItems;
-    private final ListChangeListener<OfferBookListItem> listChangeListener;
+    private final OrderBook.Listener orderBookListener;
+    private final IntegerProperty chartDataUpdateFlag = new SimpleIntegerProperty(0);
     private final ObservableList<Offer> top3BuyOfferList = FXCollections.observableArrayList();
     private final ObservableList<Offer> top3SellOfferList = FXCollections.observableArrayList();
     private final ChangeListener<Number> cacheFilledListener;
@@ -63,20 +67,24 @@ class MarketsChartsViewModel extends ActivatableViewModel {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     @Inject
-    public MarketsChartsViewModel(OfferBook offerBook, Preferences preferences, PriceFeed priceFeed) {
+    public MarketsChartsViewModel(OfferBook offerBook, OrderBook orderBook, Preferences preferences, PriceFeed priceFeed) {
         this.offerBook = offerBook;
+        this.orderBook = orderBook;
         this.preferences = preferences;
         this.priceFeed = priceFeed;
 
         offerBookListItems = offerBook.getOfferBookListItems();
-        listChangeListener = c -> updateChartData(offerBookListItems);
+        orderBookListener = currencyCode -> {
+            if (currencyCode.equals(tradeCurrency.get().getCode()))
+                updateChartData();
+        };
 
         cacheFilledListener = new ChangeListener<Number>() {
             @Override
             public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
                 if (!offerBookListItems.stream().filter(item -> item.getOffer().getPrice() == null).findAny().isPresent()) {
                     offerBook.fillOfferBookListItems();
-                    updateChartData(offerBookListItems);
+                    updateChartData();
                     priceFeed.currenciesUpdateFlagProperty().removeListener(cacheFilledListener);
                 }
             }
@@ -86,10 +94,10 @@ class MarketsChartsViewModel extends ActivatableViewModel {
     @Override
     protected void activate() {
         priceFeed.setType(PriceFeed.Type.LAST);
-        offerBookListItems.addListener(listChangeListener);
+        orderBook.addListener(orderBookListener);
 
         offerBook.fillOfferBookListItems();
-        updateChartData(offerBookListItems);
+        updateChartData();
 
         if (offerBookListItems.stream().filter(item -> item.getOffer().getPrice() == null).findAny().isPresent())
             priceFeed.currenciesUpdateFlagProperty().addListener(cacheFilledListener);
@@ -100,55 +108,32 @@ class MarketsChartsViewModel extends ActivatableViewModel {
 
     @Override
     protected void deactivate() {
-        offerBookListItems.removeListener(listChangeListener);
+        orderBook.removeListener(orderBookListener);
     }
 
-    private void updateChartData(ObservableList<OfferBookListItem> offerBookListItems) {
-        List<Offer> allBuyOffers = offerBookListItems.stream()
-                .map(OfferBookListItem::getOffer)
-                .filter(e -> e.getCurrencyCode().equals(tradeCurrency.get().getCode())
-                        && e.getDirection().equals(Offer.Direction.BUY))
-                .sorted((o1, o2) -> {
-                    long a = o1.getPrice() != null ? o1.getPrice().value : 0;
-                    long b = o2.getPrice() != null ? o2.getPrice().value : 0;
-                    if (a != b)
-                        return a < b ? 1 : -1;
-                    return 0;
-                })
-                .collect(Collectors.toList());
-        top3BuyOfferList.setAll(allBuyOffers.subList(0, Math.min(3, allBuyOffers.size())));
-        buildChartDataItems(allBuyOffers, Offer.Direction.BUY, buyData);
-
-        List<Offer> allSellOffers = offerBookListItems.stream()
-                .map(OfferBookListItem::getOffer)
-                .filter(e -> e.getCurrencyCode().equals(tradeCurrency.get().getCode())
-                        && e.getDirection().equals(Offer.Direction.SELL))
-                .sorted((o1, o2) -> {
-                    long a = o1.getPrice() != null ? o1.getPrice().value : 0;
-                    long b = o2.getPrice() != null ? o2.getPrice().value : 0;
-                    if (a != b)
-                        return a > b ? 1 : -1;
-                    return 0;
-                })
-                .collect(Collectors.toList());
-        top3SellOfferList.setAll(allSellOffers.subList(0, Math.min(3, allSellOffers.size())));
-        buildChartDataItems(allSellOffers, Offer.Direction.SELL, sellData);
+    // The order book keeps the offers sorted and the depth accumulated, so we only map them to the chart data
+    private void updateChartData() {
+        String currencyCode = tradeCurrency.get().getCode();
+        top3BuyOfferList.setAll(orderBook.getBestOffers(currencyCode, Offer.Direction.BUY, 3));
+        buildChartDataItems(orderBook.getDepth(currencyCode, Offer.Direction.BUY), Offer.Direction.BUY, buyData);
+
+        top3SellOfferList.setAll(orderBook.getBestOffers(currencyCode, Offer.Direction.SELL, 3));
+        buildChartDataItems(orderBook.getDepth(currencyCode, Offer.Direction.SELL), Offer.Direction.SELL, sellData);
+
+        chartDataUpdateFlag.set(chartDataUpdateFlag.get() + 1);
     }
 
-    private void buildChartDataItems(List<Offer> sortedList, Offer.Direction direction, List<XYChart.Data> data) {
+    private void buildChartDataItems(List<OrderBook.DepthLevel> depth, Offer.Direction direction, List<XYChart.Data> data) {
         data.clear();
-        double accumulatedAmount = 0;
-        for (Offer offer : sortedList) {
-            Fiat priceAsFiat = offer.getPrice();
-            if (priceAsFiat != null) {
-                double price = (double) priceAsFiat.value / LongMath.pow(10, priceAsFiat.smallestUnitExponent());
-                double amount = (double) offer.getAmount().value / LongMath.pow(10, offer.getAmount().smallestUnitExponent());
-                accumulatedAmount += amount;
-                if (direction.equals(Offer.Direction.BUY))
-                    data.add(0, new XYChart.Data(price, accumulatedAmount));
-                else
-                    data.add(new XYChart.Data(price, accumulatedAmount));
-            }
+        double priceDivisor = LongMath.pow(10, Fiat.SMALLEST_UNIT_EXPONENT);
+        double amountDivisor = LongMath.pow(10, Coin.SMALLEST_UNIT_EXPONENT);
+        for (OrderBook.DepthLevel depthLevel : depth) {
+            double price = depthLevel.price / priceDivisor;
+            double accumulatedAmount = depthLevel.accumulatedAmount / amountDivisor;
+            if (direction.equals(Offer.Direction.BUY))
+                data.add(0, new XYChart.Data(price, accumulatedAmount));
+            else
+                data.add(new XYChart.Data(price, accumulatedAmount));
         }
     }
 
@@ -159,7 +144,7 @@ class MarketsChartsViewModel extends ActivatableViewModel {
 
     public void onSetTradeCurrency(TradeCurrency tradeCurrency) {
         this.tradeCurrency.set(tradeCurrency);
-        updateChartData(offerBookListItems);
+        updateChartData();
 
         if (!preferences.getUseStickyMarketPrice())
             priceFeed.setCurrencyCode(tradeCurrency.getCode());
@@ -169,6 +154,10 @@ class MarketsChartsViewModel extends ActivatableViewModel {
     // Getters
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    public IntegerProperty chartDataUpdateFlagProperty() {
+        return chartDataUpdateFlag;
+    }
+
     public List<XYChart.Data> getBuyData() {
         return buyData;
     }
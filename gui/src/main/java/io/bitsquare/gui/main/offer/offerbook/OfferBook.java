@@ -17,6 +17,8 @@
 
 package io.bitsquare.gui.main.offer.offerbook;
 
+import io.bitsquare.common.Timer;
+import io.bitsquare.common.UserThread;
 import io.bitsquare.trade.TradeManager;
 import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.offer.OfferBookService;
@@ -26,8 +28,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Holds and manages the unsorted and unfiltered offerbook list of both buy and sell offers.
@@ -35,12 +37,22 @@ import java.util.concurrent.CopyOnWriteArraySet;
  * As it is used only by the Buy and Sell UIs we treat it as local UI model.
  * It also use OfferRepository.Listener as the lists items class and we don't want to get any dependency out of the
  * package for that.
+ * <p>
+ * The items are indexed by the offer id. The added and removed offers are collected and applied to the list as bulk
+ * changes after a short delay, so the list listeners (filtering, charts) run once per batch and not once per offer,
+ * e.g. when we receive thousands of offers at startup.
  */
 public class OfferBook {
     private static final Logger log = LoggerFactory.getLogger(OfferBook.class);
 
+    private static final long BATCH_DELAY_MS = 100;
+
     private final OfferBookService offerBookService;
     private final ObservableList<OfferBookListItem> offerBookListItems = FXCollections.observableArrayList();
+    private final Map<String, OfferBookListItem> itemByOfferId = new LinkedHashMap<>();
+    private final Map<String, OfferBookListItem> pendingAddedItemByOfferId = new LinkedHashMap<>();
+    private final Set<OfferBookListItem> pendingRemovedItems = new HashSet<>();
+    private Timer batchTimer;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -54,9 +66,12 @@ public class OfferBook {
         offerBookService.addOfferBookChangedListener(new OfferBookService.OfferBookChangedListener() {
             @Override
             public void onAdded(Offer offer) {
-                OfferBookListItem offerBookListItem = new OfferBookListItem(offer);
-                if (!offerBookListItems.contains(offerBookListItem))
-                    offerBookListItems.add(offerBookListItem);
+                if (!itemByOfferId.containsKey(offer.getId())) {
+                    OfferBookListItem offerBookListItem = new OfferBookListItem(offer);
+                    itemByOfferId.put(offer.getId(), offerBookListItem);
+                    pendingAddedItemByOfferId.put(offer.getId(), offerBookListItem);
+                    scheduleBatch();
+                }
             }
 
             @Override
@@ -67,7 +82,13 @@ public class OfferBook {
                 // clean up possible references in openOfferManager 
                 tradeManager.onOfferRemovedFromRemoteOfferBook(offer);
 
-                offerBookListItems.removeIf(item -> item.getOffer().getId().equals(offer.getId()));
+                OfferBookListItem offerBookListItem = itemByOfferId.remove(offer.getId());
+                if (offerBookListItem != null) {
+                    // An item which is not in the list yet we just drop from the pending ones
+                    if (pendingAddedItemByOfferId.remove(offer.getId()) == null)
+                        pendingRemovedItems.add(offerBookListItem);
+                    scheduleBatch();
+                }
             }
         });
     }
@@ -78,12 +99,43 @@ public class OfferBook {
 
     public void fillOfferBookListItems() {
         log.debug("fillOfferBookListItems");
-        List<Offer> offers = offerBookService.getOffers();
-        CopyOnWriteArraySet<OfferBookListItem> list = new CopyOnWriteArraySet<>();
-        offers.stream().forEach(e -> list.add(new OfferBookListItem(e)));
-        offerBookListItems.clear();
-        offerBookListItems.addAll(list);
+        Map<String, OfferBookListItem> previousItemByOfferId = new HashMap<>(itemByOfferId);
+        itemByOfferId.clear();
+        offerBookService.getOffers().stream().forEach(offer -> {
+            OfferBookListItem offerBookListItem = previousItemByOfferId.get(offer.getId());
+            itemByOfferId.put(offer.getId(), offerBookListItem != null ? offerBookListItem : new OfferBookListItem(offer));
+        });
+        offerBookListItems.setAll(itemByOfferId.values());
+        clearBatch();
 
         log.debug("offerBookListItems " + offerBookListItems.size());
     }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void scheduleBatch() {
+        if (batchTimer == null)
+            batchTimer = UserThread.runAfter(this::applyBatch, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // We apply the removals and the additions as bulk changes, so a filtered list on top only tests the added items
+    private void applyBatch() {
+        if (!pendingRemovedItems.isEmpty())
+            offerBookListItems.removeAll(pendingRemovedItems);
+        if (!pendingAddedItemByOfferId.isEmpty())
+            offerBookListItems.addAll(pendingAddedItemByOfferId.values());
+        clearBatch();
+    }
+
+    private void clearBatch() {
+        if (batchTimer != null) {
+            batchTimer.stop();
+            batchTimer = null;
+        }
+        pendingAddedItemByOfferId.clear();
+        pendingRemovedItems.clear();
+    }
 }
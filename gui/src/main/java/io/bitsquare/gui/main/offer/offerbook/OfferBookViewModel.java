@@ -33,7 +33,6 @@ import io.bitsquare.locale.*;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.P2PService;
 import io.bitsquare.payment.*;
-import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.closed.ClosedTradableManager;
 import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.offer.OpenOfferManager;
@@ -92,7 +91,7 @@ class OfferBookViewModel extends ActivatableViewModel {
     private CryptoCurrency showAllCurrenciesItem = new CryptoCurrency(SHOW_ALL_FLAG, SHOW_ALL_FLAG);
 
     private final ObservableList<OfferBookListItem> offerBookListItems;
-    private final ListChangeListener<OfferBookListItem> listChangeListener;
+    private final PaymentAccountCompatibility paymentAccountCompatibility;
     private boolean isTabSelected;
     final BooleanProperty showAllTradeCurrenciesProperty = new SimpleBooleanProperty(true);
     boolean showAllPaymentMethods = true;
@@ -120,8 +119,10 @@ class OfferBookViewModel extends ActivatableViewModel {
         this.formatter = formatter;
 
         offerBookListItems = offerBook.getOfferBookListItems();
-        listChangeListener = c -> filterList();
+        paymentAccountCompatibility = new PaymentAccountCompatibility(user.getPaymentAccountsAsObservable());
 
+        // The filtered list tests only the added items with the predicate, so we set the predicate again only if
+        // the filter criteria have changed
         this.filteredItems = new FilteredList<>(offerBookListItems);
         this.sortedItems = new SortedList<>(filteredItems);
 
@@ -135,7 +136,6 @@ class OfferBookViewModel extends ActivatableViewModel {
     protected void activate() {
         fillAllTradeCurrencies();
         btcCode.bind(preferences.btcDenominationProperty());
-        offerBookListItems.addListener(listChangeListener);
         preferences.getTradeCurrenciesAsObservable().addListener(tradeCurrencyListChangeListener);
         offerBook.fillOfferBookListItems();
         filterList();
@@ -146,7 +146,6 @@ class OfferBookViewModel extends ActivatableViewModel {
     @Override
     protected void deactivate() {
         btcCode.unbind();
-        offerBookListItems.removeListener(listChangeListener);
         preferences.getTradeCurrenciesAsObservable().removeListener(tradeCurrencyListChangeListener);
     }
 
@@ -347,7 +346,7 @@ class OfferBookViewModel extends ActivatableViewModel {
     }
 
     boolean isAnyPaymentAccountValidForOffer(Offer offer) {
-        return isAnyPaymentAccountValidForOffer(offer, user.getPaymentAccounts());
+        return paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(offer);
     }
 
     static boolean isAnyPaymentAccountValidForOffer(Offer offer, Collection<PaymentAccount> paymentAccounts) {
@@ -426,13 +425,17 @@ class OfferBookViewModel extends ActivatableViewModel {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     private void filterList() {
+        boolean showAllTradeCurrencies = showAllTradeCurrenciesProperty.get();
+        String selectedTradeCurrencyCode = selectedTradeCurrency.getCode();
+        boolean showAllPaymentMethods = this.showAllPaymentMethods;
+        String selectedPaymentMethodId = selectedPaymentMethod.getId();
         filteredItems.setPredicate(offerBookListItem -> {
             Offer offer = offerBookListItem.getOffer();
             boolean directionResult = offer.getDirection() != direction;
-            boolean currencyResult = showAllTradeCurrenciesProperty.get() ||
-                    offer.getCurrencyCode().equals(selectedTradeCurrency.getCode());
+            boolean currencyResult = showAllTradeCurrencies ||
+                    offer.getCurrencyCode().equals(selectedTradeCurrencyCode);
             boolean paymentMethodResult = showAllPaymentMethods ||
-                    offer.getPaymentMethod().equals(selectedPaymentMethod);
+                    offer.getPaymentMethodId().equals(selectedPaymentMethodId);
             boolean notMyOfferOrShowMyOffersActivated = !isMyOffer(offerBookListItem.getOffer()) || preferences.getShowOwnOffersInOfferBook();
             return directionResult && currencyResult && paymentMethodResult && notMyOfferOrShowMyOffersActivated;
         });
@@ -461,10 +464,6 @@ class OfferBookViewModel extends ActivatableViewModel {
     }
 
     public int getNumPastTrades(Offer offer) {
-        return closedTradableManager.getClosedTrades().stream()
-                .filter(e -> e instanceof Trade && ((Trade) e).getTradingPeerNodeAddress() != null &&
-                        ((Trade) e).getTradingPeerNodeAddress().hostName.equals(offer.getOffererNodeAddress().hostName))
-                .collect(Collectors.toSet())
-                .size();
+        return closedTradableManager.getNumPastTrades(offer.getOffererNodeAddress().hostName);
     }
 }
@@ -0,0 +1,107 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.gui.main.offer.offerbook;
+
+import io.bitsquare.payment.PaymentAccount;
+import io.bitsquare.trade.offer.Offer;
+import javafx.collections.ObservableSet;
+import javafx.collections.SetChangeListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches whether any of the user's payment accounts can be used for an offer. The result depends only on the payment
+ * related fields of the offer, so all offers with the same payment method, country, bank, currency and accepted
+ * countries and banks share one entry. The cache gets cleared when the user adds, removes or updates a payment account
+ * (see User.updatePaymentAccount).
+ * <p>
+ * Not thread safe, it is used from the UserThread.
+ */
+class PaymentAccountCompatibility {
+    private final ObservableSet<PaymentAccount> paymentAccounts;
+    private final Map<Key, Boolean> isCompatibleByKey = new HashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    PaymentAccountCompatibility(ObservableSet<PaymentAccount> paymentAccounts) {
+        this.paymentAccounts = paymentAccounts;
+        paymentAccounts.addListener((SetChangeListener<PaymentAccount>) change -> isCompatibleByKey.clear());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    boolean isAnyPaymentAccountValidForOffer(Offer offer) {
+        return isCompatibleByKey.computeIfAbsent(new Key(offer),
+                key -> OfferBookViewModel.isAnyPaymentAccountValidForOffer(offer, paymentAccounts));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Key
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Key {
+        private final String paymentMethodId;
+        private final String countryCode;
+        private final String bankId;
+        private final String currencyCode;
+        private final List<String> acceptedCountryCodes;
+        private final List<String> acceptedBankIds;
+        private final int hashCode;
+
+        private Key(Offer offer) {
+            paymentMethodId = offer.getPaymentMethodId();
+            countryCode = offer.getCountryCode();
+            bankId = offer.getBankId();
+            currencyCode = offer.getCurrencyCode();
+            acceptedCountryCodes = offer.getAcceptedCountryCodes();
+            acceptedBankIds = offer.getAcceptedBankIds();
+            hashCode = Objects.hash(paymentMethodId, countryCode, bankId, currencyCode, acceptedCountryCodes,
+                    acceptedBankIds);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key that = (Key) o;
+            return hashCode == that.hashCode &&
+                    Objects.equals(paymentMethodId, that.paymentMethodId) &&
+                    Objects.equals(countryCode, that.countryCode) &&
+                    Objects.equals(bankId, that.bankId) &&
+                    Objects.equals(currencyCode, that.currencyCode) &&
+                    Objects.equals(acceptedCountryCodes, that.acceptedCountryCodes) &&
+                    Objects.equals(acceptedBankIds, that.acceptedBankIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package io.bitsquare.gui.main.overlays.windows;
 
+import com.google.common.util.concurrent.FutureCallback;
 import io.bitsquare.arbitration.Dispute;
 import io.bitsquare.arbitration.DisputeManager;
 import io.bitsquare.arbitration.DisputeResult;
@@ -24,8 +25,8 @@ import io.bitsquare.btc.AddressEntry;
 import io.bitsquare.btc.FeePolicy;
 import io.bitsquare.btc.TradeWalletService;
 import io.bitsquare.btc.WalletService;
-import io.bitsquare.btc.exceptions.TransactionVerificationException;
 import io.bitsquare.common.UserThread;
+import io.bitsquare.common.WorkerPool;
 import io.bitsquare.common.util.Tuple2;
 import io.bitsquare.gui.main.overlays.Overlay;
 import io.bitsquare.gui.main.overlays.popups.Popup;
@@ -34,6 +35,7 @@ import io.bitsquare.gui.util.Layout;
 import io.bitsquare.gui.util.Transitions;
 import io.bitsquare.trade.Contract;
 import javafx.beans.binding.Bindings;
+import javafx.beans.binding.BooleanBinding;
 import javafx.beans.binding.ObjectBinding;
 import javafx.beans.value.ChangeListener;
 import javafx.geometry.Insets;
@@ -45,9 +47,9 @@ import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import org.bitcoinj.core.AddressFormatException;
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.utils.ExchangeRate;
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -74,6 +76,8 @@ public class DisputeSummaryWindow extends Overlay<DisputeSummaryWindow> {
     private Optional<Dispute> peersDisputeOptional;
     private Coin arbitratorPayoutAmount, winnerPayoutAmount, loserPayoutAmount, stalematePayoutAmount;
     private ToggleGroup feeToggleGroup;
+    private VBox radioButtonPane;
+    private HBox feeRadioButtonPane;
     private String role;
     private TextArea summaryNotesTextArea;
     private ObjectBinding<Tuple2<DisputeResult.DisputeFeePolicy, Toggle>> feePaymentPolicyChanged;
@@ -159,8 +163,8 @@ public class DisputeSummaryWindow extends Overlay<DisputeSummaryWindow> {
         else
             disputeResult = dispute.disputeResultProperty().get();
 
-        peersDisputeOptional = disputeManager.getDisputesAsObservableList().stream()
-                .filter(d -> dispute.getTradeId().equals(d.getTradeId()) && dispute.getTraderId() != d.getTraderId()).findFirst();
+        peersDisputeOptional = disputeManager.findDisputesByTradeId(dispute.getTradeId()).stream()
+                .filter(d -> dispute.getTraderId() != d.getTraderId()).findFirst();
 
         addInfoPane();
 
@@ -265,7 +269,7 @@ public class DisputeSummaryWindow extends Overlay<DisputeSummaryWindow> {
         buyerIsWinnerRadioButton = new RadioButton("Buyer gets trade amount payout");
         sellerIsWinnerRadioButton = new RadioButton("Seller gets trade amount payout");
         shareRadioButton = new RadioButton("Both gets half trade amount payout");
-        VBox radioButtonPane = new VBox();
+        radioButtonPane = new VBox();
         radioButtonPane.setSpacing(20);
         radioButtonPane.getChildren().addAll(buyerIsWinnerRadioButton, sellerIsWinnerRadioButton, shareRadioButton);
         GridPane.setRowIndex(radioButtonPane, rowIndex);
@@ -301,7 +305,7 @@ public class DisputeSummaryWindow extends Overlay<DisputeSummaryWindow> {
         loserPaysFeeRadioButton = new RadioButton("Loser pays arbitration fee");
         splitFeeRadioButton = new RadioButton("Split arbitration fee");
         waiveFeeRadioButton = new RadioButton("Waive arbitration fee");
-        HBox feeRadioButtonPane = new HBox();
+        feeRadioButtonPane = new HBox();
         feeRadioButtonPane.setSpacing(20);
         feeRadioButtonPane.getChildren().addAll(loserPaysFeeRadioButton, splitFeeRadioButton, waiveFeeRadioButton);
         GridPane.setRowIndex(feeRadioButtonPane, rowIndex);
@@ -358,76 +362,97 @@ public class DisputeSummaryWindow extends Overlay<DisputeSummaryWindow> {
     private void addButtons(Contract contract) {
         Tuple2<Button, Button> tuple = add2ButtonsAfterGroup(gridPane, ++rowIndex, "Close ticket", "Cancel");
         Button closeTicketButton = tuple.first;
-        closeTicketButton.disableProperty().bind(Bindings.createBooleanBinding(
+        BooleanBinding closeTicketButtonDisabled = Bindings.createBooleanBinding(
                 () -> tradeAmountToggleGroup.getSelectedToggle() == null
                         || summaryNotesTextArea.getText() == null
                         || summaryNotesTextArea.getText().length() == 0,
                 tradeAmountToggleGroup.selectedToggleProperty(),
-                summaryNotesTextArea.textProperty()));
+                summaryNotesTextArea.textProperty());
+        closeTicketButton.disableProperty().bind(closeTicketButtonDisabled);
 
         Button cancelButton = tuple.second;
 
         final Dispute finalPeersDispute = peersDisputeOptional.get();
         closeTicketButton.setOnAction(e -> {
             if (dispute.getDepositTxSerialized() != null) {
-                try {
-                    AddressEntry arbitratorAddressEntry = walletService.getOrCreateAddressEntry(AddressEntry.Context.ARBITRATOR);
-                    disputeResult.setArbitratorAddressAsString(arbitratorAddressEntry.getAddressString());
-                    disputeResult.setArbitratorPubKey(arbitratorAddressEntry.getPubKey());
-
-                   /* byte[] depositTxSerialized,
-                    Coin buyerPayoutAmount,
-                    Coin sellerPayoutAmount,
-                    Coin arbitratorPayoutAmount,
-                    String buyerAddressString,
-                    String sellerAddressString,
-                    AddressEntry arbitratorAddressEntry,
-                    byte[] buyerPubKey,
-                    byte[] sellerPubKey,
-                    byte[] arbitratorPubKey)
-                    */
-                    byte[] arbitratorSignature = tradeWalletService.signDisputedPayoutTx(
-                            dispute.getDepositTxSerialized(),
-                            disputeResult.getBuyerPayoutAmount(),
-                            disputeResult.getSellerPayoutAmount(),
-                            disputeResult.getArbitratorPayoutAmount(),
-                            contract.getBuyerPayoutAddressString(),
-                            contract.getSellerPayoutAddressString(),
-                            arbitratorAddressEntry,
-                            contract.getBuyerBtcPubKey(),
-                            contract.getSellerBtcPubKey(),
-                            arbitratorAddressEntry.getPubKey()
-                    );
-                    disputeResult.setArbitratorSignature(arbitratorSignature);
-
-                    closeTicketButton.disableProperty().unbind();
-                    dispute.setDisputeResult(disputeResult);
-
-                    disputeResult.setCloseDate(new Date());
-                    String text = "Ticket closed on " + formatter.formatDateTime(disputeResult.getCloseDate()) +
-                            "\n\nSummary:" +
-                            "\n" + role + " delivered tamper proof evidence: " + formatter.booleanToYesNo(disputeResult.tamperProofEvidenceProperty().get()) +
-                            "\n" + role + " did ID verification: " + formatter.booleanToYesNo(disputeResult.idVerificationProperty().get()) +
-                            "\n" + role + " did screencast or video: " + formatter.booleanToYesNo(disputeResult.screenCastProperty().get()) +
-                            "\nPayout amount for buyer: " + formatter.formatCoinWithCode(disputeResult.getBuyerPayoutAmount()) +
-                            "\nPayout amount for seller: " + formatter.formatCoinWithCode(disputeResult.getSellerPayoutAmount()) +
-                            "\nArbitrators dispute fee: " + formatter.formatCoinWithCode(disputeResult.getArbitratorPayoutAmount()) +
-                            "\n\nSummary notes:\n" + disputeResult.summaryNotesProperty().get();
-
-                    dispute.setIsClosed(true);
-                    disputeManager.sendDisputeResultMessage(disputeResult, dispute, text);
-
-                    if (!finalPeersDispute.isClosed())
-                        UserThread.runAfter(() ->
-                                        new Popup().attention("You need to close also the trading peers ticket!").show(),
-                                Transitions.DEFAULT_DURATION, TimeUnit.MILLISECONDS);
-
-                    hide();
-
-                    finalizeDisputeHandlerOptional.ifPresent(finalizeDisputeHandler -> finalizeDisputeHandler.run());
-                } catch (AddressFormatException | TransactionVerificationException e2) {
-                    e2.printStackTrace();
-                }
+                AddressEntry arbitratorAddressEntry = walletService.getOrCreateAddressEntry(AddressEntry.Context.ARBITRATOR);
+                disputeResult.setArbitratorAddressAsString(arbitratorAddressEntry.getAddressString());
+                disputeResult.setArbitratorPubKey(arbitratorAddressEntry.getPubKey());
+
+               /* byte[] depositTxSerialized,
+                Coin buyerPayoutAmount,
+                Coin sellerPayoutAmount,
+                Coin arbitratorPayoutAmount,
+                String buyerAddressString,
+                String sellerAddressString,
+                AddressEntry arbitratorAddressEntry,
+                byte[] buyerPubKey,
+                byte[] sellerPubKey,
+                byte[] arbitratorPubKey)
+                */
+
+                // Signing runs on the WorkerPool, so the UI does not freeze while the payout tx is built.
+                // We pass copies of the payout amounts and don't allow to change them until we got the signature.
+                byte[] depositTxSerialized = dispute.getDepositTxSerialized();
+                Coin buyerPayoutAmount = disputeResult.getBuyerPayoutAmount();
+                Coin sellerPayoutAmount = disputeResult.getSellerPayoutAmount();
+                Coin arbitratorPayoutAmount = disputeResult.getArbitratorPayoutAmount();
+                closeTicketButton.disableProperty().unbind();
+                closeTicketButton.setDisable(true);
+                radioButtonPane.setDisable(true);
+                feeRadioButtonPane.setDisable(true);
+                WorkerPool.execute(() -> tradeWalletService.signDisputedPayoutTx(
+                                depositTxSerialized,
+                                buyerPayoutAmount,
+                                sellerPayoutAmount,
+                                arbitratorPayoutAmount,
+                                contract.getBuyerPayoutAddressString(),
+                                contract.getSellerPayoutAddressString(),
+                                arbitratorAddressEntry,
+                                contract.getBuyerBtcPubKey(),
+                                contract.getSellerBtcPubKey(),
+                                arbitratorAddressEntry.getPubKey()),
+                        new FutureCallback<byte[]>() {
+                            @Override
+                            public void onSuccess(byte[] arbitratorSignature) {
+                                disputeResult.setArbitratorSignature(arbitratorSignature);
+
+                                dispute.setDisputeResult(disputeResult);
+
+                                disputeResult.setCloseDate(new Date());
+                                String text = "Ticket closed on " + formatter.formatDateTime(disputeResult.getCloseDate()) +
+                                        "\n\nSummary:" +
+                                        "\n" + role + " delivered tamper proof evidence: " + formatter.booleanToYesNo(disputeResult.tamperProofEvidenceProperty().get()) +
+                                        "\n" + role + " did ID verification: " + formatter.booleanToYesNo(disputeResult.idVerificationProperty().get()) +
+                                        "\n" + role + " did screencast or video: " + formatter.booleanToYesNo(disputeResult.screenCastProperty().get()) +
+                                        "\nPayout amount for buyer: " + formatter.formatCoinWithCode(disputeResult.getBuyerPayoutAmount()) +
+                                        "\nPayout amount for seller: " + formatter.formatCoinWithCode(disputeResult.getSellerPayoutAmount()) +
+                                        "\nArbitrators dispute fee: " + formatter.formatCoinWithCode(disputeResult.getArbitratorPayoutAmount()) +
+                                        "\n\nSummary notes:\n" + disputeResult.summaryNotesProperty().get();
+
+                                dispute.setIsClosed(true);
+                                disputeManager.sendDisputeResultMessage(disputeResult, dispute, text);
+
+                                if (!finalPeersDispute.isClosed())
+                                    UserThread.runAfter(() ->
+                                                    new Popup().attention("You need to close also the trading peers ticket!").show(),
+                                            Transitions.DEFAULT_DURATION, TimeUnit.MILLISECONDS);
+
+                                hide();
+
+                                finalizeDisputeHandlerOptional.ifPresent(finalizeDisputeHandler -> finalizeDisputeHandler.run());
+                            }
+
+                            @Override
+                            public void onFailure(@NotNull Throwable t) {
+                                t.printStackTrace();
+                                radioButtonPane.setDisable(false);
+                                feeRadioButtonPane.setDisable(false);
+                                closeTicketButton.disableProperty().bind(closeTicketButtonDisabled);
+                                new Popup().error("Signing the payout transaction failed.\n" +
+                                        "Error message: " + t.getMessage()).show();
+                            }
+                        });
             } else {
                 log.warn("dispute.getDepositTxSerialized is null");
             }
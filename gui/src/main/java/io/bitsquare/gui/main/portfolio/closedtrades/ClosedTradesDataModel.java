@@ -19,20 +19,30 @@ package io.bitsquare.gui.main.portfolio.closedtrades;
 
 import com.google.inject.Inject;
 import io.bitsquare.gui.common.model.ActivatableDataModel;
-import io.bitsquare.trade.Tradable;
+import io.bitsquare.trade.TradableHistory;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.closed.ClosedTradableManager;
 import io.bitsquare.trade.offer.Offer;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
+import java.util.Comparator;
 import java.util.stream.Collectors;
 
 class ClosedTradesDataModel extends ActivatableDataModel {
+    private static final int PAGE_SIZE = 50;
+
     private final ClosedTradableManager closedTradableManager;
 
     private final ObservableList<ClosedTradableListItem> list = FXCollections.observableArrayList();
-    private final ListChangeListener<Tradable> tradesListChangeListener;
+    private final ListChangeListener<TradableSummary> tradesListChangeListener;
+    private final IntegerProperty numPages = new SimpleIntegerProperty(1);
+    private int pageIndex;
+    private Comparator<TradableSummary> comparator = TradableHistory.LATEST_FIRST;
 
     @Inject
     public ClosedTradesDataModel(ClosedTradableManager closedTradableManager) {
@@ -44,29 +54,46 @@ class ClosedTradesDataModel extends ActivatableDataModel {
     @Override
     protected void activate() {
         applyList();
-        closedTradableManager.getClosedTrades().addListener(tradesListChangeListener);
+        closedTradableManager.getClosedTradeSummaries().addListener(tradesListChangeListener);
     }
 
     @Override
     protected void deactivate() {
-        closedTradableManager.getClosedTrades().removeListener(tradesListChangeListener);
+        closedTradableManager.getClosedTradeSummaries().removeListener(tradesListChangeListener);
     }
 
     public ObservableList<ClosedTradableListItem> getList() {
         return list;
     }
 
+    public ReadOnlyIntegerProperty numPagesProperty() {
+        return numPages;
+    }
+
+    // Only the tradables of the selected page are read from disk
+    public void setPageIndex(int pageIndex) {
+        this.pageIndex = pageIndex;
+        applyList();
+    }
+
+    // The table sorts only the items of the page, so we need to sort all summaries in the same order before paging
+    public void setComparator(Comparator<TradableSummary> comparator) {
+        this.comparator = comparator;
+        applyList();
+    }
+
     public Offer.Direction getDirection(Offer offer) {
         return closedTradableManager.wasMyOffer(offer) ? offer.getDirection() : offer.getMirroredDirection();
     }
 
     private void applyList() {
-        list.clear();
-
-        list.addAll(closedTradableManager.getClosedTrades().stream().map(ClosedTradableListItem::new).collect(Collectors.toList()));
+        int numTrades = closedTradableManager.getClosedTradeSummaries().size();
+        numPages.set(Math.max(1, (numTrades + PAGE_SIZE - 1) / PAGE_SIZE));
+        pageIndex = Math.min(pageIndex, numPages.get() - 1);
 
-        // we sort by date, earliest first
-        list.sort((o1, o2) -> o2.getTradable().getDate().compareTo(o1.getTradable().getDate()));
+        list.setAll(closedTradableManager.getClosedTrades(pageIndex, PAGE_SIZE, comparator).stream()
+                .map(ClosedTradableListItem::new)
+                .collect(Collectors.toList()));
     }
 
 }
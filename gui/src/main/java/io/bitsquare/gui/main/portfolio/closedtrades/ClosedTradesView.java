@@ -26,19 +26,26 @@ import io.bitsquare.gui.util.BSFormatter;
 import io.bitsquare.gui.util.ImageUtil;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.trade.Tradable;
+import io.bitsquare.trade.TradableHistory;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.offer.OpenOffer;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.*;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.util.Callback;
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.utils.Fiat;
 
 import javax.inject.Inject;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 
 @FxmlView
 public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTradesViewModel> {
@@ -46,12 +53,17 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
     @FXML
     TableView<ClosedTradableListItem> tableView;
     @FXML
+    Pagination pagination;
+    @FXML
     TableColumn<ClosedTradableListItem, ClosedTradableListItem> priceColumn, amountColumn, volumeColumn,
             directionColumn, dateColumn, tradeIdColumn, stateColumn, avatarColumn;
     private final BSFormatter formatter;
     private final OfferDetailsWindow offerDetailsWindow;
     private final TradeDetailsWindow tradeDetailsWindow;
     private SortedList<ClosedTradableListItem> sortedList;
+    private final Map<TableColumn<ClosedTradableListItem, ?>, Comparator<TradableSummary>> summaryComparators = new HashMap<>();
+    // The comparator of the table changes with the sort order and the sort type of the columns
+    private final InvalidationListener tableComparatorListener = observable -> model.setComparator(getSummaryComparator());
 
     @Inject
     public ClosedTradesView(ClosedTradesViewModel model, BSFormatter formatter, OfferDetailsWindow offerDetailsWindow, TradeDetailsWindow tradeDetailsWindow) {
@@ -119,8 +131,24 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
         });
         stateColumn.setComparator((o1, o2) -> model.getState(o1).compareTo(model.getState(o2)));
 
+        summaryComparators.put(tradeIdColumn, Comparator.comparing(TradableSummary::getId));
+        summaryComparators.put(dateColumn, Comparator.comparing(TradableSummary::getDate));
+        summaryComparators.put(directionColumn, Comparator.comparing(TradableSummary::getDirection));
+        summaryComparators.put(priceColumn, Comparator.comparingLong(summary -> summary.getPrice().value));
+        summaryComparators.put(volumeColumn, Comparator.comparingLong(summary -> summary.getVolume().value));
+        summaryComparators.put(amountColumn, Comparator.comparingLong(summary -> summary.getAmount().value));
+        summaryComparators.put(avatarColumn, Comparator.comparing(summary ->
+                summary.getPeerHostName() != null ? summary.getPeerHostName() : ""));
+        summaryComparators.put(stateColumn, Comparator.comparing(TradableSummary::getState));
+
         dateColumn.setSortType(TableColumn.SortType.DESCENDING);
         tableView.getSortOrder().add(dateColumn);
+
+        // The pagination is only used for the navigation, the page content is shown in the table
+        pagination.setPageFactory(pageIndex -> {
+            model.setPageIndex(pageIndex);
+            return new Region();
+        });
     }
 
     @Override
@@ -128,11 +156,29 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
         sortedList = new SortedList<>(model.getList());
         sortedList.comparatorProperty().bind(tableView.comparatorProperty());
         tableView.setItems(sortedList);
+        tableView.comparatorProperty().addListener(tableComparatorListener);
+        pagination.pageCountProperty().bind(model.numPagesProperty());
     }
 
     @Override
     protected void deactivate() {
         sortedList.comparatorProperty().unbind();
+        tableView.comparatorProperty().removeListener(tableComparatorListener);
+        pagination.pageCountProperty().unbind();
+    }
+
+    // The table sorts only the items of the current page, so we apply the same sort order to all summaries
+    private Comparator<TradableSummary> getSummaryComparator() {
+        Comparator<TradableSummary> comparator = null;
+        for (TableColumn<ClosedTradableListItem, ?> column : tableView.getSortOrder()) {
+            Comparator<TradableSummary> columnComparator = summaryComparators.get(column);
+            if (columnComparator != null) {
+                if (column.getSortType() == TableColumn.SortType.DESCENDING)
+                    columnComparator = columnComparator.reversed();
+                comparator = comparator == null ? columnComparator : comparator.thenComparing(columnComparator);
+            }
+        }
+        return comparator != null ? comparator : TradableHistory.LATEST_FIRST;
     }
 
 
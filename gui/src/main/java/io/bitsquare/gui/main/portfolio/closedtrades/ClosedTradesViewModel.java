@@ -22,10 +22,14 @@ import io.bitsquare.gui.common.model.ActivatableWithDataModel;
 import io.bitsquare.gui.common.model.ViewModel;
 import io.bitsquare.gui.util.BSFormatter;
 import io.bitsquare.trade.Tradable;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.offer.OpenOffer;
+import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.collections.ObservableList;
 
+import java.util.Comparator;
+
 class ClosedTradesViewModel extends ActivatableWithDataModel<ClosedTradesDataModel> implements ViewModel {
     private final BSFormatter formatter;
 
@@ -41,6 +45,18 @@ class ClosedTradesViewModel extends ActivatableWithDataModel<ClosedTradesDataMod
         return dataModel.getList();
     }
 
+    public ReadOnlyIntegerProperty numPagesProperty() {
+        return dataModel.numPagesProperty();
+    }
+
+    public void setPageIndex(int pageIndex) {
+        dataModel.setPageIndex(pageIndex);
+    }
+
+    public void setComparator(Comparator<TradableSummary> comparator) {
+        dataModel.setComparator(comparator);
+    }
+
     String getTradeId(ClosedTradableListItem item) {
         return item.getTradable().getShortId();
     }
@@ -19,21 +19,30 @@ package io.bitsquare.gui.main.portfolio.failedtrades;
 
 import com.google.inject.Inject;
 import io.bitsquare.gui.common.model.ActivatableDataModel;
-import io.bitsquare.trade.Trade;
+import io.bitsquare.trade.TradableHistory;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.failed.FailedTradesManager;
 import io.bitsquare.trade.offer.Offer;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
+import java.util.Comparator;
 import java.util.stream.Collectors;
 
 class FailedTradesDataModel extends ActivatableDataModel {
+    private static final int PAGE_SIZE = 50;
 
     private final FailedTradesManager failedTradesManager;
 
     private final ObservableList<FailedTradesListItem> list = FXCollections.observableArrayList();
-    private final ListChangeListener<Trade> tradesListChangeListener;
+    private final ListChangeListener<TradableSummary> tradesListChangeListener;
+    private final IntegerProperty numPages = new SimpleIntegerProperty(1);
+    private int pageIndex;
+    private Comparator<TradableSummary> comparator = TradableHistory.LATEST_FIRST;
 
     @Inject
     public FailedTradesDataModel(FailedTradesManager failedTradesManager) {
@@ -45,29 +54,46 @@ class FailedTradesDataModel extends ActivatableDataModel {
     @Override
     protected void activate() {
         applyList();
-        failedTradesManager.getFailedTrades().addListener(tradesListChangeListener);
+        failedTradesManager.getFailedTradeSummaries().addListener(tradesListChangeListener);
     }
 
     @Override
     protected void deactivate() {
-        failedTradesManager.getFailedTrades().removeListener(tradesListChangeListener);
+        failedTradesManager.getFailedTradeSummaries().removeListener(tradesListChangeListener);
     }
 
     public ObservableList<FailedTradesListItem> getList() {
         return list;
     }
 
+    public ReadOnlyIntegerProperty numPagesProperty() {
+        return numPages;
+    }
+
+    // Only the trades of the selected page are read from disk
+    public void setPageIndex(int pageIndex) {
+        this.pageIndex = pageIndex;
+        applyList();
+    }
+
+    // The table sorts only the items of the page, so we need to sort all summaries in the same order before paging
+    public void setComparator(Comparator<TradableSummary> comparator) {
+        this.comparator = comparator;
+        applyList();
+    }
+
     public Offer.Direction getDirection(Offer offer) {
         return failedTradesManager.wasMyOffer(offer) ? offer.getDirection() : offer.getMirroredDirection();
     }
 
     private void applyList() {
-        list.clear();
-
-        list.addAll(failedTradesManager.getFailedTrades().stream().map(FailedTradesListItem::new).collect(Collectors.toList()));
+        int numTrades = failedTradesManager.getFailedTradeSummaries().size();
+        numPages.set(Math.max(1, (numTrades + PAGE_SIZE - 1) / PAGE_SIZE));
+        pageIndex = Math.min(pageIndex, numPages.get() - 1);
 
-        // we sort by date, earliest first
-        list.sort((o1, o2) -> o2.getTrade().getDate().compareTo(o1.getTrade().getDate()));
+        list.setAll(failedTradesManager.getFailedTrades(pageIndex, PAGE_SIZE, comparator).stream()
+                .map(FailedTradesListItem::new)
+                .collect(Collectors.toList()));
     }
 
 }
@@ -21,14 +21,21 @@ import io.bitsquare.gui.common.view.ActivatableViewAndModel;
 import io.bitsquare.gui.common.view.FxmlView;
 import io.bitsquare.gui.components.HyperlinkWithIcon;
 import io.bitsquare.gui.main.overlays.windows.TradeDetailsWindow;
+import io.bitsquare.trade.TradableHistory;
+import io.bitsquare.trade.TradableSummary;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.util.Callback;
 
 import javax.inject.Inject;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 
 @FxmlView
 public class FailedTradesView extends ActivatableViewAndModel<VBox, FailedTradesViewModel> {
@@ -36,10 +43,15 @@ public class FailedTradesView extends ActivatableViewAndModel<VBox, FailedTrades
     @FXML
     TableView<FailedTradesListItem> tableView;
     @FXML
+    Pagination pagination;
+    @FXML
     TableColumn<FailedTradesListItem, FailedTradesListItem> priceColumn, amountColumn, volumeColumn,
             directionColumn, dateColumn, tradeIdColumn, stateColumn;
     private final TradeDetailsWindow tradeDetailsWindow;
     private SortedList<FailedTradesListItem> sortedList;
+    private final Map<TableColumn<FailedTradesListItem, ?>, Comparator<TradableSummary>> summaryComparators = new HashMap<>();
+    // The comparator of the table changes with the sort order and the sort type of the columns
+    private final InvalidationListener tableComparatorListener = observable -> model.setComparator(getSummaryComparator());
 
     @Inject
     public FailedTradesView(FailedTradesViewModel model, TradeDetailsWindow tradeDetailsWindow) {
@@ -62,14 +74,29 @@ public class FailedTradesView extends ActivatableViewAndModel<VBox, FailedTrades
 
         tradeIdColumn.setComparator((o1, o2) -> o1.getTrade().getId().compareTo(o2.getTrade().getId()));
         dateColumn.setComparator((o1, o2) -> o1.getTrade().getDate().compareTo(o2.getTrade().getDate()));
+        directionColumn.setComparator((o1, o2) -> o1.getTrade().getOffer().getDirection().compareTo(o2.getTrade().getOffer().getDirection()));
         priceColumn.setComparator((o1, o2) -> o1.getTrade().getTradePrice().compareTo(o2.getTrade().getTradePrice()));
         volumeColumn.setComparator((o1, o2) -> o1.getTrade().getTradeVolume().compareTo(o2.getTrade().getTradeVolume()));
         amountColumn.setComparator((o1, o2) -> o1.getTrade().getTradeAmount().compareTo(o2.getTrade().getTradeAmount()));
         stateColumn.setComparator((o1, o2) -> model.getState(o1).compareTo(model.getState(o2)));
 
+        summaryComparators.put(tradeIdColumn, Comparator.comparing(TradableSummary::getId));
+        summaryComparators.put(dateColumn, Comparator.comparing(TradableSummary::getDate));
+        summaryComparators.put(directionColumn, Comparator.comparing(TradableSummary::getDirection));
+        summaryComparators.put(priceColumn, Comparator.comparingLong(summary -> summary.getPrice().value));
+        summaryComparators.put(volumeColumn, Comparator.comparingLong(summary -> summary.getVolume().value));
+        summaryComparators.put(amountColumn, Comparator.comparingLong(summary -> summary.getAmount().value));
+        summaryComparators.put(stateColumn, Comparator.comparing(TradableSummary::getState));
+
         dateColumn.setSortType(TableColumn.SortType.DESCENDING);
         tableView.getSortOrder().add(dateColumn);
 
+        // The pagination is only used for the navigation, the page content is shown in the table
+        pagination.setPageFactory(pageIndex -> {
+            model.setPageIndex(pageIndex);
+            return new Region();
+        });
+
     }
 
     @Override
@@ -77,11 +104,29 @@ public class FailedTradesView extends ActivatableViewAndModel<VBox, FailedTrades
         sortedList = new SortedList<>(model.getList());
         sortedList.comparatorProperty().bind(tableView.comparatorProperty());
         tableView.setItems(sortedList);
+        tableView.comparatorProperty().addListener(tableComparatorListener);
+        pagination.pageCountProperty().bind(model.numPagesProperty());
     }
 
     @Override
     protected void deactivate() {
         sortedList.comparatorProperty().unbind();
+        tableView.comparatorProperty().removeListener(tableComparatorListener);
+        pagination.pageCountProperty().unbind();
+    }
+
+    // The table sorts only the items of the current page, so we apply the same sort order to all summaries
+    private Comparator<TradableSummary> getSummaryComparator() {
+        Comparator<TradableSummary> comparator = null;
+        for (TableColumn<FailedTradesListItem, ?> column : tableView.getSortOrder()) {
+            Comparator<TradableSummary> columnComparator = summaryComparators.get(column);
+            if (columnComparator != null) {
+                if (column.getSortType() == TableColumn.SortType.DESCENDING)
+                    columnComparator = columnComparator.reversed();
+                comparator = comparator == null ? columnComparator : comparator.thenComparing(columnComparator);
+            }
+        }
+        return comparator != null ? comparator : TradableHistory.LATEST_FIRST;
     }
 
 
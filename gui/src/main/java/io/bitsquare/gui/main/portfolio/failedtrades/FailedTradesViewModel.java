@@ -21,9 +21,13 @@ import com.google.inject.Inject;
 import io.bitsquare.gui.common.model.ActivatableWithDataModel;
 import io.bitsquare.gui.common.model.ViewModel;
 import io.bitsquare.gui.util.BSFormatter;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.Trade;
+import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.collections.ObservableList;
 
+import java.util.Comparator;
+
 class FailedTradesViewModel extends ActivatableWithDataModel<FailedTradesDataModel> implements ViewModel {
     private final BSFormatter formatter;
 
@@ -39,6 +43,18 @@ class FailedTradesViewModel extends ActivatableWithDataModel<FailedTradesDataMod
         return dataModel.getList();
     }
 
+    public ReadOnlyIntegerProperty numPagesProperty() {
+        return dataModel.numPagesProperty();
+    }
+
+    public void setPageIndex(int pageIndex) {
+        dataModel.setPageIndex(pageIndex);
+    }
+
+    public void setComparator(Comparator<TradableSummary> comparator) {
+        dataModel.setComparator(comparator);
+    }
+
     String getTradeId(FailedTradesListItem item) {
         return item.getTrade().getShortId();
     }
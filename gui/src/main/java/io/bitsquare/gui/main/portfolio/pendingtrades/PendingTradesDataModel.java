@@ -352,7 +352,7 @@ public class PendingTradesDataModel extends ActivatableDataModel {
                 log.debug("payoutTx is null at doOpenDispute");
             }
 
-            Dispute dispute = new Dispute(disputeManager.getDisputeStorage(),
+            Dispute dispute = new Dispute(disputeManager.getDisputeRepository(),
                     trade.getId(),
                     keyRing.getPubKeyRing().hashCode(), // traderId
                     trade.getOffer().getDirection() == Offer.Direction.BUY ? isOfferer : !isOfferer,
@@ -40,7 +40,6 @@ import org.fxmisc.easybind.EasyBind;
 import org.fxmisc.easybind.Subscription;
 
 import java.util.Date;
-import java.util.stream.Collectors;
 
 import static io.bitsquare.gui.main.portfolio.pendingtrades.PendingTradesViewModel.SellerState.*;
 
@@ -272,11 +271,7 @@ public class PendingTradesViewModel extends ActivatableWithDataModel<PendingTrad
     }
 
     public int getNumPastTrades(Trade trade) {
-        return closedTradableManager.getClosedTrades().stream()
-                .filter(e -> e instanceof Trade && ((Trade) e).getTradingPeerNodeAddress() != null &&
-                        ((Trade) e).getTradingPeerNodeAddress().hostName.equals(trade.getTradingPeerNodeAddress().hostName))
-                .collect(Collectors.toSet())
-                .size();
+        return closedTradableManager.getNumPastTrades(trade.getTradingPeerNodeAddress().hostName);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -5,6 +5,9 @@ import io.bitsquare.locale.CryptoCurrency;
 import io.bitsquare.locale.FiatCurrency;
 import io.bitsquare.payment.*;
 import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.user.User;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableSet;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -149,6 +153,51 @@ public class OfferBookViewModelTest {
 
     }
 
+    @Test
+    public void testPaymentAccountCompatibility() {
+        ObservableSet<PaymentAccount> paymentAccounts = FXCollections.observableSet();
+        PaymentAccountCompatibility paymentAccountCompatibility = new PaymentAccountCompatibility(paymentAccounts);
+        assertFalse(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(getOKPayPaymentMethod("EUR")));
+
+        // The cache gets cleared when the accounts change
+        paymentAccounts.add(getOKPayAccount("EUR"));
+        assertTrue(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(getOKPayPaymentMethod("EUR")));
+        assertFalse(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(getOKPayPaymentMethod("USD")));
+
+        paymentAccounts.add(getSepaAccount("EUR", "DE", "1212324", new ArrayList<>(Arrays.asList("AT", "DE"))));
+        assertTrue(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(
+                getSEPAPaymentMethod("EUR", "AT", new ArrayList<>(Arrays.asList("AT", "DE")), "PSK")));
+        assertFalse(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(
+                getSEPAPaymentMethod("EUR", "AT", new ArrayList<>(Arrays.asList("AT", "FR")), "PSK")));
+
+        paymentAccounts.clear();
+        assertFalse(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(getOKPayPaymentMethod("EUR")));
+    }
+
+    @Test
+    public void testPaymentAccountCompatibilityAfterAccountEdit() {
+        CountryBasedPaymentAccount sepaAccount = (CountryBasedPaymentAccount) getSepaAccount("EUR", "DE", "1212324",
+                new ArrayList<>(Arrays.asList("AT", "DE")));
+        User user = new User();
+        user.addPaymentAccount(sepaAccount);
+        PaymentAccountCompatibility paymentAccountCompatibility = new PaymentAccountCompatibility(user.getPaymentAccountsAsObservable());
+        assertTrue(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(
+                getSEPAPaymentMethod("EUR", "AT", new ArrayList<>(Arrays.asList("AT", "DE")), "PSK")));
+
+        // The cache gets cleared when an account which got edited in place is updated
+        sepaAccount.setCountry(new Country("FR", null, null));
+        user.updatePaymentAccount(sepaAccount);
+        assertEquals(1, user.getPaymentAccountsAsObservable().size());
+        assertFalse(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(
+                getSEPAPaymentMethod("EUR", "AT", new ArrayList<>(Arrays.asList("AT", "DE")), "PSK")));
+
+        sepaAccount.setCountry(new Country("DE", null, null));
+        sepaAccount.setSingleTradeCurrency(new FiatCurrency("CHF"));
+        user.updatePaymentAccount(sepaAccount);
+        assertFalse(paymentAccountCompatibility.isAnyPaymentAccountValidForOffer(
+                getSEPAPaymentMethod("EUR", "AT", new ArrayList<>(Arrays.asList("AT", "DE")), "PSK")));
+    }
+
     private PaymentAccount getOKPayAccount(String currencyCode) {
         PaymentAccount paymentAccount = new OKPayAccount();
         paymentAccount.setSelectedTradeCurrency(new FiatCurrency(currencyCode));
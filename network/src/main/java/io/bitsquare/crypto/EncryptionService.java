@@ -19,30 +19,204 @@ package io.bitsquare.crypto;
 
 import io.bitsquare.common.crypto.*;
 import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.storage.P2PDataStorage;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.crypto.SecretKey;
 import javax.inject.Inject;
+import java.io.Serializable;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EncryptionService {
+    private static final Logger log = LoggerFactory.getLogger(EncryptionService.class);
+
     private final KeyRing keyRing;
 
+    // Active session per peers signature key used for sending
+    private final Map<PublicKey, Session> sessionsBySigPubKey = new ConcurrentHashMap<>();
+    // All sessions we can receive with
+    private final Map<P2PDataStorage.ByteArray, Session> sessionsById = new ConcurrentHashMap<>();
+    // We never accept a session id twice to protect against replays of the offer. The ids are kept in buckets of the
+    // session TTL, so an id is remembered at least as long as its session is valid and the sets don't grow forever.
+    private final Object usedSessionIdsLock = new Object();
+    private Set<P2PDataStorage.ByteArray> usedSessionIds = new HashSet<>();
+    private Set<P2PDataStorage.ByteArray> previousUsedSessionIds = new HashSet<>();
+    private long usedSessionIdsBucketStart = System.currentTimeMillis();
+
     @Inject
     public EncryptionService(KeyRing keyRing) {
         this.keyRing = keyRing;
     }
 
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Hybrid scheme (used for mailbox messages)
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
     public SealedAndSigned encryptAndSign(PubKeyRing pubKeyRing, Message message) throws CryptoException {
-        return Encryption.encryptHybridWithSignature(message, keyRing.getSignatureKeyPair(), pubKeyRing.getEncryptionPubKey());
+        CryptoSuite cryptoSuite = CryptoSuites.negotiate(keyRing.getPubKeyRing(), pubKeyRing);
+        return Encryption.encryptHybridWithSignature(message, cryptoSuite, keyRing.getSignatureKeyPair(cryptoSuite),
+                pubKeyRing.getEncryptionPubKey(cryptoSuite), Encryption.generateSecretKey(), false);
     }
 
     public DecryptedMsgWithPubKey decryptAndVerify(SealedAndSigned sealedAndSigned) throws CryptoException {
+        if (sealedAndSigned.isSessionEncrypted())
+            throw new CryptoException("Session encrypted data is only supported for direct messages.");
+
         DecryptedDataTuple decryptedDataTuple = Encryption.decryptHybridWithSignature(sealedAndSigned,
-                keyRing.getEncryptionKeyPair().getPrivate());
-        if (decryptedDataTuple.payload instanceof Message) {
-            return new DecryptedMsgWithPubKey((Message) decryptedDataTuple.payload,
+                getEncryptionPrivateKey(sealedAndSigned));
+        return toDecryptedMsgWithPubKey(decryptedDataTuple.payload, decryptedDataTuple.sigPublicKey);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Session mode (used for direct messages)
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Encrypts with the session key if we have a usable session with that peer. Otherwise we use the hybrid scheme
+     * and offer a new session to the peer.
+     */
+    public SealedAndSigned encryptAndSign(PubKeyRing pubKeyRing, NodeAddress peersNodeAddress, Message message)
+            throws CryptoException {
+        CryptoSuite cryptoSuite = CryptoSuites.negotiate(keyRing.getPubKeyRing(), pubKeyRing);
+        PublicKey peersSigPubKey = pubKeyRing.getSignaturePubKey(cryptoSuite);
+        Session session = getActiveSession(peersSigPubKey);
+        if (session != null && session.isConfirmed() && !session.isExpired()
+                && session.peersNodeAddress.equals(peersNodeAddress)) {
+            return session.seal(message, keyRing.getSignatureKeyPair(cryptoSuite).getPublic());
+        } else {
+            SecretKey secretKey = Encryption.generateSecretKey();
+            SealedAndSigned sealedAndSigned = Encryption.encryptHybridWithSignature(message, cryptoSuite,
+                    keyRing.getSignatureKeyPair(cryptoSuite), pubKeyRing.getEncryptionPubKey(cryptoSuite), secretKey, true);
+            addSession(Session.createOfferedSession(sealedAndSigned.sessionId, cryptoSuite.getId(), secretKey,
+                    peersSigPubKey, peersNodeAddress));
+            return sealedAndSigned;
+        }
+    }
+
+    /**
+     * Decrypts session encrypted data or data encrypted with the hybrid scheme. If the sender of hybrid encrypted data
+     * has offered a session we accept it and use it for our messages to that peer.
+     *
+     * @param peersNodeAddress The node address of the connection we received the data from. Sessions are only
+     *                         accepted if it is known.
+     */
+    public DecryptedMsgWithPubKey decryptAndVerify(SealedAndSigned sealedAndSigned, @Nullable NodeAddress peersNodeAddress)
+            throws CryptoException {
+        if (sealedAndSigned.isSessionEncrypted()) {
+            P2PDataStorage.ByteArray sessionId = new P2PDataStorage.ByteArray(sealedAndSigned.sessionId);
+            Session session = sessionsById.get(sessionId);
+            if (session == null)
+                throw new CryptoException("Unknown session.");
+
+            if (session.isExpired()) {
+                sessionsById.remove(sessionId);
+                throw new CryptoException("Session is expired.");
+            }
+
+            boolean wasConfirmed = session.isConfirmed();
+            Serializable payload = session.open(sealedAndSigned);
+            // The peer has accepted our offer, so we use the session from now on
+            if (!wasConfirmed)
+                sessionsBySigPubKey.put(session.peersSigPubKey, session);
+            return toDecryptedMsgWithPubKey(payload, sealedAndSigned.sigPublicKey);
+        } else {
+            DecryptedDataTuple decryptedDataTuple = Encryption.decryptHybridWithSignature(sealedAndSigned,
+                    getEncryptionPrivateKey(sealedAndSigned));
+            DecryptedMsgWithPubKey decryptedMsgWithPubKey = toDecryptedMsgWithPubKey(decryptedDataTuple.payload,
                     decryptedDataTuple.sigPublicKey);
+            if (sealedAndSigned.isSessionOffer() && peersNodeAddress != null && decryptedDataTuple.secretKey != null) {
+                if (Arrays.equals(sealedAndSigned.sessionId, Encryption.getSessionId(sealedAndSigned.encryptedSecretKey)))
+                    addSession(Session.createAcceptedSession(sealedAndSigned.sessionId, sealedAndSigned.cryptoSuiteId,
+                            decryptedDataTuple.secretKey, sealedAndSigned.sigPublicKey, peersNodeAddress));
+                else
+                    log.warn("Offered sessionId does not match the encryptedSecretKey. We ignore the session offer.");
+            }
+            return decryptedMsgWithPubKey;
+        }
+    }
+
+    /**
+     * Called when the connection to a peer got closed or sending failed. The peer might have lost its sessions.
+     */
+    public void removeSessions(NodeAddress peersNodeAddress) {
+        sessionsById.values().removeIf(session -> session.peersNodeAddress.equals(peersNodeAddress));
+        sessionsBySigPubKey.values().removeIf(session -> session.peersNodeAddress.equals(peersNodeAddress));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void addSession(Session session) {
+        P2PDataStorage.ByteArray sessionId = new P2PDataStorage.ByteArray(session.sessionId);
+        if (!markSessionIdAsUsed(sessionId)) {
+            log.warn("Session offer was already used. We ignore it. That can happen with a replayed message.");
+            return;
+        }
+        sessionsById.values().removeIf(Session::isExpired);
+        sessionsBySigPubKey.values().removeIf(Session::isExpired);
+        sessionsById.put(sessionId, session);
+
+        // An accepted session can be used immediately. An offered one only replaces an unconfirmed one as we keep
+        // using a confirmed session until our offer got accepted.
+        Session current = sessionsBySigPubKey.get(session.peersSigPubKey);
+        if (session.isConfirmed() || current == null || !current.isConfirmed() || current.isExpired()
+                || !current.peersNodeAddress.equals(session.peersNodeAddress))
+            sessionsBySigPubKey.put(session.peersSigPubKey, session);
+    }
+
+    @Nullable
+    private Session getActiveSession(PublicKey peersSigPubKey) {
+        Session session = sessionsBySigPubKey.get(peersSigPubKey);
+        if (session != null && session.isExpired()) {
+            sessionsBySigPubKey.remove(peersSigPubKey, session);
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * @return False if the session id was used already
+     */
+    private boolean markSessionIdAsUsed(P2PDataStorage.ByteArray sessionId) {
+        synchronized (usedSessionIdsLock) {
+            long now = System.currentTimeMillis();
+            if (now - usedSessionIdsBucketStart > Session.TTL) {
+                // After 2 TTL without a new session both buckets are outdated
+                previousUsedSessionIds = now - usedSessionIdsBucketStart > 2 * Session.TTL ? new HashSet<>() : usedSessionIds;
+                usedSessionIds = new HashSet<>();
+                usedSessionIdsBucketStart = now;
+            }
+            return !previousUsedSessionIds.contains(sessionId) && usedSessionIds.add(sessionId);
+        }
+    }
+
+    private PrivateKey getEncryptionPrivateKey(SealedAndSigned sealedAndSigned) throws CryptoException {
+        KeyPair keyPair = keyRing.getEncryptionKeyPair(CryptoSuites.get(sealedAndSigned.cryptoSuiteId));
+        if (keyPair == null)
+            throw new CryptoException("We don't have a key for crypto suite " + sealedAndSigned.cryptoSuiteId);
+        return keyPair.getPrivate();
+    }
+
+    private DecryptedMsgWithPubKey toDecryptedMsgWithPubKey(Serializable payload, PublicKey sigPublicKey)
+            throws CryptoException {
+        if (payload instanceof Message) {
+            return new DecryptedMsgWithPubKey((Message) payload, sigPublicKey);
         } else {
             throw new CryptoException("decryptedPayloadWithPubKey.payload is not instance of Message");
         }
     }
 }
-
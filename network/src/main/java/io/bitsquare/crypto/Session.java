@@ -0,0 +1,205 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.crypto;
+
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.Encryption;
+import io.bitsquare.common.crypto.SealedAndSigned;
+import io.bitsquare.p2p.NodeAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.SecretKey;
+import java.io.Serializable;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Symmetric session between us and one peer. The base key is the secret key of a hybrid encrypted message where the
+ * sender has offered the session. After that the messages of both peers are encrypted with keys derived from the
+ * base key, so we avoid the RSA unwrap and the DSA signature for each message.
+ * <p>
+ * Keys are rotated by the sender after MAX_MSG_PER_EPOCH messages or after EPOCH_DURATION. Sequence numbers are
+ * strictly increasing over all epochs of one direction, the receiver rejects replayed or too old sequence numbers
+ * with a sliding window.
+ * <p>
+ * Sessions are kept only in memory and are bound to the node address of the peer. If the connection gets closed
+ * (e.g. the peer restarts) the session is removed and the next message uses the hybrid scheme again.
+ */
+public final class Session {
+    private static final Logger log = LoggerFactory.getLogger(Session.class);
+
+    public static final long TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long EPOCH_DURATION = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_MSG_PER_EPOCH = 100;
+    private static final int REPLAY_WINDOW_SIZE = 64;
+
+    public final byte[] sessionId;
+    // The crypto suite of the hybrid message which has offered the session. The peers signature key belongs to it.
+    public final int cryptoSuiteId;
+    public final PublicKey peersSigPubKey;
+    public final NodeAddress peersNodeAddress;
+    // True if we have offered the session
+    private final boolean initiator;
+    private final SecretKey baseKey;
+    private final long creationDate;
+    // The initiator can use the session only after the peer has sent a message with that session
+    private boolean confirmed;
+
+    // Sending
+    private int sendEpoch;
+    private long sendEpochStartDate;
+    private int numMsgInSendEpoch;
+    private long sendSequenceNr;
+    private final Map<Integer, SecretKey> sendKeys = new HashMap<>();
+
+    // Receiving
+    private int highestReceivedEpoch;
+    private long highestReceivedSequenceNr;
+    private long replayWindow;
+    private final Map<Integer, SecretKey> receiveKeys = new HashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static Session createOfferedSession(byte[] sessionId, int cryptoSuiteId, SecretKey baseKey,
+                                               PublicKey peersSigPubKey, NodeAddress peersNodeAddress) {
+        return new Session(sessionId, cryptoSuiteId, baseKey, peersSigPubKey, peersNodeAddress, true);
+    }
+
+    public static Session createAcceptedSession(byte[] sessionId, int cryptoSuiteId, SecretKey baseKey,
+                                                PublicKey peersSigPubKey, NodeAddress peersNodeAddress) {
+        return new Session(sessionId, cryptoSuiteId, baseKey, peersSigPubKey, peersNodeAddress, false);
+    }
+
+    private Session(byte[] sessionId, int cryptoSuiteId, SecretKey baseKey, PublicKey peersSigPubKey,
+                    NodeAddress peersNodeAddress, boolean initiator) {
+        this.sessionId = sessionId;
+        this.cryptoSuiteId = cryptoSuiteId;
+        this.baseKey = baseKey;
+        this.peersSigPubKey = peersSigPubKey;
+        this.peersNodeAddress = peersNodeAddress;
+        this.initiator = initiator;
+        this.confirmed = !initiator;
+        creationDate = System.currentTimeMillis();
+        sendEpochStartDate = creationDate;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public synchronized SealedAndSigned seal(Serializable payload, PublicKey mySigPubKey) throws CryptoException {
+        long now = System.currentTimeMillis();
+        if (numMsgInSendEpoch >= MAX_MSG_PER_EPOCH || now - sendEpochStartDate > EPOCH_DURATION) {
+            sendKeys.remove(sendEpoch);
+            sendEpoch++;
+            sendEpochStartDate = now;
+            numMsgInSendEpoch = 0;
+            log.debug("Rotated session key. sendEpoch={}", sendEpoch);
+        }
+        numMsgInSendEpoch++;
+        sendSequenceNr++;
+
+        SecretKey key = sendKeys.computeIfAbsent(sendEpoch,
+                epoch -> Encryption.deriveSessionKey(baseKey, sessionId, epoch, initiator));
+        byte[] encryptedPayload = Encryption.encryptWithSessionKey(payload, key, sessionId, sendEpoch, sendSequenceNr);
+        return new SealedAndSigned(cryptoSuiteId, null, encryptedPayload, null, mySigPubKey, sessionId, sendEpoch,
+                sendSequenceNr);
+    }
+
+    public synchronized Serializable open(SealedAndSigned sealedAndSigned) throws CryptoException {
+        if (!peersSigPubKey.equals(sealedAndSigned.sigPublicKey))
+            throw new CryptoException("Session does not belong to the senders signature key.");
+
+        if (isExpired())
+            throw new CryptoException("Session is expired.");
+
+        int epoch = sealedAndSigned.sessionEpoch;
+        long sequenceNr = sealedAndSigned.sessionSequenceNr;
+        if (epoch < highestReceivedEpoch - 1)
+            throw new CryptoException("Session epoch is outdated. epoch=" + epoch);
+
+        if (sequenceNr <= 0 || !isInReplayWindow(sequenceNr))
+            throw new CryptoException("Replayed or outdated session sequence number. sequenceNr=" + sequenceNr);
+
+        SecretKey key = receiveKeys.get(epoch);
+        if (key == null)
+            key = Encryption.deriveSessionKey(baseKey, sessionId, epoch, !initiator);
+        Serializable payload = Encryption.decryptWithSessionKey(sealedAndSigned.encryptedPayloadWithHmac, key,
+                sessionId, epoch, sequenceNr);
+
+        // Only after successful authentication we update the state
+        receiveKeys.put(epoch, key);
+        markReceived(sequenceNr);
+        if (epoch > highestReceivedEpoch) {
+            highestReceivedEpoch = epoch;
+            receiveKeys.keySet().removeIf(e -> e < highestReceivedEpoch - 1);
+        }
+        confirmed = true;
+        return payload;
+    }
+
+    public synchronized boolean isConfirmed() {
+        return confirmed;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() - creationDate > TTL;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private boolean isInReplayWindow(long sequenceNr) {
+        if (sequenceNr > highestReceivedSequenceNr)
+            return true;
+
+        long offset = highestReceivedSequenceNr - sequenceNr;
+        return offset < REPLAY_WINDOW_SIZE && (replayWindow & (1L << offset)) == 0;
+    }
+
+    private void markReceived(long sequenceNr) {
+        if (sequenceNr > highestReceivedSequenceNr) {
+            long shift = sequenceNr - highestReceivedSequenceNr;
+            replayWindow = shift < REPLAY_WINDOW_SIZE ? (replayWindow << shift) | 1L : 1L;
+            highestReceivedSequenceNr = sequenceNr;
+        } else {
+            replayWindow |= 1L << (highestReceivedSequenceNr - sequenceNr);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Session{" +
+                "peersNodeAddress=" + peersNodeAddress +
+                ", initiator=" + initiator +
+                ", confirmed=" + confirmed +
+                ", sendEpoch=" + sendEpoch +
+                ", sendSequenceNr=" + sendSequenceNr +
+                ", highestReceivedSequenceNr=" + highestReceivedSequenceNr +
+                '}';
+    }
+}
@@ -1,56 +1,130 @@
 package io.bitsquare.http;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Sends GET requests to the base url.
+ * <p>
+ * The connections are pooled by the keep-alive cache of HttpURLConnection. For that we always read the response to
+ * the end and close the stream but never disconnect.
+ * <p>
+ * We accept gzip encoded responses and parse the response while reading it, so a large response never needs to be
+ * held as String. If the server sends an ETag or a Last-Modified header we keep the parsed result and send a
+ * conditional request the next time. If the server answers with 304 Not Modified we return the kept result. So a url
+ * must always be requested with the same parser.
+ */
 // TODO route over tor
 public class HttpClient {
+    private static final int TIMEOUT_MS = 10000;
+
+    public interface ResponseParser<T> {
+        T parse(Reader reader) throws IOException;
+    }
 
     private final String baseUrl;
+    private final Map<String, CachedResponse> cachedResponses = new ConcurrentHashMap<>();
 
     public HttpClient(String baseUrl) {
         this.baseUrl = baseUrl;
     }
 
     public String requestWithGET(String param) throws IOException, HttpException {
-        HttpURLConnection connection = null;
-        try {
-            URL url = new URL(baseUrl + param);
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
-
-            if (connection.getResponseCode() == 200) {
-                return convertInputStreamToString(connection.getInputStream());
-            } else {
-                connection.getErrorStream().close();
-                throw new HttpException(convertInputStreamToString(connection.getErrorStream()));
+        return requestWithGET(param, HttpClient::readToString);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T requestWithGET(String param, ResponseParser<T> parser) throws IOException, HttpException {
+        String url = baseUrl + param;
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(TIMEOUT_MS);
+        connection.setReadTimeout(TIMEOUT_MS);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        CachedResponse cachedResponse = cachedResponses.get(url);
+        if (cachedResponse != null) {
+            if (cachedResponse.eTag != null)
+                connection.setRequestProperty("If-None-Match", cachedResponse.eTag);
+            if (cachedResponse.lastModified != null)
+                connection.setRequestProperty("If-Modified-Since", cachedResponse.lastModified);
+        }
+
+        int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+            T result;
+            try (Reader reader = getReader(connection, connection.getInputStream())) {
+                result = parser.parse(reader);
+                // Read to the end so the connection can be reused
+                while (reader.read() != -1) {
+                }
+            }
+            String eTag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            if (eTag != null || lastModified != null)
+                cachedResponses.put(url, new CachedResponse(eTag, lastModified, result));
+            else
+                cachedResponses.remove(url);
+            return result;
+        } else if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedResponse != null) {
+            closeQuietly(connection.getInputStream());
+            return (T) cachedResponse.result;
+        } else {
+            InputStream errorStream = connection.getErrorStream();
+            String message = "HTTP " + responseCode;
+            if (errorStream != null) {
+                try (Reader reader = getReader(connection, errorStream)) {
+                    message += ": " + readToString(reader);
+                }
             }
-        } finally {
-            if (connection != null)
-                connection.getInputStream().close();
+            throw new HttpException(message);
         }
     }
 
-    private String convertInputStreamToString(InputStream inputStream) throws IOException {
-        BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream));
+    private static Reader getReader(HttpURLConnection connection, InputStream inputStream) throws IOException {
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding()))
+            inputStream = new GZIPInputStream(inputStream);
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    private static String readToString(Reader reader) throws IOException {
         StringBuilder stringBuilder = new StringBuilder();
-        String line;
-        while ((line = bufferedReader.readLine()) != null) {
-            stringBuilder.append(line);
+        char[] buffer = new char[4096];
+        int length;
+        while ((length = reader.read(buffer)) != -1) {
+            stringBuilder.append(buffer, 0, length);
         }
         return stringBuilder.toString();
     }
 
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException ignore) {
+        }
+    }
+
     @Override
     public String toString() {
         return "HttpClient{" +
                 "baseUrl='" + baseUrl + '\'' +
                 '}';
     }
+
+
+    private static final class CachedResponse {
+        private final String eTag;
+        private final String lastModified;
+        private final Object result;
+
+        private CachedResponse(String eTag, String lastModified, Object result) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.result = result;
+        }
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.p2p;
+
+import io.bitsquare.common.UserThread;
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.crypto.DecryptedMsgWithPubKey;
+import io.bitsquare.crypto.EncryptionService;
+import io.bitsquare.p2p.messaging.PrefixedSealedAndSignedMessage;
+import io.bitsquare.p2p.storage.storageentry.ProtectedMailboxStorageEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Decrypts mailbox entries on a worker pool. At startup we get all our mailbox entries at once and each costs an
+ * asymmetric decryption and a signature verification, which would block the UserThread for a long time if done one
+ * after the other.
+ * <p>
+ * The results are collected on the UserThread and delivered when all pending entries are done, sorted by the
+ * sequence number the sender has set in the PrefixedSealedAndSignedMessage. So the listener gets the messages in the
+ * order they have been sent, independent which decryption finished first.
+ */
+public class MailboxProcessor {
+    private static final Logger log = LoggerFactory.getLogger(MailboxProcessor.class);
+
+    private static final int POOL_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    public interface Listener {
+        void onMailboxEntryDecrypted(ProtectedMailboxStorageEntry protectedMailboxStorageEntry,
+                                     DecryptedMsgWithPubKey decryptedMsgWithPubKey);
+    }
+
+    private final EncryptionService encryptionService;
+    private final Listener listener;
+    private final ThreadPoolExecutor executor;
+
+    private final List<Result> results = new ArrayList<>();
+    private int numPending;
+    private long numProcessed;
+    private volatile boolean stopped;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public MailboxProcessor(EncryptionService encryptionService, Listener listener) {
+        this.encryptionService = encryptionService;
+        this.listener = listener;
+        executor = Utilities.getFixedThreadPoolExecutor("MailboxProcessor-%d", POOL_SIZE, 60);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void process(ProtectedMailboxStorageEntry protectedMailboxStorageEntry) {
+        process(Collections.singletonList(protectedMailboxStorageEntry));
+    }
+
+    public void process(Collection<ProtectedMailboxStorageEntry> protectedMailboxStorageEntries) {
+        if (stopped || protectedMailboxStorageEntries.isEmpty())
+            return;
+
+        List<Runnable> tasks = new ArrayList<>();
+        synchronized (this) {
+            // We count all entries as pending before we start, so a fast worker does not trigger a delivery of an
+            // incomplete batch
+            numPending += protectedMailboxStorageEntries.size();
+            for (ProtectedMailboxStorageEntry entry : protectedMailboxStorageEntries) {
+                long arrivalIndex = numProcessed++;
+                tasks.add(() -> decrypt(entry, arrivalIndex));
+            }
+        }
+        tasks.stream().forEach(executor::execute);
+    }
+
+    public void shutDown() {
+        stopped = true;
+        executor.shutdownNow();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Runs in the worker thread
+    private void decrypt(ProtectedMailboxStorageEntry protectedMailboxStorageEntry, long arrivalIndex) {
+        DecryptedMsgWithPubKey decryptedMsgWithPubKey = null;
+        if (!stopped) {
+            try {
+                decryptedMsgWithPubKey = encryptionService.decryptAndVerify(
+                        protectedMailboxStorageEntry.getMailboxStoragePayload().prefixedSealedAndSignedMessage.sealedAndSigned);
+            } catch (CryptoException e) {
+                log.info("Decryption of prefixedSealedAndSignedMessage.sealedAndSigned failed. " +
+                        "That is expected if the message is not intended for us. " + e.toString());
+            } catch (Throwable t) {
+                log.error("Processing of mailbox entry failed. " + t.toString());
+                t.printStackTrace();
+            }
+        }
+
+        final DecryptedMsgWithPubKey result = decryptedMsgWithPubKey;
+        UserThread.execute(() -> onDecrypted(protectedMailboxStorageEntry, result, arrivalIndex));
+    }
+
+    private void onDecrypted(ProtectedMailboxStorageEntry protectedMailboxStorageEntry,
+                             DecryptedMsgWithPubKey decryptedMsgWithPubKey, long arrivalIndex) {
+        List<Result> completed = null;
+        synchronized (this) {
+            numPending--;
+            if (decryptedMsgWithPubKey != null)
+                results.add(new Result(protectedMailboxStorageEntry, decryptedMsgWithPubKey, arrivalIndex));
+
+            if (numPending == 0 && !results.isEmpty()) {
+                completed = new ArrayList<>(results);
+                results.clear();
+            }
+        }
+
+        if (completed != null && !stopped) {
+            completed.sort(Comparator.comparingLong((Result e) -> e.sequenceNr).thenComparingLong(e -> e.arrivalIndex));
+            completed.stream().forEach(e -> listener.onMailboxEntryDecrypted(e.protectedMailboxStorageEntry,
+                    e.decryptedMsgWithPubKey));
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Result
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class Result {
+        private final ProtectedMailboxStorageEntry protectedMailboxStorageEntry;
+        private final DecryptedMsgWithPubKey decryptedMsgWithPubKey;
+        private final long sequenceNr;
+        private final long arrivalIndex;
+
+        private Result(ProtectedMailboxStorageEntry protectedMailboxStorageEntry,
+                       DecryptedMsgWithPubKey decryptedMsgWithPubKey, long arrivalIndex) {
+            this.protectedMailboxStorageEntry = protectedMailboxStorageEntry;
+            this.decryptedMsgWithPubKey = decryptedMsgWithPubKey;
+            this.arrivalIndex = arrivalIndex;
+            PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage =
+                    protectedMailboxStorageEntry.getMailboxStoragePayload().prefixedSealedAndSignedMessage;
+            this.sequenceNr = prefixedSealedAndSignedMessage.sequenceNr;
+        }
+    }
+}
@@ -77,6 +77,9 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     private final Set<DecryptedMailboxListener> decryptedMailboxListeners = new CopyOnWriteArraySet<>();
     private final Set<P2PServiceListener> p2pServiceListeners = new CopyOnWriteArraySet<>();
     private final Map<String, ProtectedMailboxStorageEntry> mailboxMap = new HashMap<>();
+    // Seed nodes don't have set the encryptionService, so they don't have a mailboxProcessor
+    private Optional<MailboxProcessor> optionalMailboxProcessor = Optional.empty();
+    private long lastMailboxSequenceNr;
     private final Set<Runnable> shutDownResultHandlers = new CopyOnWriteArraySet<>();
     private final BooleanProperty hiddenServicePublished = new SimpleBooleanProperty();
     private final BooleanProperty preliminaryDataReceived = new SimpleBooleanProperty();
@@ -128,9 +131,13 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
 
         broadcaster = new Broadcaster(networkNode, peerManager);
 
-        p2PDataStorage = new P2PDataStorage(broadcaster, networkNode, storageDir);
+        // Seed nodes don't have set the encryptionService. They keep the mailbox entries on disk as they never read them.
+        p2PDataStorage = new P2PDataStorage(broadcaster, networkNode, storageDir, !optionalEncryptionService.isPresent());
         p2PDataStorage.addHashMapChangedListener(this);
 
+        optionalMailboxProcessor = optionalEncryptionService.map(encryptionService ->
+                new MailboxProcessor(encryptionService, this::onMailboxEntryDecrypted));
+
         requestDataManager = new RequestDataManager(networkNode, p2PDataStorage, peerManager, seedNodeAddresses, this);
 
         peerExchangeManager = new PeerExchangeManager(networkNode, peerManager, seedNodeAddresses);
@@ -171,6 +178,8 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
             if (p2PDataStorage != null)
                 p2PDataStorage.shutDown();
 
+            optionalMailboxProcessor.ifPresent(MailboxProcessor::shutDown);
+
             if (peerManager != null)
                 peerManager.shutDown();
 
@@ -238,6 +247,10 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
 
         hiddenServicePublished.set(true);
 
+        // Mailbox entries we have received before we knew our address have not been processed
+        optionalMailboxProcessor.ifPresent(mailboxProcessor -> mailboxProcessor.process(
+                p2PDataStorage.getMailboxEntries(networkNode.getNodeAddress().getAddressPrefixHash())));
+
         p2pServiceListeners.stream().forEach(SetupListener::onHiddenServicePublished);
     }
 
@@ -315,6 +328,9 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     @Override
     public void onDisconnect(CloseConnectionReason closeConnectionReason, Connection connection) {
         Log.traceCall();
+        // The peer might have restarted and lost the session keys
+        optionalEncryptionService.ifPresent(encryptionService ->
+                connection.getPeersNodeAddressOptional().ifPresent(encryptionService::removeSessions));
         numConnectedPeers.set(networkNode.getAllConnections().size());
         //TODO check if still needed and why
         UserThread.runAfter(() -> numConnectedPeers.set(networkNode.getAllConnections().size()), 3);
@@ -344,7 +360,8 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
 
                         log.debug("Try to decrypt...");
                         DecryptedMsgWithPubKey decryptedMsgWithPubKey = optionalEncryptionService.get().decryptAndVerify(
-                                prefixedSealedAndSignedMessage.sealedAndSigned);
+                                prefixedSealedAndSignedMessage.sealedAndSigned,
+                                connection.getPeersNodeAddressOptional().orElse(null));
 
                         log.info("\n\nDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDDD\n" +
                                 "Decrypted SealedAndSignedMessage:\ndecryptedMsgWithPubKey={}"
@@ -407,7 +424,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
                     "Encrypt message:\nmessage={}"
                     + "\nEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEE\n", message);
             PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage = new PrefixedSealedAndSignedMessage(networkNode.getNodeAddress(),
-                    optionalEncryptionService.get().encryptAndSign(pubKeyRing, message),
+                    optionalEncryptionService.get().encryptAndSign(pubKeyRing, peersNodeAddress, message),
                     peersNodeAddress.getAddressPrefixHash());
             SettableFuture<Connection> future = networkNode.sendMessage(peersNodeAddress, prefixedSealedAndSignedMessage);
             Futures.addCallback(future, new FutureCallback<Connection>() {
@@ -419,6 +436,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
                 @Override
                 public void onFailure(@NotNull Throwable throwable) {
                     throwable.printStackTrace();
+                    optionalEncryptionService.get().removeSessions(peersNodeAddress);
                     sendDirectMessageListener.onFault();
                 }
             });
@@ -437,36 +455,40 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
 
     private void processProtectedMailboxStorageEntry(ProtectedMailboxStorageEntry protectedMailboxStorageEntry) {
         // Seed nodes don't have set the encryptionService
-        if (optionalEncryptionService.isPresent()) {
+        if (optionalMailboxProcessor.isPresent()) {
             Log.traceCall();
             MailboxStoragePayload mailboxStoragePayload = protectedMailboxStorageEntry.getMailboxStoragePayload();
             PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage = mailboxStoragePayload.prefixedSealedAndSignedMessage;
-            if (verifyAddressPrefixHash(prefixedSealedAndSignedMessage)) {
-                try {
-                    DecryptedMsgWithPubKey decryptedMsgWithPubKey = optionalEncryptionService.get().decryptAndVerify(
-                            prefixedSealedAndSignedMessage.sealedAndSigned);
-                    if (decryptedMsgWithPubKey.message instanceof MailboxMessage) {
-                        MailboxMessage mailboxMessage = (MailboxMessage) decryptedMsgWithPubKey.message;
-                        NodeAddress senderNodeAddress = mailboxMessage.getSenderNodeAddress();
-                        checkNotNull(senderNodeAddress, "senderAddress must not be null for mailbox messages");
-
-                        mailboxMap.put(mailboxMessage.getUID(), protectedMailboxStorageEntry);
-                        log.trace("Decryption of SealedAndSignedMessage succeeded. senderAddress="
-                                + senderNodeAddress + " / my address=" + getAddress());
-                        decryptedMailboxListeners.stream().forEach(
-                                e -> e.onMailboxMessageAdded(decryptedMsgWithPubKey, senderNodeAddress));
-                    } else {
-                        log.warn("tryDecryptMailboxData: Expected MailboxMessage but got other type. " +
-                                "decryptedMsgWithPubKey.message=", decryptedMsgWithPubKey.message);
-                    }
-                } catch (CryptoException e) {
-                    log.info(e.toString());
-                    log.info("Decryption of prefixedSealedAndSignedMessage.sealedAndSigned failed. " +
-                            "That is expected if the message is not intended for us.");
-                }
-            } else {
+            if (verifyAddressPrefixHash(prefixedSealedAndSignedMessage))
+                optionalMailboxProcessor.get().process(protectedMailboxStorageEntry);
+            else
                 log.info("Wrong blurredAddressHash. The message is not intended for us.");
+        }
+    }
+
+    @VisibleForTesting
+    void onMailboxEntryDecrypted(ProtectedMailboxStorageEntry protectedMailboxStorageEntry,
+                                 DecryptedMsgWithPubKey decryptedMsgWithPubKey) {
+        if (decryptedMsgWithPubKey.message instanceof MailboxMessage) {
+            MailboxMessage mailboxMessage = (MailboxMessage) decryptedMsgWithPubKey.message;
+            NodeAddress senderNodeAddress = mailboxMessage.getSenderNodeAddress();
+            checkNotNull(senderNodeAddress, "senderAddress must not be null for mailbox messages");
+
+            // When the hidden service is published we process all our mailbox entries again, so we might get
+            // entries we have delivered already
+            if (mailboxMap.containsKey(mailboxMessage.getUID())) {
+                log.trace("We have delivered that mailbox message already. uid={}", mailboxMessage.getUID());
+                return;
             }
+
+            mailboxMap.put(mailboxMessage.getUID(), protectedMailboxStorageEntry);
+            log.trace("Decryption of SealedAndSignedMessage succeeded. senderAddress="
+                    + senderNodeAddress + " / my address=" + getAddress());
+            decryptedMailboxListeners.stream().forEach(
+                    e -> e.onMailboxMessageAdded(decryptedMsgWithPubKey, senderNodeAddress));
+        } else {
+            log.warn("tryDecryptMailboxData: Expected MailboxMessage but got other type. " +
+                    "decryptedMsgWithPubKey.message=", decryptedMsgWithPubKey.message);
         }
     }
 
@@ -493,7 +515,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
                             + "\nEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEEE\n", message);
                     PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage = new PrefixedSealedAndSignedMessage(
                             networkNode.getNodeAddress(),
-                            optionalEncryptionService.get().encryptAndSign(peersPubKeyRing, message),
+                            optionalEncryptionService.get().encryptAndSign(peersPubKeyRing, peersNodeAddress, message),
                             peersNodeAddress.getAddressPrefixHash());
                     SettableFuture<Connection> future = networkNode.sendMessage(peersNodeAddress, prefixedSealedAndSignedMessage);
                     Futures.addCallback(future, new FutureCallback<Connection>() {
@@ -509,12 +531,26 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
                             log.debug(throwable.toString());
                             log.info("We cannot send message to peer. Peer might be offline. We will store message in mailbox.");
                             log.trace("create MailboxEntry with peerAddress " + peersNodeAddress);
-                            PublicKey receiverStoragePublicKey = peersPubKeyRing.getSignaturePubKey();
-                            addMailboxData(new MailboxStoragePayload(prefixedSealedAndSignedMessage,
-                                            optionalKeyRing.get().getSignatureKeyPair().getPublic(),
-                                            receiverStoragePublicKey),
-                                    receiverStoragePublicKey,
-                                    sendMailboxMessageListener);
+                            optionalEncryptionService.get().removeSessions(peersNodeAddress);
+                            try {
+                                // Mailbox messages are read after a restart of the peer, so we cannot use a session
+                                // key and encrypt again with the hybrid scheme.
+                                PrefixedSealedAndSignedMessage mailboxMessage = new PrefixedSealedAndSignedMessage(
+                                        networkNode.getNodeAddress(),
+                                        optionalEncryptionService.get().encryptAndSign(peersPubKeyRing, message),
+                                        peersNodeAddress.getAddressPrefixHash(),
+                                        getNextMailboxSequenceNr());
+                                PublicKey receiverStoragePublicKey = peersPubKeyRing.getSignaturePubKey();
+                                addMailboxData(new MailboxStoragePayload(mailboxMessage,
+                                                optionalKeyRing.get().getSignatureKeyPair().getPublic(),
+                                                receiverStoragePublicKey),
+                                        receiverStoragePublicKey,
+                                        sendMailboxMessageListener);
+                            } catch (CryptoException e) {
+                                log.error("Encryption of mailbox message failed");
+                                e.printStackTrace();
+                                sendMailboxMessageListener.onFault("sendEncryptedMailboxMessage failed " + e);
+                            }
                         }
                     });
                 } catch (CryptoException e) {
@@ -748,6 +784,12 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // We use the time as base so the numbers keep increasing after a restart
+    private synchronized long getNextMailboxSequenceNr() {
+        lastMailboxSequenceNr = Math.max(lastMailboxSequenceNr + 1, System.currentTimeMillis());
+        return lastMailboxSequenceNr;
+    }
+
     private boolean verifyAddressPrefixHash(PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage) {
         if (networkNode.getNodeAddress() != null) {
             byte[] blurredAddressHash = networkNode.getNodeAddress().getAddressPrefixHash();
@@ -19,12 +19,21 @@ public final class PrefixedSealedAndSignedMessage implements MailboxMessage, Sen
     public final SealedAndSigned sealedAndSigned;
     public final byte[] addressPrefixHash;
     private final String uid = UUID.randomUUID().toString();
+    // Increasing number set by the sender for mailbox messages, so the receiver can process them in the order they
+    // have been sent. Messages from old versions and direct messages have 0.
+    public final long sequenceNr;
 
     public PrefixedSealedAndSignedMessage(NodeAddress senderNodeAddress, SealedAndSigned sealedAndSigned, byte[] addressPrefixHash) {
+        this(senderNodeAddress, sealedAndSigned, addressPrefixHash, 0);
+    }
+
+    public PrefixedSealedAndSignedMessage(NodeAddress senderNodeAddress, SealedAndSigned sealedAndSigned,
+                                          byte[] addressPrefixHash, long sequenceNr) {
         checkNotNull(senderNodeAddress, "senderNodeAddress must not be null at PrefixedSealedAndSignedMessage");
         this.senderNodeAddress = senderNodeAddress;
         this.sealedAndSigned = sealedAndSigned;
         this.addressPrefixHash = addressPrefixHash;
+        this.sequenceNr = sequenceNr;
     }
 
     @Override
@@ -48,6 +57,7 @@ public final class PrefixedSealedAndSignedMessage implements MailboxMessage, Sen
                 "messageVersion=" + messageVersion +
                 ", sealedAndSigned=" + sealedAndSigned +
                 ", receiverAddressMaskHash.hashCode()=" + Arrays.toString(addressPrefixHash).hashCode() +
+                ", sequenceNr=" + sequenceNr +
                 '}';
     }
 }
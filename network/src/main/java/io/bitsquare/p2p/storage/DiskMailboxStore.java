@@ -0,0 +1,338 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.p2p.storage;
+
+import io.bitsquare.common.crypto.Hash;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.p2p.storage.storageentry.ProtectedMailboxStorageEntry;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.PublicKey;
+import java.util.*;
+
+/**
+ * Mailbox entries are stored by seed nodes for the whole TTL but never decrypted by them. To not keep all the
+ * ciphertext on the heap we write the serialized entries to append-only segment files which are memory mapped.
+ * On the heap we keep only a small index entry per mailbox entry with the location in the segment, the hash of the
+ * receivers public key and the expiry date.
+ * <p>
+ * Removed entries are not overwritten, a segment file gets deleted when it has no live entries anymore.
+ * As the in-memory map of P2PDataStorage the store is not persisted, so the segments from a previous run get deleted
+ * at startup.
+ * <p>
+ * Not thread safe, it is used from P2PDataStorage which runs in the UserThread.
+ */
+public class DiskMailboxStore {
+    private static final Logger log = LoggerFactory.getLogger(DiskMailboxStore.class);
+
+    private static final String SEGMENT_FILE_PREFIX = "segment_";
+    static int SEGMENT_SIZE = 32 * 1024 * 1024;
+
+    private final File dir;
+    private final Map<P2PDataStorage.ByteArray, IndexEntry> index = new HashMap<>();
+    private final Map<Integer, Segment> segments = new HashMap<>();
+    private Segment currentSegment;
+    private int nextSegmentId;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public DiskMailboxStore(File dir) {
+        this.dir = dir;
+        if (!dir.exists() && !dir.mkdirs())
+            log.error("Could not create directory " + dir);
+
+        File[] oldSegments = dir.listFiles((d, name) -> name.startsWith(SEGMENT_FILE_PREFIX));
+        if (oldSegments != null)
+            Arrays.stream(oldSegments).forEach(this::deleteFile);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Appends the entry to the current segment. If we have already an entry for that hash it gets replaced.
+     */
+    public void put(P2PDataStorage.ByteArray hashOfPayload, ProtectedMailboxStorageEntry protectedMailboxStorageEntry)
+            throws IOException {
+        byte[] bytes = Utilities.serialize(protectedMailboxStorageEntry);
+        if (bytes == null)
+            throw new IOException("Serialization of mailbox entry failed");
+
+        Segment segment = getSegmentForAppend(bytes.length);
+        int offset = segment.append(bytes);
+
+        long expiryDate = protectedMailboxStorageEntry.timeStamp + protectedMailboxStorageEntry.getStoragePayload().getTTL();
+        IndexEntry previous = index.put(hashOfPayload, new IndexEntry(segment.id, offset, bytes.length,
+                getReceiversPubKeyHash(protectedMailboxStorageEntry.receiversPubKey), expiryDate));
+        if (previous != null)
+            onRecordRemoved(previous);
+    }
+
+    public boolean contains(P2PDataStorage.ByteArray hashOfPayload) {
+        return index.containsKey(hashOfPayload);
+    }
+
+    /**
+     * Reads the entry directly from the mapped segment.
+     */
+    @Nullable
+    public ProtectedMailboxStorageEntry get(P2PDataStorage.ByteArray hashOfPayload) {
+        IndexEntry indexEntry = index.get(hashOfPayload);
+        return indexEntry != null ? read(indexEntry) : null;
+    }
+
+    /**
+     * Checks the receiver with the index entry, so we don't need to read the entry.
+     */
+    public boolean isReceiver(P2PDataStorage.ByteArray hashOfPayload, PublicKey receiversPubKey) {
+        IndexEntry indexEntry = index.get(hashOfPayload);
+        return indexEntry != null && Arrays.equals(indexEntry.receiversPubKeyHash, getReceiversPubKeyHash(receiversPubKey));
+    }
+
+    public void remove(P2PDataStorage.ByteArray hashOfPayload) {
+        IndexEntry indexEntry = index.remove(hashOfPayload);
+        if (indexEntry != null)
+            onRecordRemoved(indexEntry);
+    }
+
+    /**
+     * @return The removed entries.
+     */
+    public List<ProtectedMailboxStorageEntry> removeExpired() {
+        long now = System.currentTimeMillis();
+        List<ProtectedMailboxStorageEntry> removed = new ArrayList<>();
+        Iterator<IndexEntry> iterator = index.values().iterator();
+        while (iterator.hasNext()) {
+            IndexEntry indexEntry = iterator.next();
+            if (indexEntry.expiryDate < now) {
+                ProtectedMailboxStorageEntry protectedMailboxStorageEntry = read(indexEntry);
+                if (protectedMailboxStorageEntry != null)
+                    removed.add(protectedMailboxStorageEntry);
+                iterator.remove();
+                onRecordRemoved(indexEntry);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Used for the data response when a peer syncs. We don't read the entries here, but return a reference to the
+     * record of each entry in its segment. The reference gets replaced by the entry when it is serialized, so an entry
+     * is only read from disk while the response gets written.
+     */
+    public List<Serializable> getAllAsReferences() {
+        List<Serializable> list = new ArrayList<>(index.size());
+        for (IndexEntry indexEntry : index.values()) {
+            Segment segment = segments.get(indexEntry.segmentId);
+            if (segment != null)
+                list.add(new EntryReference(segment.getRecord(indexEntry)));
+            else
+                log.error("Segment not found for index entry. That must never happen. segmentId=" + indexEntry.segmentId);
+        }
+        return list;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public void shutDown() {
+        index.clear();
+        new ArrayList<>(segments.values()).stream().forEach(this::deleteSegment);
+        currentSegment = null;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private Segment getSegmentForAppend(int length) throws IOException {
+        int required = length + 4;
+        if (currentSegment == null || currentSegment.remaining() < required) {
+            if (currentSegment != null && currentSegment.numLiveRecords == 0)
+                deleteSegment(currentSegment);
+
+            // Entries larger than the segment size get a segment of their own
+            currentSegment = new Segment(nextSegmentId++, Math.max(SEGMENT_SIZE, required));
+            segments.put(currentSegment.id, currentSegment);
+        }
+        return currentSegment;
+    }
+
+    @Nullable
+    private ProtectedMailboxStorageEntry read(IndexEntry indexEntry) {
+        Segment segment = segments.get(indexEntry.segmentId);
+        if (segment == null) {
+            log.error("Segment not found for index entry. That must never happen. segmentId=" + indexEntry.segmentId);
+            return null;
+        }
+
+        try {
+            return readRecord(segment.getRecord(indexEntry));
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.error("Could not read mailbox entry from segment. " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static ProtectedMailboxStorageEntry readRecord(ByteBuffer record) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteBufferInputStream(record.duplicate()))) {
+            return (ProtectedMailboxStorageEntry) in.readObject();
+        }
+    }
+
+    private void onRecordRemoved(IndexEntry indexEntry) {
+        Segment segment = segments.get(indexEntry.segmentId);
+        if (segment != null) {
+            segment.numLiveRecords--;
+            if (segment.numLiveRecords == 0 && segment != currentSegment)
+                deleteSegment(segment);
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.id);
+        // The mapping is released when the buffer gets garbage collected
+        deleteFile(segment.file);
+    }
+
+    private void deleteFile(File file) {
+        if (!file.delete())
+            log.warn("Could not delete segment file " + file);
+    }
+
+    private static byte[] getReceiversPubKeyHash(PublicKey receiversPubKey) {
+        return Hash.getHash(receiversPubKey.getEncoded());
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Inner classes
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class IndexEntry {
+        private final int segmentId;
+        private final int offset;
+        private final int length;
+        private final byte[] receiversPubKeyHash;
+        private final long expiryDate;
+
+        private IndexEntry(int segmentId, int offset, int length, byte[] receiversPubKeyHash, long expiryDate) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.receiversPubKeyHash = receiversPubKeyHash;
+            this.expiryDate = expiryDate;
+        }
+    }
+
+    private final class Segment {
+        private final int id;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int numLiveRecords;
+
+        private Segment(int id, int size) throws IOException {
+            this.id = id;
+            file = new File(dir, SEGMENT_FILE_PREFIX + id);
+            // The mapping stays valid after the file is closed
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        // Layout of a record: length (int) followed by the serialized entry
+        private int append(byte[] bytes) {
+            buffer.putInt(bytes.length);
+            int offset = buffer.position();
+            buffer.put(bytes);
+            numLiveRecords++;
+            return offset;
+        }
+
+        private int remaining() {
+            return buffer.remaining();
+        }
+
+        // Records are never overwritten and the mapping stays valid after the file got deleted, so the returned
+        // buffer can be read as long as it is referenced
+        private ByteBuffer getRecord(IndexEntry indexEntry) {
+            ByteBuffer record = buffer.duplicate();
+            record.position(indexEntry.offset);
+            record.limit(indexEntry.offset + indexEntry.length);
+            return record.slice();
+        }
+    }
+
+    private static final class EntryReference implements Serializable {
+        private final transient ByteBuffer record;
+
+        private EntryReference(ByteBuffer record) {
+            this.record = record;
+        }
+
+        private Object writeReplace() throws ObjectStreamException {
+            try {
+                return readRecord(record);
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                throw new InvalidObjectException("Could not read mailbox entry from segment. " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining())
+                return -1;
+
+            int n = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.security.KeyPair;
 import java.security.PublicKey;
@@ -46,17 +47,28 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
 
     private final Broadcaster broadcaster;
     private final Map<ByteArray, ProtectedStorageEntry> map = new ConcurrentHashMap<>();
+    // Mailbox entries by the addressPrefixHash of the receiver, so the receiver does not need to iterate over the
+    // whole map to find the candidates for its mailbox.
+    private final Map<ByteArray, Map<ByteArray, ProtectedMailboxStorageEntry>> mailboxEntriesByAddressPrefixHash = new ConcurrentHashMap<>();
     private final CopyOnWriteArraySet<HashMapChangedListener> hashMapChangedListeners = new CopyOnWriteArraySet<>();
     private Timer removeExpiredEntriesTimer;
     private HashMap<ByteArray, MapValue> sequenceNumberMap = new HashMap<>();
     private final Storage<HashMap> storage;
+    // Seed nodes don't decrypt mailbox messages, so they keep them on disk and only an index on the heap
+    private final Optional<DiskMailboxStore> optionalDiskMailboxStore;
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Constructor
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public P2PDataStorage(Broadcaster broadcaster, NetworkNode networkNode, File storageDir) {
+        this(broadcaster, networkNode, storageDir, false);
+    }
+
+    public P2PDataStorage(Broadcaster broadcaster, NetworkNode networkNode, File storageDir, boolean useDiskMailboxStore) {
         this.broadcaster = broadcaster;
+        optionalDiskMailboxStore = useDiskMailboxStore ?
+                Optional.of(new DiskMailboxStore(new File(storageDir, "mailbox"))) : Optional.empty();
 
         networkNode.addMessageListener(this);
         networkNode.addConnectionListener(this);
@@ -71,6 +83,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
     public void shutDown() {
         if (removeExpiredEntriesTimer != null)
             removeExpiredEntriesTimer.stop();
+
+        optionalDiskMailboxStore.ifPresent(DiskMailboxStore::shutDown);
     }
 
     public void onBootstrapComplete() {
@@ -91,7 +105,9 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
                         toRemoveSet.add(protectedStorageEntry);
                         log.info("We found an expired data entry. We remove the protectedData:\n\t" + protectedStorageEntry);
                         map.remove(hashOfPayload);
+                        removeFromMailboxIndex(protectedStorageEntry, hashOfPayload);
                     });
+            optionalDiskMailboxStore.ifPresent(diskMailboxStore -> toRemoveSet.addAll(diskMailboxStore.removeExpired()));
 
             toRemoveSet.stream().forEach(
                     protectedDataToRemove -> hashMapChangedListeners.stream().forEach(
@@ -183,19 +199,19 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
                 && checkSignature(protectedStorageEntry)
                 && sequenceNrValid;
 
-        boolean containsKey = map.containsKey(hashOfPayload);
+        boolean containsKey = containsEntry(hashOfPayload);
         if (containsKey)
             result &= checkIfStoredDataPubKeyMatchesNewDataPubKey(protectedStorageEntry.ownerPubKey, hashOfPayload);
 
         if (result) {
-            map.put(hashOfPayload, protectedStorageEntry);
+            putEntry(hashOfPayload, protectedStorageEntry);
 
             StringBuilder sb = new StringBuilder("\n\n------------------------------------------------------------\n");
             sb.append("Data set after doAdd (truncated)");
             map.values().stream().forEach(e -> sb.append("\n").append(StringUtils.abbreviate(e.toString(), 100)));
             sb.append("\n------------------------------------------------------------\n");
             log.trace(sb.toString());
-            log.info("Data set after doAdd: size=" + map.values().size());
+            log.info("Data set after doAdd: size=" + getNumEntries());
 
             if (hasSequenceNrIncreased(protectedStorageEntry.sequenceNumber, hashOfPayload)) {
                 sequenceNumberMap.put(hashOfPayload, new MapValue(protectedStorageEntry.sequenceNumber, System.currentTimeMillis()));
@@ -219,8 +235,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
         ByteArray hashOfPayload = new ByteArray(refreshTTLMessage.hashOfPayload);
         int sequenceNumber = refreshTTLMessage.sequenceNumber;
 
-        if (map.containsKey(hashOfPayload)) {
-            ProtectedStorageEntry storedData = map.get(hashOfPayload);
+        ProtectedStorageEntry storedData = getEntry(hashOfPayload);
+        if (storedData != null) {
 
             if (sequenceNumberMap.containsKey(hashOfPayload) && sequenceNumberMap.get(hashOfPayload).sequenceNr == sequenceNumber) {
                 log.trace("We got that message with that seq nr already from another peer. We ignore that message.");
@@ -236,6 +252,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
                     storedData.updateTimeStamp();
                     storedData.updateSequenceNumber(sequenceNumber);
                     storedData.updateSignature(signature);
+                    // The disk store holds a serialized copy, so we need to write the updated entry
+                    putEntry(hashOfPayload, storedData);
 
                     sequenceNumberMap.put(hashOfPayload, new MapValue(sequenceNumber, System.currentTimeMillis()));
                     storage.queueUpForSave(sequenceNumberMap, 100);
@@ -245,7 +263,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
                     map.values().stream().forEach(e -> sb.append("\n").append(StringUtils.abbreviate(e.toString(), 100)));
                     sb.append("\n------------------------------------------------------------\n");
                     log.trace(sb.toString());
-                    log.info("Data set after refreshTTL: size=" + map.values().size());
+                    log.info("Data set after refreshTTL: size=" + getNumEntries());
 
                     broadcast(refreshTTLMessage, sender, null, isDataOwner);
                 } else {
@@ -262,7 +280,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
     public boolean remove(ProtectedStorageEntry protectedStorageEntry, @Nullable NodeAddress sender, boolean isDataOwner) {
         Log.traceCall();
         ByteArray hashOfPayload = getHashAsByteArray(protectedStorageEntry.getStoragePayload());
-        boolean containsKey = map.containsKey(hashOfPayload);
+        boolean containsKey = containsEntry(hashOfPayload);
         if (!containsKey)
             log.debug("Remove data ignored as we don't have an entry for that data.");
         boolean result = containsKey
@@ -288,7 +306,7 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
     public boolean removeMailboxData(ProtectedMailboxStorageEntry protectedMailboxStorageEntry, @Nullable NodeAddress sender, boolean isDataOwner) {
         Log.traceCall();
         ByteArray hashOfData = getHashAsByteArray(protectedMailboxStorageEntry.getStoragePayload());
-        boolean containsKey = map.containsKey(hashOfData);
+        boolean containsKey = containsEntry(hashOfData);
         if (!containsKey)
             log.debug("Remove data ignored as we don't have an entry for that data.");
         boolean result = containsKey
@@ -312,10 +330,34 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
     }
 
 
+    /**
+     * @return The entries we hold in memory. Seed nodes hold the mailbox entries on disk, use getAllEntries to
+     * include them.
+     */
     public Map<ByteArray, ProtectedStorageEntry> getMap() {
         return map;
     }
 
+    /**
+     * Only used for sending the GetDataResponse. The mailbox entries of the disk store are added as references which
+     * are replaced by the entries when the set gets serialized, so don't read the elements of the returned set.
+     */
+    @SuppressWarnings("unchecked")
+    public HashSet<ProtectedStorageEntry> getAllEntries() {
+        HashSet<ProtectedStorageEntry> set = new HashSet<>(map.values());
+        optionalDiskMailboxStore.ifPresent(diskMailboxStore -> ((HashSet) set).addAll(diskMailboxStore.getAllAsReferences()));
+        return set;
+    }
+
+    /**
+     * @param addressPrefixHash The addressPrefixHash of the receivers node address.
+     * @return The mailbox entries which might be addressed to the receiver.
+     */
+    public Collection<ProtectedMailboxStorageEntry> getMailboxEntries(byte[] addressPrefixHash) {
+        Map<ByteArray, ProtectedMailboxStorageEntry> entries = mailboxEntriesByAddressPrefixHash.get(new ByteArray(addressPrefixHash));
+        return entries != null ? new ArrayList<>(entries.values()) : new ArrayList<>();
+    }
+
     public ProtectedStorageEntry getProtectedData(StoragePayload storagePayload, KeyPair ownerStoragePubKey)
             throws CryptoException {
         ByteArray hashOfData = getHashAsByteArray(storagePayload);
@@ -371,6 +413,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
 
     private void doRemoveProtectedExpirableData(ProtectedStorageEntry protectedStorageEntry, ByteArray hashOfPayload) {
         map.remove(hashOfPayload);
+        optionalDiskMailboxStore.ifPresent(diskMailboxStore -> diskMailboxStore.remove(hashOfPayload));
+        removeFromMailboxIndex(protectedStorageEntry, hashOfPayload);
         log.trace("Data removed from our map. We broadcast the message to our peers.");
         hashMapChangedListeners.stream().forEach(e -> e.onRemoved(protectedStorageEntry));
 
@@ -379,7 +423,72 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
         map.values().stream().forEach(e -> sb.append("\n").append(StringUtils.abbreviate(e.toString(), 100)));
         sb.append("\n------------------------------------------------------------\n");
         log.trace(sb.toString());
-        log.info("Data set after doRemoveProtectedExpirableData: size=" + map.values().size());
+        log.info("Data set after doRemoveProtectedExpirableData: size=" + getNumEntries());
+    }
+
+    private boolean containsEntry(ByteArray hashOfPayload) {
+        return map.containsKey(hashOfPayload) ||
+                (optionalDiskMailboxStore.isPresent() && optionalDiskMailboxStore.get().contains(hashOfPayload));
+    }
+
+    @Nullable
+    private ProtectedStorageEntry getEntry(ByteArray hashOfPayload) {
+        ProtectedStorageEntry protectedStorageEntry = map.get(hashOfPayload);
+        if (protectedStorageEntry == null && optionalDiskMailboxStore.isPresent())
+            protectedStorageEntry = optionalDiskMailboxStore.get().get(hashOfPayload);
+        return protectedStorageEntry;
+    }
+
+    private void putEntry(ByteArray hashOfPayload, ProtectedStorageEntry protectedStorageEntry) {
+        if (optionalDiskMailboxStore.isPresent() && protectedStorageEntry instanceof ProtectedMailboxStorageEntry) {
+            try {
+                optionalDiskMailboxStore.get().put(hashOfPayload, (ProtectedMailboxStorageEntry) protectedStorageEntry);
+                return;
+            } catch (IOException e) {
+                log.error("Could not write mailbox entry to disk. We keep it in memory. " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        map.put(hashOfPayload, protectedStorageEntry);
+        addToMailboxIndex(protectedStorageEntry, hashOfPayload);
+    }
+
+    private int getNumEntries() {
+        return map.size() + optionalDiskMailboxStore.map(DiskMailboxStore::size).orElse(0);
+    }
+
+    private void addToMailboxIndex(ProtectedStorageEntry protectedStorageEntry, ByteArray hashOfPayload) {
+        if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry) {
+            ProtectedMailboxStorageEntry protectedMailboxStorageEntry = (ProtectedMailboxStorageEntry) protectedStorageEntry;
+            ByteArray addressPrefixHash = getAddressPrefixHash(protectedMailboxStorageEntry);
+            if (addressPrefixHash != null)
+                mailboxEntriesByAddressPrefixHash.computeIfAbsent(addressPrefixHash, k -> new ConcurrentHashMap<>())
+                        .put(hashOfPayload, protectedMailboxStorageEntry);
+        }
+    }
+
+    private void removeFromMailboxIndex(ProtectedStorageEntry protectedStorageEntry, ByteArray hashOfPayload) {
+        if (protectedStorageEntry instanceof ProtectedMailboxStorageEntry) {
+            ByteArray addressPrefixHash = getAddressPrefixHash((ProtectedMailboxStorageEntry) protectedStorageEntry);
+            if (addressPrefixHash != null) {
+                Map<ByteArray, ProtectedMailboxStorageEntry> entries = mailboxEntriesByAddressPrefixHash.get(addressPrefixHash);
+                if (entries != null) {
+                    entries.remove(hashOfPayload);
+                    if (entries.isEmpty())
+                        mailboxEntriesByAddressPrefixHash.remove(addressPrefixHash);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private ByteArray getAddressPrefixHash(ProtectedMailboxStorageEntry protectedMailboxStorageEntry) {
+        MailboxStoragePayload mailboxStoragePayload = protectedMailboxStorageEntry.getMailboxStoragePayload();
+        if (mailboxStoragePayload.prefixedSealedAndSignedMessage != null
+                && mailboxStoragePayload.prefixedSealedAndSignedMessage.addressPrefixHash != null)
+            return new ByteArray(mailboxStoragePayload.prefixedSealedAndSignedMessage.addressPrefixHash);
+        else
+            return null;
     }
 
     private boolean isSequenceNrValid(int newSequenceNumber, ByteArray hashOfData) {
@@ -455,8 +564,8 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
     }
 
     private boolean checkIfStoredDataPubKeyMatchesNewDataPubKey(PublicKey ownerPubKey, ByteArray hashOfData) {
-        if (map.containsKey(hashOfData)) {
-            ProtectedStorageEntry storedData = map.get(hashOfData);
+        ProtectedStorageEntry storedData = getEntry(hashOfData);
+        if (storedData != null) {
             boolean result = storedData.ownerPubKey.equals(ownerPubKey);
             if (!result)
                 log.error("New data entry does not match our stored data. Consider it might be an attempt of fraud");
@@ -468,6 +577,15 @@ public class P2PDataStorage implements MessageListener, ConnectionListener {
     }
 
     private boolean checkIfStoredMailboxDataMatchesNewMailboxData(PublicKey receiversPubKey, ByteArray hashOfData) {
+        if (optionalDiskMailboxStore.isPresent() && optionalDiskMailboxStore.get().contains(hashOfData)) {
+            // The index is keyed by the payload hash, so we only need to check the receiver
+            boolean result = optionalDiskMailboxStore.get().isReceiver(hashOfData, receiversPubKey);
+            if (!result)
+                log.error("New data entry does not match our stored data. Consider it might be an attempt of fraud");
+
+            return result;
+        }
+
         ProtectedStorageEntry storedData = map.get(hashOfData);
         if (storedData instanceof ProtectedMailboxStorageEntry) {
             ProtectedMailboxStorageEntry storedMailboxData = (ProtectedMailboxStorageEntry) storedData;
@@ -42,6 +42,8 @@ import java.security.cert.CertificateException;
 import java.util.UUID;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class EncryptionServiceTests {
     private static final Logger log = LoggerFactory.getLogger(EncryptionServiceTests.class);
@@ -80,6 +82,59 @@ public class EncryptionServiceTests {
         assertEquals(data.data, ((TestMessage) decrypted.message).data);
     }
 
+    @Test
+    public void testSessionEncryption() throws CryptoException, IOException {
+        File peersDir = File.createTempFile("temp_tests_peer", "");
+        peersDir.delete();
+        peersDir.mkdir();
+        try {
+            KeyRing peersKeyRing = new KeyRing(new KeyStorage(peersDir));
+            NodeAddress myNodeAddress = new NodeAddress("localhost", 1111);
+            NodeAddress peersNodeAddress = new NodeAddress("localhost", 2222);
+            EncryptionService encryptionService = new EncryptionService(keyRing);
+            EncryptionService peersEncryptionService = new EncryptionService(peersKeyRing);
+
+            // First message uses the hybrid scheme and offers a session
+            SealedAndSigned offer = encryptionService.encryptAndSign(peersKeyRing.getPubKeyRing(), peersNodeAddress,
+                    new TestMessage("offer"));
+            assertTrue(offer.isSessionOffer());
+            assertEquals("offer", ((TestMessage) peersEncryptionService.decryptAndVerify(offer, myNodeAddress).message).data);
+
+            // Peer has accepted the session and uses it for the reply
+            SealedAndSigned reply = peersEncryptionService.encryptAndSign(pubKeyRing, myNodeAddress, new TestMessage("reply"));
+            assertTrue(reply.isSessionEncrypted());
+            assertEquals("reply", ((TestMessage) encryptionService.decryptAndVerify(reply, peersNodeAddress).message).data);
+
+            // Now we use the session as well
+            SealedAndSigned message = encryptionService.encryptAndSign(peersKeyRing.getPubKeyRing(), peersNodeAddress,
+                    new TestMessage("message"));
+            assertTrue(message.isSessionEncrypted());
+            assertEquals("message", ((TestMessage) peersEncryptionService.decryptAndVerify(message, myNodeAddress).message).data);
+
+            // Replays are rejected
+            try {
+                peersEncryptionService.decryptAndVerify(message, myNodeAddress);
+                assertTrue("Replayed message must not be accepted", false);
+            } catch (CryptoException ignore) {
+            }
+
+            // Session encrypted data must never be used for the mailbox
+            try {
+                peersEncryptionService.decryptAndVerify(message);
+                assertTrue("Session encrypted data must not be accepted as mailbox data", false);
+            } catch (CryptoException ignore) {
+            }
+
+            // After a disconnect we fall back to the hybrid scheme
+            encryptionService.removeSessions(peersNodeAddress);
+            SealedAndSigned afterDisconnect = encryptionService.encryptAndSign(peersKeyRing.getPubKeyRing(),
+                    peersNodeAddress, new TestMessage("afterDisconnect"));
+            assertFalse(afterDisconnect.isSessionEncrypted());
+        } finally {
+            FileUtil.deleteDirectory(peersDir);
+        }
+    }
+
 }
 
 final class TestMessage implements MailboxMessage {
@@ -0,0 +1,108 @@
+package io.bitsquare.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HttpClientTest {
+    private static final String BODY = "{\"USD\":{\"last\":\"421.3\"}}";
+
+    private HttpServer server;
+    private HttpClient httpClient;
+    private final AtomicInteger numParsed = new AtomicInteger();
+
+    @Before
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/plain", exchange -> {
+            byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(byteArrayOutputStream)) {
+                gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] bytes = byteArrayOutputStream.toByteArray();
+            boolean acceptsGzip = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip");
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(acceptsGzip ? 200 : 406, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/etag", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            } else {
+                byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        server.createContext("/error", exchange -> {
+            byte[] bytes = "not found".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        httpClient = new HttpClient("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testPlainAndGzip() throws Exception {
+        assertEquals(BODY, httpClient.requestWithGET("plain"));
+        assertEquals(BODY, httpClient.requestWithGET("gzip"));
+    }
+
+    @Test
+    public void testNotModifiedReturnsCachedResult() throws Exception {
+        HttpClient.ResponseParser<String> parser = reader -> {
+            numParsed.incrementAndGet();
+            char[] buffer = new char[BODY.length()];
+            int length = reader.read(buffer);
+            return new String(buffer, 0, length);
+        };
+        assertEquals(BODY, httpClient.requestWithGET("etag", parser));
+        assertEquals(BODY, httpClient.requestWithGET("etag", parser));
+        assertEquals(1, numParsed.get());
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        try {
+            httpClient.requestWithGET("error");
+        } catch (HttpException e) {
+            assertTrue(e.getMessage().contains("404"));
+            assertTrue(e.getMessage().contains("not found"));
+            return;
+        }
+        throw new AssertionError("HttpException expected");
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.p2p;
+
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.crypto.EncryptionService;
+import io.bitsquare.p2p.messaging.PrefixedSealedAndSignedMessage;
+import io.bitsquare.p2p.mocks.MockMailboxPayload;
+import io.bitsquare.p2p.storage.payload.MailboxStoragePayload;
+import io.bitsquare.p2p.storage.storageentry.ProtectedMailboxStorageEntry;
+import io.bitsquare.storage.FileUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MailboxProcessorTest {
+    private final NodeAddress senderNodeAddress = new NodeAddress("localhost", 1111);
+    private final NodeAddress receiverNodeAddress = new NodeAddress("localhost", 2222);
+    private File dir1, dir2;
+    private KeyRing receiverKeyRing, otherKeyRing;
+    private EncryptionService encryptionService;
+
+    @Before
+    public void setup() throws IOException, CryptoException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir1 = File.createTempFile("temp_tests1", "");
+        dir1.delete();
+        dir1.mkdir();
+        dir2 = File.createTempFile("temp_tests2", "");
+        dir2.delete();
+        dir2.mkdir();
+        receiverKeyRing = new KeyRing(new KeyStorage(dir1));
+        otherKeyRing = new KeyRing(new KeyStorage(dir2));
+        encryptionService = new EncryptionService(receiverKeyRing);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir1);
+        FileUtil.deleteDirectory(dir2);
+    }
+
+    @Test
+    public void testDeliveryInSequenceOrder() throws CryptoException, InterruptedException {
+        List<ProtectedMailboxStorageEntry> entries = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            entries.add(getEntry(receiverKeyRing, "msg" + i, i));
+        }
+        // Not intended for us, must be ignored
+        entries.add(getEntry(otherKeyRing, "foreign", 5));
+        Collections.shuffle(entries);
+
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(10);
+        MailboxProcessor mailboxProcessor = new MailboxProcessor(encryptionService, (entry, decryptedMsgWithPubKey) -> {
+            received.add(((MockMailboxPayload) decryptedMsgWithPubKey.message).msg);
+            latch.countDown();
+        });
+        mailboxProcessor.process(entries);
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            expected.add("msg" + i);
+        }
+        assertEquals(expected, received);
+        mailboxProcessor.shutDown();
+    }
+
+    private ProtectedMailboxStorageEntry getEntry(KeyRing receiversKeyRing, String msg, long sequenceNr)
+            throws CryptoException {
+        PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage = new PrefixedSealedAndSignedMessage(
+                senderNodeAddress,
+                encryptionService.encryptAndSign(receiversKeyRing.getPubKeyRing(), new MockMailboxPayload(msg, senderNodeAddress)),
+                receiverNodeAddress.getAddressPrefixHash(),
+                sequenceNr);
+        PublicKey senderPubKey = otherKeyRing.getSignatureKeyPair().getPublic();
+        PublicKey receiverPubKey = receiversKeyRing.getSignatureKeyPair().getPublic();
+        MailboxStoragePayload mailboxStoragePayload = new MailboxStoragePayload(prefixedSealedAndSignedMessage,
+                senderPubKey, receiverPubKey);
+        // The processor does not check the storage signature
+        return new ProtectedMailboxStorageEntry(mailboxStoragePayload, senderPubKey, 1, new byte[0], receiverPubKey);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.p2p;
+
+import io.bitsquare.common.Clock;
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.crypto.DecryptedMsgWithPubKey;
+import io.bitsquare.crypto.EncryptionService;
+import io.bitsquare.p2p.messaging.PrefixedSealedAndSignedMessage;
+import io.bitsquare.p2p.mocks.MockMailboxPayload;
+import io.bitsquare.p2p.seed.SeedNodesRepository;
+import io.bitsquare.p2p.storage.payload.MailboxStoragePayload;
+import io.bitsquare.p2p.storage.storageentry.ProtectedMailboxStorageEntry;
+import io.bitsquare.storage.FileUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class P2PServiceTest {
+    private final NodeAddress senderNodeAddress = new NodeAddress("localhost", 1111);
+    private File dir;
+    private KeyRing keyRing;
+    private EncryptionService encryptionService;
+    private P2PService p2PService;
+
+    @Before
+    public void setup() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+        keyRing = new KeyRing(new KeyStorage(dir));
+        encryptionService = new EncryptionService(keyRing);
+        // We don't start it, so it has no network activity
+        p2PService = new P2PService(new SeedNodesRepository(), 2222, new File(dir, "tor"), true, 2, dir, new Clock(),
+                encryptionService, keyRing);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testMailboxMessageIsDeliveredOnce() throws CryptoException {
+        List<DecryptedMsgWithPubKey> received = new ArrayList<>();
+        p2PService.addDecryptedMailboxListener((decryptedMsgWithPubKey, senderNodeAddress) -> received.add(decryptedMsgWithPubKey));
+
+        MockMailboxPayload payload = new MockMailboxPayload("msg", senderNodeAddress);
+        ProtectedMailboxStorageEntry entry = getEntry(payload);
+        DecryptedMsgWithPubKey decryptedMsgWithPubKey = new DecryptedMsgWithPubKey(payload,
+                keyRing.getSignatureKeyPair().getPublic());
+        p2PService.onMailboxEntryDecrypted(entry, decryptedMsgWithPubKey);
+        // Same entry again, as when all mailbox entries get processed after the hidden service is published
+        p2PService.onMailboxEntryDecrypted(entry, decryptedMsgWithPubKey);
+        assertEquals(1, received.size());
+
+        MockMailboxPayload otherPayload = new MockMailboxPayload("msg", senderNodeAddress);
+        p2PService.onMailboxEntryDecrypted(getEntry(otherPayload), new DecryptedMsgWithPubKey(otherPayload,
+                keyRing.getSignatureKeyPair().getPublic()));
+        assertEquals(2, received.size());
+    }
+
+    private ProtectedMailboxStorageEntry getEntry(MockMailboxPayload payload) throws CryptoException {
+        PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage = new PrefixedSealedAndSignedMessage(
+                senderNodeAddress,
+                encryptionService.encryptAndSign(keyRing.getPubKeyRing(), payload),
+                new NodeAddress("localhost", 2222).getAddressPrefixHash(),
+                1);
+        PublicKey pubKey = keyRing.getSignatureKeyPair().getPublic();
+        MailboxStoragePayload mailboxStoragePayload = new MailboxStoragePayload(prefixedSealedAndSignedMessage,
+                pubKey, pubKey);
+        return new ProtectedMailboxStorageEntry(mailboxStoragePayload, pubKey, 1, new byte[0], pubKey);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.p2p.storage;
+
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.Hash;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.crypto.EncryptionService;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.messaging.PrefixedSealedAndSignedMessage;
+import io.bitsquare.p2p.mocks.MockMailboxPayload;
+import io.bitsquare.p2p.storage.payload.MailboxStoragePayload;
+import io.bitsquare.p2p.storage.storageentry.ProtectedMailboxStorageEntry;
+import io.bitsquare.storage.FileUtil;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DiskMailboxStoreTest {
+    private final NodeAddress nodeAddress = new NodeAddress("localhost", 1111);
+    private File dir;
+    private File storeDir;
+    private KeyRing keyRing;
+    private EncryptionService encryptionService;
+    private int defaultSegmentSize;
+
+    @Before
+    public void setup() throws IOException, CryptoException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = File.createTempFile("temp_tests", "");
+        dir.delete();
+        dir.mkdir();
+        storeDir = new File(dir, "mailbox");
+        keyRing = new KeyRing(new KeyStorage(dir));
+        encryptionService = new EncryptionService(keyRing);
+        defaultSegmentSize = DiskMailboxStore.SEGMENT_SIZE;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        DiskMailboxStore.SEGMENT_SIZE = defaultSegmentSize;
+        FileUtil.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testPutGetRemove() throws Exception {
+        DiskMailboxStore store = new DiskMailboxStore(storeDir);
+        ProtectedMailboxStorageEntry entry = getEntry("msg1");
+        P2PDataStorage.ByteArray hash = getHash(entry);
+        store.put(hash, entry);
+
+        assertTrue(store.contains(hash));
+        assertEquals(1, store.size());
+        ProtectedMailboxStorageEntry stored = store.get(hash);
+        assertNotNull(stored);
+        assertEquals(entry.receiversPubKey, stored.receiversPubKey);
+        assertArrayEquals(entry.getMailboxStoragePayload().prefixedSealedAndSignedMessage.sealedAndSigned.encryptedPayloadWithHmac,
+                stored.getMailboxStoragePayload().prefixedSealedAndSignedMessage.sealedAndSigned.encryptedPayloadWithHmac);
+        assertTrue(store.isReceiver(hash, entry.receiversPubKey));
+        assertFalse(store.isReceiver(hash, Sig.generateKeyPair().getPublic()));
+
+        store.remove(hash);
+        assertFalse(store.contains(hash));
+        assertNull(store.get(hash));
+        store.shutDown();
+    }
+
+    @Test
+    public void testSegmentsAndExpiry() throws Exception {
+        // Each entry gets a segment of its own
+        DiskMailboxStore.SEGMENT_SIZE = 1;
+        DiskMailboxStore store = new DiskMailboxStore(storeDir);
+        P2PDataStorage.ByteArray firstHash = null;
+        for (int i = 0; i < 10; i++) {
+            ProtectedMailboxStorageEntry entry = getEntry("msg" + i);
+            if (i == 0) {
+                entry.timeStamp = System.currentTimeMillis() - entry.getStoragePayload().getTTL() - 1;
+                firstHash = getHash(entry);
+            }
+            store.put(getHash(entry), entry);
+        }
+        assertEquals(10, store.size());
+        assertEquals(10, store.getAllAsReferences().size());
+        assertEquals(10, storeDir.listFiles().length);
+
+        List<ProtectedMailboxStorageEntry> removed = store.removeExpired();
+        assertEquals(1, removed.size());
+        assertFalse(store.contains(firstHash));
+        assertEquals(9, store.size());
+        // The first segment has no live entries anymore and got deleted
+        assertEquals(9, storeDir.listFiles().length);
+
+        store.shutDown();
+        assertEquals(0, storeDir.listFiles().length);
+    }
+
+    @Test
+    public void testReferencesAreReplacedAtSerialization() throws Exception {
+        DiskMailboxStore.SEGMENT_SIZE = 1;
+        DiskMailboxStore store = new DiskMailboxStore(storeDir);
+        ProtectedMailboxStorageEntry entry = getEntry("msg1");
+        P2PDataStorage.ByteArray hash = getHash(entry);
+        store.put(hash, entry);
+        ProtectedMailboxStorageEntry entry2 = getEntry("msg2");
+        store.put(getHash(entry2), entry2);
+
+        HashSet<Serializable> set = new HashSet<>(store.getAllAsReferences());
+        // The reference stays readable if the entry gets removed and its segment deleted before we send it
+        store.remove(hash);
+        assertEquals(1, storeDir.listFiles().length);
+
+        HashSet<?> deserialized = Utilities.deserialize(Utilities.serialize(set));
+        assertEquals(2, deserialized.size());
+        for (Object object : deserialized)
+            assertTrue(object instanceof ProtectedMailboxStorageEntry);
+        store.shutDown();
+    }
+
+    private ProtectedMailboxStorageEntry getEntry(String msg) throws CryptoException {
+        PrefixedSealedAndSignedMessage prefixedSealedAndSignedMessage = new PrefixedSealedAndSignedMessage(nodeAddress,
+                encryptionService.encryptAndSign(keyRing.getPubKeyRing(), new MockMailboxPayload(msg, nodeAddress)),
+                nodeAddress.getAddressPrefixHash());
+        PublicKey senderPubKey = keyRing.getSignatureKeyPair().getPublic();
+        PublicKey receiverPubKey = keyRing.getPubKeyRing().getSignaturePubKey();
+        MailboxStoragePayload mailboxStoragePayload = new MailboxStoragePayload(prefixedSealedAndSignedMessage,
+                senderPubKey, receiverPubKey);
+        // The store does not check the signature
+        return new ProtectedMailboxStorageEntry(mailboxStoragePayload, senderPubKey, 1, new byte[0], receiverPubKey);
+    }
+
+    private P2PDataStorage.ByteArray getHash(ProtectedMailboxStorageEntry entry) {
+        return new P2PDataStorage.ByteArray(Hash.getHash(entry.getStoragePayload()));
+    }
+}